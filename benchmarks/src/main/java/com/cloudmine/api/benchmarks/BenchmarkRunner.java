@@ -0,0 +1,34 @@
+package com.cloudmine.api.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with JMH's usual command line options, always with the GC profiler so every result includes
+ * the bytes allocated per operation and the collections it caused. For example, to run the URL benchmarks with one
+ * fork: {@code java -jar benchmarks.jar SearchUrl -f 1}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if(options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        Runner runner = new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build());
+        if(options.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
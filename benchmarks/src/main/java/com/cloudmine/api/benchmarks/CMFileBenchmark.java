@@ -0,0 +1,61 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.CMFile;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+/**
+ * Creating files from bytes, streams and downloaded responses
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class CMFileBenchmark {
+
+    @Param({"1024", "1048576"})
+    public int bytes;
+
+    private byte[] contents;
+
+    @Setup
+    public void setUp() {
+        contents = new byte[bytes];
+        new Random(42).nextBytes(contents);
+    }
+
+    @Benchmark
+    public CMFile fromBytes() {
+        return new CMFile(contents, "image", "image/png");
+    }
+
+    @Benchmark
+    public CMFile fromStream() {
+        return new CMFile(new ByteArrayInputStream(contents), "image", "image/png");
+    }
+
+    @Benchmark
+    public CMFile fromResponse() {
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        ByteArrayEntity entity = new ByteArrayEntity(contents);
+        entity.setContentType("image/png");
+        response.setEntity(entity);
+        return new CMFile(response, "image");
+    }
+
+    @Benchmark
+    public byte[] readContents() {
+        return new CMFile(contents, "image", "image/png").getFileContents();
+    }
+}
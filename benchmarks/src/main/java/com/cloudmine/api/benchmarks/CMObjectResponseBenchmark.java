@@ -0,0 +1,48 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.rest.options.CMDecodeOptions;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Constructing object load responses from canned bodies, eagerly and lazily decoded, and then reading every object
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class CMObjectResponseBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int objects;
+
+    @Param({"eager", "lazy"})
+    public String decoding;
+
+    private String body;
+    private CMDecodeOptions decodeOptions;
+
+    @Setup
+    public void setUp() {
+        body = Fixtures.objectLoadBody(objects);
+        decodeOptions = "lazy".equals(decoding) ? CMDecodeOptions.LAZY : CMDecodeOptions.NONE;
+    }
+
+    @Benchmark
+    public CMObjectResponse construct() {
+        return new CMObjectResponse(body, 200, decodeOptions);
+    }
+
+    @Benchmark
+    public void constructAndRead(Blackhole blackhole) {
+        for(CMObject object : new CMObjectResponse(body, 200, decodeOptions).getObjects()) {
+            blackhole.consume(object.getObjectId());
+        }
+    }
+}
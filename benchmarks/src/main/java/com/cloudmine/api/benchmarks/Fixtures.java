@@ -0,0 +1,88 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.CMGeoPoint;
+import com.cloudmine.api.SimpleCMObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Canned CloudMine objects and response bodies, shaped like a typical application's data: a few strings and numbers,
+ * a list, a subobject and a geopoint
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+final class Fixtures {
+    static final String APP_ID = "0a5e2d98c4f94c75b3e3f0a9a7a4a27d";
+    static final String API_KEY = "7c1bfc6b29b34dbd8f2ab4ec1d8e34a0";
+
+    private Fixtures() {
+    }
+
+    static String objectId(int index) {
+        return "venue" + index;
+    }
+
+    /**
+     * Get the JSON of one object, without its key
+     */
+    static String objectJson(int index) {
+        return new StringBuilder(256)
+                .append("{\"__id__\":\"").append(objectId(index)).append('"')
+                .append(",\"name\":\"Venue number ").append(index).append('"')
+                .append(",\"rating\":").append(index % 5)
+                .append(",\"price\":").append(index % 100 + 0.99)
+                .append(",\"open\":").append(index % 2 == 0)
+                .append(",\"tags\":[\"food\",\"drink\",\"tag").append(index % 20).append("\"]")
+                .append(",\"address\":{\"street\":\"").append(index).append(" Market St\",\"city\":\"Philadelphia\",\"zip\":\"19103\"}")
+                .append(",\"location\":{\"__type__\":\"geopoint\",\"longitude\":").append(-75.16 + index % 100 / 1000.0)
+                .append(",\"latitude\":").append(39.95 + index % 50 / 1000.0).append('}')
+                .append('}').toString();
+    }
+
+    /**
+     * Get the JSON of the given number of objects keyed by their ids, as CloudMine returns them under "success"
+     */
+    static String keyedObjectsJson(int count) {
+        StringBuilder json = new StringBuilder(count * 300 + 2).append('{');
+        for(int i = 0; i < count; i++) {
+            if(i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(objectId(i)).append("\":").append(objectJson(i));
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Get the body of a successful object load of the given number of objects
+     */
+    static String objectLoadBody(int count) {
+        return "{\"success\":" + keyedObjectsJson(count) + ",\"errors\":{},\"count\":" + count + "}";
+    }
+
+    static SimpleCMObject simpleObject(int index) {
+        SimpleCMObject object = new SimpleCMObject(objectId(index));
+        object.add("name", "Venue number " + index);
+        object.add("rating", index % 5);
+        object.add("price", index % 100 + 0.99);
+        object.add("open", index % 2 == 0);
+        object.add("tags", Arrays.asList("food", "drink", "tag" + index % 20));
+        SimpleCMObject address = new SimpleCMObject("address");
+        address.add("street", index + " Market St");
+        address.add("city", "Philadelphia");
+        object.add("address", address);
+        object.add("location", new CMGeoPoint(-75.16 + index % 100 / 1000.0, 39.95 + index % 50 / 1000.0));
+        return object;
+    }
+
+    static List<SimpleCMObject> simpleObjects(int count) {
+        List<SimpleCMObject> objects = new ArrayList<SimpleCMObject>(count);
+        for(int i = 0; i < count; i++) {
+            objects.add(simpleObject(i));
+        }
+        return objects;
+    }
+}
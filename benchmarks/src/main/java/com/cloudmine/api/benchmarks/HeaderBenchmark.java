@@ -0,0 +1,43 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.rest.HeaderFactory;
+import com.cloudmine.api.rest.JavaHeaderFactory;
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Set;
+
+/**
+ * Building the CloudMine headers sent with every request
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class HeaderBenchmark {
+
+    private HeaderFactory headerFactory;
+
+    @Setup
+    public void setUp() {
+        headerFactory = new JavaHeaderFactory();
+    }
+
+    @Benchmark
+    public Set<Header> cloudMineHeaders() {
+        return headerFactory.getCloudMineHeaders(Fixtures.API_KEY);
+    }
+
+    @Benchmark
+    public HttpGet headedRequest() {
+        HttpGet get = new HttpGet("https://api.cloudmine.me/v1/app/" + Fixtures.APP_ID + "/text");
+        for(Header header : headerFactory.getCloudMineHeaders(Fixtures.API_KEY)) {
+            get.addHeader(header);
+        }
+        return get;
+    }
+}
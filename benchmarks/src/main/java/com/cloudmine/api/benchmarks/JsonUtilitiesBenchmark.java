@@ -0,0 +1,57 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.rest.JsonUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converting between JSON and maps or objects, which every request and response goes through
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class JsonUtilitiesBenchmark {
+
+    @Param({"10", "1000"})
+    public int objects;
+
+    private String objectJson;
+    private String keyedJson;
+    private List<SimpleCMObject> simpleObjects;
+
+    @Setup
+    public void setUp() {
+        objectJson = Fixtures.objectJson(1);
+        keyedJson = Fixtures.keyedObjectsJson(objects);
+        simpleObjects = Fixtures.simpleObjects(objects);
+    }
+
+    @Benchmark
+    public Map<String, Object> jsonToMap() {
+        return JsonUtilities.jsonToMap(keyedJson);
+    }
+
+    @Benchmark
+    public Map<String, String> jsonMapToKeyMap() {
+        return JsonUtilities.jsonMapToKeyMap(keyedJson);
+    }
+
+    @Benchmark
+    public CMObject jsonToClass() {
+        return JsonUtilities.jsonToClass(objectJson);
+    }
+
+    @Benchmark
+    public String cmobjectsToJson() {
+        return JsonUtilities.cmobjectsToJson(simpleObjects);
+    }
+}
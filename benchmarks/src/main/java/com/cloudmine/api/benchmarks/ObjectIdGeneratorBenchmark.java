@@ -0,0 +1,42 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.ObjectIdGenerator;
+import com.cloudmine.api.SecureRandomObjectIdGenerator;
+import com.cloudmine.api.TimeOrderedObjectIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Creating object ids on one thread, and on every core at once to show how the generators scale under contention
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class ObjectIdGeneratorBenchmark {
+
+    @Param({"timeOrdered", "secureRandom"})
+    public String generator;
+
+    private ObjectIdGenerator idGenerator;
+
+    @Setup
+    public void setUp() {
+        idGenerator = "secureRandom".equals(generator) ? new SecureRandomObjectIdGenerator() : new TimeOrderedObjectIdGenerator();
+    }
+
+    @Benchmark
+    public String singleThread() {
+        return idGenerator.generateObjectId();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String allCores() {
+        return idGenerator.generateObjectId();
+    }
+}
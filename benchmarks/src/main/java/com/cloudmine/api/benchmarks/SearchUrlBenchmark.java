@@ -0,0 +1,74 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.SearchQuery;
+import com.cloudmine.api.query.CompiledQuery;
+import com.cloudmine.api.query.PreparedQuery;
+import com.cloudmine.api.rest.CMURLBuilder;
+import com.cloudmine.api.rest.options.CMPagingOptions;
+import com.cloudmine.api.rest.options.CMRequestOptions;
+import com.cloudmine.api.rest.options.CMSortOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Building search queries and rendering request URLs, from plain strings and from compiled and prepared queries
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class SearchUrlBenchmark {
+
+    private CMURLBuilder baseUrl;
+    private CMRequestOptions options;
+    private String query;
+    private CompiledQuery compiled;
+    private PreparedQuery prepared;
+    private List<String> objectIds;
+    private int rating;
+
+    @Setup
+    public void setUp() {
+        baseUrl = new CMURLBuilder(Fixtures.APP_ID);
+        options = new CMRequestOptions(new CMPagingOptions(50, 0, true), null,
+                new CMSortOptions("name", CMSortOptions.SortDirection.ASCENDING));
+        query = buildQuery(4);
+        compiled = CompiledQuery.compile(query);
+        prepared = SearchQuery.filter("rating").greaterThanOrEqualParameter().and("tags").equal("food").prepare();
+        objectIds = Arrays.asList(Fixtures.objectId(1), Fixtures.objectId(2), Fixtures.objectId(3));
+    }
+
+    private static String buildQuery(int rating) {
+        return SearchQuery.filter("rating").greaterThanOrEqual(rating).and("tags").equal("food").searchQuery();
+    }
+
+    @Benchmark
+    public String searchQuery() {
+        return buildQuery(rating++ & 3);
+    }
+
+    @Benchmark
+    public String searchUrl() {
+        return baseUrl.copy().search(query).options(options).asUrlString();
+    }
+
+    @Benchmark
+    public String compiledSearchUrl() {
+        return baseUrl.copy().search(compiled).options(options).asUrlString();
+    }
+
+    @Benchmark
+    public String preparedSearchUrl() {
+        return baseUrl.copy().search(prepared.bind(rating++ & 3)).options(options).asUrlString();
+    }
+
+    @Benchmark
+    public String objectIdsUrl() {
+        return baseUrl.copy().text().objectIds(objectIds).asUrlString();
+    }
+}
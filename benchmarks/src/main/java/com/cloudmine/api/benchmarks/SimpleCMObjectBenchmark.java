@@ -0,0 +1,49 @@
+package com.cloudmine.api.benchmarks;
+
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading the properties of objects built in code and of objects decoded from a response
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+@State(Scope.Benchmark)
+public class SimpleCMObjectBenchmark {
+
+    private SimpleCMObject built;
+    private SimpleCMObject decoded;
+
+    @Setup
+    public void setUp() {
+        built = Fixtures.simpleObject(1);
+        decoded = (SimpleCMObject) new CMObjectResponse(Fixtures.objectLoadBody(1), 200).getObjects().get(0);
+    }
+
+    @Benchmark
+    public void builtGetters(Blackhole blackhole) {
+        read(built, blackhole);
+    }
+
+    @Benchmark
+    public void decodedGetters(Blackhole blackhole) {
+        read(decoded, blackhole);
+    }
+
+    private static void read(SimpleCMObject object, Blackhole blackhole) {
+        blackhole.consume(object.getString("name"));
+        blackhole.consume(object.getInteger("rating"));
+        blackhole.consume(object.getDouble("price"));
+        blackhole.consume(object.getBoolean("open"));
+        blackhole.consume(object.getList("tags"));
+        blackhole.consume(object.getSimpleCMObject("address"));
+        blackhole.consume(object.getGeoPoint("location"));
+        blackhole.consume(object.get("missing"));
+    }
+}
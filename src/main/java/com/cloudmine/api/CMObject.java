@@ -85,8 +85,30 @@ public class CMObject implements Transportable, Savable<ObjectModificationRespon
         return JsonUtilities.jsonToClassMap(transportableCollection, objectClass);
     }
 
+    private static volatile ObjectIdGenerator objectIdGenerator = new TimeOrderedObjectIdGenerator();
+
+    /**
+     * Set the strategy used to create object ids for new objects and files. Defaults to a {@link TimeOrderedObjectIdGenerator}
+     * @param generator the generator to use
+     * @throws NullPointerException if given a null generator
+     */
+    public static void setObjectIdGenerator(ObjectIdGenerator generator) {
+        if(generator == null) {
+            throw new NullPointerException("Cannot use a null ObjectIdGenerator");
+        }
+        objectIdGenerator = generator;
+    }
+
+    /**
+     * Get the strategy used to create object ids for new objects and files
+     * @return the ObjectIdGenerator in use
+     */
+    public static ObjectIdGenerator getObjectIdGenerator() {
+        return objectIdGenerator;
+    }
+
     protected static String generateUniqueObjectId() {
-        return UUID.randomUUID().toString();
+        return objectIdGenerator.generateObjectId();
     }
 
     /**
@@ -0,0 +1,84 @@
+package com.cloudmine.api;
+
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.LazyJsonMap;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A {@link SimpleCMObject} that is backed by its parsed JSON representation. Individual fields are only converted
+ * into their Java representation the first time they are requested through one of the getters, so loading wide
+ * objects and reading a few fields does not pay for decoding the rest. Adding or removing fields works exactly as
+ * it does on a SimpleCMObject. Serializing the object, or iterating over its contents, decodes every remaining field.<br>
+ * These are returned by {@link com.cloudmine.api.rest.response.CMObjectResponse} when the request was made with
+ * {@link com.cloudmine.api.rest.options.CMDecodeOptions#LAZY}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class LazySimpleCMObject extends SimpleCMObject {
+
+    private final LazyJsonMap lazyContents;
+
+    /**
+     * Instantiate a new LazySimpleCMObject from the unkeyed JSON representation of its contents
+     * @param objectId the objectId for this object. If null, the __id__ field is used if it exists, otherwise one is generated
+     * @param json the contents of the object, in the form {contents}
+     * @throws CreationException if the given json is not a JSON object
+     * @throws ConversionException if unable to parse the given json
+     */
+    public LazySimpleCMObject(String objectId, String json) throws CreationException, ConversionException {
+        this(objectId, asObjectNode(JsonUtilities.jsonToTree(json)));
+    }
+
+    /**
+     * Instantiate a new LazySimpleCMObject backed by the given JSON object. The node is owned by this object
+     * after this call, and should not be modified
+     * @param objectId the objectId for this object. If null, the __id__ field is used if it exists, otherwise one is generated
+     * @param contents the contents of the object
+     */
+    public LazySimpleCMObject(String objectId, ObjectNode contents) {
+        this(objectId, new LazyJsonMap(withObjectId(objectId, contents)));
+    }
+
+    private LazySimpleCMObject(String objectId, LazyJsonMap contents) {
+        super(contents, true);
+        this.lazyContents = contents;
+    }
+
+    private static ObjectNode withObjectId(String objectId, ObjectNode contents) {
+        if(contents == null) {
+            throw new CreationException("Cannot create a LazySimpleCMObject without contents");
+        }
+        if(objectId != null) {
+            contents.put(JsonUtilities.OBJECT_ID_KEY, objectId);
+        }
+        return contents;
+    }
+
+    private static ObjectNode asObjectNode(JsonNode node) throws CreationException {
+        if(node instanceof ObjectNode) {
+            return (ObjectNode) node;
+        }
+        throw new CreationException("LazySimpleCMObject must be created from a JSON object, was given: " + node);
+    }
+
+    /**
+     * Check whether every field of this object has been decoded. Once true, this object behaves exactly like a SimpleCMObject
+     * @return true if there are no fields left to decode
+     */
+    public boolean isFullyDecoded() {
+        return lazyContents.isFullyDecoded();
+    }
+
+    /**
+     * Decode any fields that have not been accessed yet
+     * @return this
+     */
+    public LazySimpleCMObject decodeAll() {
+        lazyContents.entrySet();
+        return this;
+    }
+}
@@ -0,0 +1,18 @@
+package com.cloudmine.api;
+
+/**
+ * Strategy for creating the object ids of new {@link CMObject}s and {@link CMFile}s that are not given one.
+ * Implementations must be thread safe, and should return ids that are unique across every device that saves to the
+ * same application. Set the generator in use with {@link CMObject#setObjectIdGenerator(ObjectIdGenerator)}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public interface ObjectIdGenerator {
+
+    /**
+     * Create a new object id
+     * @return a new, unique object id
+     */
+    public String generateObjectId();
+}
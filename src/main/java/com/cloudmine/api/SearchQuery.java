@@ -1,12 +1,17 @@
 package com.cloudmine.api;
 
 import com.cloudmine.api.persistance.ClassNameRegistry;
+import com.cloudmine.api.query.CompiledQuery;
+import com.cloudmine.api.query.PreparedQuery;
 import com.cloudmine.api.rest.JsonUtilities;
 
 /**
  * Domain specific language for constructing search queries. Note that while most operations are restricted so that
  * only legal queries can be constructed, this is not the case for or'ing and and'ing - you can always OR even if you've
- * already ANDed in the current FilterValue, which is not valid syntax.
+ * already ANDed in the current FilterValue, which is not valid syntax.<br>
+ * Searches that are made repeatedly should be built once and {@link FilterValue#compile() compiled}; searches that
+ * only differ in their values can use the parameter filters, such as {@link PropertyName#equalParameter()}, and be
+ * {@link FilterValue#prepare() prepared}, then have their values bound for each search.
  * <br>
  * Copyright CloudMine LLC. All rights reserved<br>
  * See LICENSE file included with SDK for details.
@@ -230,6 +235,68 @@ public class SearchQuery {
             return FilterValue();
         }
 
+        //Parameter filter values, for prepared queries
+
+        /**
+         * Find objects with values equal to a parameter, bound when the query is prepared
+         * @return a {@link CombinableFilterValue} that lets you add additional filters
+         */
+        public CombinableFilterValue equalParameter() {
+            equal();
+            parameter();
+            return FilterValue();
+        }
+
+        /**
+         * Find objects with values not equal to a parameter, bound when the query is prepared
+         * @return a {@link CombinableFilterValue} that lets you add additional filters
+         */
+        public CombinableFilterValue notEqualParameter() {
+            notEqual();
+            parameter();
+            return FilterValue();
+        }
+
+        /**
+         * Find objects with values less than a parameter, bound when the query is prepared
+         * @return a {@link CombinableFilterValue} that lets you add additional filters
+         */
+        public CombinableFilterValue lessThanParameter() {
+            lessThan();
+            parameter();
+            return FilterValue();
+        }
+
+        /**
+         * Find objects with values less than or equal to a parameter, bound when the query is prepared
+         * @return a {@link CombinableFilterValue} that lets you add additional filters
+         */
+        public CombinableFilterValue lessThanOrEqualParameter() {
+            lessThanOrEqual();
+            parameter();
+            return FilterValue();
+        }
+
+        /**
+         * Find objects with values greater than a parameter, bound when the query is prepared
+         * @return a {@link CombinableFilterValue} that lets you add additional filters
+         */
+        public CombinableFilterValue greaterThanParameter() {
+            greaterThan();
+            parameter();
+            return FilterValue();
+        }
+
+        /**
+         * Find objects with values greater than or equal to a parameter, bound when the query is prepared
+         * @return a {@link CombinableFilterValue} that lets you add additional filters
+         */
+        public CombinableFilterValue greaterThanOrEqualParameter() {
+            greaterThanOrEqual();
+            parameter();
+            return FilterValue();
+        }
+
         private void greaterThan() {
             queryBuilder.append(" > ");
         }
@@ -261,6 +328,20 @@ public class SearchQuery {
          * @return
          */
         public String searchQuery();
+
+        /**
+         * Finish the search query and compile it, so it can be reused without being rebuilt
+         * @return the compiled query
+         * @throws com.cloudmine.api.exceptions.InvalidRequestException if the query has parameters, which must be
+         * {@link #prepare() prepared} instead
+         */
+        public CompiledQuery compile();
+
+        /**
+         * Finish the search query and prepare it, so values can be bound to its parameters
+         * @return the prepared query
+         */
+        public PreparedQuery prepare();
     }
 
     /**
@@ -298,6 +379,14 @@ public class SearchQuery {
             return queryBuilder.toString();
         }
 
+        public CompiledQuery compile() {
+            return CompiledQuery.compile(searchQuery());
+        }
+
+        public PreparedQuery prepare() {
+            return PreparedQuery.prepare(searchQuery());
+        }
+
         private void closeFilter() {
             queryBuilder.append("]");
         }
@@ -356,6 +445,14 @@ public class SearchQuery {
             return queryBuilder.toString();
         }
 
+        public CompiledQuery compile() {
+            return CompiledQuery.compile(searchQuery());
+        }
+
+        public PreparedQuery prepare() {
+            return PreparedQuery.prepare(searchQuery());
+        }
+
         public PropertyName and(String name) {
             SearchQuery.this.and();
             return PropertyName(name);
@@ -407,6 +504,10 @@ public class SearchQuery {
         queryBuilder.append("[");
     }
 
+    private void parameter() {
+        queryBuilder.append("?");
+    }
+
     private void quote(String value) {
         queryBuilder.append(Strings.QUOTE).append(value).append(Strings.QUOTE);
     }
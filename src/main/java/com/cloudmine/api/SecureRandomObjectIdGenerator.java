@@ -0,0 +1,19 @@
+package com.cloudmine.api;
+
+import java.util.UUID;
+
+/**
+ * Generates random (version 4) UUIDs using {@link UUID#randomUUID()}, which draws from a single shared
+ * {@link java.security.SecureRandom}. The ids are unpredictable, but concurrent callers contend on the shared
+ * generator, and the first call may block while it is seeded. Use this if object ids need to be unguessable.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class SecureRandomObjectIdGenerator implements ObjectIdGenerator {
+
+    @Override
+    public String generateObjectId() {
+        return UUID.randomUUID().toString();
+    }
+}
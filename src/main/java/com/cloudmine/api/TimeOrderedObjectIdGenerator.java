@@ -0,0 +1,59 @@
+package com.cloudmine.api;
+
+import java.util.Random;
+
+/**
+ * Generates time ordered 128 bit ids in the standard UUID string format, laid out like a version 7 UUID: the first
+ * 48 bits are the current time in milliseconds, and the remaining bits (other than the version and variant) are
+ * random. Each thread has its own {@link Random}, so generating ids never blocks and never contends with other
+ * threads. Ids created later sort after ids created earlier, which also keeps them clustered in ordered indexes.<br>
+ * The random bits are not cryptographically secure; use {@link SecureRandomObjectIdGenerator} if ids must be unguessable.
+ * This is the default {@link ObjectIdGenerator}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class TimeOrderedObjectIdGenerator implements ObjectIdGenerator {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000000000000000L;
+
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    @Override
+    public String generateObjectId() {
+        Random threadRandom = random.get();
+        long mostSignificantBits = (System.currentTimeMillis() << 16) | VERSION | (threadRandom.nextInt() & 0x0FFF);
+        long leastSignificantBits = VARIANT | (threadRandom.nextLong() >>> 2);
+        return format(mostSignificantBits, leastSignificantBits);
+    }
+
+    /**
+     * Format the given bits as a UUID string, in the form xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx
+     */
+    static String format(long mostSignificantBits, long leastSignificantBits) {
+        char[] id = new char[36];
+        writeHex(id, 0, mostSignificantBits >>> 32, 8);
+        id[8] = '-';
+        writeHex(id, 9, mostSignificantBits >>> 16, 4);
+        id[13] = '-';
+        writeHex(id, 14, mostSignificantBits, 4);
+        id[18] = '-';
+        writeHex(id, 19, leastSignificantBits >>> 48, 4);
+        id[23] = '-';
+        writeHex(id, 24, leastSignificantBits, 12);
+        return new String(id);
+    }
+
+    private static void writeHex(char[] destination, int offset, long value, int digits) {
+        for(int i = offset + digits - 1; i >= offset; i--) {
+            destination[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package com.cloudmine.api.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe Map that holds a bounded number (or total weight) of entries, evicting according to an
+ * {@link EvictionPolicy}, and optionally expiring entries a fixed time after they were written or last accessed.
+ * See {@link CMCacheOptions} for the available settings.<br>
+ * Reads never block: entries are looked up in a ConcurrentHashMap, and the access is only recorded in the eviction
+ * policy if the policy's lock is free, so a read under contention may not count as a use. Writes and removals take
+ * the lock, and perform any pending evictions and expirations; entries that were read without being reordered are
+ * moved back as they are passed, so they don't keep expired entries behind them from being cleaned up. Expired
+ * entries are never returned, even if they have not been cleaned up yet.<br>
+ * Iterating over the Map iterates over a snapshot of the live entries, in no particular order.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class BoundedCache<K, V> extends AbstractMap<K, V> {
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedCache.class);
+    private static final double WINDOW_FRACTION = 0.01;
+    private static final double PROTECTED_FRACTION = 0.8;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<K, Node<K, V>>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final long maximumWeight;
+    private final Weigher<? super K, ? super V> weigher;
+    private final boolean tinyLfu;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final EvictionListener<? super K, ? super V> evictionListener;
+
+    //guarded by evictionLock. With LRU only the probation deque is used
+    private final FrequencySketch sketch;
+    private final AccessDeque<K, V> window = new AccessDeque<K, V>();
+    private final AccessDeque<K, V> probation = new AccessDeque<K, V>();
+    private final AccessDeque<K, V> protectedDeque = new AccessDeque<K, V>();
+    private final WriteDeque<K, V> writeOrder = new WriteDeque<K, V>();
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+
+    /**
+     * Instantiate a new BoundedCache
+     * @param options the bounds and expiration of the cache
+     */
+    public BoundedCache(CMCacheOptions<K, V> options) {
+        if(options.getMaximumWeight() != CMCacheOptions.UNBOUNDED) {
+            maximumWeight = options.getMaximumWeight();
+            weigher = options.getWeigher();
+        } else {
+            maximumWeight = options.getMaximumSize() == CMCacheOptions.UNBOUNDED ?
+                    Long.MAX_VALUE :
+                    options.getMaximumSize();
+            weigher = null;
+        }
+        tinyLfu = options.isBounded() && EvictionPolicy.TINY_LFU.equals(options.getEvictionPolicy());
+        expireAfterWriteNanos = toNanos(options.getExpireAfterWrite());
+        expireAfterAccessNanos = toNanos(options.getExpireAfterAccess());
+        evictionListener = options.getEvictionListener();
+        if(tinyLfu) {
+            sketch = new FrequencySketch(options.getMaximumSize() == CMCacheOptions.UNBOUNDED ? 1024 : maximumWeight);
+            windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_FRACTION));
+            protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_FRACTION);
+        } else {
+            sketch = null;
+            windowMaximum = 0;
+            protectedMaximum = 0;
+        }
+    }
+
+    private static long toNanos(long millis) {
+        return millis < 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * The current time, in nanoseconds. Only differences between values are meaningful
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public V get(Object key) {
+        if(key == null) {
+            return null;
+        }
+        Node<K, V> node = data.get(key);
+        if(node == null) {
+            return null;
+        }
+        long now = currentTimeNanos();
+        if(isExpired(node, now)) {
+            expireNode(node);
+            return null;
+        }
+        node.accessTime = now;
+        if(evictionLock.tryLock()) {
+            try {
+                if(node.alive) {
+                    onAccess(node);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if(key == null) {
+            return false;
+        }
+        Node<K, V> node = data.get(key);
+        return node != null && !isExpired(node, currentTimeNanos());
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if(key == null || value == null) {
+            throw new NullPointerException("BoundedCache does not allow null keys or values");
+        }
+        int weight = weigh(key, value);
+        List<Node<K, V>> expired = new ArrayList<Node<K, V>>();
+        List<Node<K, V>> evicted = new ArrayList<Node<K, V>>();
+        V previous = null;
+        V overwritten = null;
+        EvictionCause overwriteCause = null;
+        evictionLock.lock();
+        try {
+            long now = currentTimeNanos();
+            Node<K, V> node = data.get(key);
+            if(node != null) {
+                if(isExpired(node, now)) {
+                    overwritten = node.value;
+                    overwriteCause = EvictionCause.EXPIRED;
+                } else {
+                    previous = node.value;
+                    if(previous != value) {
+                        overwritten = previous;
+                        overwriteCause = EvictionCause.REPLACED;
+                    }
+                }
+                node.value = value;
+                adjustWeight(node, weight - node.weight);
+                node.writeTime = now;
+                node.accessTime = now;
+                writeOrder.moveToBack(node);
+                onAccess(node);
+            } else {
+                node = new Node<K, V>(key, value, weight, now);
+                data.put(key, node);
+                writeOrder.addLast(node);
+                totalWeight += weight;
+                if(tinyLfu) {
+                    node.queue = WINDOW;
+                    window.addLast(node);
+                    windowWeight += weight;
+                    sketch.increment(key);
+                } else {
+                    node.queue = PROBATION;
+                    probation.addLast(node);
+                }
+            }
+            expire(now, expired);
+            evict(evicted);
+        } finally {
+            evictionLock.unlock();
+        }
+        if(overwritten != null) {
+            notifyListener(key, overwritten, overwriteCause);
+        }
+        notifyListener(expired, EvictionCause.EXPIRED);
+        notifyListener(evicted, EvictionCause.SIZE);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if(key == null) {
+            return null;
+        }
+        Node<K, V> node;
+        evictionLock.lock();
+        try {
+            node = data.remove(key);
+            if(node != null) {
+                unlink(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        if(node == null || isExpired(node, currentTimeNanos())) {
+            return null;
+        }
+        return node.value;
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for(Node<K, V> node : data.values()) {
+                unlink(node);
+            }
+            data.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of entries in the cache. This may include expired entries that have not been cleaned up yet;
+     * call {@link #cleanUp()} first for an exact count
+     */
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        long now = currentTimeNanos();
+        Map<K, V> snapshot = new LinkedHashMap<K, V>();
+        for(Node<K, V> node : data.values()) {
+            if(!isExpired(node, now)) {
+                snapshot.put(node.key, node.value);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    /**
+     * Remove any expired entries, notifying the eviction listener
+     */
+    public void cleanUp() {
+        List<Node<K, V>> expired = new ArrayList<Node<K, V>>();
+        evictionLock.lock();
+        try {
+            expire(currentTimeNanos(), expired);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyListener(expired, EvictionCause.EXPIRED);
+    }
+
+    /**
+     * Get the total weight of the entries in the cache. For caches bounded by size, this is the number of entries
+     * @return the total weight
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private int weigh(K key, V value) {
+        if(weigher == null) {
+            return 1;
+        }
+        int weight = weigher.weigh(key, value);
+        if(weight < 0) {
+            throw new IllegalArgumentException("Weights cannot be negative: " + weight);
+        }
+        return weight;
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos) ||
+                (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    private void expireNode(Node<K, V> node) {
+        boolean removed = false;
+        evictionLock.lock();
+        try {
+            if(node.alive && data.remove(node.key, node)) {
+                unlink(node);
+                removed = true;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        if(removed) {
+            notifyListener(Collections.singletonList(node), EvictionCause.EXPIRED);
+        }
+    }
+
+    //Everything below must be called while holding the eviction lock
+
+    private void onAccess(Node<K, V> node) {
+        if(!tinyLfu) {
+            probation.moveToBack(node);
+            return;
+        }
+        sketch.increment(node.key);
+        switch(node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                protectedWeight += node.weight;
+                demoteProtected();
+                break;
+            case PROTECTED:
+                protectedDeque.moveToBack(node);
+                break;
+        }
+    }
+
+    private void demoteProtected() {
+        while(protectedWeight > protectedMaximum) {
+            Node<K, V> demoted = protectedDeque.peekFirst();
+            if(demoted == null) {
+                return;
+            }
+            protectedDeque.remove(demoted);
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void adjustWeight(Node<K, V> node, int delta) {
+        node.weight += delta;
+        totalWeight += delta;
+        if(tinyLfu) {
+            if(node.queue == WINDOW) {
+                windowWeight += delta;
+            } else if(node.queue == PROTECTED) {
+                protectedWeight += delta;
+            }
+        }
+    }
+
+    private void expire(long now, List<Node<K, V>> expired) {
+        if(expireAfterWriteNanos > 0) {
+            Node<K, V> node;
+            while((node = writeOrder.peekFirst()) != null && now - node.writeTime >= expireAfterWriteNanos) {
+                removeNode(node, expired);
+            }
+        }
+        if(expireAfterAccessNanos > 0) {
+            expireAccessOrder(window, now, expired);
+            expireAccessOrder(probation, now, expired);
+            expireAccessOrder(protectedDeque, now, expired);
+        }
+    }
+
+    private void expireAccessOrder(AccessDeque<K, V> deque, long now, List<Node<K, V>> expired) {
+        Node<K, V> node;
+        Node<K, V> firstMoved = null;
+        while((node = deque.peekFirst()) != null && node != firstMoved) {
+            if(now - node.accessTime >= expireAfterAccessNanos) {
+                removeNode(node, expired);
+            } else if(node.accessTime != node.orderTime) {
+                //read without taking the lock, so it was never moved; it may be hiding expired entries behind it
+                deque.moveToBack(node);
+                if(firstMoved == null) {
+                    firstMoved = node;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void evict(List<Node<K, V>> evicted) {
+        if(tinyLfu) {
+            while(windowWeight > windowMaximum) {
+                Node<K, V> candidate = window.peekFirst();
+                window.remove(candidate);
+                windowWeight -= candidate.weight;
+                candidate.queue = PROBATION;
+                probation.addLast(candidate);
+                if(totalWeight > maximumWeight) {
+                    Node<K, V> victim = probation.peekFirst();
+                    if(victim == candidate || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                        removeNode(candidate, evicted);
+                    } else {
+                        removeNode(victim, evicted);
+                    }
+                }
+            }
+        }
+        while(totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if(victim == null) {
+                victim = protectedDeque.peekFirst();
+            }
+            if(victim == null) {
+                victim = window.peekFirst();
+            }
+            if(victim == null) {
+                LOG.error("Cache weight is " + totalWeight + " but there is nothing to evict");
+                return;
+            }
+            removeNode(victim, evicted);
+        }
+    }
+
+    private void removeNode(Node<K, V> node, List<Node<K, V>> removed) {
+        data.remove(node.key, node);
+        unlink(node);
+        removed.add(node);
+    }
+
+    private void unlink(Node<K, V> node) {
+        if(!node.alive) {
+            return;
+        }
+        node.alive = false;
+        totalWeight -= node.weight;
+        writeOrder.remove(node);
+        switch(node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedDeque.remove(node);
+                protectedWeight -= node.weight;
+                break;
+        }
+    }
+
+    private void notifyListener(List<Node<K, V>> nodes, EvictionCause cause) {
+        if(evictionListener == null) {
+            return;
+        }
+        for(Node<K, V> node : nodes) {
+            notifyListener(node.key, node.value, cause);
+        }
+    }
+
+    private void notifyListener(K key, V value, EvictionCause cause) {
+        if(evictionListener == null) {
+            return;
+        }
+        try {
+            evictionListener.onEviction(key, value, cause);
+        } catch(RuntimeException e) {
+            LOG.error("Eviction listener threw an exception", e);
+        }
+    }
+
+    private static class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile long accessTime;
+        //the access time when the node was last added to the back of its access deque
+        long orderTime;
+        long writeTime;
+        int weight;
+        int queue;
+        boolean alive = true;
+        Node<K, V> previous;
+        Node<K, V> next;
+        Node<K, V> previousWrite;
+        Node<K, V> nextWrite;
+
+        Node(K key, V value, int weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    private static class AccessDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.orderTime = node.accessTime;
+            node.next = null;
+            node.previous = last;
+            if(last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if(node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if(node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if(node != last) {
+                remove(node);
+                addLast(node);
+            } else {
+                node.orderTime = node.accessTime;
+            }
+        }
+    }
+
+    private static class WriteDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.nextWrite = null;
+            node.previousWrite = last;
+            if(last == null) {
+                first = node;
+            } else {
+                last.nextWrite = node;
+            }
+            last = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if(node.previousWrite == null) {
+                first = node.nextWrite;
+            } else {
+                node.previousWrite.nextWrite = node.nextWrite;
+            }
+            if(node.nextWrite == null) {
+                last = node.previousWrite;
+            } else {
+                node.nextWrite.previousWrite = node.previousWrite;
+            }
+            node.previousWrite = null;
+            node.nextWrite = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if(node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
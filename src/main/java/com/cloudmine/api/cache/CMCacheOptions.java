@@ -0,0 +1,136 @@
+package com.cloudmine.api.cache;
+
+/**
+ * Configures a {@link BoundedCache}. A cache may be bounded by entry count or by total weight, but not both, and
+ * may additionally expire entries a fixed time after they were written or last accessed. With no bounds set, the
+ * cache never evicts anything.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMCacheOptions<K, V> {
+    public static final long UNBOUNDED = -1;
+    public static final long NEVER = -1;
+
+    private long maximumSize = UNBOUNDED;
+    private long maximumWeight = UNBOUNDED;
+    private Weigher<? super K, ? super V> weigher;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.TINY_LFU;
+    private long expireAfterWriteMillis = NEVER;
+    private long expireAfterAccessMillis = NEVER;
+    private EvictionListener<? super K, ? super V> evictionListener;
+
+    /**
+     * Limit the number of entries in the cache
+     * @param maximumSize the maximum number of entries
+     * @return this
+     * @throws IllegalArgumentException if maximumSize is negative
+     * @throws IllegalStateException if a maximum weight has been set
+     */
+    public CMCacheOptions<K, V> setMaximumSize(long maximumSize) {
+        if(maximumSize < 0) {
+            throw new IllegalArgumentException("Maximum size cannot be negative: " + maximumSize);
+        }
+        if(maximumWeight != UNBOUNDED) {
+            throw new IllegalStateException("Cannot bound a cache by both size and weight");
+        }
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    /**
+     * Limit the total weight of the entries in the cache
+     * @param maximumWeight the maximum total weight
+     * @param weigher calculates the weight of each entry
+     * @return this
+     * @throws IllegalArgumentException if maximumWeight is negative or weigher is null
+     * @throws IllegalStateException if a maximum size has been set
+     */
+    public CMCacheOptions<K, V> setMaximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        if(maximumWeight < 0 || weigher == null) {
+            throw new IllegalArgumentException("A weight bound needs a non negative maximum weight and a weigher");
+        }
+        if(maximumSize != UNBOUNDED) {
+            throw new IllegalStateException("Cannot bound a cache by both size and weight");
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Set how entries are chosen for eviction when the cache is over its bound. Defaults to {@link EvictionPolicy#TINY_LFU}
+     * @param evictionPolicy the policy
+     * @return this
+     */
+    public CMCacheOptions<K, V> setEvictionPolicy(EvictionPolicy evictionPolicy) {
+        this.evictionPolicy = evictionPolicy == null ? EvictionPolicy.TINY_LFU : evictionPolicy;
+        return this;
+    }
+
+    /**
+     * Expire entries the given amount of time after they were added or last replaced
+     * @param expireAfterWriteMillis the time to live, in milliseconds, or {@link #NEVER}
+     * @return this
+     */
+    public CMCacheOptions<K, V> setExpireAfterWrite(long expireAfterWriteMillis) {
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+        return this;
+    }
+
+    /**
+     * Expire entries the given amount of time after they were last read or written
+     * @param expireAfterAccessMillis the idle time, in milliseconds, or {@link #NEVER}
+     * @return this
+     */
+    public CMCacheOptions<K, V> setExpireAfterAccess(long expireAfterAccessMillis) {
+        this.expireAfterAccessMillis = expireAfterAccessMillis;
+        return this;
+    }
+
+    /**
+     * Set the listener that is notified of evictions
+     * @param evictionListener the listener, or null for none
+     * @return this
+     */
+    public CMCacheOptions<K, V> setEvictionListener(EvictionListener<? super K, ? super V> evictionListener) {
+        this.evictionListener = evictionListener;
+        return this;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public Weigher<? super K, ? super V> getWeigher() {
+        return weigher;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public long getExpireAfterWrite() {
+        return expireAfterWriteMillis;
+    }
+
+    public long getExpireAfterAccess() {
+        return expireAfterAccessMillis;
+    }
+
+    public EvictionListener<? super K, ? super V> getEvictionListener() {
+        return evictionListener;
+    }
+
+    /**
+     * Check whether the cache is bounded by entry count or total weight
+     * @return true if a maximum size or weight was set
+     */
+    public boolean isBounded() {
+        return maximumSize != UNBOUNDED || maximumWeight != UNBOUNDED;
+    }
+}
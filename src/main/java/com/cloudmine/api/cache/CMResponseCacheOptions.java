@@ -0,0 +1,92 @@
+package com.cloudmine.api.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configures a {@link ResponseCache}: how long the responses from each kind of GET stay fresh, and how much memory
+ * all of the cached responses may use. An endpoint with a time to live of 0 is never cached. File contents are
+ * not cached unless {@link Endpoint#FILES} is given a time to live, as they count against the same memory bound.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMResponseCacheOptions {
+    public static final long DEFAULT_MAXIMUM_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_TIME_TO_LIVE = 30 * 1000;
+
+    /**
+     * The kinds of GET request that may be cached
+     */
+    public enum Endpoint {
+        /** Loading objects by id, or all objects: /text */
+        OBJECTS,
+        /** Searches, including loading objects of a class and file metadata: /search */
+        SEARCH,
+        /** Loading or searching user profiles: /account and /account/search */
+        ACCOUNTS,
+        /** Loading file contents: /binary. Not cached by default */
+        FILES
+    }
+
+    private long maximumBytes = DEFAULT_MAXIMUM_BYTES;
+    private long defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+    private final Map<Endpoint, Long> timeToLives = new EnumMap<Endpoint, Long>(Endpoint.class);
+
+    public CMResponseCacheOptions() {
+        timeToLives.put(Endpoint.FILES, 0L);
+    }
+
+    /**
+     * Limit the approximate amount of memory used by the cached responses. Defaults to {@link #DEFAULT_MAXIMUM_BYTES}
+     * @param maximumBytes the maximum number of bytes
+     * @return this
+     * @throws IllegalArgumentException if maximumBytes is negative
+     */
+    public CMResponseCacheOptions setMaximumBytes(long maximumBytes) {
+        if(maximumBytes < 0) {
+            throw new IllegalArgumentException("Maximum bytes cannot be negative: " + maximumBytes);
+        }
+        this.maximumBytes = maximumBytes;
+        return this;
+    }
+
+    /**
+     * Set how long responses stay fresh for endpoints without their own time to live. Defaults to {@link #DEFAULT_TIME_TO_LIVE}
+     * @param timeToLiveMillis the time to live, in milliseconds
+     * @return this
+     */
+    public CMResponseCacheOptions setDefaultTimeToLive(long timeToLiveMillis) {
+        this.defaultTimeToLive = Math.max(0, timeToLiveMillis);
+        return this;
+    }
+
+    /**
+     * Set how long responses from the given endpoint stay fresh
+     * @param endpoint the endpoint
+     * @param timeToLiveMillis the time to live, in milliseconds, or 0 to never cache the endpoint
+     * @return this
+     */
+    public CMResponseCacheOptions setTimeToLive(Endpoint endpoint, long timeToLiveMillis) {
+        timeToLives.put(endpoint, Math.max(0, timeToLiveMillis));
+        return this;
+    }
+
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    public long getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+
+    /**
+     * Get how long responses from the given endpoint stay fresh
+     * @param endpoint the endpoint
+     * @return the time to live in milliseconds; 0 if the endpoint is not cached
+     */
+    public long getTimeToLive(Endpoint endpoint) {
+        Long timeToLive = timeToLives.get(endpoint);
+        return timeToLive == null ? defaultTimeToLive : timeToLive;
+    }
+}
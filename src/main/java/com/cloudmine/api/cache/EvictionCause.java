@@ -0,0 +1,16 @@
+package com.cloudmine.api.cache;
+
+/**
+ * The reason an entry was evicted from a {@link BoundedCache}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public enum EvictionCause {
+    /** The cache was over its maximum size or weight */
+    SIZE,
+    /** The entry was not written or accessed within the configured expiration time */
+    EXPIRED,
+    /** The entry's value was overwritten by a put of a different value for the same key */
+    REPLACED
+}
@@ -0,0 +1,20 @@
+package com.cloudmine.api.cache;
+
+/**
+ * Notified when a {@link BoundedCache} evicts an entry, either because the cache is over its size or weight limit,
+ * because the entry expired, or because its value was replaced. Called after the cache has been updated, on the thread that triggered the eviction,
+ * so implementations should be quick and must not throw
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public interface EvictionListener<K, V> {
+
+    /**
+     * Called when an entry is evicted
+     * @param key the key of the evicted entry
+     * @param value the value of the evicted entry
+     * @param cause why the entry was evicted
+     */
+    public void onEviction(K key, V value, EvictionCause cause);
+}
@@ -0,0 +1,18 @@
+package com.cloudmine.api.cache;
+
+/**
+ * How a {@link BoundedCache} chooses which entries to evict when it is over its size or weight limit
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public enum EvictionPolicy {
+    /** Evict the least recently used entry */
+    LRU,
+    /**
+     * Window TinyLFU: new entries enter a small LRU window, and only displace an entry from the main cache if they have
+     * been used more often, as estimated by a compact frequency sketch. This keeps one off scans from flushing
+     * popular entries, and generally has a much better hit rate than LRU
+     */
+    TINY_LFU
+}
@@ -0,0 +1,124 @@
+package com.cloudmine.api.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers an {@link InvalidationEvent} to every registered {@link InvalidationListener} after a successful insert,
+ * update or delete. A {@link com.cloudmine.api.rest.CMWebService} and the UserCMWebServices it creates share a bus,
+ * and a {@link com.cloudmine.api.rest.CMStore} listens to the bus of the service it uses. A listener that throws does
+ * not stop the others from being notified. A listener registered with {@link #addWeakListener(InvalidationListener)}
+ * does not keep its owner reachable, and is dropped from the bus once it has been garbage collected
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class InvalidationBus {
+    private static final Logger LOG = LoggerFactory.getLogger(InvalidationBus.class);
+
+    /**
+     * Holds a listener without keeping it reachable
+     */
+    private static class WeakListener implements InvalidationListener {
+        private final WeakReference<InvalidationListener> reference;
+
+        WeakListener(InvalidationListener listener) {
+            reference = new WeakReference<InvalidationListener>(listener);
+        }
+
+        InvalidationListener get() {
+            return reference.get();
+        }
+
+        @Override
+        public void onInvalidation(InvalidationEvent event) {
+            InvalidationListener listener = reference.get();
+            if(listener != null) {
+                listener.onInvalidation(event);
+            }
+        }
+    }
+
+    private final CopyOnWriteArrayList<InvalidationListener> listeners = new CopyOnWriteArrayList<InvalidationListener>();
+
+    /**
+     * Register a listener. Registering the same listener twice has no effect
+     * @param listener the listener to notify of modifications
+     */
+    public synchronized void addListener(InvalidationListener listener) {
+        if(listener != null && !isRegistered(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Register a listener without keeping it reachable, so an object that owns its listener, such as a
+     * {@link com.cloudmine.api.rest.CMStore}, can be garbage collected without being removed from the bus first.
+     * The caller must hold a reference to the listener for as long as it should be notified. Registering the same
+     * listener twice has no effect
+     * @param listener the listener to notify of modifications
+     */
+    public synchronized void addWeakListener(InvalidationListener listener) {
+        if(listener != null && !isRegistered(listener)) {
+            listeners.add(new WeakListener(listener));
+        }
+    }
+
+    /**
+     * Stop notifying a listener, whether it was registered weakly or not
+     * @param listener the listener to remove
+     */
+    public synchronized void removeListener(InvalidationListener listener) {
+        for(InvalidationListener registered : listeners) {
+            if(listener != null && listener.equals(unwrap(registered))) {
+                listeners.remove(registered);
+            }
+        }
+    }
+
+    /**
+     * Get the number of registered listeners, including weakly held listeners that have been collected but not yet
+     * dropped
+     * @return the number of listeners
+     */
+    public int size() {
+        return listeners.size();
+    }
+
+    /**
+     * Notify every registered listener of the given event, and drop any weakly held listener that has been collected
+     * @param event the modifications
+     */
+    public void publish(InvalidationEvent event) {
+        if(event == null || event.isEmpty()) {
+            return;
+        }
+        for(InvalidationListener listener : listeners) {
+            if(listener instanceof WeakListener && ((WeakListener) listener).get() == null) {
+                listeners.remove(listener);
+                continue;
+            }
+            try {
+                listener.onInvalidation(event);
+            } catch(RuntimeException e) {
+                LOG.error("Invalidation listener threw an exception", e);
+            }
+        }
+    }
+
+    private boolean isRegistered(InvalidationListener listener) {
+        for(InvalidationListener registered : listeners) {
+            if(listener != null && listener.equals(unwrap(registered))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static InvalidationListener unwrap(InvalidationListener registered) {
+        return registered instanceof WeakListener ? ((WeakListener) registered).get() : registered;
+    }
+}
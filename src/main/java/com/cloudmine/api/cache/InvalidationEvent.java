@@ -0,0 +1,203 @@
+package com.cloudmine.api.cache;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.persistance.ClassNameRegistry;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.response.ObjectModificationResponse;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes a successful write to CloudMine: which object ids were created, updated or deleted, at which level, and,
+ * when the write was made with CMObjects rather than raw JSON, the written objects and their class names. Published on
+ * an {@link InvalidationBus}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class InvalidationEvent {
+
+    private final ObjectLevel level;
+    private final Set<String> createdIds;
+    private final Set<String> updatedIds;
+    private final Set<String> deletedIds;
+    private final Map<String, CMObject> writtenObjects;
+    private final Set<String> classNames;
+    private final boolean deletedAll;
+    private final String owner;
+
+    /**
+     * Create an event from the response to an insert, update or delete
+     * @param level the level the write was made at
+     * @param response the successful response
+     * @param written the objects that were written, or null if they are not known
+     * @return the event
+     */
+    public static InvalidationEvent fromResponse(ObjectLevel level, ObjectModificationResponse response, Collection<? extends CMObject> written) {
+        return new InvalidationEvent(level, response.getCreatedObjectIds(), response.getUpdatedObjectIds(),
+                response.getDeletedObjectIds(), written, false);
+    }
+
+    /**
+     * Create an event for a write of the given ids whose contents and classes are not known, such as a file upload
+     * @param level the level the write was made at
+     * @param updatedIds the ids that were written
+     * @return the event
+     */
+    public static InvalidationEvent updated(ObjectLevel level, Collection<String> updatedIds) {
+        return new InvalidationEvent(level, null, updatedIds, null, null, false);
+    }
+
+    /**
+     * Create an event for the deletion of every object at the given level
+     * @param level the level that was deleted
+     * @return the event
+     */
+    public static InvalidationEvent deletedAll(ObjectLevel level) {
+        return new InvalidationEvent(level, null, null, null, null, true);
+    }
+
+    InvalidationEvent(ObjectLevel level, Collection<String> createdIds, Collection<String> updatedIds, Collection<String> deletedIds,
+                      Collection<? extends CMObject> written, boolean deletedAll) {
+        this.level = level == null ? ObjectLevel.UNKNOWN : level;
+        this.createdIds = toSet(createdIds);
+        this.updatedIds = toSet(updatedIds);
+        this.deletedIds = toSet(deletedIds);
+        this.deletedAll = deletedAll;
+        this.owner = null;
+        if(written == null) {
+            writtenObjects = Collections.emptyMap();
+            classNames = null;
+        } else {
+            Map<String, CMObject> objects = new HashMap<String, CMObject>();
+            Set<String> names = new HashSet<String>();
+            for(CMObject object : written) {
+                if(object != null) {
+                    objects.put(object.getObjectId(), object);
+                    addClassNames(object, names);
+                }
+            }
+            writtenObjects = Collections.unmodifiableMap(objects);
+            classNames = Collections.unmodifiableSet(names);
+        }
+    }
+
+    private InvalidationEvent(InvalidationEvent event, String owner) {
+        this.level = event.level;
+        this.createdIds = event.createdIds;
+        this.updatedIds = event.updatedIds;
+        this.deletedIds = event.deletedIds;
+        this.writtenObjects = event.writtenObjects;
+        this.classNames = event.classNames;
+        this.deletedAll = event.deletedAll;
+        this.owner = owner;
+    }
+
+    /**
+     * Get a copy of this event that records whose objects were written
+     * @param owner the session token of the user whose objects were written, or null for application objects
+     * @return the copy
+     */
+    public InvalidationEvent forOwner(String owner) {
+        return new InvalidationEvent(this, owner);
+    }
+
+    /**
+     * Add every name the object's class may be searched for by: the __class__ property of a SimpleCMObject, or the
+     * class name and registered name of any other CMObject
+     */
+    private static void addClassNames(CMObject object, Set<String> names) {
+        if(object instanceof SimpleCMObject) {
+            Object className = ((SimpleCMObject) object).get(JsonUtilities.CLASS_KEY);
+            if(className != null) {
+                names.add(className.toString());
+            }
+        } else {
+            names.add(object.getClassName());
+            names.add(ClassNameRegistry.forClass(object.getClass()));
+        }
+    }
+
+    private static Set<String> toSet(Collection<String> ids) {
+        if(ids == null || ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<String>(ids));
+    }
+
+    public ObjectLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the session token of the user whose objects were written
+     * @return the token, or null for application objects or if the user is not known
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public Set<String> getCreatedIds() {
+        return createdIds;
+    }
+
+    public Set<String> getUpdatedIds() {
+        return updatedIds;
+    }
+
+    public Set<String> getDeletedIds() {
+        return deletedIds;
+    }
+
+    /**
+     * Get every id that was created, updated or deleted
+     */
+    public Set<String> getModifiedIds() {
+        Set<String> modified = new HashSet<String>(createdIds);
+        modified.addAll(updatedIds);
+        modified.addAll(deletedIds);
+        return modified;
+    }
+
+    /**
+     * Check whether any objects were created or updated, which may change the results of searches
+     */
+    public boolean hasWrites() {
+        return !createdIds.isEmpty() || !updatedIds.isEmpty();
+    }
+
+    /**
+     * Get the object that was written with the given id
+     * @param objectId the id
+     * @return the written object, or null if it is not known
+     */
+    public CMObject getWrittenObject(String objectId) {
+        return writtenObjects.get(objectId);
+    }
+
+    /**
+     * Get the class names of the written objects
+     * @return the class names, or null if the classes of the written objects are not known
+     */
+    public Set<String> getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * Check whether every object at the level was deleted
+     */
+    public boolean isDeletedAll() {
+        return deletedAll;
+    }
+
+    public boolean isEmpty() {
+        return !deletedAll && createdIds.isEmpty() && updatedIds.isEmpty() && deletedIds.isEmpty();
+    }
+}
@@ -0,0 +1,16 @@
+package com.cloudmine.api.cache;
+
+/**
+ * Notified by an {@link InvalidationBus} when objects have been written to or deleted from CloudMine, so that any
+ * copies of them that are held locally can be updated or discarded
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public interface InvalidationListener {
+    /**
+     * Called on the thread that received the response to the write, before the write's callback is called
+     * @param event what was modified
+     */
+    public void onInvalidation(InvalidationEvent event);
+}
@@ -0,0 +1,384 @@
+package com.cloudmine.api.cache;
+
+import com.cloudmine.api.CMFile;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import com.cloudmine.api.rest.response.FileLoadResponse;
+import com.cloudmine.api.rest.response.ResponseConstructor;
+import com.cloudmine.api.rest.response.SuccessErrorResponse;
+import com.cloudmine.api.rest.response.code.FileLoadCode;
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers, for a short time, which object and file ids CloudMine reported as missing, so that repeated loads of ids
+ * that don't exist, such as links to deleted objects, are answered without a network round trip. Only loads of
+ * specific ids are covered: an object load is answered from the cache when every requested id is known to be missing,
+ * and a file load when the file last came back 404 Not Found.<br>
+ * Misses are kept per level and per user, and are dropped when an {@link InvalidationEvent} reports that the id was
+ * written or that every object at its level was deleted. A load that was already in flight when a write completed
+ * does not record its misses, so a miss is never remembered for an object that was inserted after the load began.
+ * Misses expire after the time to live regardless; writes made by other clients are only seen once they do.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class NegativeCache implements InvalidationListener {
+    private static final Logger LOG = LoggerFactory.getLogger(NegativeCache.class);
+    public static final long DEFAULT_TIME_TO_LIVE = 30 * 1000;
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    private static final int NOT_FOUND = 404;
+    private static final String CODE_KEY = "code";
+
+    /**
+     * What was missing: an object, or a file's contents
+     */
+    public enum Kind {
+        OBJECT, FILE
+    }
+
+    private static class Key {
+        private final Kind kind;
+        private final ObjectLevel level;
+        private final String owner;
+        private final String id;
+
+        private Key(Kind kind, ObjectLevel level, String owner, String id) {
+            this.kind = kind;
+            this.level = level == null ? ObjectLevel.UNKNOWN : level;
+            this.owner = owner;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return kind == key.kind && level == key.level && id.equals(key.id) &&
+                    (owner == null ? key.owner == null : owner.equals(key.owner));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = kind.hashCode();
+            result = 31 * result + level.hashCode();
+            result = 31 * result + (owner == null ? 0 : owner.hashCode());
+            result = 31 * result + id.hashCode();
+            return result;
+        }
+    }
+
+    /**
+     * A remembered miss: the error CloudMine returned for the id, so it can be repeated, and when it expires
+     */
+    private static class Miss {
+        private final Object error;
+        private final long expiresAt;
+
+        private Miss(Object error, long expiresAt) {
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long timeToLive;
+    private final BoundedCache<Key, Miss> misses;
+    //guarded by this; lets a write drop an id's misses for every user without scanning the cache
+    private final Map<String, Set<Key>> keysById = new HashMap<String, Set<Key>>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Instantiate a new NegativeCache that remembers up to {@link #DEFAULT_MAXIMUM_SIZE} misses for {@link #DEFAULT_TIME_TO_LIVE}
+     */
+    public NegativeCache() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Instantiate a new NegativeCache
+     * @param timeToLiveMillis how long a miss is remembered, in milliseconds
+     * @param maximumSize the most misses to remember; the least recently used are forgotten first
+     * @throws IllegalArgumentException if maximumSize is negative
+     */
+    public NegativeCache(long timeToLiveMillis, long maximumSize) {
+        this.timeToLive = Math.max(0, timeToLiveMillis);
+        misses = new BoundedCache<Key, Miss>(new CMCacheOptions<Key, Miss>()
+                .setMaximumSize(maximumSize)
+                .setEvictionPolicy(EvictionPolicy.LRU)
+                .setExpireAfterWrite(timeToLive)
+                .setEvictionListener(new EvictionListener<Key, Miss>() {
+                    @Override
+                    public void onEviction(Key key, Miss miss, EvictionCause cause) {
+                        unindex(key);
+                    }
+                }));
+    }
+
+    /**
+     * The current time, in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Get the current generation, which changes whenever a write is reported. Capture it before sending a load, and
+     * pass it to {@link #recordMissing(Kind, com.cloudmine.api.ObjectLevel, String, String, Object, long)} so that the
+     * load's misses are ignored if a write completed while it was in flight
+     * @return the generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Check whether the given id is known to be missing
+     * @param kind whether the id is an object or a file
+     * @param level the level the id was loaded at
+     * @param owner the user the id was loaded for, or null at the application level
+     * @param id the object or file id
+     * @return true if the id was reported missing within the time to live
+     */
+    public boolean isMissing(Kind kind, ObjectLevel level, String owner, String id) {
+        return getMiss(kind, level, owner, id) != null;
+    }
+
+    private Miss getMiss(Kind kind, ObjectLevel level, String owner, String id) {
+        if(id == null) {
+            return null;
+        }
+        Miss miss = misses.get(new Key(kind, level, owner, id));
+        return miss == null || currentTimeMillis() >= miss.expiresAt ? null : miss;
+    }
+
+    /**
+     * Remember that the given id is missing
+     * @param kind whether the id is an object or a file
+     * @param level the level the id was loaded at
+     * @param owner the user the id was loaded for, or null at the application level
+     * @param id the object or file id
+     * @param error the error CloudMine returned for the id, if any
+     * @param sinceGeneration the {@link #getGeneration()} from before the load was sent
+     * @return true if the miss was remembered; false if a write was reported after the load was sent
+     */
+    public synchronized boolean recordMissing(Kind kind, ObjectLevel level, String owner, String id, Object error, long sinceGeneration) {
+        if(id == null || timeToLive == 0 || generation.get() != sinceGeneration) {
+            return false;
+        }
+        Key key = new Key(kind, level, owner, id);
+        misses.put(key, new Miss(error, currentTimeMillis() + timeToLive));
+        Set<Key> keys = keysById.get(id);
+        if(keys == null) {
+            keys = new HashSet<Key>();
+            keysById.put(id, keys);
+        }
+        keys.add(key);
+        return true;
+    }
+
+    /**
+     * Forget that the given id is missing, for every user and at every level
+     * @param id the object or file id
+     */
+    public synchronized void remove(String id) {
+        generation.incrementAndGet();
+        Set<Key> keys = keysById.remove(id);
+        if(keys != null) {
+            for(Key key : keys) {
+                misses.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Forget every miss
+     */
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        keysById.clear();
+        misses.clear();
+    }
+
+    private synchronized void unindex(Key key) {
+        Set<Key> keys = keysById.get(key.id);
+        if(keys != null && !misses.containsKey(key)) {
+            keys.remove(key);
+            if(keys.isEmpty()) {
+                keysById.remove(key.id);
+            }
+        }
+    }
+
+    /**
+     * Get a response to a load of the given object ids, if every one of them is known to be missing. The response has
+     * the same errors CloudMine returned for the ids
+     * @param level the level the objects are loaded at
+     * @param owner the user the objects are loaded for, or null at the application level
+     * @param objectIds the requested ids
+     * @param constructor constructs the response
+     * @return the response, or null if any of the ids may exist
+     */
+    public CMObjectResponse getObjectMisses(ObjectLevel level, String owner, Collection<String> objectIds, ResponseConstructor<CMObjectResponse> constructor) {
+        if(objectIds == null || objectIds.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> errors = new LinkedHashMap<String, Object>();
+        for(String objectId : objectIds) {
+            Miss miss = getMiss(Kind.OBJECT, level, owner, objectId);
+            if(miss == null) {
+                return null;
+            }
+            errors.put(objectId, miss.error);
+        }
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put(SuccessErrorResponse.SUCCESS, new HashMap<String, Object>());
+        body.put(SuccessErrorResponse.ERRORS, errors);
+        try {
+            CMObjectResponse response = constructor.construct(JsonUtilities.mapToJson(body), 200);
+            hitCount.incrementAndGet();
+            return response;
+        } catch (ConversionException e) {
+            LOG.error("Unable to build response for missing objects", e);
+        } catch (CreationException e) {
+            LOG.error("Unable to build response for missing objects", e);
+        }
+        return null;
+    }
+
+    /**
+     * Get a 404 response to a load of the given file, if it is known to be missing
+     * @param level the level the file is loaded at
+     * @param owner the user the file is loaded for, or null at the application level
+     * @param fileId the file id
+     * @return the response, or null if the file may exist
+     */
+    public FileLoadResponse getFileMiss(ObjectLevel level, String owner, String fileId) {
+        if(getMiss(Kind.FILE, level, owner, fileId) == null) {
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return new FileLoadResponse((CMFile) null, FileLoadCode.APPLICATION_ID_OR_FILE_NOT_FOUND.getStatusCode());
+    }
+
+    /**
+     * Wrap a constructor for the response to a load of the given object ids, so that the ids CloudMine reports as not
+     * found are remembered
+     * @param level the level the objects are loaded at
+     * @param owner the user the objects are loaded for, or null at the application level
+     * @param objectIds the requested ids
+     * @param constructor constructs the response
+     * @return the wrapping constructor
+     */
+    public ResponseConstructor<CMObjectResponse> recordingObjectMisses(final ObjectLevel level, final String owner,
+                                                                       final Collection<String> objectIds, final ResponseConstructor<CMObjectResponse> constructor) {
+        final long sinceGeneration = getGeneration();
+        return new ResponseConstructor<CMObjectResponse>() {
+            @Override
+            public CMObjectResponse construct(HttpResponse response) throws CreationException {
+                return recorded(constructor.construct(response));
+            }
+
+            @Override
+            public CMObjectResponse construct(String messageBody, int responseCode) throws CreationException {
+                return recorded(constructor.construct(messageBody, responseCode));
+            }
+
+            private CMObjectResponse recorded(CMObjectResponse response) {
+                if(response == null || response.getStatusCode() != 200 ||
+                        !(response.getObject(SuccessErrorResponse.ERRORS) instanceof Map)) {
+                    return response;
+                }
+                Map<?, ?> errors = (Map<?, ?>) response.getObject(SuccessErrorResponse.ERRORS);
+                for(String objectId : objectIds) {
+                    if(errors.containsKey(objectId) && !response.hasSuccessKey(objectId) && isNotFound(errors.get(objectId))) {
+                        recordMissing(Kind.OBJECT, level, owner, objectId, errors.get(objectId), sinceGeneration);
+                    }
+                }
+                return response;
+            }
+        };
+    }
+
+    /**
+     * An error is only treated as not found if it carries a 404 status code; any other error may not happen again
+     */
+    private static boolean isNotFound(Object error) {
+        if(!(error instanceof Map)) {
+            return false;
+        }
+        Object code = ((Map<?, ?>) error).get(CODE_KEY);
+        return code instanceof Number && ((Number) code).intValue() == NOT_FOUND;
+    }
+
+    /**
+     * Wrap a constructor for the response to a load of the given file, so that the file is remembered if CloudMine
+     * responds 404 Not Found
+     * @param level the level the file is loaded at
+     * @param owner the user the file is loaded for, or null at the application level
+     * @param fileId the file id
+     * @param constructor constructs the response
+     * @return the wrapping constructor
+     */
+    public ResponseConstructor<FileLoadResponse> recordingFileMisses(final ObjectLevel level, final String owner,
+                                                                     final String fileId, final ResponseConstructor<FileLoadResponse> constructor) {
+        final long sinceGeneration = getGeneration();
+        return new ResponseConstructor<FileLoadResponse>() {
+            @Override
+            public FileLoadResponse construct(HttpResponse response) throws CreationException {
+                return recorded(constructor.construct(response));
+            }
+
+            @Override
+            public FileLoadResponse construct(String messageBody, int responseCode) throws CreationException {
+                return recorded(constructor.construct(messageBody, responseCode));
+            }
+
+            private FileLoadResponse recorded(FileLoadResponse response) {
+                if(response != null && response.getStatusCode() == NOT_FOUND) {
+                    recordMissing(Kind.FILE, level, owner, fileId, null, sinceGeneration);
+                }
+                return response;
+            }
+        };
+    }
+
+    /**
+     * Get the number of remembered misses. This may include expired misses that have not been cleaned up yet
+     */
+    public int size() {
+        return misses.size();
+    }
+
+    /**
+     * Get the number of loads that were answered from this cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public synchronized void onInvalidation(InvalidationEvent event) {
+        if(event.isDeletedAll()) {
+            //deleting everything can't make anything exist, but the event may stand in for writes whose ids are unknown
+            clear();
+            return;
+        }
+        for(String id : event.getModifiedIds()) {
+            remove(id);
+        }
+    }
+}
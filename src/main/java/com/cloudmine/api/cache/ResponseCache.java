@@ -0,0 +1,551 @@
+package com.cloudmine.api.cache;
+
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.rest.CMURLBuilder;
+import com.cloudmine.api.rest.CMWebService;
+import com.cloudmine.api.rest.HeaderFactory;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.response.ResponseConstructor;
+import com.cloudmine.api.rest.response.SuccessErrorResponse;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the successful responses to idempotent GET requests, so that repeated loads of the same objects, searches,
+ * file metadata and user profiles can be answered without a network round trip. Responses are keyed by the request
+ * URL, the API key, session token and Authorization headers; headers that vary per request, such as the response
+ * time data, are ignored. How long a response stays fresh depends on its {@link CMResponseCacheOptions.Endpoint},
+ * and the total size of the cached message bodies is bounded.<br>
+ * Every fresh hit constructs a new response from the cached message body, so callers can modify the objects in the
+ * response they get without affecting other callers.<br>
+ * Once a response has expired it is kept until it is evicted. If it had an ETag or Last-Modified header, the next
+ * request for it is sent with If-None-Match or If-Modified-Since, and if CloudMine answers 304 Not Modified the cached
+ * response is reused and is fresh again, so an unchanged response only costs a header round trip.<br>
+ * The cache listens for {@link InvalidationEvent}s once it is set on a CMWebService, and drops every response that a
+ * write may have changed: loads that requested or returned a modified id, loads of all objects, and searches that
+ * returned a modified id or that search for the class of a written object. Searches that aren't restricted to a
+ * class, and writes whose classes are not known, drop every cached search. Each write checks every cached response,
+ * so this suits caches of up to a few thousand responses.<br>
+ * A single request can skip the cache by setting {@link com.cloudmine.api.rest.options.CMRequestOptions#setSkipCache(boolean)}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ResponseCache implements InvalidationListener {
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+    /**
+     * Request parameter that, when true, stops a request from being read from or written to the cache
+     */
+    public static final String SKIP_CACHE_PARAMETER = "com.cloudmine.api.cache.skip";
+    private static final String[] KEY_HEADERS = {HeaderFactory.API_HEADER_KEY, HeaderFactory.SESSION_TOKEN_HEADER_KEY, CMWebService.AUTHORIZATION_KEY};
+    private static final int ENTRY_OVERHEAD = 64;
+    public static final String ETAG = "ETag";
+    public static final String LAST_MODIFIED = "Last-Modified";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final Pattern CLASS_SEARCH = Pattern.compile(Pattern.quote(JsonUtilities.CLASS_KEY) + "\\s*==?\\s*\"([^\"]*)\"");
+
+    /**
+     * What a cached response depends on, so it can be dropped when that changes
+     */
+    private static class Dependencies {
+        private final CMResponseCacheOptions.Endpoint endpoint;
+        //the requested and returned ids; null if the returned ids are not known
+        private final Set<String> objectIds;
+        //the classes a search was restricted to; empty if it was not restricted
+        private final Set<String> classNames;
+        //true for loads of every object
+        private final boolean allObjects;
+
+        private Dependencies(CMResponseCacheOptions.Endpoint endpoint, Set<String> objectIds, Set<String> classNames, boolean allObjects) {
+            this.endpoint = endpoint;
+            this.objectIds = objectIds;
+            this.classNames = classNames;
+            this.allObjects = allObjects;
+        }
+
+        private boolean isInvalidatedBy(InvalidationEvent event, Set<String> modifiedIds) {
+            if(event.isDeletedAll() || allObjects) {
+                return true;
+            }
+            if(objectIds == null || !Collections.disjoint(objectIds, modifiedIds)) {
+                return true;
+            }
+            if(endpoint != CMResponseCacheOptions.Endpoint.SEARCH || !event.hasWrites()) {
+                return false;
+            }
+            Set<String> writtenClasses = event.getClassNames();
+            return writtenClasses == null || classNames.isEmpty() || !Collections.disjoint(classNames, writtenClasses);
+        }
+    }
+
+    /**
+     * A cached response: the raw message body and headers
+     */
+    public static class CachedResponse {
+        private final byte[] body;
+        private final int statusCode;
+        private final Header[] headers;
+        private final long storedAt;
+        private final long expiresAt;
+        private final Dependencies dependencies;
+
+        CachedResponse(byte[] body, int statusCode, Header[] headers, long storedAt, long expiresAt, Dependencies dependencies) {
+            this.body = body;
+            this.statusCode = statusCode;
+            this.headers = headers == null ? new Header[0] : headers;
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+            this.dependencies = dependencies;
+        }
+
+        public String getMessageBody() {
+            try {
+                return new String(body, JsonUtilities.ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public int getBodyLength() {
+            return body.length;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public Header[] getHeaders() {
+            return headers.clone();
+        }
+
+        /**
+         * Get the value of the first header with the given name
+         * @param name the header name, which is not case sensitive
+         * @return the header value, or null if the response did not include it
+         */
+        public String getHeader(String name) {
+            for(Header header : headers) {
+                if(header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+
+        public long getStoredAt() {
+            return storedAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * Check whether this response can be revalidated with a conditional request
+         * @return true if it has an ETag or Last-Modified header
+         */
+        public boolean hasValidator() {
+            return getHeader(ETAG) != null || getHeader(LAST_MODIFIED) != null;
+        }
+
+        <T> T parse(ResponseConstructor<T> constructor) throws CreationException {
+            return constructor.construct(toHttpResponse());
+        }
+
+        private HttpResponse toHttpResponse() {
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "");
+            response.setHeaders(headers);
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            entity.setContentType(getHeader(CONTENT_TYPE));
+            response.setEntity(entity);
+            return response;
+        }
+
+        /**
+         * Create a copy of this response that is fresh again, after CloudMine said it has not been modified
+         */
+        private CachedResponse revalidated(Header[] notModifiedHeaders, long now, long timeToLive) {
+            List<Header> merged = new ArrayList<Header>();
+            for(Header header : headers) {
+                if(!containsHeader(notModifiedHeaders, header.getName())) {
+                    merged.add(header);
+                }
+            }
+            if(notModifiedHeaders != null) {
+                for(Header header : notModifiedHeaders) {
+                    if(!header.getName().equalsIgnoreCase(CONTENT_TYPE)) {
+                        merged.add(header);
+                    }
+                }
+            }
+            return new CachedResponse(body, statusCode, merged.toArray(new Header[merged.size()]), now, now + timeToLive, dependencies);
+        }
+
+        private static boolean containsHeader(Header[] headers, String name) {
+            if(headers == null || name.equalsIgnoreCase(CONTENT_TYPE)) {
+                return false;
+            }
+            for(Header header : headers) {
+                if(header.getName().equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final CMResponseCacheOptions options;
+    private final BoundedCache<String, CachedResponse> responses;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+
+    /**
+     * Create a ResponseCache with the default time to live and memory bound
+     */
+    public ResponseCache() {
+        this(new CMResponseCacheOptions());
+    }
+
+    public ResponseCache(CMResponseCacheOptions options) {
+        this.options = options == null ? new CMResponseCacheOptions() : options;
+        responses = new BoundedCache<String, CachedResponse>(new CMCacheOptions<String, CachedResponse>()
+                .setMaximumWeight(this.options.getMaximumBytes(), new Weigher<String, CachedResponse>() {
+                    @Override
+                    public int weigh(String key, CachedResponse value) {
+                        return 2 * key.length() + value.body.length + ENTRY_OVERHEAD;
+                    }
+                }));
+    }
+
+    /**
+     * Get the key the response to the given request would be cached under
+     * @param request the request
+     * @return the key, or null if the request is not cacheable
+     */
+    public String keyFor(HttpUriRequest request) {
+        if(request == null || !"GET".equals(request.getMethod()) ||
+                request.getParams().getBooleanParameter(SKIP_CACHE_PARAMETER, false) ||
+                timeToLiveFor(request) <= 0) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(request.getURI().toString());
+        for(String headerName : KEY_HEADERS) {
+            Header header = request.getFirstHeader(headerName);
+            key.append('\n');
+            if(header != null) {
+                key.append(header.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Get the fresh response cached under the given key
+     * @param key the key from {@link #keyFor(org.apache.http.client.methods.HttpUriRequest)}
+     * @param constructor used to rebuild the response if it was cached by a different constructor
+     * @return the response, or null if nothing fresh is cached or the cached message body could not be reconstructed
+     */
+    public <T> T get(String key, ResponseConstructor<T> constructor) {
+        CachedResponse cached = key == null ? null : responses.get(key);
+        if(cached == null || !cached.isFresh(currentTimeMillis())) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        try {
+            T response = cached.parse(constructor);
+            hitCount.incrementAndGet();
+            return response;
+        } catch (CreationException e) {
+            LOG.error("Unable to reconstruct cached response, removing it", e);
+            responses.remove(key);
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Get the raw cached entry for the given key, whether or not it is still fresh
+     * @param key the key from {@link #keyFor(org.apache.http.client.methods.HttpUriRequest)}
+     * @return the entry, or null if there is none
+     */
+    public CachedResponse getEntry(String key) {
+        return key == null ? null : responses.get(key);
+    }
+
+    /**
+     * Wrap the given constructor so that successful responses it constructs are stored in this cache. If an
+     * expired response with an ETag or Last-Modified header is cached under the key, the matching conditional
+     * headers are added to the request, and a 304 Not Modified response is answered with the cached response
+     * @param request the request the response is for; conditional headers may be added to it
+     * @param key the key from {@link #keyFor(org.apache.http.client.methods.HttpUriRequest)}
+     * @param constructor the constructor to wrap
+     * @return a constructor that constructs responses with the given constructor, and caches them
+     */
+    public <T> ResponseConstructor<T> storing(HttpUriRequest request, final String key, final ResponseConstructor<T> constructor) {
+        final long timeToLive = timeToLiveFor(request);
+        final URI uri = request.getURI();
+        final CachedResponse stale = responses.get(key);
+        if(stale != null) {
+            addConditionalHeaders(request, stale);
+        }
+        return new ResponseConstructor<T>() {
+            @Override
+            public T construct(HttpResponse response) throws CreationException {
+                int statusCode = response == null || response.getStatusLine() == null ? 0 : response.getStatusLine().getStatusCode();
+                if(statusCode == HttpStatus.SC_NOT_MODIFIED && stale != null) {
+                    revalidationCount.incrementAndGet();
+                    CachedResponse revalidated = stale.revalidated(response.getAllHeaders(), currentTimeMillis(), timeToLive);
+                    responses.put(key, revalidated);
+                    return revalidated.parse(constructor);
+                }
+                if(statusCode != HttpStatus.SC_OK || response.getEntity() == null) {
+                    return constructor.construct(response);
+                }
+                byte[] body;
+                try {
+                    body = EntityUtils.toByteArray(response.getEntity());
+                } catch (IOException e) {
+                    LOG.error("Unable to read the response to cache it", e);
+                    throw new CreationException(e);
+                }
+                ByteArrayEntity buffered = new ByteArrayEntity(body);
+                buffered.setContentType(response.getEntity().getContentType());
+                buffered.setContentEncoding(response.getEntity().getContentEncoding());
+                response.setEntity(buffered);
+                T constructed = constructor.construct(response);
+                long now = currentTimeMillis();
+                responses.put(key, new CachedResponse(body, HttpStatus.SC_OK, withContentType(response),
+                        now, now + timeToLive, dependenciesOf(uri, constructed)));
+                return constructed;
+            }
+
+            @Override
+            public T construct(String messageBody, int responseCode) throws CreationException {
+                return constructor.construct(messageBody, responseCode);
+            }
+        };
+    }
+
+    /**
+     * Remove the response cached under the given key
+     * @param key the key
+     */
+    public void invalidate(String key) {
+        if(key != null) {
+            responses.remove(key);
+        }
+    }
+
+    /**
+     * Remove every cached response
+     */
+    public void invalidateAll() {
+        responses.clear();
+    }
+
+    /**
+     * Remove every cached response that the given write may have changed
+     * @param event the write
+     */
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        if(event.isDeletedAll()) {
+            invalidateAll();
+            return;
+        }
+        Set<String> modifiedIds = event.getModifiedIds();
+        for(Map.Entry<String, CachedResponse> entry : responses.entrySet()) {
+            if(entry.getValue().dependencies.isInvalidatedBy(event, modifiedIds)) {
+                responses.remove(entry.getKey());
+            }
+        }
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * Get the approximate number of bytes used by the cached responses
+     */
+    public long getWeightedSize() {
+        return responses.getWeightedSize();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of expired responses that were reused because CloudMine said they had not been modified
+     */
+    public long getRevalidationCount() {
+        return revalidationCount.get();
+    }
+
+    public CMResponseCacheOptions getOptions() {
+        return options;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static void addConditionalHeaders(HttpUriRequest request, CachedResponse stale) {
+        String etag = stale.getHeader(ETAG);
+        if(etag != null) {
+            request.setHeader(IF_NONE_MATCH, etag);
+        }
+        String lastModified = stale.getHeader(LAST_MODIFIED);
+        if(lastModified != null) {
+            request.setHeader(IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    private static Header[] withContentType(HttpResponse response) {
+        Header contentType = response.getEntity().getContentType();
+        if(contentType == null || response.getFirstHeader(CONTENT_TYPE) != null) {
+            return response.getAllHeaders();
+        }
+        Header[] headers = response.getAllHeaders();
+        Header[] withContentType = new Header[headers.length + 1];
+        System.arraycopy(headers, 0, withContentType, 0, headers.length);
+        withContentType[headers.length] = contentType;
+        return withContentType;
+    }
+
+    private static Dependencies dependenciesOf(URI uri, Object response) {
+        CMResponseCacheOptions.Endpoint endpoint = endpointOf(uri);
+        Set<String> objectIds = new HashSet<String>();
+        Set<String> classNames = new HashSet<String>();
+        boolean allObjects = false;
+        if(endpoint == CMResponseCacheOptions.Endpoint.FILES) {
+            String path = uri.getRawPath();
+            objectIds.add(decode(path.substring(path.lastIndexOf('/') + 1)));
+            return new Dependencies(endpoint, objectIds, classNames, false);
+        }
+        String keys = queryParameter(uri, "keys");
+        if(endpoint == CMResponseCacheOptions.Endpoint.OBJECTS) {
+            if(keys == null) {
+                allObjects = true;
+            } else {
+                for(String key : keys.split(",")) {
+                    objectIds.add(decode(key));
+                }
+            }
+        }
+        String search = queryParameter(uri, endpoint == CMResponseCacheOptions.Endpoint.ACCOUNTS ? "p" : "q");
+        if(search != null) {
+            Matcher matcher = CLASS_SEARCH.matcher(decode(search));
+            while(matcher.find()) {
+                classNames.add(matcher.group(1));
+            }
+        }
+        if(response instanceof SuccessErrorResponse) {
+            objectIds.addAll(((SuccessErrorResponse<?>) response).getSuccessMap().keySet());
+        } else {
+            objectIds = null;
+        }
+        return new Dependencies(endpoint, objectIds, classNames, allObjects);
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if(query == null) {
+            return null;
+        }
+        for(String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if(equals > 0 && name.equals(parameter.substring(0, equals))) {
+                return parameter.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, JsonUtilities.ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            return value;
+        }
+    }
+
+    private long timeToLiveFor(HttpUriRequest request) {
+        CMResponseCacheOptions.Endpoint endpoint = endpointOf(request.getURI());
+        return endpoint == null ? 0 : options.getTimeToLive(endpoint);
+    }
+
+    /**
+     * Work out which cacheable endpoint a URL is for
+     * @param uri the request URI
+     * @return the endpoint, or null if responses from the URI should never be cached
+     */
+    static CMResponseCacheOptions.Endpoint endpointOf(URI uri) {
+        String path = uri == null ? null : uri.getRawPath();
+        if(path == null) {
+            return null;
+        }
+        String appPrefix = CMURLBuilder.APP + "/";
+        int appIndex = path.indexOf(appPrefix);
+        if(appIndex < 0) {
+            return null;
+        }
+        String[] segments = path.substring(appIndex + appPrefix.length()).split("/");
+        int actionIndex = 1; //segments[0] is the application id
+        if(actionIndex < segments.length && CMURLBuilder.USER.substring(1).equals(segments[actionIndex])) {
+            actionIndex++;
+        }
+        if(actionIndex >= segments.length) {
+            return null;
+        }
+        String action = segments[actionIndex];
+        int remaining = segments.length - actionIndex - 1;
+        if("text".equals(action) && remaining == 0) {
+            return CMResponseCacheOptions.Endpoint.OBJECTS;
+        }
+        if("search".equals(action) && remaining == 0) {
+            return CMResponseCacheOptions.Endpoint.SEARCH;
+        }
+        if("account".equals(action) && (remaining == 0 || (remaining == 1 && "search".equals(segments[actionIndex + 1])))) {
+            return CMResponseCacheOptions.Endpoint.ACCOUNTS;
+        }
+        if("binary".equals(action) && remaining == 1) {
+            return CMResponseCacheOptions.Endpoint.FILES;
+        }
+        return null;
+    }
+}
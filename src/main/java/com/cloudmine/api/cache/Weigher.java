@@ -0,0 +1,18 @@
+package com.cloudmine.api.cache;
+
+/**
+ * Calculates the weight of a {@link BoundedCache} entry, for caches bounded by total weight instead of entry count
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public interface Weigher<K, V> {
+
+    /**
+     * Get the weight of an entry. Called once, when the entry is added
+     * @param key the key
+     * @param value the value
+     * @return the weight of the entry; must not be negative
+     */
+    public int weigh(K key, V value);
+}
@@ -0,0 +1,19 @@
+package com.cloudmine.api.exceptions;
+
+/**
+ * Thrown when data could not be written to or read from local storage
+ * <br>Copyright CloudMine LLC. All rights reserved<br> See LICENSE file included with SDK for details.
+ */
+public class PersistenceException extends CloudMineException {
+    public PersistenceException(String message) {
+        super(message);
+    }
+
+    public PersistenceException(String message, Throwable parent) {
+        super(message, parent);
+    }
+
+    public PersistenceException(Throwable parent) {
+        super(parent);
+    }
+}
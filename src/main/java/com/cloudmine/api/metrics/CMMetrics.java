@@ -0,0 +1,108 @@
+package com.cloudmine.api.metrics;
+
+import java.net.URI;
+
+/**
+ * Holds the {@link MetricsRecorder} that requests made through the SDK report to, and the
+ * {@link RequestTraceListener} that is notified of their phases. By default nothing is recorded or traced;
+ * to see which calls take the most time, install an {@link InMemoryMetricsRecorder} and read its
+ * {@link InMemoryMetricsRecorder#snapshot() snapshots}:
+ * <pre>
+ * InMemoryMetricsRecorder metrics = new InMemoryMetricsRecorder();
+ * CMMetrics.setRecorder(metrics);
+ * ...
+ * for(EndpointMetrics endpoint : metrics.snapshot()) {
+ *     System.out.println(endpoint);
+ * }
+ * </pre>
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMMetrics {
+    /** The endpoint family of requests to URLs that aren't CloudMine application URLs */
+    public static final String UNKNOWN_ENDPOINT = "unknown";
+
+    private static final String APP_PATH = "/app/";
+    private static final String USER_SEGMENT = "user";
+
+    private static volatile MetricsRecorder recorder = MetricsRecorder.NONE;
+    private static volatile RequestTraceListener traceListener = RequestTraceListener.NONE;
+
+    /**
+     * Set the recorder that requests report to
+     * @param metricsRecorder the recorder, or null to stop recording
+     */
+    public static void setRecorder(MetricsRecorder metricsRecorder) {
+        recorder = metricsRecorder == null ? MetricsRecorder.NONE : metricsRecorder;
+    }
+
+    /**
+     * Get the recorder that requests report to
+     * @return the recorder; {@link MetricsRecorder#NONE} if none has been set
+     */
+    public static MetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Check whether a recorder has been set, so requests can skip taking measurements when none has
+     */
+    public static boolean isRecording() {
+        return recorder != MetricsRecorder.NONE;
+    }
+
+    /**
+     * Set the listener that is notified of each phase of every request
+     * @param listener the listener, or null to stop tracing
+     */
+    public static void setTraceListener(RequestTraceListener listener) {
+        traceListener = listener == null ? RequestTraceListener.NONE : listener;
+    }
+
+    /**
+     * Get the listener that is notified of each phase of every request
+     * @return the listener; {@link RequestTraceListener#NONE} if none has been set
+     */
+    public static RequestTraceListener getTraceListener() {
+        return traceListener;
+    }
+
+    /**
+     * Check whether a trace listener has been set, so requests can skip tracing when none has
+     */
+    public static boolean isTracing() {
+        return traceListener != RequestTraceListener.NONE;
+    }
+
+    /**
+     * Get the endpoint family of a CloudMine URL: the first part of the path after the application id, and after
+     * {@code user} for user level requests, such as {@code data}, {@code search}, {@code text}, {@code binary},
+     * {@code account} or {@code push}
+     * @param uri the URL of a request
+     * @return the endpoint family, or {@link #UNKNOWN_ENDPOINT}
+     */
+    public static String endpointFamily(URI uri) {
+        String path = uri == null ? null : uri.getRawPath();
+        int app = path == null ? -1 : path.indexOf(APP_PATH);
+        if(app < 0) {
+            return UNKNOWN_ENDPOINT;
+        }
+        //skip the application id
+        int start = path.indexOf('/', app + APP_PATH.length());
+        String segment = start < 0 ? null : segment(path, start + 1);
+        if(USER_SEGMENT.equals(segment)) {
+            start += USER_SEGMENT.length() + 1;
+            segment = segment(path, start + 1);
+        }
+        return segment == null || segment.length() == 0 ? UNKNOWN_ENDPOINT : segment;
+    }
+
+    private static String segment(String path, int start) {
+        if(start >= path.length()) {
+            return null;
+        }
+        int end = path.indexOf('/', start);
+        return path.substring(start, end < 0 ? path.length() : end);
+    }
+}
@@ -0,0 +1,116 @@
+package com.cloudmine.api.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The measurements recorded by an {@link InMemoryMetricsRecorder} for one endpoint family and HTTP verb, at one point
+ * in time. Times are in nanoseconds
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class EndpointMetrics {
+    private final String endpoint;
+    private final String verb;
+    private final long failures;
+    private final long retries;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final Map<Integer, Long> statusCodes;
+    private final LatencyHistogram.Snapshot latency;
+    private final LatencyHistogram.Snapshot poolWait;
+    private final LatencyHistogram.Snapshot parseTime;
+
+    EndpointMetrics(String endpoint, String verb, long failures, long retries, long requestBytes, long responseBytes,
+                    Map<Integer, Long> statusCodes, LatencyHistogram.Snapshot latency,
+                    LatencyHistogram.Snapshot poolWait, LatencyHistogram.Snapshot parseTime) {
+        this.endpoint = endpoint;
+        this.verb = verb;
+        this.failures = failures;
+        this.retries = retries;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.statusCodes = Collections.unmodifiableMap(statusCodes);
+        this.latency = latency;
+        this.poolWait = poolWait;
+        this.parseTime = parseTime;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getVerb() {
+        return verb;
+    }
+
+    /**
+     * Get the number of requests recorded
+     */
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * Get the number of requests that failed without a response or with an error status
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the total number of retries
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Get the total size of the request bodies that were measured
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Get the total size of the response bodies that were measured
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Get the number of responses with each HTTP status code
+     */
+    public Map<Integer, Long> getStatusCodes() {
+        return statusCodes;
+    }
+
+    /**
+     * Get the time from requests being sent until their responses were received
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * Get the time requests waited before they could be sent
+     */
+    public LatencyHistogram.Snapshot getPoolWait() {
+        return poolWait;
+    }
+
+    /**
+     * Get the time taken to construct response objects
+     */
+    public LatencyHistogram.Snapshot getParseTime() {
+        return parseTime;
+    }
+
+    @Override
+    public String toString() {
+        return verb + " " + endpoint + ": latency[" + latency + "], failures=" + failures + ", retries=" + retries +
+                ", statusCodes=" + statusCodes;
+    }
+}
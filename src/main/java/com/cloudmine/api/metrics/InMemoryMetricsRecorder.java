@@ -0,0 +1,124 @@
+package com.cloudmine.api.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MetricsRecorder} that keeps histograms and totals for each endpoint family and HTTP verb in memory, to be
+ * read with {@link #snapshot()}. Memory use is fixed per endpoint family and verb, however many requests are recorded
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class InMemoryMetricsRecorder implements MetricsRecorder {
+
+    private static class Recorded {
+        private final String endpoint;
+        private final String verb;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram poolWait = new LatencyHistogram();
+        private final LatencyHistogram parseTime = new LatencyHistogram();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+
+        private Recorded(String endpoint, String verb) {
+            this.endpoint = endpoint;
+            this.verb = verb;
+        }
+
+        private void record(RequestMetrics metrics) {
+            latency.record(metrics.getLatencyNanos());
+            if(metrics.getPoolWaitNanos() != RequestMetrics.NOT_MEASURED) {
+                poolWait.record(metrics.getPoolWaitNanos());
+            }
+            if(metrics.getParseNanos() != RequestMetrics.NOT_MEASURED) {
+                parseTime.record(metrics.getParseNanos());
+            }
+            if(metrics.isFailure()) {
+                failures.incrementAndGet();
+            }
+            if(metrics.getRetries() > 0) {
+                retries.addAndGet(metrics.getRetries());
+            }
+            if(metrics.getRequestBytes() > 0) {
+                requestBytes.addAndGet(metrics.getRequestBytes());
+            }
+            if(metrics.getResponseBytes() > 0) {
+                responseBytes.addAndGet(metrics.getResponseBytes());
+            }
+            Integer status = metrics.getStatusCode();
+            AtomicLong statusCount = statusCodes.get(status);
+            if(statusCount == null) {
+                AtomicLong newCount = new AtomicLong();
+                statusCount = statusCodes.putIfAbsent(status, newCount);
+                if(statusCount == null) {
+                    statusCount = newCount;
+                }
+            }
+            statusCount.incrementAndGet();
+        }
+
+        private EndpointMetrics snapshot() {
+            Map<Integer, Long> statusCounts = new TreeMap<Integer, Long>();
+            for(Map.Entry<Integer, AtomicLong> entry : statusCodes.entrySet()) {
+                statusCounts.put(entry.getKey(), entry.getValue().get());
+            }
+            return new EndpointMetrics(endpoint, verb, failures.get(), retries.get(), requestBytes.get(),
+                    responseBytes.get(), statusCounts, latency.snapshot(), poolWait.snapshot(), parseTime.snapshot());
+        }
+    }
+
+    private final ConcurrentMap<String, Recorded> recordedByKey = new ConcurrentHashMap<String, Recorded>();
+
+    @Override
+    public void record(RequestMetrics metrics) {
+        String key = metrics.getVerb() + " " + metrics.getEndpoint();
+        Recorded recorded = recordedByKey.get(key);
+        if(recorded == null) {
+            Recorded newRecorded = new Recorded(metrics.getEndpoint(), metrics.getVerb());
+            recorded = recordedByKey.putIfAbsent(key, newRecorded);
+            if(recorded == null) {
+                recorded = newRecorded;
+            }
+        }
+        recorded.record(metrics);
+    }
+
+    /**
+     * Get the measurements recorded so far, for each endpoint family and HTTP verb that has had a request
+     * @return the measurements, ordered by verb and endpoint family
+     */
+    public List<EndpointMetrics> snapshot() {
+        List<EndpointMetrics> snapshots = new ArrayList<EndpointMetrics>();
+        for(Recorded recorded : new TreeMap<String, Recorded>(recordedByKey).values()) {
+            snapshots.add(recorded.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Get the measurements recorded so far for one endpoint family and HTTP verb
+     * @param endpoint the endpoint family, such as {@code data}
+     * @param verb the HTTP method, such as {@code GET}
+     * @return the measurements, or null if no request has been recorded for them
+     */
+    public EndpointMetrics snapshot(String endpoint, String verb) {
+        Recorded recorded = recordedByKey.get(verb + " " + endpoint);
+        return recorded == null ? null : recorded.snapshot();
+    }
+
+    /**
+     * Discard everything recorded so far
+     */
+    public void reset() {
+        recordedByKey.clear();
+    }
+}
@@ -0,0 +1,162 @@
+package com.cloudmine.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non negative values, such as latencies in nanoseconds, with buckets on a logarithmic scale in the
+ * style of HdrHistogram: each power of two is split into {@value #SUB_BUCKETS} buckets, so a recorded value is
+ * reported to within about 6% however large it is, in a fixed {@value #BUCKET_COUNT} counters. Recording is lock free
+ * and doesn't allocate. Read the recorded values with {@link #snapshot()}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int LINEAR_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The number of buckets each power of two is split into */
+    public static final int SUB_BUCKETS = LINEAR_BUCKETS / 2;
+    /** The number of buckets, enough for every positive long */
+    public static final int BUCKET_COUNT = LINEAR_BUCKETS + (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The values recorded by a histogram at one point in time
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long minimum;
+        private final long maximum;
+
+        private Snapshot(long[] counts, long count, long sum, long minimum, long maximum) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        /**
+         * Get the number of values recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the smallest value recorded, or 0 if there are none
+         */
+        public long getMinimum() {
+            return minimum;
+        }
+
+        /**
+         * Get the largest value recorded, or 0 if there are none
+         */
+        public long getMaximum() {
+            return maximum;
+        }
+
+        /**
+         * Get the mean of the values recorded, or 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Get the value that the given percentage of recorded values are at or below, such as 99 for the 99th
+         * percentile. This is the largest value in the bucket that the percentile falls in, so it is never less than
+         * the true value
+         * @param percentile the percentile, from 0 to 100
+         * @return the value, or 0 if there are none
+         * @throws IllegalArgumentException if the percentile is not from 0 to 100
+         */
+        public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+            if(!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be from 0 to 100, not " + percentile);
+            }
+            if(count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for(int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if(seen >= rank) {
+                    return Math.max(minimum, Math.min(maximum, highestValue(bucket)));
+                }
+            }
+            return maximum;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + Math.round(getMean()) + ", p50=" + getValueAtPercentile(50) +
+                    ", p99=" + getValueAtPercentile(99) + ", max=" + maximum;
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong minimum = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maximum = new AtomicLong(-1);
+
+    /**
+     * Record a value. Negative values are recorded as 0
+     * @param value the value
+     */
+    public void record(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        sum.addAndGet(value);
+        count.incrementAndGet();
+        long current;
+        while(value < (current = minimum.get()) && !minimum.compareAndSet(current, value)) {
+        }
+        while(value > (current = maximum.get()) && !maximum.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * Copy the values recorded so far. Values recorded while the copy is made may only be partly included
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for(int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            copy[bucket] = counts.get(bucket);
+            total += copy[bucket];
+        }
+        long minimumValue = minimum.get();
+        long maximumValue = maximum.get();
+        if(total == 0) {
+            return new Snapshot(copy, 0, 0, 0, 0);
+        }
+        return new Snapshot(copy, total, sum.get(), minimumValue == Long.MAX_VALUE ? 0 : minimumValue, Math.max(0, maximumValue));
+    }
+
+    static int bucket(long value) {
+        if(value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> magnitude);
+        return LINEAR_BUCKETS + (magnitude - 1) * SUB_BUCKETS + (subBucket - SUB_BUCKETS);
+    }
+
+    static long highestValue(int bucket) {
+        if(bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        long highest = ((subBucket + 1) << magnitude) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
@@ -0,0 +1,28 @@
+package com.cloudmine.api.metrics;
+
+/**
+ * Receives the measurements of every request made to CloudMine, once the request has finished. Install one with
+ * {@link CMMetrics#setRecorder(MetricsRecorder)}; {@link InMemoryMetricsRecorder} keeps histograms that can be read
+ * back, or implement this to forward measurements to another metrics system. Called on the thread that made the
+ * request, before its callback is called, so implementations should be quick, thread safe, and must not throw
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * A recorder that ignores every measurement. This is the default
+     */
+    public static final MetricsRecorder NONE = new MetricsRecorder() {
+        @Override
+        public void record(RequestMetrics metrics) {
+        }
+    };
+
+    /**
+     * Called when a request has finished, successfully or not
+     * @param metrics the measurements of the request
+     */
+    public void record(RequestMetrics metrics);
+}
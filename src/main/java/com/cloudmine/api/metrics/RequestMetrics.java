@@ -0,0 +1,96 @@
+package com.cloudmine.api.metrics;
+
+/**
+ * The measurements of a single request. Times are in nanoseconds; byte counts and times that weren't measured are -1
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class RequestMetrics {
+    /** The status code of requests that failed without a response */
+    public static final int NO_STATUS = -1;
+    /** The value of measurements that weren't taken */
+    public static final long NOT_MEASURED = -1;
+
+    private final String endpoint;
+    private final String verb;
+    private final int statusCode;
+    private final long latencyNanos;
+    private final long poolWaitNanos;
+    private final long parseNanos;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final int retries;
+
+    /**
+     * @param endpoint the endpoint family, as given by {@link CMMetrics#endpointFamily(java.net.URI)}
+     * @param verb the HTTP method
+     * @param statusCode the HTTP status code, or {@link #NO_STATUS} if there was no response
+     * @param latencyNanos the time from the request being sent until its response was received
+     * @param poolWaitNanos the time the request waited before it could be sent
+     * @param parseNanos the time taken to construct the response object
+     * @param requestBytes the size of the request body
+     * @param responseBytes the size of the response body
+     * @param retries the number of times the request was retried
+     */
+    public RequestMetrics(String endpoint, String verb, int statusCode, long latencyNanos, long poolWaitNanos,
+                          long parseNanos, long requestBytes, long responseBytes, int retries) {
+        this.endpoint = endpoint;
+        this.verb = verb;
+        this.statusCode = statusCode;
+        this.latencyNanos = latencyNanos;
+        this.poolWaitNanos = poolWaitNanos;
+        this.parseNanos = parseNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.retries = retries;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getVerb() {
+        return verb;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Whether the request failed, either without a response or with an error status
+     */
+    public boolean isFailure() {
+        return statusCode == NO_STATUS || statusCode >= 400;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getPoolWaitNanos() {
+        return poolWaitNanos;
+    }
+
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    @Override
+    public String toString() {
+        return verb + " " + endpoint + " " + statusCode + " in " + latencyNanos + "ns";
+    }
+}
@@ -0,0 +1,28 @@
+package com.cloudmine.api.metrics;
+
+/**
+ * The phases of a request, in the order they happen, as reported to a {@link RequestTraceListener}. Phases that
+ * don't apply to a request, such as connecting when a pooled connection is reused, are not reported. Phases that
+ * are only measured by the SDK's own asynchronous HTTP client are noted
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public enum RequestPhase {
+    /** Waiting after the request was made until it started to be sent */
+    QUEUE_WAIT,
+    /** Waiting for a connection from the connection pool; asynchronous client only */
+    CONNECTION_LEASE,
+    /** Opening the leased connection, including any TLS handshake, if it wasn't already open; asynchronous client only */
+    CONNECT,
+    /** Writing the request; asynchronous client only */
+    SEND,
+    /** Waiting from the request being written until the response headers were read; asynchronous client only */
+    TIME_TO_FIRST_BYTE,
+    /** Reading the response body */
+    BODY_READ,
+    /** Constructing the response object from the response body */
+    PARSE,
+    /** Running the request's callback */
+    CALLBACK
+}
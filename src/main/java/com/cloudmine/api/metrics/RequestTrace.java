@@ -0,0 +1,217 @@
+package com.cloudmine.api.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The context of a single request as it moves through its {@link RequestPhase phases}: the time spent in each phase,
+ * and any attributes a {@link RequestTraceListener} attached to it. While a request is being sent, parsed and
+ * called back, its trace is {@link #current()} on the thread doing the work, so a callback can read the trace of
+ * the request it was called for.<br>
+ * Traces are created and advanced by the HTTP client; a custom {@link com.cloudmine.api.rest.AsynchronousHttpClient}
+ * can report its phases with {@link #startPhase(RequestPhase)} and {@link #endPhase(RequestPhase)}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class RequestTrace {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestTrace.class);
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<RequestTrace>();
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final String method;
+    private final URI uri;
+    private final String endpoint;
+    private final RequestTraceListener listener;
+    private final long[] phaseStarts = new long[PHASES.length];
+    private final long[] phaseNanos = new long[PHASES.length];
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+    private volatile int statusCode = RequestMetrics.NO_STATUS;
+    private volatile Throwable failure;
+    private volatile boolean ended;
+
+    /**
+     * Get the trace of the request being worked on by this thread
+     * @return the trace, or null if this thread isn't working on a traced request
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Start tracing a request, reporting to the installed {@link RequestTraceListener}
+     * @param method the HTTP method
+     * @param uri the URL of the request
+     */
+    public RequestTrace(String method, URI uri) {
+        this(method, uri, CMMetrics.getTraceListener());
+    }
+
+    RequestTrace(String method, URI uri, RequestTraceListener listener) {
+        this.method = method;
+        this.uri = uri;
+        this.endpoint = CMMetrics.endpointFamily(uri);
+        this.listener = listener;
+        for(int i = 0; i < PHASES.length; i++) {
+            phaseNanos[i] = RequestMetrics.NOT_MEASURED;
+        }
+    }
+
+    /**
+     * Make this the {@link #current()} trace of this thread
+     * @return the trace that was current before, to be passed to {@link #detach(RequestTrace)}
+     */
+    public RequestTrace attach() {
+        RequestTrace previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Stop this being the current trace of this thread
+     * @param previous the trace returned by {@link #attach()}
+     */
+    public void detach(RequestTrace previous) {
+        if(previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Note that the request has entered the given phase
+     */
+    public void startPhase(RequestPhase phase) {
+        synchronized(this) {
+            phaseStarts[phase.ordinal()] = System.nanoTime();
+        }
+        //listeners are called without holding the lock, so a slow one doesn't block readers of the trace
+        try {
+            listener.onPhaseStart(this, phase);
+        } catch(RuntimeException e) {
+            LOG.error("Trace listener threw starting " + phase, e);
+        }
+    }
+
+    /**
+     * Note that the request has left the given phase. Does nothing if the phase wasn't started
+     */
+    public void endPhase(RequestPhase phase) {
+        int index = phase.ordinal();
+        long duration;
+        synchronized(this) {
+            long start = phaseStarts[index];
+            if(start == 0) {
+                return;
+            }
+            phaseStarts[index] = 0;
+            duration = System.nanoTime() - start;
+            //a phase entered more than once, such as on a retry, accumulates
+            phaseNanos[index] = phaseNanos[index] == RequestMetrics.NOT_MEASURED ? duration : phaseNanos[index] + duration;
+        }
+        try {
+            listener.onPhaseEnd(this, phase, duration);
+        } catch(RuntimeException e) {
+            LOG.error("Trace listener threw ending " + phase, e);
+        }
+    }
+
+    /**
+     * Note that the request has finished. Only the first call notifies the listener
+     * @param failure why the request failed, or null if it didn't
+     */
+    public void end(Throwable failure) {
+        synchronized(this) {
+            if(ended) {
+                return;
+            }
+            ended = true;
+            this.failure = failure;
+        }
+        try {
+            listener.onRequestEnd(this);
+        } catch(RuntimeException e) {
+            LOG.error("Trace listener threw ending request", e);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Get the endpoint family of the request, as given by {@link CMMetrics#endpointFamily(java.net.URI)}
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get the total time spent in the given phase
+     * @return the time in nanoseconds, or {@link RequestMetrics#NOT_MEASURED} if the request hasn't left the phase
+     */
+    public synchronized long getPhaseNanos(RequestPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Get the HTTP status code of the response
+     * @return the status code, or {@link RequestMetrics#NO_STATUS} if no response has been received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Get why the request failed
+     * @return the failure, or null if the request didn't fail or hasn't ended
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public Object getAttribute(String key) {
+        return attributes.get(key);
+    }
+
+    /**
+     * Attach a value to this trace, such as a listener's span for the request
+     * @param key the key
+     * @param value the value, or null to remove it
+     */
+    public void setAttribute(String key, Object value) {
+        if(value == null) {
+            attributes.remove(key);
+        } else {
+            attributes.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder phases = new StringBuilder(method).append(' ').append(endpoint).append(" [");
+        String separator = "";
+        synchronized(this) {
+            for(RequestPhase phase : PHASES) {
+                if(phaseNanos[phase.ordinal()] != RequestMetrics.NOT_MEASURED) {
+                    phases.append(separator).append(phase).append('=').append(phaseNanos[phase.ordinal()]).append("ns");
+                    separator = ", ";
+                }
+            }
+        }
+        return phases.append(']').toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.cloudmine.api.metrics;
+
+/**
+ * Notified as each request made through the SDK moves through its {@link RequestPhase phases}, to attribute the time
+ * a request takes to waiting for a connection, the network, or parsing, or to feed a tracing system. Install one with
+ * {@link CMMetrics#setTraceListener(RequestTraceListener)}. A listener can keep its own state for a request, such as
+ * a span, as an {@link RequestTrace#setAttribute(String, Object) attribute} of the trace. Called on the thread doing
+ * the work, so implementations should be quick, thread safe, and must not throw
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public interface RequestTraceListener {
+
+    /**
+     * A listener that ignores every notification. This is the default
+     */
+    public static final RequestTraceListener NONE = new RequestTraceListener() {
+        @Override
+        public void onPhaseStart(RequestTrace trace, RequestPhase phase) {
+        }
+
+        @Override
+        public void onPhaseEnd(RequestTrace trace, RequestPhase phase, long durationNanos) {
+        }
+
+        @Override
+        public void onRequestEnd(RequestTrace trace) {
+        }
+    };
+
+    /**
+     * Called when a request enters a phase. Phases may be entered more than once if the request is retried
+     * @param trace the request
+     * @param phase the phase
+     */
+    public void onPhaseStart(RequestTrace trace, RequestPhase phase);
+
+    /**
+     * Called when a request leaves a phase
+     * @param trace the request
+     * @param phase the phase
+     * @param durationNanos how long the request was in the phase
+     */
+    public void onPhaseEnd(RequestTrace trace, RequestPhase phase, long durationNanos);
+
+    /**
+     * Called once, after the request's callback has run or the request has failed
+     * @param trace the request, with the time spent in every phase
+     */
+    public void onRequestEnd(RequestTrace trace);
+}
@@ -5,13 +5,16 @@ import com.cloudmine.api.exceptions.ConversionException;
 import com.cloudmine.api.rest.Transportable;
 import com.cloudmine.api.rest.TransportableString;
 import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.StringInterner;
 import com.cloudmine.api.rest.response.ResponseBase;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.deser.std.StdKeyDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
@@ -64,6 +67,17 @@ public class CMJacksonModule extends SimpleModule {
                 return null;
             }
         });
+        addDeserializer(Object.class, new InterningObjectDeserializer());
+        addDeserializer(String.class, new JsonDeserializer<String>() {
+            @Override
+            public String deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
+                StringInterner interner = JsonUtilities.getStringInterner();
+                if(interner != null && jp.getCurrentToken() == JsonToken.VALUE_STRING) {
+                    return InterningObjectDeserializer.internValue(interner, jp);
+                }
+                return StringDeserializer.instance.deserialize(jp, ctxt);
+            }
+        });
         addSerializer(new JsonSerializer<SimpleCMObject>() {
 
             @Override
@@ -0,0 +1,90 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.rest.options.CMDecodeOptions;
+
+/**
+ * Configures a {@link PersistentObjectCache}: how large its segment files are, when it forces writes to disk, when it
+ * compacts, and how it decodes the objects it reads back
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMPersistentCacheOptions {
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+    public static final int MINIMUM_SEGMENT_SIZE = 4 * 1024;
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private boolean syncOnWrite;
+    private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private CMDecodeOptions decodeOptions = CMDecodeOptions.LAZY;
+
+    /**
+     * Set the size of each segment file. Objects are appended to a segment until it is full, then a new segment is
+     * started; an object larger than a segment gets a segment of its own. Defaults to {@link #DEFAULT_SEGMENT_SIZE}
+     * @param segmentSize the size in bytes, at least {@link #MINIMUM_SEGMENT_SIZE}
+     * @return this
+     * @throws IllegalArgumentException if segmentSize is less than {@link #MINIMUM_SEGMENT_SIZE}
+     */
+    public CMPersistentCacheOptions setSegmentSize(int segmentSize) {
+        if(segmentSize < MINIMUM_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MINIMUM_SEGMENT_SIZE + ": " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Set whether every write is forced to disk before it returns. By default writes are forced when a segment fills
+     * up, on {@link PersistentObjectCache#flush()} and on {@link PersistentObjectCache#close()}; writes made since then
+     * may be lost if the device loses power, but never corrupt the cache
+     * @param syncOnWrite true to force every write to disk
+     * @return this
+     */
+    public CMPersistentCacheOptions setSyncOnWrite(boolean syncOnWrite) {
+        this.syncOnWrite = syncOnWrite;
+        return this;
+    }
+
+    /**
+     * Set the fraction of the full segments that may be taken up by overwritten and deleted objects before they are
+     * compacted. Defaults to {@link #DEFAULT_COMPACTION_THRESHOLD}
+     * @param compactionThreshold a fraction between 0 and 1; 1 to only compact when {@link PersistentObjectCache#compact()} is called
+     * @return this
+     * @throws IllegalArgumentException if compactionThreshold is not between 0 and 1
+     */
+    public CMPersistentCacheOptions setCompactionThreshold(double compactionThreshold) {
+        if(compactionThreshold < 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("Compaction threshold must be between 0 and 1: " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+
+    /**
+     * Set how objects read from the cache are decoded. Defaults to {@link CMDecodeOptions#LAZY}, so reading an object
+     * only parses the fields that are used
+     * @param decodeOptions the decode options; null for {@link CMDecodeOptions#NONE}
+     * @return this
+     */
+    public CMPersistentCacheOptions setDecodeOptions(CMDecodeOptions decodeOptions) {
+        this.decodeOptions = decodeOptions == null ? CMDecodeOptions.NONE : decodeOptions;
+        return this;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public boolean isSyncOnWrite() {
+        return syncOnWrite;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public CMDecodeOptions getDecodeOptions() {
+        return decodeOptions;
+    }
+}
@@ -0,0 +1,620 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.CMFile;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.cache.BoundedCache;
+import com.cloudmine.api.cache.CMCacheOptions;
+import com.cloudmine.api.cache.EvictionCause;
+import com.cloudmine.api.cache.EvictionListener;
+import com.cloudmine.api.cache.EvictionPolicy;
+import com.cloudmine.api.cache.InvalidationEvent;
+import com.cloudmine.api.cache.InvalidationListener;
+import com.cloudmine.api.cache.Weigher;
+import com.cloudmine.api.exceptions.CreationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An on disk cache of downloaded file contents, so files that are loaded repeatedly, such as avatars, are only
+ * downloaded once. Each file is stored in its own file in the cache's directory, keyed by the file id, the level it
+ * was loaded from and, for user level files, the user it belongs to. The total size of the cached files is bounded,
+ * and the least recently used files are deleted to stay within the bound; recency survives restarts through the
+ * files' modification times.<br>
+ * Each cached file records the length and CRC32 of its contents, which are checked the first time the file is read
+ * after the cache is opened; a file that fails the check is deleted and treated as a miss. Files are written under a
+ * temporary name and then renamed, so a partially written file is never served, and every write gets a file name of
+ * its own, so a read that started before a file was replaced never sees the new contents. User level files are kept
+ * under a one way hash of their user, never the user themselves. Contents can be copied straight to a channel with
+ * {@link #transferTo}, which lets the operating system send them without copying them onto the heap.<br>
+ * The cache can be registered on a {@link com.cloudmine.api.cache.InvalidationBus}, or given to
+ * {@link com.cloudmine.api.rest.CMStore#setFileCache(FileDownloadCache)}, to drop files when they are uploaded again or
+ * deleted. Only one cache may use a directory at a time. This class is thread safe
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class FileDownloadCache implements InvalidationListener {
+    private static final Logger LOG = LoggerFactory.getLogger(FileDownloadCache.class);
+    public static final long DEFAULT_MAXIMUM_BYTES = 32 * 1024 * 1024;
+    private static final int MAGIC = 0x434D4643;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".cmf";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static class Entry {
+        final String key;
+        final ObjectLevel level;
+        final String owner;
+        final String fileId;
+        final String contentType;
+        final File file;
+        final long generation;
+        final long contentOffset;
+        final long contentLength;
+        final int checksum;
+        volatile boolean verified;
+
+        Entry(String key, ObjectLevel level, String owner, String fileId, String contentType, File file,
+              long generation, long contentOffset, long contentLength, int checksum) {
+            this.key = key;
+            this.level = level;
+            this.owner = owner;
+            this.fileId = fileId;
+            this.contentType = contentType;
+            this.file = file;
+            this.generation = generation;
+            this.contentOffset = contentOffset;
+            this.contentLength = contentLength;
+            this.checksum = checksum;
+        }
+    }
+
+    private final File directory;
+    private final long maximumBytes;
+    private final Map<String, Entry> entries;
+    //the generation of the last file written, which is part of its name
+    private final AtomicLong generations = new AtomicLong();
+
+    /**
+     * Open the cache stored in the given directory, bounded to {@link #DEFAULT_MAXIMUM_BYTES}
+     * @param directory the directory to store the files in
+     * @throws CreationException if the directory cannot be created or read
+     */
+    public FileDownloadCache(File directory) throws CreationException {
+        this(directory, DEFAULT_MAXIMUM_BYTES);
+    }
+
+    /**
+     * Open the cache stored in the given directory, creating it if it does not exist
+     * @param directory the directory to store the files in
+     * @param maximumBytes the most bytes the cached files may take up
+     * @throws CreationException if the directory cannot be created or read
+     */
+    public FileDownloadCache(File directory, long maximumBytes) throws CreationException {
+        this.directory = directory;
+        this.maximumBytes = maximumBytes;
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new CreationException("Unable to create cache directory " + directory);
+        }
+        entries = new BoundedCache<String, Entry>(new CMCacheOptions<String, Entry>()
+                .setMaximumWeight(maximumBytes, new Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(String key, Entry entry) {
+                        return (int) Math.min(Integer.MAX_VALUE, entry.contentOffset + entry.contentLength);
+                    }
+                })
+                .setEvictionPolicy(EvictionPolicy.LRU)
+                .setEvictionListener(new EvictionListener<String, Entry>() {
+                    @Override
+                    public void onEviction(String key, Entry entry, EvictionCause cause) {
+                        delete(entry.file);
+                    }
+                }));
+        load();
+    }
+
+    /**
+     * Read the headers of the cached files, oldest first so the most recently used end up most recently used again
+     */
+    private synchronized void load() throws CreationException {
+        File[] files = directory.listFiles();
+        if(files == null) {
+            throw new CreationException("Unable to list " + directory);
+        }
+        List<File> cached = new ArrayList<File>();
+        for(File file : files) {
+            if(file.getName().endsWith(TEMPORARY_SUFFIX)) {
+                delete(file);
+            } else if(file.getName().endsWith(SUFFIX)) {
+                cached.add(file);
+            }
+        }
+        File[] sorted = cached.toArray(new File[cached.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for(File file : sorted) {
+            Entry entry = readEntry(file);
+            if(entry == null) {
+                LOG.warn("Deleting unreadable cached file " + file);
+                delete(file);
+                continue;
+            }
+            if(generations.get() < entry.generation) {
+                generations.set(entry.generation);
+            }
+            //a write that was interrupted before the file it replaced was deleted leaves two files; keep the newest
+            Entry previous = entries.get(entry.key);
+            if(previous != null && previous.generation > entry.generation) {
+                delete(entry.file);
+            } else {
+                if(previous != null) {
+                    entries.remove(entry.key);
+                    delete(previous.file);
+                }
+                entries.put(entry.key, entry);
+            }
+        }
+    }
+
+    private static Entry readEntry(File file) {
+        long generation = generationOf(file);
+        if(generation < 0) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024));
+            if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+            int levelOrdinal = input.readByte();
+            String owner = input.readUTF();
+            String fileId = input.readUTF();
+            String contentType = input.readUTF();
+            long contentLength = input.readLong();
+            int checksum = input.readInt();
+            if(levelOrdinal < 0 || levelOrdinal >= ObjectLevel.values().length) {
+                return null;
+            }
+            ObjectLevel level = ObjectLevel.values()[levelOrdinal];
+            //the owner is stored already hashed
+            if((level == ObjectLevel.USER) == (owner.length() == 0)) {
+                return null;
+            }
+            long contentOffset = headerSize(level, owner, fileId, contentType);
+            if(contentOffset + contentLength != file.length()) {
+                return null;
+            }
+            return new Entry(key(level, owner, fileId), level, owner, fileId, contentType, file, generation,
+                    contentOffset, contentLength, checksum);
+        } catch(IOException e) {
+            LOG.debug("Unable to read cached file " + file, e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private static byte[] header(ObjectLevel level, String owner, String fileId, String contentType,
+                                 long contentLength, int checksum) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeByte(level.ordinal());
+        output.writeUTF(owner);
+        output.writeUTF(fileId);
+        output.writeUTF(contentType);
+        output.writeLong(contentLength);
+        output.writeInt(checksum);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static long headerSize(ObjectLevel level, String owner, String fileId, String contentType) throws IOException {
+        return header(level, owner, fileId, contentType, 0, 0).length;
+    }
+
+    private static String key(ObjectLevel level, String owner, String fileId) {
+        return level.name() + '\n' + owner + '\n' + fileId;
+    }
+
+    /**
+     * Get the file the given generation of a cached file is stored in, named by a hash of its key and the generation
+     */
+    private File fileFor(String key, long generation) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            String name = Owners.hex(digest.digest(key.getBytes("UTF-8")));
+            return new File(directory, name + "." + generation + SUFFIX);
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        } catch(IOException e) {
+            throw new IllegalStateException("UTF-8 is not available", e);
+        }
+    }
+
+    /**
+     * Get the generation a cached file was written with from its name
+     * @return the generation, or -1 if the file is not named like a cached file
+     */
+    private static long generationOf(File file) {
+        String name = file.getName();
+        int end = name.length() - SUFFIX.length();
+        int start = name.lastIndexOf('.', end - 1) + 1;
+        if(start <= 0 || start >= end) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(start, end));
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the owner a file is cached under: a one way hash of the given owner for user level files, and no one for
+     * other levels
+     * @return the owner, or null if a user level file has no owner and must not be cached
+     */
+    private static String ownerOf(ObjectLevel level, String owner) {
+        if(level != ObjectLevel.USER) {
+            return "";
+        }
+        return Owners.key(owner);
+    }
+
+    /**
+     * Store the contents of a downloaded file, replacing any cached copy. Files larger than the cache's maximum size
+     * are not cached, rather than evicting every other file, and neither are user level files without an owner.
+     * Failures to write are logged, not thrown
+     * @param level the level the file was loaded from
+     * @param owner for user level files, a stable identifier of the user the file belongs to, such as their email,
+     *              of which only a one way hash is stored; ignored for other levels
+     * @param file the downloaded file
+     * @return true if the file was cached
+     */
+    public boolean put(ObjectLevel level, String owner, CMFile file) {
+        if(file == null || file.getFileId() == null || file.getFileContents() == null) {
+            return false;
+        }
+        owner = ownerOf(level, owner);
+        if(owner == null) {
+            return false;
+        }
+        String key = key(level, owner, file.getFileId());
+        byte[] contents = file.getFileContents();
+        String contentType = file.getMimeType() == null ? CMFile.DEFAULT_CONTENT_TYPE : file.getMimeType();
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, contents.length);
+        int checksum = (int) crc.getValue();
+        long generation = generations.incrementAndGet();
+        File target = fileFor(key, generation);
+        File temporary = new File(target.getPath() + TEMPORARY_SUFFIX);
+        long contentOffset;
+        FileOutputStream output = null;
+        try {
+            byte[] header = header(level, owner, file.getFileId(), contentType, contents.length, checksum);
+            contentOffset = header.length;
+            if(contentOffset + contents.length > maximumBytes) {
+                return false;
+            }
+            output = new FileOutputStream(temporary);
+            output.write(header);
+            output.write(contents);
+            output.close();
+            output = null;
+        } catch(IOException e) {
+            LOG.error("Unable to cache file " + file.getFileId(), e);
+            closeQuietly(output);
+            delete(temporary);
+            return false;
+        }
+        Entry entry = new Entry(key, level, owner, file.getFileId(), contentType, target, generation, contentOffset,
+                contents.length, checksum);
+        //contents we just wrote do not need to be checked again
+        entry.verified = true;
+        synchronized(this) {
+            if(!temporary.renameTo(target)) {
+                LOG.error("Unable to move cached file " + file.getFileId() + " into place");
+                delete(temporary);
+                return false;
+            }
+            //reads of the replaced file that are under way keep their open handle to it
+            Entry previous = entries.remove(key);
+            if(previous != null) {
+                delete(previous.file);
+            }
+            entries.put(key, entry);
+            return entries.containsKey(key);
+        }
+    }
+
+    private Entry verifiedEntry(ObjectLevel level, String owner, String fileId) {
+        owner = ownerOf(level, owner);
+        if(fileId == null || owner == null) {
+            return null;
+        }
+        String key = key(level, owner, fileId);
+        Entry entry;
+        synchronized(this) {
+            entry = entries.get(key);
+        }
+        if(entry == null) {
+            return null;
+        }
+        if(!entry.verified) {
+            if(!isIntact(entry)) {
+                LOG.warn("Cached file " + fileId + " failed its integrity check; deleting it");
+                remove(entry);
+                return null;
+            }
+            entry.verified = true;
+        }
+        if(!entry.file.setLastModified(System.currentTimeMillis())) {
+            LOG.debug("Unable to update the last use of " + entry.file);
+        }
+        return entry;
+    }
+
+    private static boolean isIntact(Entry entry) {
+        if(entry.file.length() != entry.contentOffset + entry.contentLength) {
+            return false;
+        }
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(entry.file);
+            if(input.skip(entry.contentOffset) != entry.contentOffset) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = entry.contentLength;
+            while(remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if(read < 0) {
+                    return false;
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+            return (int) crc.getValue() == entry.checksum;
+        } catch(IOException e) {
+            return false;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Get a cached file. Its contents are transferred from the file system cache straight into the returned file's
+     * array, the only copy of them made on the heap
+     * @param level the level the file was loaded from
+     * @param owner for user level files, a stable identifier of the user the file belongs to, such as their email,
+     *              of which only a one way hash is stored; ignored for other levels
+     * @param fileId the id of the file
+     * @return the file, or null if it is not cached
+     */
+    public CMFile get(ObjectLevel level, String owner, String fileId) {
+        final Entry entry = verifiedEntry(level, owner, fileId);
+        if(entry == null) {
+            return null;
+        }
+        final ByteBuffer contents = ByteBuffer.allocate((int) entry.contentLength);
+        try {
+            transfer(entry, new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer source) throws IOException {
+                    if(source.remaining() > contents.remaining()) {
+                        throw new IOException("Cached file " + entry.file + " is longer than recorded");
+                    }
+                    int written = source.remaining();
+                    contents.put(source);
+                    return written;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            return new CMFile(contents.array(), entry.fileId, entry.contentType);
+        } catch(IOException e) {
+            LOG.warn("Unable to read cached file " + fileId, e);
+            remove(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Copy the contents of a cached file to the given channel. Where the platform supports it, the contents are sent
+     * directly from the file system cache, without being copied onto the heap
+     * @param level the level the file was loaded from
+     * @param owner for user level files, a stable identifier of the user the file belongs to, such as their email,
+     *              of which only a one way hash is stored; ignored for other levels
+     * @param fileId the id of the file
+     * @param target the channel to write the contents to
+     * @return the number of bytes written, or -1 if the file is not cached
+     * @throws IOException if writing to target fails
+     */
+    public long transferTo(ObjectLevel level, String owner, String fileId, WritableByteChannel target) throws IOException {
+        Entry entry = verifiedEntry(level, owner, fileId);
+        if(entry == null) {
+            return -1;
+        }
+        try {
+            return transfer(entry, target);
+        } catch(FileNotFoundException e) {
+            remove(entry);
+            return -1;
+        }
+    }
+
+    private static long transfer(Entry entry, WritableByteChannel target) throws IOException {
+        FileInputStream input = new FileInputStream(entry.file);
+        try {
+            FileChannel channel = input.getChannel();
+            long position = entry.contentOffset;
+            long end = entry.contentOffset + entry.contentLength;
+            while(position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if(transferred <= 0 && position < end && channel.size() < end) {
+                    throw new IOException("Cached file " + entry.file + " was truncated");
+                }
+                position += transferred;
+            }
+            return entry.contentLength;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    public boolean contains(ObjectLevel level, String owner, String fileId) {
+        owner = ownerOf(level, owner);
+        if(owner == null) {
+            return false;
+        }
+        synchronized(this) {
+            return entries.containsKey(key(level, owner, fileId));
+        }
+    }
+
+    /**
+     * Remove a cached file
+     * @param level the level the file was loaded from
+     * @param owner for user level files, a stable identifier of the user the file belongs to, such as their email,
+     *              of which only a one way hash is stored; ignored for other levels
+     * @param fileId the id of the file
+     * @return true if the file was cached
+     */
+    public boolean remove(ObjectLevel level, String owner, String fileId) {
+        owner = ownerOf(level, owner);
+        if(owner == null) {
+            return false;
+        }
+        String key = key(level, owner, fileId);
+        synchronized(this) {
+            Entry entry = entries.remove(key);
+            if(entry == null) {
+                return false;
+            }
+            delete(entry.file);
+            return true;
+        }
+    }
+
+    /**
+     * Remove an entry that could not be read, unless it has already been replaced or removed, in which case its file
+     * was deleted along with it
+     */
+    private synchronized void remove(Entry entry) {
+        if(entries.get(entry.key) == entry) {
+            entries.remove(entry.key);
+            delete(entry.file);
+        }
+    }
+
+    /**
+     * Remove every cached file with the given id, from the given level, for any user
+     */
+    private synchronized void removeAll(ObjectLevel level, Set<String> fileIds, boolean allFiles) {
+        for(Entry entry : new ArrayList<Entry>(entries.values())) {
+            boolean onLevel = level == ObjectLevel.UNKNOWN || entry.level == level ||
+                    (level == ObjectLevel.APPLICATION && entry.level == ObjectLevel.UNKNOWN);
+            if(onLevel && (allFiles || fileIds.contains(entry.fileId))) {
+                entries.remove(entry.key);
+                delete(entry.file);
+            }
+        }
+    }
+
+    /**
+     * Remove every cached file
+     */
+    public void clear() {
+        removeAll(ObjectLevel.UNKNOWN, Collections.<String>emptySet(), true);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of bytes the cached files take up
+     */
+    public synchronized long getSize() {
+        return ((BoundedCache<String, Entry>) entries).getWeightedSize();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Drop cached files that were uploaded again or deleted. As the user a write was made for is not known, user level
+     * files with a written id are dropped for every user
+     */
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        if(event.isDeletedAll()) {
+            removeAll(event.getLevel(), Collections.<String>emptySet(), true);
+            return;
+        }
+        Set<String> modified = new HashSet<String>(event.getModifiedIds());
+        if(!modified.isEmpty()) {
+            removeAll(event.getLevel(), modified, false);
+        }
+    }
+
+    private static void delete(File file) {
+        if(file.exists() && !file.delete()) {
+            LOG.warn("Unable to delete cached file " + file);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch(IOException ignored) {
+        }
+    }
+}
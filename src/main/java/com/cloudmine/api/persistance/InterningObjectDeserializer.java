@@ -0,0 +1,60 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.StringInterner;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.UntypedObjectDeserializer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deserializes untyped JSON values the same way Jackson does by default, except that field names and short
+ * String values are passed through the {@link StringInterner} set on {@link JsonUtilities}, if there is one.
+ * Without an interner, this behaves exactly like {@link UntypedObjectDeserializer}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class InterningObjectDeserializer extends UntypedObjectDeserializer {
+
+    @Override
+    public Object deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
+        StringInterner interner = JsonUtilities.getStringInterner();
+        if(interner != null && jp.getCurrentToken() == JsonToken.VALUE_STRING) {
+            return internValue(interner, jp);
+        }
+        return super.deserialize(jp, ctxt);
+    }
+
+    @Override
+    protected Object mapObject(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
+        StringInterner interner = JsonUtilities.getStringInterner();
+        if(interner == null) {
+            return super.mapObject(jp, ctxt);
+        }
+        JsonToken token = jp.getCurrentToken();
+        if(token == JsonToken.START_OBJECT) {
+            token = jp.nextToken();
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        while(token == JsonToken.FIELD_NAME) {
+            String fieldName = interner.internKey(jp.getCurrentName());
+            jp.nextToken();
+            result.put(fieldName, deserialize(jp, ctxt));
+            token = jp.nextToken();
+        }
+        return result;
+    }
+
+    static String internValue(StringInterner interner, JsonParser jp) throws IOException {
+        if(jp.hasTextCharacters()) {
+            return interner.internValue(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+        }
+        return interner.internValue(jp.getText());
+    }
+}
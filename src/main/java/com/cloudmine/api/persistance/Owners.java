@@ -0,0 +1,46 @@
+package com.cloudmine.api.persistance;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Turns the owner of cached data into the key it is stored under on disk. Only a one way hash of the owner is
+ * written, so the caches don't store who their users are
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+final class Owners {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Owners() {
+    }
+
+    /**
+     * Get the key that data belonging to the given owner is stored under
+     * @param owner the owner, or null
+     * @return the hex encoded SHA-256 of the owner, or null if it is null or empty
+     */
+    static String key(String owner) {
+        if(owner == null || owner.length() == 0) {
+            return null;
+        }
+        try {
+            return hex(MessageDigest.getInstance("SHA-256").digest(owner.getBytes("UTF-8")));
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for(int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,598 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.cache.InvalidationEvent;
+import com.cloudmine.api.cache.InvalidationListener;
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.Savable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * An on disk cache of CMObjects that survives restarts. Objects are appended, in their JSON form, to memory mapped
+ * segment files in the cache's directory, and an in memory index maps each object id to where its latest copy is
+ * stored; removing an object appends a tombstone. When overwritten and removed objects take up too much of the full
+ * segments, the live objects are copied forward and the old segments are deleted.<br>
+ * Every record is checksummed. When the cache is opened the segments are read back in order to rebuild the index, and
+ * reading stops at the first damaged record in a segment, so a write interrupted by a crash loses that write rather
+ * than corrupting the cache. Reads go straight to the mapped segment, without any network call, and by default decode
+ * objects lazily (see {@link CMPersistentCacheOptions#setDecodeOptions}). File metadata can be cached as well, as
+ * {@link com.cloudmine.api.rest.CMFileMetaData} is a CMObject. User level objects are stored with a one way hash of
+ * the user they belong to, so a cache shared by several users' stores does not give one user's objects to another.<br>
+ * A cache can be registered on a {@link com.cloudmine.api.cache.InvalidationBus} to be kept up to date with writes,
+ * or given to {@link com.cloudmine.api.rest.CMStore#setPersistentCache(PersistentObjectCache)}. Only one cache may
+ * use a directory at a time. This class is thread safe; reads do not block
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class PersistentObjectCache implements InvalidationListener {
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentObjectCache.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    /** type, level, id length and owner length */
+    private static final int PAYLOAD_HEADER_SIZE = 6;
+    private static final int MAXIMUM_ID_LENGTH = 0xFFFF;
+
+    /**
+     * Where the latest copy of an object is stored
+     */
+    private static class Location {
+        final Segment segment;
+        final int offset;
+        final int size;
+        final int valueStart;
+        final int valueLength;
+        final ObjectLevel level;
+        //the key of the user a user level object belongs to; see Owners
+        final String owner;
+
+        Location(Segment segment, int offset, int size, int valueStart, int valueLength, ObjectLevel level, String owner) {
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+            this.valueStart = valueStart;
+            this.valueLength = valueLength;
+            this.level = level;
+            this.owner = owner;
+        }
+
+        Location movedTo(Segment segment, int offset) {
+            return new Location(segment, offset, size, valueStart, valueLength, level, owner);
+        }
+    }
+
+    private final File directory;
+    private final CMPersistentCacheOptions options;
+    private final Map<String, Location> index = new ConcurrentHashMap<String, Location>();
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+    private volatile boolean closed;
+
+    /**
+     * Open the cache stored in the given directory with the default options, creating it if it does not exist
+     * @param directory the directory to store the cache in
+     * @throws CreationException if the directory cannot be created or read
+     */
+    public PersistentObjectCache(File directory) throws CreationException {
+        this(directory, new CMPersistentCacheOptions());
+    }
+
+    /**
+     * Open the cache stored in the given directory, creating it if it does not exist. Segments that cannot be read
+     * are deleted
+     * @param directory the directory to store the cache in
+     * @param options how the cache is stored; if null, the defaults are used
+     * @throws CreationException if the directory cannot be created or read
+     */
+    public PersistentObjectCache(File directory, CMPersistentCacheOptions options) throws CreationException {
+        this.directory = directory;
+        this.options = options == null ? new CMPersistentCacheOptions() : options;
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new CreationException("Unable to create cache directory " + directory);
+        }
+        try {
+            recover();
+        } catch(IOException e) {
+            closeSegments();
+            throw new CreationException("Unable to open cache in " + directory, e);
+        }
+    }
+
+    private synchronized void recover() throws IOException {
+        File[] files = directory.listFiles();
+        if(files == null) {
+            throw new IOException("Unable to list " + directory);
+        }
+        List<File> segmentFiles = new ArrayList<File>();
+        for(File file : files) {
+            if(Segment.parseId(file.getName()) >= 0) {
+                segmentFiles.add(file);
+            }
+        }
+        File[] sorted = segmentFiles.toArray(new File[segmentFiles.size()]);
+        Arrays.sort(sorted);
+        Segment.RecordVisitor visitor = new Segment.RecordVisitor() {
+            @Override
+            public void visit(Segment segment, int offset, ByteBuffer payload) {
+                replay(segment, offset, payload);
+            }
+        };
+        for(File file : sorted) {
+            Segment segment;
+            try {
+                segment = Segment.open(file);
+            } catch(IOException e) {
+                LOG.warn("Deleting unreadable cache segment " + file, e);
+                file.delete();
+                continue;
+            }
+            segments.add(segment);
+            if(!segment.recover(visitor)) {
+                LOG.warn("Cache segment " + file + " was not completely written; the damaged records were dropped");
+            }
+        }
+        if(segments.isEmpty()) {
+            active = Segment.create(directory, 1, options.getSegmentSize());
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+        compactIfNeeded();
+    }
+
+    private void replay(Segment segment, int offset, ByteBuffer payload) {
+        int size = Segment.RECORD_HEADER_SIZE + payload.remaining();
+        if(payload.remaining() < PAYLOAD_HEADER_SIZE) {
+            segment.addDeadBytes(size);
+            return;
+        }
+        byte type = payload.get(0);
+        int levelOrdinal = payload.get(1);
+        int idLength = payload.getShort(2) & MAXIMUM_ID_LENGTH;
+        int ownerLength = payload.getShort(4) & MAXIMUM_ID_LENGTH;
+        if(PAYLOAD_HEADER_SIZE + idLength + ownerLength > payload.remaining() ||
+                levelOrdinal < 0 || levelOrdinal >= ObjectLevel.values().length || (type != PUT && type != DELETE)) {
+            segment.addDeadBytes(size);
+            return;
+        }
+        String objectId = decode(payload, PAYLOAD_HEADER_SIZE, idLength);
+        if(type == PUT) {
+            String owner = ownerLength == 0 ? null : decode(payload, PAYLOAD_HEADER_SIZE + idLength, ownerLength);
+            int valueStart = PAYLOAD_HEADER_SIZE + idLength + ownerLength;
+            replace(objectId, new Location(segment, offset, size, valueStart, payload.remaining() - valueStart,
+                    ObjectLevel.values()[levelOrdinal], owner));
+        } else {
+            segment.addDeadBytes(size);
+            replace(objectId, null);
+        }
+    }
+
+    private static String decode(ByteBuffer payload, int start, int length) {
+        ByteBuffer bytes = payload.duplicate();
+        bytes.position(start);
+        bytes.limit(start + length);
+        return UTF_8.decode(bytes).toString();
+    }
+
+    /**
+     * Store the given object, replacing any stored object with the same id. The object is stored at the level it
+     * saves with, without an owner
+     * @param object the object to store
+     * @throws ConversionException if the object cannot be converted to JSON
+     */
+    public void put(CMObject object) throws ConversionException {
+        put(object, null);
+    }
+
+    /**
+     * Store the given object for the given user, replacing any stored object with the same id. The object is stored
+     * at the level it saves with
+     * @param object the object to store
+     * @param owner a stable identifier of the user a user level object belongs to, such as their email, or null. Only a
+     *              one way hash of it is stored
+     * @throws ConversionException if the object cannot be converted to JSON
+     */
+    public void put(CMObject object, String owner) throws ConversionException {
+        put(object, levelOf(object), Owners.key(owner));
+    }
+
+    /**
+     * Store all of the given objects, without an owner
+     * @param objects the objects to store
+     * @throws ConversionException if an object cannot be converted to JSON
+     */
+    public void putAll(Collection<? extends CMObject> objects) throws ConversionException {
+        if(objects == null) {
+            return;
+        }
+        for(CMObject object : objects) {
+            put(object);
+        }
+    }
+
+    private void put(CMObject object, ObjectLevel level, String ownerKey) throws ConversionException {
+        byte[] value = object.transportableRepresentation().getBytes(UTF_8);
+        write(PUT, object.getObjectId(), level, ownerKey, value);
+    }
+
+    private static ObjectLevel levelOf(Savable<?, ?> object) {
+        if(object.isUserLevel()) {
+            return ObjectLevel.USER;
+        }
+        return object.isApplicationLevel() ? ObjectLevel.APPLICATION : ObjectLevel.UNKNOWN;
+    }
+
+    /**
+     * Remove the object with the given id
+     * @param objectId the id of the object to remove
+     * @return true if an object was removed
+     */
+    public boolean remove(String objectId) {
+        if(objectId == null || !index.containsKey(objectId)) {
+            return false;
+        }
+        return write(DELETE, objectId, ObjectLevel.UNKNOWN, null, null);
+    }
+
+    private synchronized boolean write(byte type, String objectId, ObjectLevel level, String owner, byte[] value) {
+        checkOpen();
+        byte[] idBytes = objectId.getBytes(UTF_8);
+        byte[] ownerBytes = owner == null ? new byte[0] : owner.getBytes(UTF_8);
+        if(idBytes.length > MAXIMUM_ID_LENGTH || ownerBytes.length > MAXIMUM_ID_LENGTH) {
+            throw new IllegalArgumentException("Object id or owner is too long to cache: " + objectId);
+        }
+        int valueLength = value == null ? 0 : value.length;
+        int payloadLength = PAYLOAD_HEADER_SIZE + idBytes.length + ownerBytes.length + valueLength;
+        ByteBuffer record = ByteBuffer.allocate(Segment.RECORD_HEADER_SIZE + payloadLength);
+        record.putInt(payloadLength);
+        record.putInt(0);
+        record.put(type);
+        record.put((byte) level.ordinal());
+        record.putShort((short) idBytes.length);
+        record.putShort((short) ownerBytes.length);
+        record.put(idBytes);
+        record.put(ownerBytes);
+        if(value != null) {
+            record.put(value);
+        }
+        record.flip();
+        ByteBuffer payload = record.duplicate();
+        payload.position(Segment.RECORD_HEADER_SIZE);
+        record.putInt(4, Segment.checksum(crc, payload));
+
+        Location location;
+        try {
+            location = append(record);
+        } catch(IOException e) {
+            LOG.error("Unable to write " + objectId + " to the cache, dropping it", e);
+            replace(objectId, null);
+            return false;
+        }
+        if(options.isSyncOnWrite()) {
+            location.segment.force();
+        }
+        if(type == PUT) {
+            replace(objectId, new Location(location.segment, location.offset, location.size,
+                    PAYLOAD_HEADER_SIZE + idBytes.length + ownerBytes.length, valueLength, level, owner));
+        } else {
+            location.segment.addDeadBytes(location.size);
+            replace(objectId, null);
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Append a complete record to the active segment, starting a new segment if it does not fit
+     * @return where the record was written
+     */
+    private Location append(ByteBuffer record) throws IOException {
+        int size = record.remaining();
+        if(!active.hasRoomFor(size)) {
+            active.force();
+            active = Segment.create(directory, active.getId() + 1,
+                    Math.max(options.getSegmentSize(), Segment.FILE_HEADER_SIZE + size));
+            segments.add(active);
+        }
+        int offset = active.append(record);
+        return new Location(active, offset, size, 0, 0, ObjectLevel.UNKNOWN, null);
+    }
+
+    /**
+     * Point the index at the new location of an object, marking its previous location as dead
+     */
+    private void replace(String objectId, Location location) {
+        Location previous = location == null ? index.remove(objectId) : index.put(objectId, location);
+        if(previous != null) {
+            previous.segment.addDeadBytes(previous.size);
+        }
+    }
+
+    private void compactIfNeeded() {
+        long used = 0;
+        long dead = 0;
+        for(Segment segment : segments) {
+            if(segment != active) {
+                used += segment.getUsedBytes();
+                dead += segment.getDeadBytes();
+            }
+        }
+        if(dead > used * options.getCompactionThreshold()) {
+            compact();
+        }
+    }
+
+    /**
+     * Copy the live objects out of every full segment and delete those segments, reclaiming the space used by
+     * overwritten and removed objects. This is done automatically when the dead space passes the
+     * {@link CMPersistentCacheOptions#setCompactionThreshold(double) compaction threshold}. The copies are forced to
+     * disk before any segment is deleted, so a crash during compaction loses nothing
+     */
+    public synchronized void compact() {
+        checkOpen();
+        List<Segment> full = new ArrayList<Segment>(segments);
+        full.remove(active);
+        if(full.isEmpty()) {
+            return;
+        }
+        Set<Segment> compacting = new HashSet<Segment>(full);
+        try {
+            for(Map.Entry<String, Location> entry : index.entrySet()) {
+                Location location = entry.getValue();
+                if(compacting.contains(location.segment)) {
+                    Location written = append(location.segment.record(location.offset));
+                    index.put(entry.getKey(), location.movedTo(written.segment, written.offset));
+                }
+            }
+        } catch(IOException e) {
+            LOG.error("Unable to compact the cache in " + directory, e);
+            return;
+        }
+        active.force();
+        //delete oldest first: if a delete fails, every newer segment is kept, so no removed object can come back
+        for(int i = 0; i < full.size(); i++) {
+            Segment segment = full.get(i);
+            if(!segment.delete()) {
+                LOG.warn("Unable to delete compacted cache segment " + segment.getFile());
+                for(Segment kept : full.subList(i, full.size())) {
+                    kept.addDeadBytes(kept.getUsedBytes() - kept.getDeadBytes());
+                }
+                break;
+            }
+            segments.remove(segment);
+        }
+    }
+
+    /**
+     * Get the object with the given id, decoded as specified by {@link CMPersistentCacheOptions#getDecodeOptions()}
+     * @param objectId the id of the object
+     * @return the object, or null if it is not in the cache
+     * @throws ConversionException if the stored JSON cannot be converted to an object
+     */
+    public CMObject get(String objectId) throws ConversionException {
+        String json = getJson(objectId);
+        if(json == null) {
+            return null;
+        }
+        return JsonUtilities.jsonToClassMap(json, options.getDecodeOptions()).get(objectId);
+    }
+
+    /**
+     * Get the object with the given id, if it is of the given class
+     * @param objectId the id of the object
+     * @param klass the class of the object
+     * @return the object, or null if it is not in the cache or is of a different class
+     * @throws ConversionException if the stored JSON cannot be converted to an object
+     */
+    public <CMO extends CMObject> CMO get(String objectId, Class<CMO> klass) throws ConversionException {
+        CMObject object = get(objectId);
+        return klass.isInstance(object) ? klass.cast(object) : null;
+    }
+
+    /**
+     * Get the stored JSON of the object with the given id, without decoding it
+     * @param objectId the id of the object
+     * @return the JSON in the form {"objectId":{contents}}, or null if it is not in the cache
+     */
+    public String getJson(String objectId) {
+        if(objectId == null || closed) {
+            return null;
+        }
+        Location location = index.get(objectId);
+        if(location == null) {
+            return null;
+        }
+        ByteBuffer value = location.segment.payload(
+                location.offset + Segment.RECORD_HEADER_SIZE + location.valueStart, location.valueLength);
+        return UTF_8.decode(value).toString();
+    }
+
+    /**
+     * Get every object in the cache
+     * @return the objects
+     * @throws ConversionException if the stored JSON cannot be converted to an object
+     */
+    public List<CMObject> getAll() throws ConversionException {
+        List<CMObject> objects = new ArrayList<CMObject>(index.size());
+        for(String objectId : index.keySet()) {
+            CMObject object = get(objectId);
+            if(object != null) {
+                objects.add(object);
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Get the level the object with the given id was stored at
+     * @param objectId the id of the object
+     * @return the level, or null if the object is not in the cache
+     */
+    public ObjectLevel getLevel(String objectId) {
+        Location location = objectId == null ? null : index.get(objectId);
+        return location == null ? null : location.level;
+    }
+
+    /**
+     * Check whether the object with the given id was stored for the given user
+     * @param objectId the id of the object
+     * @param owner the identifier of the user, as given to {@link #put(CMObject, String)}
+     * @return true if the object is in the cache and was stored for the user
+     */
+    public boolean isOwnedBy(String objectId, String owner) {
+        Location location = objectId == null ? null : index.get(objectId);
+        return location != null && location.owner != null && location.owner.equals(Owners.key(owner));
+    }
+
+    public boolean contains(String objectId) {
+        return objectId != null && index.containsKey(objectId);
+    }
+
+    /**
+     * Get the ids of the cached objects. The returned set is a live, unmodifiable view
+     */
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Remove every object and delete every segment
+     */
+    public synchronized void clear() {
+        checkOpen();
+        long nextId = active.getId() + 1;
+        index.clear();
+        for(Segment segment : segments) {
+            if(!segment.delete()) {
+                LOG.warn("Unable to delete cache segment " + segment.getFile());
+            }
+        }
+        segments.clear();
+        try {
+            active = Segment.create(directory, nextId, options.getSegmentSize());
+            segments.add(active);
+        } catch(IOException e) {
+            closed = true;
+            LOG.error("Unable to create a new cache segment in " + directory + "; closing the cache", e);
+        }
+    }
+
+    /**
+     * Force every write made so far to disk
+     */
+    public synchronized void flush() {
+        checkOpen();
+        active.force();
+    }
+
+    /**
+     * Force every write to disk and close the segment files. The cache cannot be used once it is closed; open a new
+     * cache on the same directory to use it again
+     */
+    public synchronized void close() {
+        if(closed) {
+            return;
+        }
+        active.force();
+        closed = true;
+        closeSegments();
+    }
+
+    private void closeSegments() {
+        for(Segment segment : segments) {
+            try {
+                segment.close();
+            } catch(IOException e) {
+                LOG.warn("Unable to close cache segment " + segment.getFile(), e);
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if(closed) {
+            throw new IllegalStateException("The cache in " + directory + " is closed");
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Bring the cached objects up to date after a write to CloudMine: deleted objects are removed, and written objects
+     * that are already cached are replaced. If an object was written without the CMObject being known, such as a raw
+     * JSON update or a file upload, the cached copy is removed rather than kept stale. A user level object cached for
+     * another user is removed rather than replaced with the writer's copy
+     */
+    @Override
+    public void onInvalidation(InvalidationEvent event) {
+        if(closed) {
+            return;
+        }
+        ObjectLevel level = event.getLevel();
+        if(event.isDeletedAll()) {
+            for(Map.Entry<String, Location> entry : index.entrySet()) {
+                if(isOnLevel(entry.getValue(), level)) {
+                    remove(entry.getKey());
+                }
+            }
+            return;
+        }
+        for(String objectId : event.getDeletedIds()) {
+            Location location = index.get(objectId);
+            if(location != null && isOnLevel(location, level)) {
+                remove(objectId);
+            }
+        }
+        Set<String> writtenIds = new HashSet<String>(event.getCreatedIds());
+        writtenIds.addAll(event.getUpdatedIds());
+        for(String objectId : writtenIds) {
+            Location location = index.get(objectId);
+            if(location == null || !isOnLevel(location, level)) {
+                continue;
+            }
+            CMObject written = event.getWrittenObject(objectId);
+            if(written == null || !isOwnedBy(location, Owners.key(event.getOwner()))) {
+                remove(objectId);
+            } else {
+                put(written, level == ObjectLevel.UNKNOWN ? location.level : level, location.owner);
+            }
+        }
+    }
+
+    private static boolean isOnLevel(Location location, ObjectLevel level) {
+        return location.level == level || location.level == ObjectLevel.UNKNOWN || level == ObjectLevel.UNKNOWN;
+    }
+
+    private static boolean isOwnedBy(Location location, String ownerKey) {
+        if(location.owner == null) {
+            return location.level != ObjectLevel.USER || ownerKey == null;
+        }
+        return location.owner.equals(ownerKey);
+    }
+}
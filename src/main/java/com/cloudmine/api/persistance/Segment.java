@@ -0,0 +1,244 @@
+package com.cloudmine.api.persistance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * An append only file of records, mapped into memory. A segment starts with a magic number and version, followed by
+ * records of the form [payload length][CRC32 of payload][payload]. The file is sized up front, so the bytes after the
+ * last record are zero; a length of 0 marks the end of the records. Used by {@link PersistentObjectCache}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+class Segment {
+    static final int MAGIC = 0x434D4F43;
+    static final int VERSION = 3;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".cmc";
+
+    private final long id;
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private long deadBytes;
+
+    /**
+     * Create a new, empty segment
+     */
+    static Segment create(File directory, long id, int size) throws IOException {
+        File file = new File(directory, fileName(id));
+        if(file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace segment " + file);
+        }
+        Segment segment = new Segment(id, file, size);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.writePosition = FILE_HEADER_SIZE;
+        return segment;
+    }
+
+    /**
+     * Open an existing segment. Its records must be read with {@link #recover(RecordVisitor)} before it is used
+     */
+    static Segment open(File file) throws IOException {
+        long id = parseId(file.getName());
+        if(id < 0) {
+            throw new IOException("Not a segment: " + file);
+        }
+        long length = file.length();
+        if(length < FILE_HEADER_SIZE || length > Integer.MAX_VALUE) {
+            throw new IOException("Segment " + file + " has an invalid length of " + length);
+        }
+        Segment segment = new Segment(id, file, (int) length);
+        if(segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != VERSION) {
+            segment.close();
+            throw new IOException("Segment " + file + " has an unrecognized header");
+        }
+        return segment;
+    }
+
+    static String fileName(long id) {
+        return PREFIX + String.format("%010d", id) + SUFFIX;
+    }
+
+    /**
+     * Get the id of the segment with the given file name
+     * @return the id, or -1 if the name is not a segment file name
+     */
+    static long parseId(String fileName) {
+        if(!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Segment(long id, File file, int size) throws IOException {
+        this.id = id;
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch(IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    interface RecordVisitor {
+        /**
+         * Called for each valid record, in the order they were written
+         * @param segment the segment being read
+         * @param offset the offset of the record's header
+         * @param payload a read only view of the record's payload
+         */
+        void visit(Segment segment, int offset, ByteBuffer payload);
+    }
+
+    /**
+     * Read every valid record in this segment and set the write position after the last one. Reading stops at the
+     * first record that is truncated or fails its checksum, as can happen when the process dies in the middle of a
+     * write; that record and anything after it are zeroed so later appends are not mixed with the damaged bytes
+     * @return true if every record was valid
+     */
+    boolean recover(RecordVisitor visitor) {
+        int position = FILE_HEADER_SIZE;
+        int capacity = buffer.capacity();
+        boolean clean = true;
+        CRC32 crc = new CRC32();
+        while(position + RECORD_HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(position);
+            if(length == 0) {
+                break;
+            }
+            if(length < 0 || length > capacity - position - RECORD_HEADER_SIZE) {
+                clean = false;
+                break;
+            }
+            int checksum = buffer.getInt(position + 4);
+            ByteBuffer payload = payload(position + RECORD_HEADER_SIZE, length);
+            if(checksum != checksum(crc, payload.duplicate())) {
+                clean = false;
+                break;
+            }
+            visitor.visit(this, position, payload);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        if(!clean) {
+            for(int i = position; i < capacity; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return clean;
+    }
+
+    static int checksum(CRC32 crc, ByteBuffer payload) {
+        crc.reset();
+        if(payload.hasArray()) {
+            crc.update(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            crc.update(bytes, 0, bytes.length);
+        }
+        return (int) crc.getValue();
+    }
+
+    boolean hasRoomFor(int recordSize) {
+        return recordSize <= buffer.capacity() - writePosition;
+    }
+
+    /**
+     * Append a record. The caller must have checked there is room for it
+     * @param record the complete record, header included
+     * @return the offset the record was written at
+     */
+    int append(ByteBuffer record) {
+        int offset = writePosition;
+        int size = record.remaining();
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset + 4);
+        ByteBuffer rest = record.duplicate();
+        rest.position(rest.position() + 4);
+        target.put(rest);
+        //the length goes in last, so a reader never sees a record whose length is set before its contents are
+        buffer.putInt(offset, record.getInt(record.position()));
+        writePosition = offset + size;
+        return offset;
+    }
+
+    /**
+     * Get a read only view of a complete record, header included
+     */
+    ByteBuffer record(int offset) {
+        int length = buffer.getInt(offset);
+        return slice(offset, RECORD_HEADER_SIZE + length);
+    }
+
+    ByteBuffer payload(int offset, int length) {
+        return slice(offset, length);
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Close the file. The mapping stays valid until it is garbage collected, so readers holding a view of this
+     * segment are not affected
+     */
+    void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    boolean delete() {
+        try {
+            close();
+        } catch(IOException ignored) {
+        }
+        return file.delete();
+    }
+
+    void addDeadBytes(long bytes) {
+        deadBytes += bytes;
+    }
+
+    long getDeadBytes() {
+        return deadBytes;
+    }
+
+    /**
+     * Get the number of bytes used by records, live or dead
+     */
+    long getUsedBytes() {
+        return writePosition - FILE_HEADER_SIZE;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    File getFile() {
+        return file;
+    }
+}
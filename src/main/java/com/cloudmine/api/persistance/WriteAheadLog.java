@@ -0,0 +1,396 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.exceptions.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A durable, append only log of records. Each record is given an increasing sequence number and is written as
+ * [length][CRC32][sequence][payload]. When the log is opened, every complete record is read back, and a damaged or
+ * partially written record at the end, left by a crash, is cut off.<br>
+ * Appends are group committed: when the log syncs on append, each append waits until its record has been forced to
+ * disk, but a single force covers every record written before it, so concurrent appends share one fsync. The log can
+ * be rewritten to hold only the records that are still needed; the rewrite is made in a separate file which then
+ * replaces the log, so a crash leaves either the old or the new log in place. A finished rewrite left without a log,
+ * by a crash or a failed rename, becomes the log the next time it is opened
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class WriteAheadLog {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final int MAGIC = 0x434D574C;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    /** length, checksum and sequence */
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final String REWRITE_SUFFIX = ".rewrite";
+
+    /**
+     * A record read from or written to the log
+     */
+    public static class Record {
+        private final long sequence;
+        private final byte[] payload;
+
+        public Record(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private final File file;
+    private final boolean syncOnAppend;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final List<Record> recoveredRecords;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private long lastSequence;
+    private volatile long writtenSequence;
+    private long syncedSequence;
+    private boolean closed;
+
+    /**
+     * Open the log in the given file, creating it if it does not exist
+     * @param file the file to store the log in
+     * @param syncOnAppend whether {@link #append(byte[])} waits for the record to be forced to disk
+     * @throws CreationException if the file cannot be opened
+     */
+    public WriteAheadLog(File file, boolean syncOnAppend) throws CreationException {
+        this.file = file;
+        this.syncOnAppend = syncOnAppend;
+        File rewrite = rewriteFile();
+        if(rewrite.exists()) {
+            if(!file.exists()) {
+                //the log is only deleted once its rewrite is complete and on disk, so the rewrite replaces it
+                if(!rewrite.renameTo(file)) {
+                    throw new CreationException("Unable to replace missing log " + file + " with " + rewrite);
+                }
+            } else if(!rewrite.delete()) {
+                LOG.warn("Unable to delete unfinished log rewrite " + rewrite);
+            }
+        }
+        try {
+            open();
+            recoveredRecords = Collections.unmodifiableList(recover());
+        } catch(IOException e) {
+            closeQuietly();
+            throw new CreationException("Unable to open log " + file, e);
+        }
+    }
+
+    private void open() throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    private List<Record> recover() throws IOException {
+        List<Record> records = new ArrayList<Record>();
+        long size = channel.size();
+        if(size < FILE_HEADER_SIZE) {
+            writeFileHeader(channel);
+            channel.force(true);
+            return records;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(header, 0);
+        if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Log " + file + " has an unrecognized header");
+        }
+        long position = FILE_HEADER_SIZE;
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while(position + RECORD_HEADER_SIZE <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            int length = recordHeader.getInt(0);
+            if(length < 0 || length > size - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            long sequence = recordHeader.getLong(8);
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_SIZE);
+            if(recordHeader.getInt(4) != checksum(sequence, payload.array())) {
+                break;
+            }
+            records.add(new Record(sequence, payload.array()));
+            lastSequence = Math.max(lastSequence, sequence);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if(position < size) {
+            LOG.warn("Log " + file + " ends with a damaged record; truncating it from " + position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        writtenSequence = lastSequence;
+        syncedSequence = lastSequence;
+        return records;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if(read < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+    }
+
+    private static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        channel.position(0);
+        writeFully(channel, header);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private int checksum(long sequence, byte[] payload) {
+        synchronized(crc) {
+            crc.reset();
+            for(int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int) (sequence >>> shift));
+            }
+            crc.update(payload, 0, payload.length);
+            return (int) crc.getValue();
+        }
+    }
+
+    private ByteBuffer encode(long sequence, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(checksum(sequence, payload));
+        record.putLong(sequence);
+        record.put(payload);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Get the records that were in the log when it was opened, in the order they were written
+     */
+    public List<Record> getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * Append a record to the log. If the log syncs on append, this does not return until the record is on disk
+     * @param payload the contents of the record
+     * @return the sequence number of the record
+     * @throws PersistenceException if the record could not be written
+     */
+    public long append(byte[] payload) throws PersistenceException {
+        long sequence = write(payload);
+        if(syncOnAppend) {
+            sync(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * Append a record to the log without waiting for it to be forced to disk, even if the log syncs on append. Lets a
+     * caller record the sequence number under its own lock, then wait for the record with {@link #sync(long)} once
+     * the lock is released
+     * @param payload the contents of the record
+     * @return the sequence number of the record
+     * @throws PersistenceException if the record could not be written
+     */
+    public long write(byte[] payload) throws PersistenceException {
+        synchronized(writeLock) {
+            checkOpen();
+            long sequence = lastSequence + 1;
+            try {
+                writeFully(channel, encode(sequence, payload));
+            } catch(IOException e) {
+                throw new PersistenceException("Unable to append to log " + file, e);
+            }
+            lastSequence = sequence;
+            writtenSequence = sequence;
+            return sequence;
+        }
+    }
+
+    /**
+     * Force every record appended so far to disk
+     * @throws PersistenceException if the log could not be forced to disk
+     */
+    public void sync() throws PersistenceException {
+        sync(writtenSequence);
+    }
+
+    /**
+     * Force the given record, and every record appended before it, to disk
+     * @param sequence the sequence number of the record
+     * @throws PersistenceException if the log could not be forced to disk
+     */
+    public void sync(long sequence) throws PersistenceException {
+        synchronized(syncLock) {
+            if(syncedSequence >= sequence) {
+                //a force made while we waited already covered this record
+                return;
+            }
+            long target = writtenSequence;
+            try {
+                channel.force(false);
+            } catch(IOException e) {
+                throw new PersistenceException("Unable to sync log " + file, e);
+            }
+            syncedSequence = target;
+        }
+    }
+
+    /**
+     * Replace the contents of the log with the given records, which keep their sequence numbers. Used to drop
+     * records that are no longer needed; every record that was written and is not given is dropped, so callers must
+     * not rewrite while a record they still need is being appended
+     * @param records the records to keep, in order
+     * @throws PersistenceException if the log could not be rewritten; the existing log is kept
+     */
+    public void rewrite(Collection<Record> records) throws PersistenceException {
+        synchronized(writeLock) {
+            synchronized(syncLock) {
+                checkOpen();
+                File rewrite = rewriteFile();
+                try {
+                    RandomAccessFile rewriteFile = new RandomAccessFile(rewrite, "rw");
+                    try {
+                        FileChannel rewriteChannel = rewriteFile.getChannel();
+                        rewriteChannel.truncate(0);
+                        writeFileHeader(rewriteChannel);
+                        for(Record record : records) {
+                            writeFully(rewriteChannel, encode(record.getSequence(), record.getPayload()));
+                        }
+                        rewriteChannel.force(true);
+                    } finally {
+                        rewriteFile.close();
+                    }
+                    randomAccessFile.close();
+                    if(!rewrite.renameTo(file)) {
+                        //some platforms will not rename over an existing file
+                        if(!file.delete() || !rewrite.renameTo(file)) {
+                            throw new IOException("Unable to replace " + file + " with " + rewrite);
+                        }
+                    }
+                } catch(IOException e) {
+                    throw new PersistenceException("Unable to rewrite log " + file, e);
+                } finally {
+                    reopen();
+                }
+                syncedSequence = writtenSequence;
+            }
+        }
+    }
+
+    private void reopen() {
+        try {
+            if(channel.isOpen()) {
+                return;
+            }
+            File rewrite = rewriteFile();
+            if(!file.exists() && rewrite.exists() && !rewrite.renameTo(file)) {
+                //opening would create an empty log; leave the rewrite to replace it when the log is next opened
+                closed = true;
+                LOG.error("Unable to replace " + file + " with " + rewrite + "; closing the log");
+                return;
+            }
+            open();
+            channel.position(channel.size());
+        } catch(IOException e) {
+            closed = true;
+            LOG.error("Unable to reopen log " + file + "; closing it", e);
+        }
+    }
+
+    /**
+     * Whether {@link #append(byte[])} waits for the record to be forced to disk
+     */
+    public boolean isSyncOnAppend() {
+        return syncOnAppend;
+    }
+
+    /**
+     * Get the size of the log file, in bytes
+     */
+    public long getSize() {
+        synchronized(writeLock) {
+            try {
+                return closed ? 0 : channel.size();
+            } catch(IOException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Force the log to disk and close it
+     */
+    public void close() {
+        synchronized(writeLock) {
+            synchronized(syncLock) {
+                if(closed) {
+                    return;
+                }
+                try {
+                    channel.force(false);
+                } catch(IOException e) {
+                    LOG.warn("Unable to sync log " + file, e);
+                }
+                closed = true;
+                closeQuietly();
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        if(randomAccessFile == null) {
+            return;
+        }
+        try {
+            randomAccessFile.close();
+        } catch(IOException e) {
+            LOG.warn("Unable to close log " + file, e);
+        }
+    }
+
+    private void checkOpen() {
+        if(closed) {
+            throw new IllegalStateException("Log " + file + " is closed");
+        }
+    }
+
+    private File rewriteFile() {
+        return new File(file.getPath() + REWRITE_SUFFIX);
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,113 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.rest.CMURLBuilder;
+
+import java.util.List;
+
+/**
+ * A search query that has been checked and prepared once, so it can be sent or evaluated repeatedly without being
+ * rebuilt. A compiled query caches its URL encoded form, used by {@link CMURLBuilder#search(CompiledQuery)}, and the
+ * {@link LocalQuery} it evaluates to. Compiled queries are equal if their queries only differ in whitespace, so they
+ * can be used as keys for caching the results of a search.<br>
+ * Compile queries that don't change with {@link #compile(String)} or {@link com.cloudmine.api.SearchQuery.FilterValue#compile()},
+ * and queries that only differ in their values with a {@link PreparedQuery}. Compiled queries are immutable and thread safe.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CompiledQuery {
+
+    private final String query;
+    private final String normalizedQuery;
+    private volatile String encodedQuery;
+    private volatile LocalQuery localQuery;
+
+    /**
+     * Compile the given search query
+     * @param query the query, in the CloudMine search syntax
+     * @return the compiled query
+     * @throws InvalidRequestException if the query is not valid
+     */
+    public static CompiledQuery compile(String query) throws InvalidRequestException {
+        if(query == null) {
+            throw new InvalidRequestException("Cannot compile a null search");
+        }
+        QueryParser parser = new QueryParser(query);
+        LocalQuery localQuery = new LocalQuery(query, parser.parse());
+        return new CompiledQuery(query, join(parser.normalizedFragments()), null, localQuery);
+    }
+
+    CompiledQuery(String query, String normalizedQuery, String encodedQuery, LocalQuery localQuery) {
+        this.query = query;
+        this.normalizedQuery = normalizedQuery;
+        this.encodedQuery = encodedQuery;
+        this.localQuery = localQuery;
+    }
+
+    /**
+     * Get the query, in the CloudMine search syntax
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Get the query with its whitespace normalized, which identifies the query for caching
+     */
+    public String getNormalizedQuery() {
+        return normalizedQuery;
+    }
+
+    /**
+     * Get the query URL encoded, ready to be added to a URL
+     */
+    public String getEncodedQuery() {
+        String encoded = encodedQuery;
+        if(encoded == null) {
+            encoded = CMURLBuilder.encode(query);
+            encodedQuery = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Get this query as a {@link LocalQuery}, for evaluating against objects on the device. Queries bound from a
+     * {@link PreparedQuery} are only parsed the first time this is called
+     * @return the local query
+     * @throws InvalidRequestException if the query uses syntax that can't be evaluated locally
+     */
+    public LocalQuery toLocalQuery() throws InvalidRequestException {
+        LocalQuery local = localQuery;
+        if(local == null) {
+            local = LocalQuery.parse(query);
+            localQuery = local;
+        }
+        return local;
+    }
+
+    static String join(List<String> fragments) {
+        StringBuilder joined = new StringBuilder();
+        for(String fragment : fragments) {
+            joined.append(fragment);
+        }
+        return joined.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        return normalizedQuery.equals(((CompiledQuery) o).normalizedQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return normalizedQuery.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+}
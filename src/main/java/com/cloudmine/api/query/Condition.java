@@ -0,0 +1,346 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.CMGeoPointInterface;
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.DistanceUnits;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.rest.JsonUtilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A condition inside the brackets of a search query, evaluated against the contents of an object. Values are
+ * compared the way CloudMine compares them: numbers numerically, strings lexicographically, and a property that holds
+ * a list matches if any of its elements does. A missing property is treated as null, so it matches {@code = null} and
+ * {@code != "value"}, and nothing else
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+abstract class Condition {
+    static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KILOMETERS_PER_MILE = 1.609344;
+    private static final double KILOMETERS_PER_FOOT = 0.0003048;
+    private static final String[] LATITUDE_KEYS = {"latitude", "lat", "y"};
+    private static final String[] LONGITUDE_KEYS = {"longitude", "lon", "lng", "x"};
+
+    enum Operator {
+        EQUAL("="), NOT_EQUAL("!="), LESS_THAN("<"), LESS_THAN_OR_EQUAL("<="), GREATER_THAN(">"), GREATER_THAN_OR_EQUAL(">=");
+
+        private final String symbol;
+
+        private Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Operator forSymbol(String symbol) {
+            if("==".equals(symbol)) {
+                return EQUAL;
+            }
+            for(Operator operator : values()) {
+                if(operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    abstract boolean matches(Map<String, Object> contents);
+
+    static class And extends Condition {
+        final List<Condition> conditions;
+
+        And(List<Condition> conditions) {
+            this.conditions = Collections.unmodifiableList(new ArrayList<Condition>(conditions));
+        }
+
+        @Override
+        boolean matches(Map<String, Object> contents) {
+            for(Condition condition : conditions) {
+                if(!condition.matches(contents)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static class Or extends Condition {
+        final List<Condition> conditions;
+
+        Or(List<Condition> conditions) {
+            this.conditions = Collections.unmodifiableList(new ArrayList<Condition>(conditions));
+        }
+
+        @Override
+        boolean matches(Map<String, Object> contents) {
+            for(Condition condition : conditions) {
+                if(condition.matches(contents)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Comparison extends Condition {
+        final List<String> path;
+        final Operator operator;
+        final Object value;
+
+        Comparison(List<String> path, Operator operator, Object value) {
+            this.path = path;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        boolean matches(Map<String, Object> contents) {
+            List<Object> found = resolve(contents, path);
+            if(operator == Operator.NOT_EQUAL) {
+                for(Object candidate : found) {
+                    if(isEqual(candidate, value)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            for(Object candidate : found) {
+                if(compare(candidate)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean compare(Object candidate) {
+            if(operator == Operator.EQUAL) {
+                return isEqual(candidate, value);
+            }
+            int comparison;
+            if(candidate instanceof Number && value instanceof Number) {
+                comparison = Double.compare(((Number) candidate).doubleValue(), ((Number) value).doubleValue());
+            } else if(candidate instanceof String && value instanceof String) {
+                comparison = ((String) candidate).compareTo((String) value);
+            } else {
+                return false;
+            }
+            switch(operator) {
+                case LESS_THAN:
+                    return comparison < 0;
+                case LESS_THAN_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER_THAN:
+                    return comparison > 0;
+                case GREATER_THAN_OR_EQUAL:
+                    return comparison >= 0;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    static class In extends Condition {
+        final List<String> path;
+        final List<Object> values;
+
+        In(List<String> path, List<Object> values) {
+            this.path = path;
+            this.values = Collections.unmodifiableList(new ArrayList<Object>(values));
+        }
+
+        @Override
+        boolean matches(Map<String, Object> contents) {
+            for(Object candidate : resolve(contents, path)) {
+                for(Object value : values) {
+                    if(isEqual(candidate, value)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    static class Near extends Condition {
+        final List<String> path;
+        final double longitude;
+        final double latitude;
+        //in kilometers; negative if unlimited
+        final double maximumDistance;
+
+        Near(List<String> path, double longitude, double latitude, double distance, DistanceUnits units) {
+            this.path = path;
+            this.longitude = longitude;
+            this.latitude = latitude;
+            this.maximumDistance = distance < 0 ? -1 : toKilometers(distance, units);
+        }
+
+        @Override
+        boolean matches(Map<String, Object> contents) {
+            double distance = distanceFrom(contents);
+            return !Double.isInfinite(distance) && (maximumDistance < 0 || distance <= maximumDistance);
+        }
+
+        /**
+         * Get the distance in kilometers from the point to the nearest geopoint in the property, or infinity if the
+         * property does not hold a geopoint
+         */
+        double distanceFrom(Map<String, Object> contents) {
+            double nearest = Double.POSITIVE_INFINITY;
+            for(Object candidate : resolve(contents, path)) {
+                double[] point = asPoint(candidate);
+                if(point != null) {
+                    nearest = Math.min(nearest, haversine(latitude, longitude, point[0], point[1]));
+                }
+            }
+            return nearest;
+        }
+    }
+
+    /**
+     * Convert a distance in the given units to kilometers
+     */
+    static double toKilometers(double distance, DistanceUnits units) {
+        switch(units == null ? DistanceUnits.km : units) {
+            case m:
+                return distance / 1000;
+            case mi:
+                return distance * KILOMETERS_PER_MILE;
+            case ft:
+                return distance * KILOMETERS_PER_FOOT;
+            default:
+                return distance;
+        }
+    }
+
+    /**
+     * Convert a distance in kilometers to the given units
+     */
+    static double fromKilometers(double kilometers, DistanceUnits units) {
+        switch(units == null ? DistanceUnits.km : units) {
+            case m:
+                return kilometers * 1000;
+            case mi:
+                return kilometers / KILOMETERS_PER_MILE;
+            case ft:
+                return kilometers / KILOMETERS_PER_FOOT;
+            default:
+                return kilometers;
+        }
+    }
+
+    /**
+     * Get the great circle distance in kilometers between two points
+     */
+    static double haversine(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDelta = Math.toRadians(latitude2 - latitude1);
+        double longitudeDelta = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2) +
+                Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) *
+                Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Get the latitude and longitude of a geopoint value, or null if it is not one
+     */
+    static double[] asPoint(Object value) {
+        if(value instanceof CMGeoPointInterface) {
+            CMGeoPointInterface point = (CMGeoPointInterface) value;
+            return new double[] {point.getLatitude(), point.getLongitude()};
+        }
+        Map<String, Object> map = asMap(value);
+        if(map == null) {
+            return null;
+        }
+        Number latitude = firstNumber(map, LATITUDE_KEYS);
+        Number longitude = firstNumber(map, LONGITUDE_KEYS);
+        return latitude == null || longitude == null ? null : new double[] {latitude.doubleValue(), longitude.doubleValue()};
+    }
+
+    private static Number firstNumber(Map<String, Object> map, String[] keys) {
+        for(String key : keys) {
+            Object value = map.get(key);
+            if(value instanceof Number) {
+                return (Number) value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the contents of an object value as a Map, or null if it is a plain value
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asMap(Object value) {
+        if(value instanceof Map) {
+            return (Map<String, Object>) value;
+        }
+        if(value instanceof SimpleCMObject) {
+            Object contents = ((SimpleCMObject) value).getValue();
+            return contents instanceof Map ? (Map<String, Object>) contents : null;
+        }
+        if(value instanceof CMObject) {
+            CMObject object = (CMObject) value;
+            try {
+                Object contents = JsonUtilities.jsonToMap(object).get(object.getObjectId());
+                return contents instanceof Map ? (Map<String, Object>) contents : null;
+            } catch (ConversionException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get every value at the given path, descending into the elements of any lists along the way. If nothing is
+     * found, the result is a single null
+     */
+    static List<Object> resolve(Map<String, Object> contents, List<String> path) {
+        List<Object> found = new ArrayList<Object>();
+        resolve(contents, path, 0, found);
+        if(found.isEmpty()) {
+            found.add(null);
+        }
+        return found;
+    }
+
+    private static void resolve(Object current, List<String> path, int index, List<Object> found) {
+        if(current instanceof Collection) {
+            for(Object element : (Collection<?>) current) {
+                resolve(element, path, index, found);
+            }
+            return;
+        }
+        if(index == path.size()) {
+            found.add(current);
+            return;
+        }
+        Map<String, Object> map = asMap(current);
+        if(map != null && map.containsKey(path.get(index))) {
+            resolve(map.get(path.get(index)), path, index + 1, found);
+        }
+    }
+
+    static boolean isEqual(Object candidate, Object value) {
+        if(candidate == null || value == null) {
+            return candidate == value;
+        }
+        if(candidate instanceof Number && value instanceof Number) {
+            return ((Number) candidate).doubleValue() == ((Number) value).doubleValue();
+        }
+        return candidate.equals(value);
+    }
+}
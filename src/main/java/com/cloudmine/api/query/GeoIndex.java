@@ -0,0 +1,278 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.CMGeoPointInterface;
+import com.cloudmine.api.Distance;
+import com.cloudmine.api.DistanceUnits;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial index over a geopoint property, for finding the objects nearest to a point, or within a distance of it,
+ * without measuring the distance to every object. Points are bucketed into a grid of latitude and longitude cells, so
+ * a query only examines the cells around the point. Distances are great circle distances, as CloudMine measures them
+ * for {@code near} searches
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class GeoIndex extends ObjectIndex {
+    /** The default size of a grid cell, about 11km along a meridian */
+    public static final double DEFAULT_CELL_DEGREES = 0.1;
+
+    /**
+     * An indexed object, and its distance from the point a query was made for
+     */
+    public static class Neighbor {
+        private final String objectId;
+        private final double kilometers;
+        private final Distance distance;
+
+        Neighbor(String objectId, double kilometers, DistanceUnits units) {
+            this.objectId = objectId;
+            this.kilometers = kilometers;
+            this.distance = new Distance(Condition.fromKilometers(kilometers, units), units);
+        }
+
+        public String getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * Get the distance from the query point, in the units the query was made with
+         */
+        public Distance getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return objectId + ": " + distance;
+        }
+    }
+
+    private static class Point {
+        private final String objectId;
+        private final double latitude;
+        private final double longitude;
+
+        private Point(String objectId, double latitude, double longitude) {
+            this.objectId = objectId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    private static final Comparator<Neighbor> NEAREST_FIRST = new Comparator<Neighbor>() {
+        @Override
+        public int compare(Neighbor first, Neighbor second) {
+            return Double.compare(first.kilometers, second.kilometers);
+        }
+    };
+
+    private final double cellDegrees;
+    private final int latitudeCells;
+    private final int longitudeCells;
+    private final Map<Long, List<Point>> pointsByCell = new HashMap<Long, List<Point>>();
+
+    GeoIndex(String path, double cellDegrees) throws InvalidRequestException {
+        super(path);
+        if(!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new InvalidRequestException("Cell size must be more than 0 and at most 90 degrees, not " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+        this.latitudeCells = (int) Math.ceil(180 / cellDegrees) + 1;
+        this.longitudeCells = (int) Math.ceil(360 / cellDegrees);
+    }
+
+    /**
+     * Get the indexed objects nearest to the given point, nearest first
+     * @param point the point
+     * @param count the maximum number of objects to return
+     * @param units the units to give distances in
+     * @return up to count objects, with their distances from the point
+     */
+    public synchronized List<Neighbor> getNearest(CMGeoPointInterface point, int count, DistanceUnits units) {
+        if(point == null || count <= 0 || pointsByCell.isEmpty()) {
+            return Collections.emptyList();
+        }
+        //widen rings of cells around the point until they hold enough objects; the farthest of those bounds the search
+        int centerLatitude = latitudeCell(point.getLatitude());
+        int centerLongitude = longitudeCell(point.getLongitude());
+        List<List<Point>> ringCells = new ArrayList<List<Point>>();
+        int found = 0;
+        int visited = 0;
+        List<Neighbor> candidates = null;
+        for(int ring = 0; found < count; ring++) {
+            if(visited >= pointsByCell.size() || 2 * ring + 1 >= longitudeCells) {
+                //the rings would examine more cells than are occupied
+                candidates = measure(point, pointsByCell.values(), Double.POSITIVE_INFINITY, units);
+                break;
+            }
+            for(int latitude = centerLatitude - ring; latitude <= centerLatitude + ring; latitude++) {
+                if(latitude < 0 || latitude >= latitudeCells) {
+                    continue;
+                }
+                //the top and bottom rows of the ring are whole; the rows between only have their ends in the ring
+                boolean edge = Math.abs(latitude - centerLatitude) == ring;
+                int step = edge ? 1 : 2 * ring;
+                for(int longitude = centerLongitude - ring; longitude <= centerLongitude + ring; longitude += step) {
+                    visited++;
+                    List<Point> points = pointsByCell.get(cellKey(latitude, longitude));
+                    if(points != null) {
+                        ringCells.add(points);
+                        found += points.size();
+                    }
+                }
+            }
+        }
+        if(candidates == null) {
+            candidates = measure(point, ringCells, Double.POSITIVE_INFINITY, units);
+            if(candidates.size() >= count) {
+                //objects in cells outside the rings may still be nearer than the farthest candidate
+                candidates = withinKilometers(point, candidates.get(count - 1).kilometers, units);
+            } else {
+                candidates = measure(point, pointsByCell.values(), Double.POSITIVE_INFINITY, units);
+            }
+        }
+        return candidates.size() > count ? new ArrayList<Neighbor>(candidates.subList(0, count)) : candidates;
+    }
+
+    /**
+     * Get the indexed objects within the given distance of the given point, nearest first
+     * @param point the point
+     * @param radius the distance; results are given in its units
+     * @return the objects, with their distances from the point
+     */
+    public synchronized List<Neighbor> getWithin(CMGeoPointInterface point, Distance radius) {
+        if(point == null || radius == null || pointsByCell.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return withinKilometers(point, Condition.toKilometers(radius.getMeasurement(), radius.getUnits()), radius.getUnits());
+    }
+
+    private List<Neighbor> withinKilometers(CMGeoPointInterface point, double kilometers, DistanceUnits units) {
+        double angle = kilometers / Condition.EARTH_RADIUS_KM;
+        double latitudeSpan = Math.toDegrees(angle);
+        double minimumLatitude = point.getLatitude() - latitudeSpan;
+        double maximumLatitude = point.getLatitude() + latitudeSpan;
+        int longitudeSteps;
+        int firstLongitude;
+        if(minimumLatitude <= -90 || maximumLatitude >= 90 || angle >= Math.PI / 2) {
+            //the circle contains a pole, so it spans every longitude
+            longitudeSteps = longitudeCells;
+            firstLongitude = 0;
+        } else {
+            double longitudeSpan = Math.toDegrees(Math.asin(Math.min(1, Math.sin(angle) / Math.cos(Math.toRadians(point.getLatitude())))));
+            firstLongitude = longitudeCell(point.getLongitude() - longitudeSpan);
+            int lastLongitude = longitudeCell(point.getLongitude() + longitudeSpan);
+            longitudeSteps = Math.min(longitudeCells, wrap(lastLongitude - firstLongitude, longitudeCells) + 1);
+        }
+        int firstLatitude = latitudeCell(Math.max(-90, minimumLatitude));
+        int lastLatitude = latitudeCell(Math.min(90, maximumLatitude));
+        List<Neighbor> neighbors;
+        if((long) (lastLatitude - firstLatitude + 1) * longitudeSteps > pointsByCell.size()) {
+            neighbors = measure(point, pointsByCell.values(), kilometers, units);
+        } else {
+            List<List<Point>> cells = new ArrayList<List<Point>>();
+            for(int latitude = firstLatitude; latitude <= lastLatitude; latitude++) {
+                for(int step = 0; step < longitudeSteps; step++) {
+                    List<Point> points = pointsByCell.get(cellKey(latitude, firstLongitude + step));
+                    if(points != null) {
+                        cells.add(points);
+                    }
+                }
+            }
+            neighbors = measure(point, cells, kilometers, units);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Measure the distance to each object in the given cells, keeping the nearest point of objects with several
+     * @return the objects within the maximum distance, nearest first
+     */
+    private static List<Neighbor> measure(CMGeoPointInterface point, Collection<List<Point>> cells, double maximumKilometers, DistanceUnits units) {
+        Map<String, Neighbor> nearest = new HashMap<String, Neighbor>();
+        for(List<Point> points : cells) {
+            for(Point indexed : points) {
+                double kilometers = Condition.haversine(point.getLatitude(), point.getLongitude(), indexed.latitude, indexed.longitude);
+                Neighbor previous = nearest.get(indexed.objectId);
+                if(kilometers <= maximumKilometers && (previous == null || kilometers < previous.kilometers)) {
+                    nearest.put(indexed.objectId, new Neighbor(indexed.objectId, kilometers, units));
+                }
+            }
+        }
+        List<Neighbor> neighbors = new ArrayList<Neighbor>(nearest.values());
+        Collections.sort(neighbors, NEAREST_FIRST);
+        return neighbors;
+    }
+
+    private int latitudeCell(double latitude) {
+        return (int) Math.floor((latitude + 90) / cellDegrees);
+    }
+
+    private int longitudeCell(double longitude) {
+        return wrap((int) Math.floor((longitude + 180) / cellDegrees), longitudeCells);
+    }
+
+    private long cellKey(int latitudeCell, int longitudeCell) {
+        return (long) latitudeCell * longitudeCells + wrap(longitudeCell, longitudeCells);
+    }
+
+    private static int wrap(int value, int modulus) {
+        int wrapped = value % modulus;
+        return wrapped < 0 ? wrapped + modulus : wrapped;
+    }
+
+    @Override
+    Object keyFor(Object value) {
+        double[] point = Condition.asPoint(value);
+        if(point == null || Double.isNaN(point[0]) || Double.isNaN(point[1]) || Math.abs(point[0]) > 90) {
+            return NOT_INDEXED;
+        }
+        return point;
+    }
+
+    @Override
+    void index(Object key, String objectId) {
+        double[] point = (double[]) key;
+        long cell = cellKey(latitudeCell(point[0]), longitudeCell(point[1]));
+        List<Point> points = pointsByCell.get(cell);
+        if(points == null) {
+            points = new ArrayList<Point>(2);
+            pointsByCell.put(cell, points);
+        }
+        points.add(new Point(objectId, point[0], point[1]));
+    }
+
+    @Override
+    void unindex(Object key, String objectId) {
+        double[] point = (double[]) key;
+        long cell = cellKey(latitudeCell(point[0]), longitudeCell(point[1]));
+        List<Point> points = pointsByCell.get(cell);
+        if(points == null) {
+            return;
+        }
+        for(int i = 0; i < points.size(); i++) {
+            if(points.get(i).objectId.equals(objectId)) {
+                points.remove(i);
+                break;
+            }
+        }
+        if(points.isEmpty()) {
+            pointsByCell.remove(cell);
+        }
+    }
+
+    @Override
+    void clearKeys() {
+        pointsByCell.clear();
+    }
+}
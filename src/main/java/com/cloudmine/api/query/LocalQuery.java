@@ -0,0 +1,194 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.rest.JsonUtilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A search query that is evaluated on the device, against objects that have already been loaded, instead of by
+ * CloudMine. Queries use the same syntax as the searches sent to CloudMine, and can be built with
+ * {@link com.cloudmine.api.SearchQuery}: filters such as {@code [name = "value", age > 21]}, combined with
+ * {@code ,} (and) or {@code or}; {@code in} lists; {@code near} with an optional distance; and filters on subobjects,
+ * such as {@code location.address[city = "Philadelphia"]} or {@code [__class__ = "Venue"].location[open = true]}.<br>
+ * Parse a query once and reuse it; a parsed LocalQuery is immutable and thread safe.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class LocalQuery {
+
+    /**
+     * One part of a query: a path to a subobject, and the filter that subobject must match
+     */
+    static class Segment {
+        final List<String> path;
+        //null if the segment only selects a subobject
+        final Condition filter;
+
+        Segment(List<String> path, Condition filter) {
+            this.path = path;
+            this.filter = filter;
+        }
+    }
+
+    private final String query;
+    private final List<Segment> segments;
+
+    /**
+     * Parse the given search query
+     * @param query the query, in the CloudMine search syntax
+     * @return the parsed query
+     * @throws InvalidRequestException if the query is not valid, or uses syntax that can't be evaluated locally
+     */
+    public static LocalQuery parse(String query) throws InvalidRequestException {
+        if(query == null) {
+            throw new InvalidRequestException("Cannot parse a null search");
+        }
+        return new LocalQuery(query, new QueryParser(query).parse());
+    }
+
+    LocalQuery(String query, List<Segment> segments) {
+        this.query = query;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Check whether the given object matches this query
+     * @param object the object
+     * @return true if it matches
+     */
+    public boolean matches(CMObject object) {
+        return object != null && matches(Condition.asMap(object));
+    }
+
+    /**
+     * Check whether an object with the given contents matches this query
+     * @param contents the object's properties, as decoded from its JSON
+     * @return true if it matches
+     */
+    public boolean matches(Map<String, Object> contents) {
+        return contents != null && matches(contents, 0, 0);
+    }
+
+    private boolean matches(Object current, int segmentIndex, int pathIndex) {
+        if(current instanceof Collection) {
+            for(Object element : (Collection<?>) current) {
+                if(matches(element, segmentIndex, pathIndex)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        Segment segment = segments.get(segmentIndex);
+        if(pathIndex < segment.path.size()) {
+            Map<String, Object> map = Condition.asMap(current);
+            Object child = map == null ? null : map.get(segment.path.get(pathIndex));
+            return child != null && matches(child, segmentIndex, pathIndex + 1);
+        }
+        if(segment.filter != null) {
+            Map<String, Object> map = Condition.asMap(current);
+            if(map == null || !segment.filter.matches(map)) {
+                return false;
+            }
+        }
+        return segmentIndex + 1 == segments.size() || matches(current, segmentIndex + 1, 0);
+    }
+
+    /**
+     * Get the objects that match this query. If the query has a top level {@code near} filter, the matches are ordered
+     * nearest first, as CloudMine orders them; otherwise they are in the order given
+     * @param objects the objects to search
+     * @return the matching objects
+     */
+    public <CMO extends CMObject> List<CMO> filter(Collection<CMO> objects) {
+        List<CMO> matches = new ArrayList<CMO>();
+        final Condition.Near near = topLevelNear();
+        final List<Double> distances = near == null ? null : new ArrayList<Double>();
+        for(CMO object : objects) {
+            Map<String, Object> contents = object == null ? null : Condition.asMap(object);
+            if(matches(contents)) {
+                matches.add(object);
+                if(near != null) {
+                    distances.add(near.distanceFrom(contents));
+                }
+            }
+        }
+        if(near == null) {
+            return matches;
+        }
+        List<Integer> order = new ArrayList<Integer>(matches.size());
+        for(int i = 0; i < matches.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(distances.get(first), distances.get(second));
+            }
+        });
+        List<CMO> sorted = new ArrayList<CMO>(matches.size());
+        for(Integer position : order) {
+            sorted.add(matches.get(position));
+        }
+        return sorted;
+    }
+
+    private Condition.Near topLevelNear() {
+        for(Condition condition : topLevelConditions()) {
+            if(condition instanceof Condition.Near) {
+                return (Condition.Near) condition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the conditions that every match must meet on its own properties
+     */
+    private List<Condition> topLevelConditions() {
+        Segment first = segments.get(0);
+        if(!first.path.isEmpty() || first.filter == null) {
+            return Collections.emptyList();
+        }
+        if(first.filter instanceof Condition.And) {
+            return ((Condition.And) first.filter).conditions;
+        }
+        return Collections.singletonList(first.filter);
+    }
+
+    /**
+     * Get the class this query is restricted to, if every match must have a {@code __class__} equal to one value
+     * @return the class name, or null if the query is not restricted to a single class
+     */
+    public String getClassName() {
+        for(Condition condition : topLevelConditions()) {
+            if(condition instanceof Condition.Comparison) {
+                Condition.Comparison comparison = (Condition.Comparison) condition;
+                if(comparison.operator == Condition.Operator.EQUAL && comparison.value instanceof String &&
+                        comparison.path.size() == 1 && JsonUtilities.CLASS_KEY.equals(comparison.path.get(0))) {
+                    return (String) comparison.value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the query this was parsed from
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+}
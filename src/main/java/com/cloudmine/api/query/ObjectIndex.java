@@ -0,0 +1,187 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.rest.JsonUtilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over a property of a set of objects, so objects can be looked up by the property's value without
+ * examining every object. Paths name a top level property, or a property of a subobject separated by dots, such as
+ * {@code address.city}; if a property along the path holds a list, each element is indexed. Values are compared the
+ * way {@link LocalQuery} compares them, so {@code 4} and {@code 4.0} are the same value.<br>
+ * An index only sees objects as they were when they were added, so an object that is changed must be added again.
+ * Indexes are thread safe.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public abstract class ObjectIndex {
+
+    /**
+     * Create an index on the class of the objects, as set by {@link CMObject#getClassName()}
+     * @return an index for {@link ValueIndex#getIds(Object)} lookups by class name
+     */
+    public static ValueIndex onClass() {
+        return new ValueIndex(JsonUtilities.CLASS_KEY);
+    }
+
+    /**
+     * Create a hash index on the given property, for lookups of objects with a given value
+     * @param path the property
+     * @return the index
+     * @throws InvalidRequestException if the path is empty
+     */
+    public static ValueIndex onValue(String path) throws InvalidRequestException {
+        return new ValueIndex(path);
+    }
+
+    /**
+     * Create a sorted index on the given numeric or date property, for lookups of objects with values in a range
+     * @param path the property
+     * @return the index
+     * @throws InvalidRequestException if the path is empty
+     */
+    public static RangeIndex onRange(String path) throws InvalidRequestException {
+        return new RangeIndex(path);
+    }
+
+    /**
+     * Create a spatial index on the given geopoint property, for lookups of the objects nearest to a point
+     * @param path the property
+     * @return the index
+     * @throws InvalidRequestException if the path is empty
+     */
+    public static GeoIndex onLocation(String path) throws InvalidRequestException {
+        return new GeoIndex(path, GeoIndex.DEFAULT_CELL_DEGREES);
+    }
+
+    /**
+     * Create a spatial index on the given geopoint property, with grid cells of the given size. Cells about the size
+     * of a typical query radius work best
+     * @param path the property
+     * @param cellDegrees the size of a grid cell, in degrees of latitude and longitude
+     * @return the index
+     * @throws InvalidRequestException if the path is empty, or the cell size is not more than 0 and at most 90
+     */
+    public static GeoIndex onLocation(String path, double cellDegrees) throws InvalidRequestException {
+        return new GeoIndex(path, cellDegrees);
+    }
+
+    private final String path;
+    private final List<String> pathElements;
+    //the keys each object was indexed under, so it can be removed without being examined again
+    private final Map<String, Object[]> keysById = new HashMap<String, Object[]>();
+
+    ObjectIndex(String path) throws InvalidRequestException {
+        if(path == null || path.length() == 0) {
+            throw new InvalidRequestException("Cannot index an empty path");
+        }
+        this.path = path;
+        this.pathElements = Collections.unmodifiableList(Arrays.asList(path.split("\\.")));
+    }
+
+    /**
+     * Convert a property value to the key it is indexed under
+     * @return the key, or NOT_INDEXED if the value can't be indexed
+     */
+    abstract Object keyFor(Object value);
+
+    abstract void index(Object key, String objectId);
+
+    abstract void unindex(Object key, String objectId);
+
+    abstract void clearKeys();
+
+    static final Object NOT_INDEXED = new Object();
+
+    /**
+     * Index the given object, replacing any object previously indexed with the same id
+     * @param object the object
+     */
+    public synchronized void add(CMObject object) {
+        if(object == null || object.getObjectId() == null) {
+            return;
+        }
+        String objectId = object.getObjectId();
+        remove(objectId);
+        Map<String, Object> contents = Condition.asMap(object);
+        if(contents == null) {
+            return;
+        }
+        List<Object> keys = new ArrayList<Object>();
+        for(Object value : Condition.resolve(contents, pathElements)) {
+            Object key = keyFor(value);
+            if(key != NOT_INDEXED && !keys.contains(key)) {
+                keys.add(key);
+                index(key, objectId);
+            }
+        }
+        keysById.put(objectId, keys.toArray());
+    }
+
+    /**
+     * Remove the object with the given id from the index
+     * @param objectId the id of the object
+     */
+    public synchronized void remove(String objectId) {
+        Object[] keys = keysById.remove(objectId);
+        if(keys != null) {
+            for(Object key : keys) {
+                unindex(key, objectId);
+            }
+        }
+    }
+
+    /**
+     * Remove every object from the index
+     */
+    public synchronized void clear() {
+        keysById.clear();
+        clearKeys();
+    }
+
+    /**
+     * Get the number of objects in the index
+     */
+    public synchronized int size() {
+        return keysById.size();
+    }
+
+    /**
+     * Get the path of the indexed property
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Convert a date, or a date as encoded in CloudMine JSON, to milliseconds since the epoch
+     * @return the time, or null if the value is not a date
+     */
+    static Long dateMillis(Object value) {
+        if(value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if(value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Object timestamp = map.get(JsonUtilities.TIME_KEY);
+            if(JsonUtilities.DATE_CLASS.equals(map.get(JsonUtilities.CLASS_KEY)) && timestamp instanceof Number) {
+                return (long) (((Number) timestamp).doubleValue() * 1000);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + path + "]";
+    }
+}
@@ -0,0 +1,146 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.rest.CMURLBuilder;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A search query template with {@code ?} parameters in place of its values, such as
+ * {@code [__class__ = "Venue", rating >= ?]}, that is checked and URL encoded once. Binding values to the parameters
+ * produces a {@link CompiledQuery}, only encoding the values themselves, so a search that is made repeatedly with
+ * different values is never rebuilt or reparsed. Bound strings are quoted and escaped, so they can't change the
+ * structure of the query.<br>
+ * Parameters can stand in for any value compared against, including the values of an {@code in} list, but not for
+ * property names or the point and distance of a {@code near} filter. Prepared queries are immutable and thread safe.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class PreparedQuery {
+
+    private final String template;
+    //the template split at each parameter, as written, URL encoded, and normalized
+    private final String[] fragments;
+    private final String[] encodedFragments;
+    private final String[] normalizedFragments;
+
+    /**
+     * Prepare the given search query template
+     * @param template the query, in the CloudMine search syntax, with {@code ?} in place of each parameter
+     * @return the prepared query
+     * @throws InvalidRequestException if the template is not valid, or has a parameter where a value can't be
+     */
+    public static PreparedQuery prepare(String template) throws InvalidRequestException {
+        if(template == null) {
+            throw new InvalidRequestException("Cannot prepare a null search");
+        }
+        QueryParser parser = new QueryParser(template, true);
+        parser.parse();
+        List<Integer> positions = parser.getParameterPositions();
+        String[] fragments = new String[positions.size() + 1];
+        int start = 0;
+        for(int i = 0; i < positions.size(); i++) {
+            fragments[i] = template.substring(start, positions.get(i));
+            start = positions.get(i) + 1;
+        }
+        fragments[positions.size()] = template.substring(start);
+        return new PreparedQuery(template, fragments, parser.normalizedFragments());
+    }
+
+    private PreparedQuery(String template, String[] fragments, List<String> normalizedFragments) {
+        this.template = template;
+        this.fragments = fragments;
+        this.encodedFragments = new String[fragments.length];
+        for(int i = 0; i < fragments.length; i++) {
+            encodedFragments[i] = CMURLBuilder.encode(fragments[i]);
+        }
+        this.normalizedFragments = normalizedFragments.toArray(new String[normalizedFragments.size()]);
+    }
+
+    /**
+     * Bind values to the parameters, in order
+     * @param values a String, Number, Boolean, or null for each parameter
+     * @return the compiled query
+     * @throws InvalidRequestException if the wrong number of values is given, or a value is of a type that can't be
+     * searched for
+     */
+    public CompiledQuery bind(Object... values) throws InvalidRequestException {
+        int count = getParameterCount();
+        if(values == null) {
+            values = new Object[] {null};
+        }
+        if(values.length != count) {
+            throw new InvalidRequestException("Search takes " + count + " parameters but was given " + values.length + ": " + template);
+        }
+        if(count == 0) {
+            return new CompiledQuery(template, normalizedFragments[0], encodedFragments[0], null);
+        }
+        StringBuilder query = new StringBuilder(template.length() + 16 * count);
+        StringBuilder encoded = new StringBuilder(template.length() + 32 * count);
+        StringBuilder normalized = new StringBuilder(template.length() + 16 * count);
+        for(int i = 0; i < count; i++) {
+            String literal = literal(values[i]);
+            query.append(fragments[i]).append(literal);
+            encoded.append(encodedFragments[i]).append(CMURLBuilder.encode(literal));
+            normalized.append(normalizedFragments[i]).append(literal);
+        }
+        query.append(fragments[count]);
+        encoded.append(encodedFragments[count]);
+        normalized.append(normalizedFragments[count]);
+        return new CompiledQuery(query.toString(), normalized.toString(), encoded.toString(), null);
+    }
+
+    /**
+     * Get the number of parameters in the template
+     */
+    public int getParameterCount() {
+        return fragments.length - 1;
+    }
+
+    /**
+     * Get the template this was prepared from
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Convert a value to how it is written in the search syntax
+     */
+    static String literal(Object value) throws InvalidRequestException {
+        if(value == null) {
+            return "null";
+        }
+        if(value instanceof String) {
+            String string = (String) value;
+            StringBuilder quoted = new StringBuilder(string.length() + 2).append('"');
+            for(int i = 0; i < string.length(); i++) {
+                char c = string.charAt(i);
+                if(c == '"' || c == '\\') {
+                    quoted.append('\\');
+                }
+                quoted.append(c);
+            }
+            return quoted.append('"').toString();
+        }
+        if(value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            double number = ((Number) value).doubleValue();
+            if(Double.isNaN(number) || Double.isInfinite(number)) {
+                throw new InvalidRequestException("Cannot search for " + value);
+            }
+            //written out in full, although the search syntax also accepts exponents such as 1.0E10
+            return new BigDecimal(value.toString()).toPlainString();
+        }
+        if(value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        throw new InvalidRequestException("Cannot search for a " + value.getClass().getName() + ", only strings, numbers, booleans and null");
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
@@ -0,0 +1,373 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.DistanceUnits;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses the CloudMine search query syntax, as built by {@link com.cloudmine.api.SearchQuery}, into
+ * {@link LocalQuery.Segment}s. The grammar is:
+ * <pre>
+ * query      := segment ('.' segment)*
+ * segment    := path? ('[' or ']')?
+ * or         := and ('or' and)*
+ * and        := condition ((',' | 'and') condition)*
+ * condition  := path operator literal | path 'in' '[' literal (',' literal)* ']' |
+ *               path 'near' '(' number ',' number ')' (',' number units?)?
+ * path       := name ('.' name)*
+ * literal    := string | number | 'true' | 'false' | 'null' | '?'
+ * </pre>
+ * A {@code ?} is a parameter of a {@link PreparedQuery}, and is only accepted when parsing a template.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+class QueryParser {
+
+    private enum Type {
+        NAME, STRING, NUMBER, SYMBOL, PARAMETER, END
+    }
+
+    private static class Token {
+        private final Type type;
+        private final String text;
+        private final Object value;
+        private final int position;
+
+        private Token(Type type, String text, Object value, int position) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.position = position;
+        }
+
+        private boolean is(String symbolOrKeyword) {
+            return (type == Type.SYMBOL || type == Type.NAME) && text.equalsIgnoreCase(symbolOrKeyword);
+        }
+    }
+
+    private final String query;
+    private final List<Token> tokens;
+    private final boolean parameters;
+    private final List<Integer> parameterPositions = new ArrayList<Integer>();
+    private int index;
+
+    QueryParser(String query) {
+        this(query, false);
+    }
+
+    QueryParser(String query, boolean parameters) {
+        this.query = query;
+        this.parameters = parameters;
+        this.tokens = tokenize(query);
+    }
+
+    /**
+     * Get the positions in the query of the parameters found by {@link #parse()}, in order
+     */
+    List<Integer> getParameterPositions() {
+        return Collections.unmodifiableList(parameterPositions);
+    }
+
+    /**
+     * Get the query with its whitespace normalized, split at each parameter. Queries that only differ in their
+     * whitespace have the same normalized form
+     */
+    List<String> normalizedFragments() {
+        List<String> fragments = new ArrayList<String>();
+        StringBuilder fragment = new StringBuilder();
+        for(int i = 0; i < tokens.size() - 1; i++) {
+            Token token = tokens.get(i);
+            if(i > 0) {
+                fragment.append(' ');
+            }
+            if(token.type == Type.PARAMETER) {
+                fragments.add(fragment.toString());
+                fragment.setLength(0);
+            } else {
+                fragment.append(token.text);
+            }
+        }
+        fragments.add(fragment.toString());
+        return fragments;
+    }
+
+    List<LocalQuery.Segment> parse() throws InvalidRequestException {
+        List<LocalQuery.Segment> segments = new ArrayList<LocalQuery.Segment>();
+        if(peek().type == Type.END) {
+            throw error("Expected a filter", peek());
+        }
+        do {
+            List<String> path = peek().type == Type.NAME ? path() : Collections.<String>emptyList();
+            Condition filter = null;
+            if(peek().is("[")) {
+                next();
+                filter = or();
+                expect("]");
+            }
+            if(path.isEmpty() && filter == null) {
+                throw error("Expected a property name or filter", peek());
+            }
+            segments.add(new LocalQuery.Segment(path, filter));
+        } while(accept("."));
+        if(peek().type != Type.END) {
+            throw error("Unexpected", peek());
+        }
+        return segments;
+    }
+
+    private Condition or() {
+        List<Condition> conditions = new ArrayList<Condition>();
+        conditions.add(and());
+        while(accept("or")) {
+            conditions.add(and());
+        }
+        return conditions.size() == 1 ? conditions.get(0) : new Condition.Or(conditions);
+    }
+
+    private Condition and() {
+        List<Condition> conditions = new ArrayList<Condition>();
+        conditions.add(condition());
+        while(accept(",") || accept("and")) {
+            conditions.add(condition());
+        }
+        return conditions.size() == 1 ? conditions.get(0) : new Condition.And(conditions);
+    }
+
+    private Condition condition() {
+        List<String> path = path();
+        Token operator = next();
+        if(operator.is("near")) {
+            return near(path);
+        }
+        if(operator.is("in")) {
+            expect("[");
+            List<Object> values = new ArrayList<Object>();
+            do {
+                values.add(literal());
+            } while(accept(","));
+            expect("]");
+            return new Condition.In(path, values);
+        }
+        Condition.Operator comparison = operator.type == Type.SYMBOL ? Condition.Operator.forSymbol(operator.text) : null;
+        if(comparison == null) {
+            throw error("Expected an operator", operator);
+        }
+        return new Condition.Comparison(path, comparison, literal());
+    }
+
+    private Condition near(List<String> path) {
+        expect("(");
+        double longitude = number();
+        expect(",");
+        double latitude = number();
+        expect(")");
+        double distance = -1;
+        DistanceUnits units = DistanceUnits.km;
+        //a comma followed by a number is the distance; followed by a name, it is the next condition
+        if(peek().is(",") && peek(1).type == Type.NUMBER) {
+            next();
+            distance = number();
+            if(peek().type == Type.NAME && !peek().is("or") && !peek().is("and")) {
+                Token unitsToken = next();
+                try {
+                    units = DistanceUnits.valueOf(unitsToken.text);
+                } catch(IllegalArgumentException e) {
+                    throw error("Unknown distance units", unitsToken);
+                }
+            }
+        }
+        return new Condition.Near(path, longitude, latitude, distance, units);
+    }
+
+    private List<String> path() {
+        List<String> path = new ArrayList<String>();
+        path.add(name());
+        while(peek().is(".") && peek(1).type == Type.NAME) {
+            next();
+            path.add(name());
+        }
+        return Collections.unmodifiableList(path);
+    }
+
+    private String name() {
+        Token token = next();
+        if(token.type != Type.NAME) {
+            throw error("Expected a property name", token);
+        }
+        return token.text;
+    }
+
+    private double number() {
+        Token token = next();
+        if(token.type != Type.NUMBER) {
+            throw error("Expected a number", token);
+        }
+        return ((Number) token.value).doubleValue();
+    }
+
+    private Object literal() {
+        Token token = next();
+        switch(token.type) {
+            case STRING:
+            case NUMBER:
+                return token.value;
+            case NAME:
+                if(token.is("true")) {
+                    return Boolean.TRUE;
+                } else if(token.is("false")) {
+                    return Boolean.FALSE;
+                } else if(token.is("null")) {
+                    return null;
+                }
+                throw error("Expected a value", token);
+            case PARAMETER:
+                if(!parameters) {
+                    throw new InvalidRequestException("Unbound parameter at position " + token.position + " in search: " + query);
+                }
+                parameterPositions.add(token.position);
+                return null;
+            default:
+                throw error("Expected a value", token);
+        }
+    }
+
+    private Token peek() {
+        return peek(0);
+    }
+
+    private Token peek(int ahead) {
+        return tokens.get(Math.min(index + ahead, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = peek();
+        if(index < tokens.size() - 1) {
+            index++;
+        }
+        return token;
+    }
+
+    private boolean accept(String symbolOrKeyword) {
+        if(peek().is(symbolOrKeyword)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String symbol) {
+        if(!accept(symbol)) {
+            throw error("Expected '" + symbol + "'", peek());
+        }
+    }
+
+    private InvalidRequestException error(String message, Token token) {
+        String found = token.type == Type.END ? "end of query" : "'" + token.text + "'";
+        return new InvalidRequestException(message + " but found " + found + " at position " + token.position + " in search: " + query);
+    }
+
+    private List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<Token>();
+        int length = query.length();
+        int position = 0;
+        while(position < length) {
+            char c = query.charAt(position);
+            if(Character.isWhitespace(c)) {
+                position++;
+            } else if(c == '"') {
+                StringBuilder value = new StringBuilder();
+                int start = position++;
+                while(position < length && query.charAt(position) != '"') {
+                    char next = query.charAt(position++);
+                    if(next == '\\' && position < length) {
+                        next = query.charAt(position++);
+                    }
+                    value.append(next);
+                }
+                if(position >= length) {
+                    throw new InvalidRequestException("Unterminated string at position " + start + " in search: " + query);
+                }
+                position++;
+                tokens.add(new Token(Type.STRING, query.substring(start, position), value.toString(), start));
+            } else if(Character.isDigit(c) || (c == '-' && position + 1 < length && Character.isDigit(query.charAt(position + 1)))) {
+                int start = position++;
+                boolean decimal = false;
+                while(position < length) {
+                    char next = query.charAt(position);
+                    if(next == '.' && !decimal && position + 1 < length && Character.isDigit(query.charAt(position + 1))) {
+                        decimal = true;
+                    } else if((next == 'e' || next == 'E') && exponentLength(query, position) > 0) {
+                        //doubles are appended to searches in scientific notation when they are small or large
+                        position += exponentLength(query, position);
+                        decimal = true;
+                        break;
+                    } else if(!Character.isDigit(next)) {
+                        break;
+                    }
+                    position++;
+                }
+                String text = query.substring(start, position);
+                Number value = decimal ? (Number) Double.valueOf(text) : parseInteger(text);
+                tokens.add(new Token(Type.NUMBER, text, value, start));
+            } else if(Character.isLetter(c) || c == '_') {
+                int start = position;
+                while(position < length && (Character.isLetterOrDigit(query.charAt(position)) || query.charAt(position) == '_')) {
+                    position++;
+                }
+                String text = query.substring(start, position);
+                tokens.add(new Token(Type.NAME, text, text, start));
+            } else {
+                int start = position;
+                if(c == '?') {
+                    position++;
+                    tokens.add(new Token(Type.PARAMETER, "?", null, start));
+                    continue;
+                }
+                String two = position + 1 < length ? query.substring(position, position + 2) : "";
+                if(two.equals("==") || two.equals("!=") || two.equals("<=") || two.equals(">=")) {
+                    position += 2;
+                } else if("[](),.=<>".indexOf(c) >= 0) {
+                    position++;
+                } else {
+                    throw new InvalidRequestException("Unexpected '" + c + "' at position " + start + " in search: " + query);
+                }
+                String text = query.substring(start, position);
+                tokens.add(new Token(Type.SYMBOL, text, text, start));
+            }
+        }
+        tokens.add(new Token(Type.END, "", null, length));
+        return tokens;
+    }
+
+    /**
+     * Get the length of the exponent of a number, such as E-5, that starts at the given position
+     * @return the length of the exponent, or 0 if there is no exponent at the position
+     */
+    private static int exponentLength(String query, int position) {
+        int end = position + 1;
+        if(end < query.length() && (query.charAt(end) == '+' || query.charAt(end) == '-')) {
+            end++;
+        }
+        int digits = end;
+        while(end < query.length() && Character.isDigit(query.charAt(end))) {
+            end++;
+        }
+        return end > digits ? end - position : 0;
+    }
+
+    private static Number parseInteger(String text) {
+        try {
+            long value = Long.parseLong(text);
+            if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return Integer.valueOf((int) value);
+            }
+            return Long.valueOf(value);
+        } catch(NumberFormatException e) {
+            return Double.valueOf(text);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.exceptions.InvalidRequestException;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A sorted index over a numeric or date property, for looking up the objects whose values fall in a range in
+ * logarithmic time. Dates are indexed as milliseconds since the epoch; values that are neither numbers nor dates are
+ * not indexed
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class RangeIndex extends ObjectIndex {
+
+    private final TreeMap<Double, Set<String>> idsByKey = new TreeMap<Double, Set<String>>();
+
+    RangeIndex(String path) throws InvalidRequestException {
+        super(path);
+    }
+
+    /**
+     * Get the ids of the indexed objects whose property is in the given range, ordered by ascending value. An object
+     * with several values in the range is only included once, at its lowest value
+     * @param from the lower bound, a number or date, or null for no lower bound
+     * @param fromInclusive whether objects equal to the lower bound are included
+     * @param to the upper bound, a number or date, or null for no upper bound
+     * @param toInclusive whether objects equal to the upper bound are included
+     * @return the ids; empty if there are none
+     * @throws InvalidRequestException if a bound is neither a number nor a date
+     */
+    public synchronized Set<String> getIds(Object from, boolean fromInclusive, Object to, boolean toInclusive) throws InvalidRequestException {
+        Double lower = bound(from);
+        Double upper = bound(to);
+        NavigableMap<Double, Set<String>> range = idsByKey;
+        if(lower != null && upper != null) {
+            if(lower > upper || (lower.equals(upper) && !(fromInclusive && toInclusive))) {
+                return Collections.emptySet();
+            }
+            range = range.subMap(lower, fromInclusive, upper, toInclusive);
+        } else if(lower != null) {
+            range = range.tailMap(lower, fromInclusive);
+        } else if(upper != null) {
+            range = range.headMap(upper, toInclusive);
+        }
+        Set<String> ids = new LinkedHashSet<String>();
+        for(Set<String> idsWithValue : range.values()) {
+            ids.addAll(idsWithValue);
+        }
+        return ids;
+    }
+
+    private Double bound(Object value) throws InvalidRequestException {
+        if(value == null) {
+            return null;
+        }
+        Object key = keyFor(value);
+        if(key == NOT_INDEXED) {
+            throw new InvalidRequestException("Range bounds must be numbers or dates, not " + value);
+        }
+        return (Double) key;
+    }
+
+    @Override
+    Object keyFor(Object value) {
+        if(value instanceof Number) {
+            double key = ((Number) value).doubleValue();
+            return Double.isNaN(key) ? NOT_INDEXED : Double.valueOf(key == 0 ? 0 : key);
+        }
+        Long date = dateMillis(value);
+        return date == null ? NOT_INDEXED : Double.valueOf(date);
+    }
+
+    @Override
+    void index(Object key, String objectId) {
+        Set<String> ids = idsByKey.get(key);
+        if(ids == null) {
+            ids = new LinkedHashSet<String>();
+            idsByKey.put((Double) key, ids);
+        }
+        ids.add(objectId);
+    }
+
+    @Override
+    void unindex(Object key, String objectId) {
+        Set<String> ids = idsByKey.get(key);
+        if(ids != null && ids.remove(objectId) && ids.isEmpty()) {
+            idsByKey.remove(key);
+        }
+    }
+
+    @Override
+    void clearKeys() {
+        idsByKey.clear();
+    }
+}
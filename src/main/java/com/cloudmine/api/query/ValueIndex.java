@@ -0,0 +1,94 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.exceptions.InvalidRequestException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hash index, for looking up the objects whose property has a given value in constant time. Strings, numbers,
+ * booleans and dates are indexed, as is null for objects that do not have the property
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ValueIndex extends ObjectIndex {
+
+    private final Map<Object, Set<String>> idsByKey = new HashMap<Object, Set<String>>();
+
+    ValueIndex(String path) throws InvalidRequestException {
+        super(path);
+    }
+
+    /**
+     * Get the ids of the indexed objects whose property has the given value
+     * @param value the value
+     * @return the ids; empty if there are none
+     */
+    public synchronized Set<String> getIds(Object value) {
+        Object key = keyFor(value);
+        Set<String> ids = key == NOT_INDEXED ? null : idsByKey.get(key);
+        return ids == null ? Collections.<String>emptySet() : new HashSet<String>(ids);
+    }
+
+    @Override
+    Object keyFor(Object value) {
+        if(value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if(value instanceof Number) {
+            double key = ((Number) value).doubleValue();
+            //so that -0.0 and 0.0 are the same value
+            return Double.valueOf(key == 0 ? 0 : key);
+        }
+        Long date = dateMillis(value);
+        return date == null ? NOT_INDEXED : new DateKey(date);
+    }
+
+    @Override
+    void index(Object key, String objectId) {
+        Set<String> ids = idsByKey.get(key);
+        if(ids == null) {
+            ids = new HashSet<String>();
+            idsByKey.put(key, ids);
+        }
+        ids.add(objectId);
+    }
+
+    @Override
+    void unindex(Object key, String objectId) {
+        Set<String> ids = idsByKey.get(key);
+        if(ids != null && ids.remove(objectId) && ids.isEmpty()) {
+            idsByKey.remove(key);
+        }
+    }
+
+    @Override
+    void clearKeys() {
+        idsByKey.clear();
+    }
+
+    /**
+     * Keeps dates distinct from numbers with the same value
+     */
+    private static class DateKey {
+        private final long millis;
+
+        private DateKey(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DateKey && ((DateKey) o).millis == millis;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (millis ^ (millis >>> 32));
+        }
+    }
+}
@@ -1,18 +1,12 @@
 package com.cloudmine.api.rest;
 
+import com.cloudmine.api.exceptions.CreationException;
 import com.cloudmine.api.rest.callbacks.Callback;
 import com.cloudmine.api.rest.response.ResponseConstructor;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpRequestRetryHandler;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
-import org.apache.http.params.BasicHttpParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.SyncBasicHttpContext;
@@ -32,43 +26,45 @@ public class ApacheThreadedHttpClient implements AsynchronousHttpClient {
 
 
     private HttpContext httpContext = new SyncBasicHttpContext(new BasicHttpContext());
-    private ClientConnectionManager connectionManager;
-    {
-        try {
-            //this will work for 4.2 and later
-            Class poolingClientConnectionManagerClass = Class.forName("org.apache.http.impl.conn.PoolingClientConnectionManager");
-            connectionManager = (ClientConnectionManager) poolingClientConnectionManagerClass.getConstructor().newInstance();
-        } catch (Exception e) {
-            //we are running on an older version, lets try the  backup
-            SchemeRegistry schemeRegistry = new SchemeRegistry();
-            schemeRegistry.register(
-                    new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
-            schemeRegistry.register(
-                    new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
-            connectionManager = new ThreadSafeClientConnManager(new BasicHttpParams(), schemeRegistry);
-        }
-    }
+    private final ConnectionPool connectionPool = new ConnectionPool();
+    private DefaultHttpClient client = new TracingHttpClient(connectionPool);
 
-    private DefaultHttpClient client = new DefaultHttpClient(connectionManager, null);
+    /**
+     * Get the pool of connections this client makes requests over, to observe or tune it while requests are made
+     */
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
 
     @Override
     public <T> void executeCommand(HttpUriRequest command, Callback<T> callback, ResponseConstructor<T> constructor) {
-        new Thread(new RequestRunnable<T>(command, callback, constructor)).start();
+        new Thread(new RequestRunnable<T>(command, callback, constructor, System.nanoTime())).start();
     }
 
     public class RequestRunnable<T>implements Runnable {
 
         private final Callback<T> callback;
         private final ResponseConstructor<T> constructor;
-        private RequestRunnable(HttpUriRequest request, Callback<T> callback, ResponseConstructor<T> constructor) {
+        private final MeasuredRequest measured;
+        private RequestRunnable(HttpUriRequest request, Callback<T> callback, ResponseConstructor<T> constructor, long queuedAt) {
             this.request = request;
             this.callback = callback;
             this.constructor = constructor;
+            this.measured = new MeasuredRequest(request, queuedAt);
         }
         private HttpUriRequest request;
 
         @Override
         public void run() {
+            measured.started();
+            try {
+                executeWithRetries();
+            } finally {
+                measured.ended(null);
+            }
+        }
+
+        private void executeWithRetries() {
             boolean retry = true;
             IOException cause = null;
             int requestCounter = 0;
@@ -77,7 +73,7 @@ public class ApacheThreadedHttpClient implements AsynchronousHttpClient {
             while(retry &&
                     requestCounter < RETRY_REQUEST_COUNT) {
                 try {
-                    makeRequest();
+                    makeRequest(requestCounter);
                     return;
                 } catch (IOException e) {
                     LOG.error("Exception thrown", e);
@@ -92,19 +88,44 @@ public class ApacheThreadedHttpClient implements AsynchronousHttpClient {
                     requestCounter++;
                     retry = retryHandler.retryRequest(cause, requestCounter, httpContext);
                 } catch(Exception e) {
-                    callback.onFailure(e, "Failed");
+                    measured.finished(requestCounter);
+                    fail(e);
                     return;
                 }
             }
-            callback.onFailure(cause, "Failed");
+            measured.finished(Math.max(0, requestCounter - 1));
+            fail(cause);
         }
 
-        private void makeRequest() throws IOException {
+        private void fail(Throwable cause) {
+            measured.callingBack();
+            try {
+                callback.onFailure(cause, "Failed");
+            } finally {
+                measured.ended(cause);
+            }
+        }
+
+        private void makeRequest(int retries) throws IOException {
+            measured.sending();
             HttpResponse response = client.execute(request);
+            try {
+                measured.received(response);
+            } catch(IOException e) {
+                //the request was answered, so it must not be retried; sending a write again could repeat it
+                throw new CreationException("Unable to read the response", e);
+            }
             try {
                 ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callback, response);
             }finally {
-                callback.onCompletion(constructor.construct(response));
+                measured.parsing();
+                T constructed = constructor.construct(response);
+                measured.parsed();
+                measured.finished(retries);
+                measured.callingBack();
+                //if the callback throws, fail ends the trace with the exception after calling onFailure
+                callback.onCompletion(constructed);
+                measured.ended(null);
             }
         }
     }
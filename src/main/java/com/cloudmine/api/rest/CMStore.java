@@ -1,19 +1,39 @@
 package com.cloudmine.api.rest;
 
 import com.cloudmine.api.*;
+import com.cloudmine.api.cache.BoundedCache;
+import com.cloudmine.api.cache.CMCacheOptions;
+import com.cloudmine.api.cache.EvictionCause;
+import com.cloudmine.api.cache.EvictionListener;
+import com.cloudmine.api.cache.InvalidationEvent;
+import com.cloudmine.api.cache.InvalidationListener;
 import com.cloudmine.api.exceptions.AccessException;
 import com.cloudmine.api.exceptions.ConversionException;
 import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.persistance.ClassNameRegistry;
+import com.cloudmine.api.persistance.FileDownloadCache;
+import com.cloudmine.api.persistance.PersistentObjectCache;
+import com.cloudmine.api.query.GeoIndex;
+import com.cloudmine.api.query.LocalQuery;
+import com.cloudmine.api.query.ObjectIndex;
+import com.cloudmine.api.query.RangeIndex;
+import com.cloudmine.api.query.ValueIndex;
 import com.cloudmine.api.rest.callbacks.CMCallback;
 import com.cloudmine.api.rest.callbacks.CMObjectResponseCallback;
 import com.cloudmine.api.rest.callbacks.Callback;
 import com.cloudmine.api.rest.callbacks.ExceptionPassthroughCallback;
+import com.cloudmine.api.rest.options.CMPagingOptions;
 import com.cloudmine.api.rest.options.CMRequestOptions;
+import com.cloudmine.api.rest.options.CMServerFunction;
+import com.cloudmine.api.rest.options.CMSortOptions;
 import com.cloudmine.api.rest.response.*;
 
 import javax.security.auth.login.LoginException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The main class for interacting with the CloudMine API. Stores can operate on both the user or application level
@@ -94,7 +114,48 @@ public class CMStore {
 
     private final CMWebService applicationService;
     private final Immutable<JavaCMUser> user = new Immutable<JavaCMUser>();
-    private final Map<String, CMObject> objects = new ConcurrentHashMap<String, CMObject>();
+    private volatile Map<String, CMObject> objects = new ConcurrentHashMap<String, CMObject>();
+    private volatile PersistentObjectCache persistentCache;
+    private volatile OfflineWriteQueue writeQueue;
+    private volatile FileDownloadCache fileCache;
+    //level:className of the classes every object of which has been loaded into this store
+    private final Set<String> completeClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    //incremented whenever a class stops being complete, so a load that was sent before then does not mark it complete
+    private final AtomicLong completenessGeneration = new AtomicLong();
+    private final List<ObjectIndex> indexes = new CopyOnWriteArrayList<ObjectIndex>();
+    private final OfflineWriteQueue.Sender queueSender = new OfflineWriteQueue.Sender() {
+        @Override
+        public void insert(ObjectLevel level, final Collection<CMObject> objects, final Callback<ObjectModificationResponse> callback) {
+            if(level == ObjectLevel.USER) {
+                user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
+                    public void onCompletion(LoginResponse ignoredResponse) {
+                        userService().asyncInsert(objects, callback, CMRequestOptions.NONE);
+                    }
+                });
+            } else {
+                applicationService.asyncInsert(objects, callback, CMRequestOptions.NONE);
+            }
+        }
+
+        @Override
+        public void delete(ObjectLevel level, final Collection<String> objectIds, final Callback<ObjectModificationResponse> callback) {
+            if(level == ObjectLevel.USER) {
+                user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
+                    public void onCompletion(LoginResponse ignoredResponse) {
+                        userService().asyncDelete(objectIds, callback, CMRequestOptions.NONE);
+                    }
+                });
+            } else {
+                applicationService.asyncDelete(objectIds, callback, CMRequestOptions.NONE);
+            }
+        }
+    };
+    private final InvalidationListener invalidationListener = new InvalidationListener() {
+        @Override
+        public void onInvalidation(InvalidationEvent event) {
+            invalidate(event);
+        }
+    };
 
     private CMStore(StoreIdentifier identifier) throws CreationException {
         if(identifier == null) {
@@ -104,6 +165,8 @@ public class CMStore {
             setUser(identifier.getUser());
         }
         applicationService = CMWebService.getService();
+        //held weakly, so stores made with CMStore(identifier) can be collected without being removed from the bus
+        applicationService.getInvalidationBus().addWeakListener(invalidationListener);
     }
 
     private JavaCMUser user() {
@@ -116,10 +179,11 @@ public class CMStore {
                 try {
                     if(response.wasSuccess()) {
                         List<CMObject> cmObjects = response.getObjects();
-                        addObjects(cmObjects);
+                        //before they are added, so they are persisted at the level they were loaded from
                         for(CMObject object : cmObjects) {
                             object.setSaveWith(identifier);
                         }
+                        addObjects(cmObjects);
                     }
                 }finally {
                     callback.onCompletion(response);
@@ -194,7 +258,16 @@ public class CMStore {
      */
     public void saveObject(final CMObject object, final Callback<ObjectModificationResponse> callback, final CMRequestOptions options) throws ConversionException, CreationException {
         addObject(object);
-        if(object.isOnLevel(ObjectLevel.USER)) {
+        OfflineWriteQueue queue = writeQueue;
+        if(queue != null && isQueueable(options)) {
+            if(object.isOnLevel(ObjectLevel.USER)) {
+                user();
+                queue.enqueueSave(object, ObjectLevel.USER, callback);
+            } else {
+                object.setSaveWith(StoreIdentifier.applicationLevel());
+                queue.enqueueSave(object, ObjectLevel.APPLICATION, callback);
+            }
+        } else if(object.isOnLevel(ObjectLevel.USER)) {
             user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
                public void onCompletion(LoginResponse ignoredResponse) {
                    userService().asyncInsert(object, callback, options);
@@ -239,8 +312,17 @@ public class CMStore {
      * @throws CreationException if this CMStore does not have a CMSessionToken associated with it
      */
     public void deleteObject(final CMObject object, final Callback<ObjectModificationResponse> callback, final CMRequestOptions options) throws CreationException {
-        removeObject(object);
-        if(object.isOnLevel(ObjectLevel.USER)) {
+        //the object is being deleted from CloudMine as well, so any class it belonged to is still complete
+        forgetObject(object.getObjectId());
+        OfflineWriteQueue queue = writeQueue;
+        if(queue != null && isQueueable(options)) {
+            if(object.isOnLevel(ObjectLevel.USER)) {
+                user();
+                queue.enqueueDelete(object.getObjectId(), ObjectLevel.USER, callback);
+            } else {
+                queue.enqueueDelete(object.getObjectId(), ObjectLevel.APPLICATION, callback);
+            }
+        } else if(object.isOnLevel(ObjectLevel.USER)) {
             user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
                 public void onCompletion(LoginResponse response) {
                     userService().asyncDeleteObject(object, callback, options);
@@ -251,6 +333,35 @@ public class CMStore {
         }
     }
 
+    /**
+     * Save eventually: send the objects saved and deleted with {@link #saveObject(CMObject, Callback, CMRequestOptions)}
+     * and {@link #deleteObject(CMObject, Callback, CMRequestOptions)}, and so with {@link CMObject#save()} and
+     * {@link CMObject#delete()}, through the given queue. Those calls then return as soon as the write is persisted
+     * locally, and the write is sent to CloudMine in the background, retrying until CloudMine can be reached; callbacks
+     * are called once it has been sent. Writes made with request options other than {@link CMRequestOptions#NONE} are
+     * always sent directly, as the options are not persisted. Writes left in the queue from a previous run are sent
+     * with this store, so a queue should only be used by one store, which for user level writes should have the same user
+     * @param queue the queue, or null to send writes directly again. The previous queue is not closed, but stops sending
+     */
+    public synchronized void setWriteQueue(OfflineWriteQueue queue) {
+        OfflineWriteQueue previous = writeQueue;
+        if(previous != null) {
+            previous.setSender(null);
+        }
+        writeQueue = queue;
+        if(queue != null) {
+            queue.setSender(queueSender);
+        }
+    }
+
+    public OfflineWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    private static boolean isQueueable(CMRequestOptions options) {
+        return options == null || CMRequestOptions.NONE.equals(options);
+    }
+
     /**
      * Retrieve all the application level objects; they will be added to this Store after load
      */
@@ -420,6 +531,10 @@ public class CMStore {
      * @throws CreationException if this CMStore does not have a CMSessionToken associated with it
      */
     public void loadUserObjectsSearch(final String search, final Callback<CMObjectResponse> callback, final CMRequestOptions options) throws CreationException {
+        user();
+        if(answeredLocally(ObjectLevel.USER, null, search, options, callback)) {
+            return;
+        }
         user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
             @Override
             public void onCompletion(LoginResponse response) {
@@ -452,6 +567,9 @@ public class CMStore {
      * @param options options to apply to the call, such as a server function to pass the results of the call into, paging options, etc
      */
     public void loadApplicationObjectsSearch(String search, Callback<CMObjectResponse> callback, CMRequestOptions options) {
+        if(answeredLocally(ObjectLevel.APPLICATION, null, search, options, callback)) {
+            return;
+        }
         applicationService.asyncSearch(search, objectLoadUpdateStoreCallback(callback, StoreIdentifier.applicationLevel()), options);
     }
 
@@ -487,9 +605,14 @@ public class CMStore {
      * @throws CreationException if this CMStore does not have a CMSessionToken associated with it
      */
     public void loadUserObjectsOfClass(final String klass, final Callback<CMObjectResponse> callback, final CMRequestOptions options) throws CreationException {
+        user();
+        if(answeredLocally(ObjectLevel.USER, klass, null, options, callback)) {
+            return;
+        }
+        final Callback<CMObjectResponse> classCallback = classLoadCallback(callback, ObjectLevel.USER, klass, options);
         user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
             public void onCompletion(LoginResponse response) {
-                userService().asyncLoadObjectsOfClass(klass, objectLoadUpdateStoreCallback(callback, StoreIdentifier.StoreIdentifier(user())), options);
+                userService().asyncLoadObjectsOfClass(klass, objectLoadUpdateStoreCallback(classCallback, StoreIdentifier.StoreIdentifier(user())), options);
             }
         });
     }
@@ -512,9 +635,15 @@ public class CMStore {
      * @param <CMO>
      */
     public <CMO extends CMObject> void loadUserObjectsOfClass(final Class<CMO> klass, final CMRequestOptions options, final Callback<CMObjectResponse> callback) {
+        user();
+        String className = ClassNameRegistry.forClass(klass);
+        if(answeredLocally(ObjectLevel.USER, className, null, options, callback)) {
+            return;
+        }
+        final Callback<CMObjectResponse> classCallback = classLoadCallback(callback, ObjectLevel.USER, className, options);
         user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
             public void onCompletion(LoginResponse response) {
-                userService().asyncLoadObjectsOfClass(klass, objectLoadUpdateStoreCallback(callback, StoreIdentifier.StoreIdentifier(user())), options);
+                userService().asyncLoadObjectsOfClass(klass, objectLoadUpdateStoreCallback(classCallback, StoreIdentifier.StoreIdentifier(user())), options);
             }
         });
     }
@@ -540,6 +669,10 @@ public class CMStore {
      * @param <CMO> the type of the objects being loaded
      */
     public <CMO extends CMObject> void loadUserObjectsOfClassWithSearch(final Class<CMO> klass, final String search, final CMRequestOptions options, final Callback<CMObjectResponse> callback) {
+        user();
+        if(answeredLocally(ObjectLevel.USER, ClassNameRegistry.forClass(klass), search, options, callback)) {
+            return;
+        }
         user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
             public void onCompletion(LoginResponse response) {
                 userService().asyncLoadObjectsOfClassAndSearch(klass, search, objectLoadUpdateStoreCallback(callback, StoreIdentifier.StoreIdentifier(user())), options);
@@ -567,7 +700,11 @@ public class CMStore {
      * @param options options to apply to the call, such as a server function to pass the results of the call into, paging options, etc
      */
     public void loadApplicationObjectsOfClass(String klass, Callback<CMObjectResponse> callback, CMRequestOptions options) {
-        applicationService.asyncLoadObjectsOfClass(klass, objectLoadUpdateStoreCallback(callback, StoreIdentifier.applicationLevel()), options);
+        if(answeredLocally(ObjectLevel.APPLICATION, klass, null, options, callback)) {
+            return;
+        }
+        applicationService.asyncLoadObjectsOfClass(klass, objectLoadUpdateStoreCallback(
+                classLoadCallback(callback, ObjectLevel.APPLICATION, klass, options), StoreIdentifier.applicationLevel()), options);
     }
 
     /**
@@ -588,6 +725,9 @@ public class CMStore {
      * @param <CMO>
      */
     public <CMO extends CMObject> void loadApplicationObjectsOfClass(Class<CMO> klass, CMRequestOptions options, Callback<CMObjectResponse> callback) {
+        if(answeredLocally(ObjectLevel.APPLICATION, ClassNameRegistry.forClass(klass), null, options, callback)) {
+            return;
+        }
         applicationService.asyncLoadObjectsOfClass(klass, callback, options);
     }
 
@@ -612,9 +752,196 @@ public class CMStore {
      * @param <CMO> the type of the objects being loaded
      */
     public <CMO extends CMObject> void loadApplicationObjectsOfClassWithSearch(Class<CMO> klass, String search, CMRequestOptions options, Callback<CMObjectResponse> callback) {
+        if(answeredLocally(ObjectLevel.APPLICATION, ClassNameRegistry.forClass(klass), search, options, callback)) {
+            return;
+        }
         applicationService.asyncLoadObjectsOfClassAndSearch(klass, search, callback, options);
     }
 
+    /**
+     * Search the objects held by this store, and by its {@link #setPersistentCache(PersistentObjectCache) persistent cache},
+     * without contacting CloudMine. See {@link LocalQuery} for the supported syntax
+     * @param search the search string to use, in the CloudMine search syntax
+     * @return the stored objects that match the search
+     * @throws InvalidRequestException if the search is not valid
+     */
+    public List<CMObject> searchStoredObjects(String search) throws InvalidRequestException {
+        return LocalQuery.parse(search).filter(getStoredObjectsOnLevel(null));
+    }
+
+    /**
+     * Search the objects on the given level that are held by this store, and by its
+     * {@link #setPersistentCache(PersistentObjectCache) persistent cache}, without contacting CloudMine.
+     * See {@link LocalQuery} for the supported syntax
+     * @param level the level of the objects to search
+     * @param search the search string to use, in the CloudMine search syntax
+     * @return the stored objects on the level that match the search
+     * @throws InvalidRequestException if the search is not valid
+     */
+    public List<CMObject> searchStoredObjects(ObjectLevel level, String search) throws InvalidRequestException {
+        return LocalQuery.parse(search).filter(getStoredObjectsOnLevel(level));
+    }
+
+    /**
+     * Check whether every object of the given class has been loaded into this store, so that loads of the class with
+     * {@link CMRequestOptions#setLocalFirst(boolean)} are answered without contacting CloudMine. A class is complete once
+     * it has been loaded with one of the loadObjectsOfClass methods, with no options other than
+     * {@link CMPagingOptions#ALL_RESULTS}, and every result fit in one page. It stops being complete when objects are
+     * removed from the store, or objects the store does not hold are written to CloudMine. If the store's
+     * {@link #setObjectCacheOptions(CMCacheOptions) object cache options} may evict objects, classes are only complete
+     * while a persistent cache is set
+     * @param level the level of the objects
+     * @param className the class name, as returned by {@link CMObject#getClassName()}
+     * @return true if every object of the class is held by this store
+     */
+    public boolean isClassComplete(ObjectLevel level, String className) {
+        return canBeComplete() && completeClasses.contains(completenessKey(level, className));
+    }
+
+    private boolean canBeComplete() {
+        return persistentCache != null || !(objects instanceof BoundedCache);
+    }
+
+    private static String completenessKey(ObjectLevel level, String className) {
+        return level + ":" + className;
+    }
+
+    private void clearCompleteness() {
+        completenessGeneration.incrementAndGet();
+        completeClasses.clear();
+    }
+
+    private void clearCompleteness(ObjectLevel level, Collection<String> classNames) {
+        completenessGeneration.incrementAndGet();
+        if(classNames == null) {
+            String prefix = completenessKey(level, "");
+            for(Iterator<String> keys = completeClasses.iterator(); keys.hasNext();) {
+                if(keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        } else {
+            for(String className : classNames) {
+                completeClasses.remove(completenessKey(level, className));
+            }
+        }
+    }
+
+    /**
+     * Check whether a load with the given options returns every matching object, as it is, so its results can be used
+     * to mark a class complete or be computed locally
+     */
+    private static boolean isPlainLoad(CMRequestOptions options) {
+        if(options == null) {
+            return true;
+        }
+        CMPagingOptions paging = options.getPagingOptions();
+        return (paging == null || paging == CMPagingOptions.ALL_RESULTS || CMPagingOptions.NONE.equals(paging)) &&
+                (options.getServerFunction() == null || CMServerFunction.NONE.equals(options.getServerFunction())) &&
+                (options.getSortOptions() == null || CMSortOptions.NONE.equals(options.getSortOptions())) &&
+                isUnset(options.getSharedDataOptions()) && isUnset(options.getSearchOptions()) &&
+                //a projected load decodes partial objects, which can't answer later loads
+                (options.getDecodeOptions() == null || options.getDecodeOptions().isDefault());
+    }
+
+    private static boolean isUnset(BaseURL option) {
+        return option == null || option.asUrlString().length() == 0;
+    }
+
+    /**
+     * Wrap the callback for a load of every object of a class, so that the class is marked complete if every object was
+     * returned and no object of the class was written while the load was in flight
+     */
+    private Callback<CMObjectResponse> classLoadCallback(final Callback<CMObjectResponse> callback, ObjectLevel level, String className, CMRequestOptions options) {
+        if(className == null || !isPlainLoad(options)) {
+            return callback;
+        }
+        final String key = completenessKey(level, className);
+        final long generation = completenessGeneration.get();
+        final boolean allResults = options != null && options.getPagingOptions() == CMPagingOptions.ALL_RESULTS;
+        return new ExceptionPassthroughCallback<CMObjectResponse>(callback) {
+            public void onCompletion(CMObjectResponse response) {
+                try {
+                    //without a limit, CloudMine returns at most one page of results
+                    if(response.wasSuccess() && (allResults || response.getObjects().size() < CMPagingOptions.DEFAULT_LIMIT) &&
+                            completenessGeneration.get() == generation) {
+                        completeClasses.add(key);
+                    }
+                } finally {
+                    callback.onCompletion(response);
+                }
+            }
+        };
+    }
+
+    /**
+     * Answer a load of objects of the given class from the stored objects, if the options ask for it and every object of
+     * the class is stored
+     * @param className the class of the objects being loaded, or null to use the class the search is restricted to
+     * @param search a search the objects must also match, or null
+     * @return true if the callback was called with the stored objects; false if the load should be sent to CloudMine
+     */
+    private boolean answeredLocally(ObjectLevel level, String className, String search, CMRequestOptions options, Callback<CMObjectResponse> callback) {
+        if(options == null || !options.isLocalFirst() || !isPlainLoad(options)) {
+            return false;
+        }
+        CMObjectResponse response;
+        try {
+            LocalQuery query = search == null ? null : LocalQuery.parse(search);
+            if(className == null) {
+                className = query == null ? null : query.getClassName();
+            }
+            if(className == null || !isClassComplete(level, className)) {
+                return false;
+            }
+            LocalQuery classQuery = LocalQuery.parse("[" + JsonUtilities.CLASS_KEY + "=" + JsonUtilities.addQuotes(className) + "]");
+            List<CMObject> results = classQuery.filter(getStoredObjectsOnLevel(level));
+            if(query != null) {
+                results = query.filter(results);
+            }
+            response = new CMObjectResponse(results);
+        } catch(InvalidRequestException e) {
+            //let CloudMine decide what to do with a search that can't be evaluated here
+            return false;
+        } catch(ConversionException e) {
+            return false;
+        }
+        callback.setStartTime(System.currentTimeMillis());
+        callback.onCompletion(response);
+        return true;
+    }
+
+    /**
+     * Get the objects held by this store and its persistent cache that are on the given level, or on any level if it is null
+     */
+    private List<CMObject> getStoredObjectsOnLevel(ObjectLevel level) {
+        List<CMObject> stored = new ArrayList<CMObject>();
+        Set<String> inMemory = new HashSet<String>();
+        for(CMObject object : objects.values()) {
+            inMemory.add(object.getObjectId());
+            if(level == null || isOnLevel(object, level)) {
+                stored.add(object);
+            }
+        }
+        PersistentObjectCache cache = persistentCache;
+        if(cache != null) {
+            for(String objectId : new ArrayList<String>(cache.keySet())) {
+                if(inMemory.contains(objectId)) {
+                    continue;
+                }
+                ObjectLevel cachedLevel = cache.getLevel(objectId);
+                if(cachedLevel == null || (level != null && cachedLevel != level && cachedLevel != ObjectLevel.UNKNOWN)) {
+                    continue;
+                }
+                CMObject object = readCached(cache, objectId);
+                if(object != null) {
+                    stored.add(object);
+                }
+            }
+        }
+        return stored;
+    }
+
     /**
      * Saves all the application level objects that were added using {@link #addObject(com.cloudmine.api.CMObject)}
      * Note that the object level check occurs on save, not on insertion, so if an object is added and then the object level is
@@ -770,13 +1097,122 @@ public class CMStore {
         return storeObjects;
     }
 
+    /**
+     * Bound the number of objects held by this store, or expire them after some time, so a long lived store can be
+     * used as a cache without growing forever. By default a store holds every object added to it until it is removed.
+     * Objects that are already in the store are kept, subject to the new bounds. This should be called before the
+     * store is shared between threads; objects added while the cache is being replaced may be lost
+     * @param options the bounds for the stored objects, or null to hold every object again
+     */
+    public void setObjectCacheOptions(CMCacheOptions<String, CMObject> options) {
+        Map<String, CMObject> newObjects = options == null ?
+                new ConcurrentHashMap<String, CMObject>() :
+                new BoundedCache<String, CMObject>(withIndexEviction(options));
+        newObjects.putAll(objects);
+        objects = newObjects;
+        clearCompleteness();
+        for(ObjectIndex index : indexes) {
+            reindex(index);
+        }
+    }
+
+    /**
+     * Keep the objects added to this store on disk as well as in memory, so they are still available after a restart.
+     * Objects that are not held in memory, because the store was just created or because they were evicted under the
+     * {@link #setObjectCacheOptions(CMCacheOptions) object cache options}, are read back from the cache by
+     * {@link #getStoredObject(String)}. The cache is kept up to date with writes made through any store. Objects
+     * already in this store are added to the cache
+     * @param cache the cache, or null to stop using one. The previous cache is not closed
+     */
+    public synchronized void setPersistentCache(PersistentObjectCache cache) {
+        PersistentObjectCache previous = persistentCache;
+        if(previous != null) {
+            applicationService.getInvalidationBus().removeListener(previous);
+        }
+        persistentCache = cache;
+        if(cache != null) {
+            applicationService.getInvalidationBus().addListener(cache);
+            for(CMObject object : objects.values()) {
+                persist(cache, object);
+            }
+        }
+        clearCompleteness();
+    }
+
+    public PersistentObjectCache getPersistentCache() {
+        return persistentCache;
+    }
+
     /**
      * Add the specified object to the store. No API calls are performed as a result of this operation; to
      * save the added object, call {@link #saveStoreObjects()} or a related method
      * @param object gets added to the local store
      */
     public void addObject(CMObject object) {
-        objects.put(object.getObjectId(), object);
+        putStoredObject(object.getObjectId(), object);
+        PersistentObjectCache cache = persistentCache;
+        if(cache != null) {
+            persist(cache, object);
+        }
+    }
+
+    /**
+     * Write the object to the persistent cache. User level objects are stored for this store's user, and are not
+     * stored while the store has no logged in user
+     */
+    private void persist(PersistentObjectCache cache, CMObject object) {
+        if(!object.isOnLevel(ObjectLevel.USER)) {
+            cache.put(object);
+            return;
+        }
+        String owner = cacheOwner();
+        if(owner == null) {
+            cache.remove(object.getObjectId());
+        } else {
+            cache.put(object, owner);
+        }
+    }
+
+    /**
+     * Read the object with the given id from the persistent cache, restoring the level it was stored at. User level
+     * objects stored for a different user, or while this store has no logged in user, are not read
+     * @return the object, or null if it is not cached for this store
+     */
+    private CMObject readCached(PersistentObjectCache cache, String objectId) {
+        ObjectLevel level = cache.getLevel(objectId);
+        if(level == null) {
+            return null;
+        }
+        boolean userLevel = level == ObjectLevel.USER;
+        if(userLevel) {
+            String owner = cacheOwner();
+            if(owner == null || !cache.isOwnedBy(objectId, owner)) {
+                return null;
+            }
+        }
+        CMObject object = cache.get(objectId);
+        if(object != null && userLevel) {
+            object.setSaveWith(user());
+        }
+        return object;
+    }
+
+    /**
+     * Get the identifier of this store's user that its user level objects and files are cached under: their email or
+     * user name, which unlike their session token stays the same when they log in again
+     * @return the identifier, or null if the store has no user, or the user has no identifier or is not logged in
+     */
+    private String cacheOwner() {
+        JavaCMUser storeUser = user.value();
+        if(storeUser == null) {
+            return null;
+        }
+        CMSessionToken token = storeUser.getSessionToken();
+        String identifier = storeUser.getUserIdentifier();
+        if(token == null || CMSessionToken.FAILED.equals(token) || identifier == null || identifier.length() == 0) {
+            return null;
+        }
+        return identifier;
     }
 
     /**
@@ -807,7 +1243,16 @@ public class CMStore {
      * @param objectId the id of the object to remove from the store
      */
     public void removeObject(String objectId) {
-        objects.remove(objectId);
+        forgetObject(objectId);
+        clearCompleteness();
+    }
+
+    private void forgetObject(String objectId) {
+        removeStoredObject(objectId);
+        PersistentObjectCache cache = persistentCache;
+        if(cache != null) {
+            cache.remove(objectId);
+        }
     }
 
     /**
@@ -824,7 +1269,270 @@ public class CMStore {
     }
 
     /**
-     * Retrieve any existing, added CMObject with the specified objectId
+     * Bring the stored objects up to date after a write to CloudMine: deleted objects are removed, and written objects
+     * replace the stored objects with the same id. If an object was written without the CMObject being known, such as
+     * a raw JSON update, the stored copy is removed rather than kept stale
+     */
+    private void invalidate(InvalidationEvent event) {
+        ObjectLevel level = event.getLevel();
+        if(event.isDeletedAll()) {
+            for(CMObject object : new ArrayList<CMObject>(objects.values())) {
+                if(isOnLevel(object, level)) {
+                    removeStoredObject(object.getObjectId());
+                }
+            }
+            return;
+        }
+        for(String objectId : event.getDeletedIds()) {
+            CMObject stored = objects.get(objectId);
+            if(stored != null && isOnLevel(stored, level)) {
+                removeStoredObject(objectId);
+            }
+        }
+        Set<String> writtenIds = new HashSet<String>(event.getCreatedIds());
+        writtenIds.addAll(event.getUpdatedIds());
+        //an object this store does not hold may belong to a class it holds every object of
+        boolean incomplete = false;
+        PersistentObjectCache cache = persistentCache;
+        for(String objectId : writtenIds) {
+            CMObject stored = objects.get(objectId);
+            if(stored == null || !isOnLevel(stored, level)) {
+                incomplete |= stored == null && (cache == null || !cache.contains(objectId));
+                continue;
+            }
+            CMObject written = event.getWrittenObject(objectId);
+            if(written == null || (level == ObjectLevel.USER && !isWrittenByUser(event))) {
+                removeStoredObject(objectId);
+                incomplete = true;
+            } else if(written != stored) {
+                putStoredObject(objectId, written);
+            }
+        }
+        if(incomplete) {
+            clearCompleteness(level, event.getClassNames());
+        }
+    }
+
+    private boolean isWrittenByUser(InvalidationEvent event) {
+        String owner = cacheOwner();
+        return owner != null && owner.equals(event.getOwner());
+    }
+
+    private void putStoredObject(String objectId, CMObject object) {
+        objects.put(objectId, object);
+        for(ObjectIndex index : indexes) {
+            index.add(object);
+        }
+    }
+
+    private void removeStoredObject(String objectId) {
+        objects.remove(objectId);
+        for(ObjectIndex index : indexes) {
+            index.remove(objectId);
+        }
+    }
+
+    /**
+     * Copy the given cache options, so that objects the cache evicts are removed from the indexes as well
+     */
+    private CMCacheOptions<String, CMObject> withIndexEviction(CMCacheOptions<String, CMObject> options) {
+        CMCacheOptions<String, CMObject> copy = new CMCacheOptions<String, CMObject>();
+        if(options.getMaximumSize() != CMCacheOptions.UNBOUNDED) {
+            copy.setMaximumSize(options.getMaximumSize());
+        }
+        if(options.getMaximumWeight() != CMCacheOptions.UNBOUNDED) {
+            copy.setMaximumWeight(options.getMaximumWeight(), options.getWeigher());
+        }
+        if(options.getExpireAfterWrite() != CMCacheOptions.NEVER) {
+            copy.setExpireAfterWrite(options.getExpireAfterWrite());
+        }
+        if(options.getExpireAfterAccess() != CMCacheOptions.NEVER) {
+            copy.setExpireAfterAccess(options.getExpireAfterAccess());
+        }
+        copy.setEvictionPolicy(options.getEvictionPolicy());
+        final EvictionListener<? super String, ? super CMObject> listener = options.getEvictionListener();
+        copy.setEvictionListener(new EvictionListener<String, CMObject>() {
+            @Override
+            public void onEviction(String objectId, CMObject object, EvictionCause cause) {
+                //the object may have been added again since it was evicted
+                if(!objects.containsKey(objectId)) {
+                    for(ObjectIndex index : indexes) {
+                        index.remove(objectId);
+                    }
+                }
+                if(listener != null) {
+                    listener.onEviction(objectId, object, cause);
+                }
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Keep an index over the objects held in memory by this store, so {@link #getStoredObjectsOfClass(String)},
+     * {@link #getStoredObjectsWithValue(String, Object)} and
+     * {@link #getStoredObjectsInRange(String, Object, boolean, Object, boolean)} can find objects without examining
+     * every stored object. The index is kept up to date as objects are added, removed, evicted and written; an
+     * object that is changed after being added must be added again to be reindexed. Objects that are only in the
+     * {@link #setPersistentCache(PersistentObjectCache) persistent cache} are indexed once they are read back
+     * @param index the index, such as {@link ObjectIndex#onClass()}, {@link ObjectIndex#onValue(String)} or
+     *              {@link ObjectIndex#onRange(String)}. The stored objects are added to it
+     */
+    public synchronized void addIndex(ObjectIndex index) {
+        if(index == null || indexes.contains(index)) {
+            return;
+        }
+        indexes.add(index);
+        reindex(index);
+    }
+
+    /**
+     * Stop keeping the given index up to date
+     * @param index the index
+     * @return true if the index was kept by this store
+     */
+    public synchronized boolean removeIndex(ObjectIndex index) {
+        return indexes.remove(index);
+    }
+
+    private void reindex(ObjectIndex index) {
+        index.clear();
+        for(CMObject object : objects.values()) {
+            index.add(object);
+        }
+    }
+
+    private <I extends ObjectIndex> I findIndex(Class<I> type, String path) {
+        for(ObjectIndex index : indexes) {
+            if(type.isInstance(index) && index.getPath().equals(path)) {
+                return type.cast(index);
+            }
+        }
+        return null;
+    }
+
+    private List<CMObject> getStoredObjectsWithIds(Collection<String> objectIds) {
+        List<CMObject> stored = new ArrayList<CMObject>(objectIds.size());
+        for(String objectId : objectIds) {
+            CMObject object = objects.get(objectId);
+            if(object != null) {
+                stored.add(object);
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Get the objects held in memory by this store that are of the given class. This is a constant time lookup if
+     * {@link ObjectIndex#onClass()} has been {@link #addIndex(ObjectIndex) added}, otherwise every object is examined
+     * @param className the class name, as returned by {@link CMObject#getClassName()}
+     * @return the objects of the class
+     */
+    public List<CMObject> getStoredObjectsOfClass(String className) {
+        return getStoredObjectsWithValue(JsonUtilities.CLASS_KEY, className);
+    }
+
+    /**
+     * Get the objects held in memory by this store whose property has the given value. This is a constant time lookup
+     * if an {@link ObjectIndex#onValue(String)} index on the path has been {@link #addIndex(ObjectIndex) added},
+     * otherwise every object is examined
+     * @param path the property, with the properties of subobjects separated by dots
+     * @param value the value; null matches objects that do not have the property
+     * @return the matching objects
+     * @throws InvalidRequestException if the path is empty
+     */
+    public List<CMObject> getStoredObjectsWithValue(String path, Object value) throws InvalidRequestException {
+        ValueIndex index = findIndex(ValueIndex.class, path);
+        if(index == null) {
+            index = ObjectIndex.onValue(path);
+            reindex(index);
+        }
+        return getStoredObjectsWithIds(index.getIds(value));
+    }
+
+    /**
+     * Get the objects held in memory by this store whose numeric or date property is in the given range, ordered by
+     * ascending value. This is a logarithmic time lookup if an {@link ObjectIndex#onRange(String)} index on the path
+     * has been {@link #addIndex(ObjectIndex) added}, otherwise every object is examined
+     * @param path the property, with the properties of subobjects separated by dots
+     * @param from the lower bound, a number or date, or null for no lower bound
+     * @param fromInclusive whether objects equal to the lower bound are included
+     * @param to the upper bound, a number or date, or null for no upper bound
+     * @param toInclusive whether objects equal to the upper bound are included
+     * @return the matching objects
+     * @throws InvalidRequestException if the path is empty, or a bound is neither a number nor a date
+     */
+    public List<CMObject> getStoredObjectsInRange(String path, Object from, boolean fromInclusive, Object to, boolean toInclusive) throws InvalidRequestException {
+        RangeIndex index = findIndex(RangeIndex.class, path);
+        if(index == null) {
+            index = ObjectIndex.onRange(path);
+            reindex(index);
+        }
+        return getStoredObjectsWithIds(index.getIds(from, fromInclusive, to, toInclusive));
+    }
+
+    /**
+     * Get the objects held in memory by this store whose geopoint property is nearest to the given point. This only
+     * examines the objects around the point if an {@link ObjectIndex#onLocation(String)} index on the path has been
+     * {@link #addIndex(ObjectIndex) added}, otherwise every object is examined
+     * @param path the geopoint property, with the properties of subobjects separated by dots
+     * @param point the point
+     * @param count the maximum number of objects to return
+     * @param units the units to give distances in
+     * @return a response whose {@link CMObjectResponse#getObjects()} are nearest first, with their distances from the
+     * point available from {@link CMObjectResponse#getDistanceFor(String)}, as for a near search sent to CloudMine
+     * @throws InvalidRequestException if the path is empty
+     * @throws ConversionException if the objects cannot be converted to JSON
+     */
+    public CMObjectResponse getStoredObjectsNear(String path, CMGeoPointInterface point, int count, DistanceUnits units) throws InvalidRequestException, ConversionException {
+        return neighborResponse(geoIndex(path).getNearest(point, count, units == null ? Distance.DEFAULT_UNITS : units));
+    }
+
+    /**
+     * Get the objects held in memory by this store whose geopoint property is within the given distance of the given
+     * point. This only examines the objects around the point if an {@link ObjectIndex#onLocation(String)} index on the
+     * path has been {@link #addIndex(ObjectIndex) added}, otherwise every object is examined
+     * @param path the geopoint property, with the properties of subobjects separated by dots
+     * @param point the point
+     * @param radius the distance; distances are given in its units
+     * @return a response whose {@link CMObjectResponse#getObjects()} are nearest first, with their distances from the
+     * point available from {@link CMObjectResponse#getDistanceFor(String)}, as for a near search sent to CloudMine
+     * @throws InvalidRequestException if the path is empty
+     * @throws ConversionException if the objects cannot be converted to JSON
+     */
+    public CMObjectResponse getStoredObjectsWithin(String path, CMGeoPointInterface point, Distance radius) throws InvalidRequestException, ConversionException {
+        return neighborResponse(geoIndex(path).getWithin(point, radius));
+    }
+
+    private GeoIndex geoIndex(String path) throws InvalidRequestException {
+        GeoIndex index = findIndex(GeoIndex.class, path);
+        if(index == null) {
+            index = ObjectIndex.onLocation(path);
+            reindex(index);
+        }
+        return index;
+    }
+
+    private CMObjectResponse neighborResponse(List<GeoIndex.Neighbor> neighbors) throws ConversionException {
+        List<CMObject> nearest = new ArrayList<CMObject>(neighbors.size());
+        Map<String, Distance> distances = new HashMap<String, Distance>();
+        for(GeoIndex.Neighbor neighbor : neighbors) {
+            CMObject object = objects.get(neighbor.getObjectId());
+            if(object != null) {
+                nearest.add(object);
+                distances.put(neighbor.getObjectId(), neighbor.getDistance());
+            }
+        }
+        return new CMObjectResponse(nearest, distances);
+    }
+
+    private static boolean isOnLevel(CMObject object, ObjectLevel level) {
+        return object.isOnLevel(level) || object.isOnLevel(ObjectLevel.UNKNOWN);
+    }
+
+    /**
+     * Retrieve any existing, added CMObject with the specified objectId. If it is not held in memory and a
+     * {@link #setPersistentCache(PersistentObjectCache) persistent cache} is set, it is read from the cache
      * @param objectId the objectId associated with the desired CMObject
      * @return the CMObject if it exists; null otherwise
      */
@@ -832,7 +1540,15 @@ public class CMStore {
         if(objectId == null) {
             return null;
         }
-        return objects.get(objectId);
+        CMObject object = objects.get(objectId);
+        PersistentObjectCache cache = persistentCache;
+        if(object == null && cache != null) {
+            object = readCached(cache, objectId);
+            if(object != null) {
+                putStoredObject(objectId, object);
+            }
+        }
+        return object;
     }
 
     /**
@@ -898,6 +1614,15 @@ public class CMStore {
      * @param options options to apply to the call, such as a server function to pass the results of the call into
      */
     public void loadApplicationFile(String fileId, Callback<FileLoadResponse> callback, CMRequestOptions options) {
+        FileDownloadCache cache = fileCache;
+        if(cache != null && isCacheableLoad(options)) {
+            CMFile cached = cache.get(ObjectLevel.APPLICATION, null, fileId);
+            if(cached != null) {
+                callback.onCompletion(new FileLoadResponse(cached, 200));
+                return;
+            }
+            callback = fileLoadUpdateCacheCallback(callback, cache, ObjectLevel.APPLICATION, null);
+        }
         applicationService.asyncLoadFile(fileId, callback, options);
     }
 
@@ -928,14 +1653,68 @@ public class CMStore {
      * @throws CreationException if this CMStore does not have a CMSessionToken associated with it
      */
     public void loadUserFile(final String fileId, final Callback<FileLoadResponse> callback, final CMRequestOptions options) throws CreationException {
+        final FileDownloadCache cache = isCacheableLoad(options) ? fileCache : null;
         user().login(new ExceptionPassthroughCallback<LoginResponse>(callback) {
             @Override
             public void onCompletion(LoginResponse response) {
-                userService().asyncLoadFile(fileId, callback, options);
+                //cached per user, and only once they are logged in
+                String owner = cacheOwner();
+                Callback<FileLoadResponse> loadCallback = callback;
+                if(cache != null && owner != null) {
+                    CMFile cached = cache.get(ObjectLevel.USER, owner, fileId);
+                    if(cached != null) {
+                        callback.onCompletion(new FileLoadResponse(cached, 200));
+                        return;
+                    }
+                    loadCallback = fileLoadUpdateCacheCallback(callback, cache, ObjectLevel.USER, owner);
+                }
+                userService().asyncLoadFile(fileId, loadCallback, options);
             }
         });
     }
 
+    /**
+     * Keep the contents of files loaded with {@link #loadApplicationFile(String, Callback, CMRequestOptions)} and
+     * {@link #loadUserFile(String, Callback, CMRequestOptions)} in the given cache, and serve later loads of the same
+     * file from it without a download. User level files are cached per user. Files are dropped from the cache when
+     * they are uploaded again or deleted. Loads made with request options other than {@link CMRequestOptions#NONE}
+     * are not cached, as the options may change the contents
+     * @param cache the cache, or null to download every file again
+     */
+    public synchronized void setFileCache(FileDownloadCache cache) {
+        FileDownloadCache previous = fileCache;
+        if(previous != null) {
+            applicationService.getInvalidationBus().removeListener(previous);
+        }
+        fileCache = cache;
+        if(cache != null) {
+            applicationService.getInvalidationBus().addListener(cache);
+        }
+    }
+
+    public FileDownloadCache getFileCache() {
+        return fileCache;
+    }
+
+    private static boolean isCacheableLoad(CMRequestOptions options) {
+        return options == null || CMRequestOptions.NONE.equals(options);
+    }
+
+    private Callback<FileLoadResponse> fileLoadUpdateCacheCallback(final Callback<FileLoadResponse> callback, final FileDownloadCache cache,
+                                                                   final ObjectLevel level, final String owner) {
+        return new ExceptionPassthroughCallback<FileLoadResponse>(callback) {
+            public void onCompletion(FileLoadResponse response) {
+                try {
+                    if(response.wasSuccess()) {
+                        cache.put(level, owner, response.getFile());
+                    }
+                } finally {
+                    callback.onCompletion(response);
+                }
+            }
+        };
+    }
+
     /**
      * See {@link #loadApplicationFileMetaData(String, com.cloudmine.api.rest.options.CMRequestOptions, com.cloudmine.api.rest.callbacks.Callback)}
      * @param fileId
@@ -1044,7 +1823,13 @@ public class CMStore {
     /*********************************USERS*******************************/
     private UserCMWebService userService() throws CreationException {
         try {
-            return applicationService.getUserWebService(user().getSessionToken());
+            UserCMWebService service = applicationService.getUserWebService(user().getSessionToken());
+            String owner = cacheOwner();
+            if(owner != null) {
+                //so the user's writes are published under the same owner their cached objects are stored under
+                service.setCacheOwner(owner);
+            }
+            return service;
         }catch(AccessException ae) {
             throw new CreationException("Cannot get the user service when there is no logged in user associated with this store", ae);
         }
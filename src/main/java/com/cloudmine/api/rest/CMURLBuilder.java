@@ -5,6 +5,7 @@ import com.cloudmine.api.CMSessionToken;
 import com.cloudmine.api.Strings;
 import com.cloudmine.api.rest.options.CMRequestOptions;
 import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.query.CompiledQuery;
 import com.cloudmine.api.rest.options.CMServerFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,12 +97,16 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
         super(baseUrl, actions, queryParams);
     }
 
+    protected CMURLBuilder(CMURLBuilder toCopy) {
+        super(toCopy);
+    }
+
     protected CMURLBuilder newBuilder(String baseUrl, String actions, String queryParams) {
         return new CMURLBuilder(baseUrl, actions, queryParams);
     }
 
     public CMURLBuilder copy() {
-        return new CMURLBuilder(baseUrl.toString(), actions.toString(), queryParams.toString());
+        return new CMURLBuilder(this);
     }
 
     /**
@@ -129,10 +134,19 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
         return search(search, "q");
     }
 
+    /**
+     * Add a compiled search query to this URL, using its cached encoded form
+     * @param search a compiled search query
+     * @return a new CMURLBuilder with the given search query
+     */
+    public CMURLBuilder search(CompiledQuery search) {
+        return addFormattedAction("/search").addQuery("q", search.getEncodedQuery());
+    }
+
     public CMURLBuilder search(String search, String paramKey) {
         String encodedSearch;
         encodedSearch = encode(search);
-        return addAction("search").addQuery(paramKey, encodedSearch);
+        return addFormattedAction("/search").addQuery(paramKey, encodedSearch);
     }
 
     public static String encode(String url) {
@@ -147,9 +161,12 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
     }
 
     public CMURLBuilder options(CMRequestOptions options) {
-        if(options == null || options == CMRequestOptions.NONE || Strings.isEmpty(options.asUrlString()))
+        if(options == null || options == CMRequestOptions.NONE)
+            return this;
+        String optionsUrl = options.asUrlString();
+        if(Strings.isEmpty(optionsUrl))
             return this;
-        return addQuery(options.asUrlString());
+        return addQuery(optionsUrl);
     }
 
     /**
@@ -157,7 +174,7 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
      * @return a new CMURLBuilder with a data action
      */
     public CMURLBuilder data() {
-        return addAction("data");
+        return addFormattedAction("/data");
     }
 
     /**
@@ -209,7 +226,7 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
     }
 
     public CMURLBuilder userIds() {
-        return addAction("user_ids");
+        return addFormattedAction("/user_ids");
     }
 
     public CMURLBuilder ids(Collection<String> userIds) {
@@ -218,13 +235,13 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
     }
 
     private String keysToString(Collection<String> keys) {
-        String keyString = "";
+        StringBuilder keyString = new StringBuilder(keys.size() * 16);
         String comma = "";
         for(String key : keys) {
-            keyString += comma + encode(key);
+            keyString.append(comma).append(encode(key));
             comma = ",";
         }
-        return keyString;
+        return keyString.toString();
     }
 
     public CMURLBuilder serverFunction(CMServerFunction serverFunction) {
@@ -245,43 +262,43 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
     }
 
     public CMURLBuilder access() {
-        return this.addAction("access");
+        return this.addFormattedAction("/access");
     }
 
     public CMURLBuilder account() {
-        return this.notUser().addAction("account");
+        return this.notUser().addFormattedAction("/account");
     }
 
     public CMURLBuilder credentials() {
-        return this.notUser().addAction("credentials");
+        return this.notUser().addFormattedAction("/credentials");
     }
 
     public CMURLBuilder mine() {
-        return this.addAction("mine");
+        return this.addFormattedAction("/mine");
     }
 
     public CMURLBuilder reset() {
-        return this.addAction("reset");
+        return this.addFormattedAction("/reset");
     }
 
     public CMURLBuilder password() {
-        return this.addAction("password");
+        return this.addFormattedAction("/password");
     }
 
     public CMURLBuilder change() {
-        return this.addAction("change");
+        return this.addFormattedAction("/change");
     }
 
     public CMURLBuilder login() {
-        return this.addAction("login");
+        return this.addFormattedAction("/login");
     }
 
     public CMURLBuilder social() {
-        return this.addAction("social");
+        return this.addFormattedAction("/social");
     }
 
     public CMURLBuilder status() {
-        return this.addAction("status");
+        return this.addFormattedAction("/status");
     }
 
     public CMURLBuilder token(String token) {
@@ -312,7 +329,7 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
     }
 
     public CMURLBuilder logout() {
-        return this.addAction("logout");
+        return this.addFormattedAction("/logout");
     }
 
     public CMURLBuilder user() {
@@ -327,43 +344,43 @@ public class CMURLBuilder extends MutableBaseURLBuilder<CMURLBuilder> {
     }
 
     public CMURLBuilder users() {
-        return this.addAction("users");
+        return this.addFormattedAction("/users");
     }
 
     public CMURLBuilder create() {
-        return this.addAction("create");
+        return this.addFormattedAction("/create");
     }
 
     public CMURLBuilder text() {
-        return this.addAction("text");
+        return this.addFormattedAction("/text");
     }
 
     public CMURLBuilder push() {
-        return this.addAction("push");
+        return this.addFormattedAction("/push");
     }
 
     public CMURLBuilder subscribe() {
-        return this.addAction("subscribe");
+        return this.addFormattedAction("/subscribe");
     }
 
     public CMURLBuilder unsubscribe() {
-        return this.addAction("unsubscribe");
+        return this.addFormattedAction("/unsubscribe");
     }
 
     public CMURLBuilder channel() {
-        return this.addAction("channel");
+        return this.addFormattedAction("/channel");
     }
 
     public CMURLBuilder channels() {
-        return this.addAction("channels");
+        return this.addFormattedAction("/channels");
     }
 
     public CMURLBuilder binary() {
-        return this.addAction("binary");
+        return this.addFormattedAction("/binary");
     }
 
     public CMURLBuilder device() {
-        return this.notUser().addAction("device");
+        return this.notUser().addFormattedAction("/device");
     }
 
     public CMURLBuilder binary(String key) {
@@ -9,19 +9,29 @@ import com.cloudmine.api.CMSessionToken;
 import com.cloudmine.api.JavaCMUser;
 import com.cloudmine.api.JavaCMUser;
 import com.cloudmine.api.LibrarySpecificClassCreator;
+import com.cloudmine.api.ObjectLevel;
 import com.cloudmine.api.Strings;
+import com.cloudmine.api.cache.InvalidationBus;
+import com.cloudmine.api.cache.InvalidationEvent;
+import com.cloudmine.api.cache.NegativeCache;
+import com.cloudmine.api.cache.ResponseCache;
 import com.cloudmine.api.exceptions.ConversionException;
 import com.cloudmine.api.exceptions.CreationException;
 import com.cloudmine.api.exceptions.NetworkException;
 import com.cloudmine.api.persistance.ClassNameRegistry;
+import com.cloudmine.api.query.CompiledQuery;
 import com.cloudmine.api.rest.callbacks.CMCallback;
 import com.cloudmine.api.rest.callbacks.CMResponseCallback;
 import com.cloudmine.api.rest.callbacks.Callback;
 import com.cloudmine.api.rest.callbacks.CreationResponseCallback;
+import com.cloudmine.api.rest.options.CMColumnOptions;
 import com.cloudmine.api.rest.options.CMRequestOptions;
+import com.cloudmine.api.rest.options.CMServerFunction;
+import com.cloudmine.api.rest.options.CMSharedDataOptions;
 import com.cloudmine.api.rest.response.CMObjectResponse;
 import com.cloudmine.api.rest.response.CMResponse;
 import com.cloudmine.api.rest.response.CMSocialLoginResponse;
+import com.cloudmine.api.rest.response.ColumnarResponse;
 import com.cloudmine.api.rest.response.CreationResponse;
 import com.cloudmine.api.rest.response.FileCreationResponse;
 import com.cloudmine.api.rest.response.FileLoadResponse;
@@ -41,6 +51,7 @@ import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
@@ -86,11 +97,14 @@ public class CMWebService {
 
 
     protected final CMURLBuilder baseUrl;
-    private final HttpClient httpClient = new DefaultHttpClient();
+    private final HttpClient httpClient;
     protected final AsynchronousHttpClient asyncHttpClient; //TODO split this into an asynch and synch impl instead of both in one?
     private CMSessionToken loggedInSessionToken;
     private final Map<CMSessionToken, UserCMWebService> loggedInUserServices = new WeakHashMap<CMSessionToken, UserCMWebService>();
     final String apiKey;
+    private volatile ResponseCache responseCache;
+    private volatile NegativeCache negativeCache;
+    private volatile InvalidationBus invalidationBus = new InvalidationBus();
 
     /**
      * Get the instance of CMWebService. You should use this method instead of constructing your own,
@@ -128,6 +142,20 @@ public class CMWebService {
         this.baseUrl = baseUrl;
         asyncHttpClient = asyncClient;
         this.apiKey = apiKey;
+        ConnectionPool pool = getConnectionPool();
+        //blocking calls share the asynchronous client's connections when it has a pool
+        httpClient = pool == null ? new DefaultHttpClient() : new TracingHttpClient(pool);
+    }
+
+    /**
+     * Get the pool of connections that requests made by this service are sent over, to observe or tune it while
+     * requests are made. Blocking and asynchronous requests share the pool
+     * @return the pool, or null if the asynchronous http client in use does not pool its connections through a
+     * {@link ConnectionPool}
+     */
+    public ConnectionPool getConnectionPool() {
+        return asyncHttpClient instanceof ApacheThreadedHttpClient ?
+                ((ApacheThreadedHttpClient) asyncHttpClient).getConnectionPool() : null;
     }
 
     protected CMWebService(String appId, AsynchronousHttpClient asyncClient) {
@@ -173,6 +201,9 @@ public class CMWebService {
         UserCMWebService userService = loggedInUserServices.get(token);
         if(userService == null) {
             userService = UserCMWebService.UserCMWebService(baseUrl.copy().user(), apiKey, token, asyncHttpClient);
+            userService.setInvalidationBus(invalidationBus);
+            userService.setResponseCache(responseCache);
+            userService.setNegativeCache(negativeCache);
             loggedInUserServices.put(token, userService);
         }
         return userService;
@@ -180,6 +211,102 @@ public class CMWebService {
 
 
 
+    /**
+     * Cache the responses to GET requests made by this service and the UserCMWebServices it has created, so
+     * that repeated loads and searches are answered from memory until they expire. Requests whose
+     * CMRequestOptions skip the cache are always sent. Responses are not cached by default
+     * @param responseCache the cache to use, or null to stop caching
+     */
+    public synchronized void setResponseCache(ResponseCache responseCache) {
+        if(this.responseCache != null) {
+            invalidationBus.removeListener(this.responseCache);
+        }
+        invalidationBus.addListener(responseCache);
+        this.responseCache = responseCache;
+        for(UserCMWebService userService : loggedInUserServices.values()) {
+            userService.setResponseCache(responseCache);
+        }
+    }
+
+    /**
+     * Get the cache used for the responses to GET requests
+     * @return the cache, or null if responses are not being cached
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Remember the object and file ids that loads made by this service and the UserCMWebServices it has created
+     * found to be missing, so that loading them again is answered without a network round trip until the misses
+     * expire or the ids are written. Requests whose CMRequestOptions skip the cache, call a server function or
+     * load shared data are always sent. Misses are not remembered by default
+     * @param negativeCache the cache to use, or null to stop remembering misses
+     */
+    public synchronized void setNegativeCache(NegativeCache negativeCache) {
+        if(this.negativeCache != null) {
+            invalidationBus.removeListener(this.negativeCache);
+        }
+        invalidationBus.addListener(negativeCache);
+        this.negativeCache = negativeCache;
+        for(UserCMWebService userService : loggedInUserServices.values()) {
+            userService.setNegativeCache(negativeCache);
+        }
+    }
+
+    /**
+     * Get the cache used for missing object and file ids
+     * @return the cache, or null if misses are not being remembered
+     */
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * Get the bus that is notified after every successful insert, update or delete made through this service or the
+     * UserCMWebServices it has created. Register an {@link com.cloudmine.api.cache.InvalidationListener} on it to keep
+     * your own caches of CloudMine data up to date
+     * @return the invalidation bus
+     */
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    void setInvalidationBus(InvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * Get the level of the objects this service operates on
+     * @return {@link ObjectLevel#APPLICATION}
+     */
+    protected ObjectLevel getObjectLevel() {
+        return ObjectLevel.APPLICATION;
+    }
+
+    /**
+     * Get the user whose data this service operates on, which keeps one user's missing ids from answering another's loads
+     * @return null, as this service operates on application data
+     */
+    protected String getCacheOwner() {
+        return null;
+    }
+
+    /**
+     * Get the negative cache to consult for a load with the given options
+     * @return the cache, or null if there is none or the options change what the load returns
+     */
+    private NegativeCache negativeCacheFor(CMRequestOptions options) {
+        NegativeCache cache = negativeCache;
+        if(cache == null || options == null) {
+            return cache;
+        }
+        boolean plainLoad = !options.isSkipCache() &&
+                (options.getServerFunction() == null || CMServerFunction.NONE.equals(options.getServerFunction())) &&
+                (options.getSharedDataOptions() == null || options.getSharedDataOptions() == CMSharedDataOptions.NO_OPTIONS);
+        return plainLoad ? cache : null;
+    }
+
     /**
      * This will set the default UserCMWebService and return it. This must be called before calling
      * userWebService, unless you pass userWebService a CMSessionToken.
@@ -209,7 +336,7 @@ public class CMWebService {
      * @throws NetworkException if unable to perform the request
      */
     public ObjectModificationResponse deleteAll() throws NetworkException {
-        return executeCommand(createDeleteAll(), objectModificationResponseConstructor());
+        return executeCommand(createDeleteAll(), invalidatingAll());
     }
 
     /**
@@ -219,7 +346,7 @@ public class CMWebService {
      * @throws NetworkException if unable to perform the request
      */
     public ObjectModificationResponse delete(Collection<String> objectIds) throws NetworkException {
-        return executeCommand(createDelete(objectIds), objectModificationResponseConstructor());
+        return executeCommand(createDelete(objectIds), invalidating(null));
     }
 
     /**
@@ -229,7 +356,7 @@ public class CMWebService {
      * @throws NetworkException if unable to perform the request
      */
     public ObjectModificationResponse delete(String objectId) throws NetworkException {
-        return executeCommand(createDelete(objectId), objectModificationResponseConstructor());
+        return executeCommand(createDelete(objectId), invalidating(null));
     }
 
     /**
@@ -256,7 +383,7 @@ public class CMWebService {
      */
     public void asyncLoadObjectsOfClass(String klass, Callback<CMObjectResponse> callback, CMRequestOptions options) {
         HttpGet search = createSearch("[" + getClassSearchString(klass) + "]", options);
-        executeAsyncCommand(search, callback, cmObjectResponseConstructor());
+        executeAsyncCommand(search, callback, cmObjectResponseConstructor(options));
 
     }
 
@@ -267,7 +394,7 @@ public class CMWebService {
     public void asyncLoadObjectsOfClass(Class<? extends CMObject> klass, Callback<CMObjectResponse> callback, CMRequestOptions options) {
         HttpGet search = createSearch("[" + getClassSearchString(klass) + "]", options);
         executeAsyncCommand(search,
-                callback, cmObjectResponseConstructor());
+                callback, cmObjectResponseConstructor(options));
     }
 
     public void asyncLoadObjectsOfClassAndSearch(Class<? extends CMObject> klass, String search, Callback<CMObjectResponse> callback) {
@@ -276,10 +403,31 @@ public class CMWebService {
 
     public void asyncLoadObjectsOfClassAndSearch(Class<? extends CMObject> klass, String search, Callback<CMObjectResponse> callback, CMRequestOptions options) {
         executeAsyncCommand(createSearch(addClassSearch(klass, search), options),
-                callback, cmObjectResponseConstructor());
+                callback, cmObjectResponseConstructor(options));
 
     }
 
+    /**
+     * Load the given fields of every object of the specified class into columns. Use this instead of
+     * {@link #asyncLoadObjectsOfClass(String, com.cloudmine.api.rest.callbacks.Callback, com.cloudmine.api.rest.options.CMRequestOptions)}
+     * when aggregating a few fields across many objects, as no CMObjects are created
+     * @param klass the class type to load
+     * @param columns the fields to read, and their types
+     * @param callback the callback to pass the results into. It is recommended that {@link com.cloudmine.api.rest.callbacks.ColumnarResponseCallback} is used here
+     * @param options paging and sorting options. Decode options are ignored
+     */
+    public void asyncLoadColumnsOfClass(String klass, CMColumnOptions columns, Callback<ColumnarResponse> callback, CMRequestOptions options) {
+        HttpGet search = createSearch("[" + getClassSearchString(klass) + "]", options);
+        executeAsyncCommand(search, callback, ColumnarResponse.constructor(columns));
+    }
+
+    /**
+     * See {@link #asyncLoadColumnsOfClass(String, com.cloudmine.api.rest.options.CMColumnOptions, com.cloudmine.api.rest.callbacks.Callback, com.cloudmine.api.rest.options.CMRequestOptions)}
+     */
+    public void asyncLoadColumnsOfClass(Class<? extends CMObject> klass, CMColumnOptions columns, Callback<ColumnarResponse> callback, CMRequestOptions options) {
+        asyncLoadColumnsOfClass(ClassNameRegistry.forClass(klass), columns, callback, options);
+    }
+
     private String getClassSearchString(Class<? extends CMObject> klass) {
         String className = ClassNameRegistry.forClass(klass);
         return getClassSearchString(className);
@@ -308,7 +456,7 @@ public class CMWebService {
     }
 
     public void asyncSearchUserProfiles(String searchString, CMRequestOptions options, Callback<CMObjectResponse> callback) {
-        executeAsyncCommand(createProfileSearch(searchString, options), callback, cmObjectResponseConstructor());
+        executeAsyncCommand(createProfileSearch(searchString, options), callback, cmObjectResponseConstructor(options));
     }
 
 
@@ -423,7 +571,7 @@ public class CMWebService {
      */
     public void asyncDelete(Collection<String> objectIds, Callback<ObjectModificationResponse> callback, CMRequestOptions options) {
         executeAsyncCommand(createDelete(objectIds, options),
-                callback, objectModificationResponseConstructor());
+                callback, invalidating(null));
     }
 
     /**
@@ -431,7 +579,7 @@ public class CMWebService {
      * @param callback a Callback that expects an ObjectModificationResponse or a parent class. It is recommended an {@link com.cloudmine.api.rest.callbacks.ObjectModificationResponseCallback} is passed in for this
      */
     public void asyncDeleteAll(Callback<ObjectModificationResponse> callback) {
-        executeAsyncCommand(createDeleteAll(), callback, objectModificationResponseConstructor());
+        executeAsyncCommand(createDeleteAll(), callback, invalidatingAll());
     }
 
     /**
@@ -446,7 +594,7 @@ public class CMWebService {
     }
 
     public void asyncDeleteUser(String userId, Callback<ObjectModificationResponse> callback) {
-        executeAsyncCommand(createDeleteUser(userId), callback, objectModificationResponseConstructor());
+        executeAsyncCommand(createDeleteUser(userId), callback, invalidating(null));
     }
 
     /**
@@ -527,7 +675,7 @@ public class CMWebService {
      * @param callback a {@link Callback} that expects a {@link FileCreationResponse}. It is recommended that you pass in a {@link com.cloudmine.api.rest.callbacks.FileCreationResponseCallback}
      */
     public void asyncUpload(CMFile file, Callback<FileCreationResponse> callback) {
-        executeAsyncCommand(createPut(file), callback, fileCreationResponseConstructor());
+        executeAsyncCommand(createPut(file), callback, invalidatingFile());
     }
 
     /**
@@ -554,12 +702,23 @@ public class CMWebService {
      * @param options options to apply to the call, such as a server function to pass the results of the call into
      */
     public void asyncLoadFile(String fileId, Callback<FileLoadResponse> callback, CMRequestOptions options) {
+        ResponseConstructor<FileLoadResponse> constructor = fileLoadResponseResponseConstructor(fileId);
+        NegativeCache cache = negativeCacheFor(options);
+        if(cache != null) {
+            FileLoadResponse missing = cache.getFileMiss(getObjectLevel(), getCacheOwner(), fileId);
+            if(missing != null) {
+                callback.setStartTime(System.currentTimeMillis());
+                callback.onCompletion(missing);
+                return;
+            }
+            constructor = cache.recordingFileMisses(getObjectLevel(), getCacheOwner(), fileId, constructor);
+        }
         executeAsyncCommand(createGetFile(fileId, options),
-                callback, fileLoadResponseResponseConstructor(fileId));
+                callback, constructor);
     }
 
     public void asyncLoadFileMetaData(String fileId, CMRequestOptions options, Callback<CMObjectResponse> callback) {
-        executeAsyncCommand(createGetFileMetaData(fileId, options), callback, cmObjectResponseConstructor());
+        executeAsyncCommand(createGetFileMetaData(fileId, options), callback, cmObjectResponseConstructor(options));
     }
 
     /**
@@ -637,8 +796,19 @@ public class CMWebService {
      * @param options options to apply to the call, such as a server function to pass the results of the call into, paging options, etc
      */
     public void asyncLoadObjects(Collection<String> objectIds, Callback<CMObjectResponse> callback, CMRequestOptions options) {
+        ResponseConstructor<CMObjectResponse> constructor = cmObjectResponseConstructor(options);
+        NegativeCache cache = negativeCacheFor(options);
+        if(cache != null && objectIds != null && !objectIds.isEmpty()) {
+            CMObjectResponse missing = cache.getObjectMisses(getObjectLevel(), getCacheOwner(), objectIds, constructor);
+            if(missing != null) {
+                callback.setStartTime(System.currentTimeMillis());
+                callback.onCompletion(missing);
+                return;
+            }
+            constructor = cache.recordingObjectMisses(getObjectLevel(), getCacheOwner(), objectIds, constructor);
+        }
         executeAsyncCommand(createGetObjects(objectIds, options),
-                callback, cmObjectResponseConstructor());
+                callback, constructor);
     }
 
     /**
@@ -666,7 +836,18 @@ public class CMWebService {
      */
     public void asyncSearch(String searchString, Callback<CMObjectResponse> callback, CMRequestOptions options) {
         executeAsyncCommand(createSearch(searchString, options),
-                callback, cmObjectResponseConstructor());
+                callback, cmObjectResponseConstructor(options));
+    }
+
+    /**
+     * Retrieve all the objects that match the given compiled search, without encoding it again
+     * @param search the search, compiled with {@link CompiledQuery#compile(String)} or bound from a {@link com.cloudmine.api.query.PreparedQuery}
+     * @param callback the callback to pass the results into. It is recommended that {@link com.cloudmine.api.rest.callbacks.CMObjectResponseCallback} is used here
+     * @param options options to apply to the call, such as a server function to pass the results of the call into, paging options, etc
+     */
+    public void asyncSearch(CompiledQuery search, Callback<CMObjectResponse> callback, CMRequestOptions options) {
+        executeAsyncCommand(createSearch(search, options),
+                callback, cmObjectResponseConstructor(options));
     }
 
     /**
@@ -698,7 +879,7 @@ public class CMWebService {
     public void asyncInsert(CMObject toCreate, Callback<ObjectModificationResponse> callback, CMRequestOptions options) throws ConversionException {
         executeAsyncCommand(
                 createPut(toCreate.transportableRepresentation(), options),
-                callback, objectModificationResponseConstructor());
+                callback, invalidating(Collections.singleton(toCreate)));
     }
 
     /**
@@ -736,7 +917,7 @@ public class CMWebService {
                 transportables.toArray(new Transportable[transportables.size()])
         ).transportableRepresentation();
         executeAsyncCommand(createPut(jsonStringsCollection, options),
-                callback, objectModificationResponseConstructor());
+                callback, invalidating(toCreate));
     }
 
     /**
@@ -755,7 +936,7 @@ public class CMWebService {
      * @throws ConversionException if unable to convert to transportable representation; this should not happen unless you are subclassing objects and doing something you shouldn't be with overriding transportableRepresentation This ordinarily should not occur
      */
     public void asyncUpdate(CMObject toUpdate, Callback<ObjectModificationResponse> callback) throws ConversionException {
-        executeAsyncCommand(createJsonPost(toUpdate.transportableRepresentation()), callback, objectModificationResponseConstructor());
+        executeAsyncCommand(createJsonPost(toUpdate.transportableRepresentation()), callback, invalidating(Collections.singleton(toUpdate)));
     }
 
     /**
@@ -781,7 +962,7 @@ public class CMWebService {
             i++;
         }
         String json = JsonUtilities.jsonCollection(jsonStrings).transportableRepresentation();
-        executeAsyncCommand(createJsonPost(json), callback, objectModificationResponseConstructor());
+        executeAsyncCommand(createJsonPost(json), callback, invalidating(objects));
     }
 
     /**
@@ -1106,7 +1287,16 @@ public class CMWebService {
      * @throws NetworkException if unable to perform the request
      */
     public CMObjectResponse loadObjects(Collection<String> objectIds) throws NetworkException{
-        return executeCommand(createGetObjects(objectIds), cmObjectResponseConstructor());
+        ResponseConstructor<CMObjectResponse> constructor = cmObjectResponseConstructor();
+        NegativeCache cache = negativeCache;
+        if(cache != null && objectIds != null && !objectIds.isEmpty()) {
+            CMObjectResponse missing = cache.getObjectMisses(getObjectLevel(), getCacheOwner(), objectIds, constructor);
+            if(missing != null) {
+                return missing;
+            }
+            constructor = cache.recordingObjectMisses(getObjectLevel(), getCacheOwner(), objectIds, constructor);
+        }
+        return executeCommand(createGetObjects(objectIds), constructor);
     }
 
     /**
@@ -1126,13 +1316,17 @@ public class CMWebService {
      * @throws CreationException if unable to create the CMFile
      */
     public FileLoadResponse loadFile(String fileId) throws NetworkException, CreationException {
-        try {
-            HttpResponse response = httpClient.execute(createGetFile(fileId));
-            return new FileLoadResponse(response, fileId);
-        } catch (IOException e) {
-            LOG.error("IOException getting file", e);
-            throw new CreationException("Couldn't get file because of IOException", e);
+        NegativeCache cache = negativeCache;
+        ResponseConstructor<FileLoadResponse> constructor = fileLoadResponseResponseConstructor(fileId);
+        if(cache != null) {
+            FileLoadResponse missing = cache.getFileMiss(getObjectLevel(), getCacheOwner(), fileId);
+            if(missing != null) {
+                return missing;
+            }
+            constructor = cache.recordingFileMisses(getObjectLevel(), getCacheOwner(), fileId, constructor);
         }
+        //through the response cache, like every other blocking load
+        return executeCommand(createGetFile(fileId), constructor);
     }
 
     /**
@@ -1146,6 +1340,17 @@ public class CMWebService {
         return executeCommand(get, cmObjectResponseConstructor());
     }
 
+    /**
+     * Make a blocking call to search for CloudMine objects with a compiled search, without encoding it again
+     * @param search the search, compiled with {@link CompiledQuery#compile(String)} or bound from a {@link com.cloudmine.api.query.PreparedQuery}
+     * @return  the {@link com.cloudmine.api.rest.response.CMObjectResponse} containing the retrieved objects.
+     * @throws NetworkException if unable to perform the network call
+     */
+    public CMObjectResponse loadSearch(CompiledQuery search) throws NetworkException {
+        HttpGet get = createSearch(search, CMRequestOptions.NONE);
+        return executeCommand(get, cmObjectResponseConstructor());
+    }
+
     /**
      * Make a blocking call to directly insert a transportable representation into CloudMine
      * @param transport a valid transportable representation of a CloudMine object
@@ -1154,7 +1359,7 @@ public class CMWebService {
      */
     public ObjectModificationResponse insert(String transport) throws NetworkException {
         HttpPut put = createPut(transport);
-        return executeCommand(put, objectModificationResponseConstructor());
+        return executeCommand(put, invalidating(null));
     }
 
     /**
@@ -1165,7 +1370,7 @@ public class CMWebService {
      */
     public ObjectModificationResponse update(String transport) throws NetworkException {
         HttpPost post = createJsonPost(transport);
-        return executeCommand(post, objectModificationResponseConstructor());
+        return executeCommand(post, invalidating(null));
     }
 
     /**
@@ -1175,7 +1380,7 @@ public class CMWebService {
      * @throws NetworkException if unable to perform the network call
      */
     public FileCreationResponse insert(CMFile file) throws NetworkException {
-        return executeCommand(createPut(file), fileCreationResponseConstructor());
+        return executeCommand(createPut(file), invalidatingFile());
     }
 
     /**
@@ -1234,24 +1439,80 @@ public class CMWebService {
     <T> void executeAsyncCommand(HttpUriRequest message, final Callback callback, ResponseConstructor<T> constructor) {
         final long startTime = System.currentTimeMillis();
         callback.setStartTime(startTime);
+        ResponseCache cache = responseCache;
+        String cacheKey = cache == null ? null : cache.keyFor(message);
+        if(cacheKey != null) {
+            T cached = cache.get(cacheKey, constructor);
+            if(cached != null) {
+                //callers pair each callback with a constructor of the response type it expects
+                @SuppressWarnings("unchecked")
+                Callback<T> typedCallback = callback;
+                completeFromCache(typedCallback, cached);
+                return;
+            }
+            constructor = cache.storing(message, cacheKey, constructor);
+        }
         asyncHttpClient.executeCommand(message, callback, constructor);
     }
 
+    /**
+     * Complete an asynchronous request that was answered by the response cache. Like responses from the network, the
+     * response is delivered on a thread of its own, never on the thread that made the request; if the callback's
+     * onCompletion throws, its onFailure is called. Override to deliver cached responses on another thread
+     * @param callback the request's callback
+     * @param response the cached response
+     */
+    protected <T> void completeFromCache(final Callback<T> callback, final T response) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onCompletion(response);
+                } catch(RuntimeException e) {
+                    callback.onFailure(e, "Failed");
+                }
+            }
+        }).start();
+    }
+
     private CMResponse executeCommand(HttpUriRequest message) throws NetworkException {
         return executeCommand(message, cmResponseConstructor());
     }
 
     private <T extends ResponseBase> T executeCommand(HttpUriRequest message, ResponseConstructor<T> constructor) throws NetworkException{
+        ResponseCache cache = responseCache;
+        String cacheKey = cache == null ? null : cache.keyFor(message);
+        if(cacheKey != null) {
+            T cached = cache.get(cacheKey, constructor);
+            if(cached != null) {
+                return cached;
+            }
+            constructor = cache.storing(message, cacheKey, constructor);
+        }
         HttpResponse response = null;
+        MeasuredRequest measured = new MeasuredRequest(message, 0);
         try {
+            measured.started();
+            measured.sending();
             response = httpClient.execute(message);
-            return constructor.construct(response);
+            measured.received(response);
+            measured.parsing();
+            T constructed = constructor.construct(response);
+            measured.parsed();
+            return constructed;
         }
         catch (IOException e) {
             LOG.error("Error executing command: " + message.getURI(), e);
+            measured.ended(e);
             throw new NetworkException("Couldn't execute command, IOException: ", e);
         }
+        catch (RuntimeException e) {
+            measured.ended(e);
+            throw e;
+        }
         finally {
+            measured.finished(0);
+            measured.ended(null);
             CMWebService.consumeEntityResponse(response);
         }
     }
@@ -1272,7 +1533,13 @@ public class CMWebService {
     private HttpGet createSearch(String search, CMRequestOptions options) {
         HttpGet get = new HttpGet(baseUrl.copy().search(search).options(options).asUrlString());
         addCloudMineHeader(get);
-        return get;
+        return applyCacheOptions(get, options);
+    }
+
+    private HttpGet createSearch(CompiledQuery search, CMRequestOptions options) {
+        HttpGet get = new HttpGet(baseUrl.copy().search(search).options(options).asUrlString());
+        addCloudMineHeader(get);
+        return applyCacheOptions(get, options);
     }
 
     private HttpDelete createDeleteUser(String userId) {
@@ -1469,13 +1736,13 @@ public class CMWebService {
     private HttpGet createGetFile(String key, CMRequestOptions options) {
         HttpGet get = new HttpGet(baseUrl.copy().binary(key).options(options).asUrlString());
         addCloudMineHeader(get);
-        return get;
+        return applyCacheOptions(get, options);
     }
 
     private HttpGet createGetFileMetaData(String fileId, CMRequestOptions options) {
         HttpGet get = new HttpGet(baseUrl.copy().search(createFileMetaDataSearch(fileId)).options(options).asUrlString());
         addCloudMineHeader(get);
-        return get;
+        return applyCacheOptions(get, options);
     }
 
     private String createFileMetaDataSearch(String fileId) {
@@ -1494,7 +1761,7 @@ public class CMWebService {
     }
 
     private HttpGet createProfileSearch(String searchString, CMRequestOptions options) {
-        return createGet(baseUrl.copy().account().search(searchString, "p").options(options).asUrlString());
+        return applyCacheOptions(createGet(baseUrl.copy().account().search(searchString, "p").options(options).asUrlString()), options);
     }
 
     private HttpGet createGetObjects(Collection<String> keys) {
@@ -1504,7 +1771,14 @@ public class CMWebService {
     private HttpGet createGetObjects(Collection<String> keys, CMRequestOptions options) {
         HttpGet get = new HttpGet(baseUrl.copy().text().objectIds(keys).options(options).asUrlString());
         addCloudMineHeader(get);
-        return get;
+        return applyCacheOptions(get, options);
+    }
+
+    private <R extends HttpRequestBase> R applyCacheOptions(R request, CMRequestOptions options) {
+        if(options != null && options.isSkipCache()) {
+            request.getParams().setBooleanParameter(ResponseCache.SKIP_CACHE_PARAMETER, true);
+        }
+        return request;
     }
 
     private HttpPost createResetPasswordConfirmation(String token, String newPassword) {
@@ -1573,6 +1847,7 @@ public class CMWebService {
 
     protected void addAuthorizationHeader(String email, String userName, String password, HttpEntityEnclosingRequestBase post) {
         String authName = Strings.isNotEmpty(email) ? email : userName;
+        //encoded for each request rather than cached, so the service never holds on to a user's credentials
         post.addHeader(AUTHORIZATION_KEY, "Basic " + JavaCMUser.encode(authName, password));
     }
 
@@ -1591,6 +1866,67 @@ public class CMWebService {
         return ObjectModificationResponse.CONSTRUCTOR;
     }
 
+    /**
+     * Wraps a constructor so that an {@link InvalidationEvent} is published for every successful response it constructs
+     */
+    private abstract class InvalidatingConstructor<T extends ResponseBase> implements ResponseConstructor<T> {
+        private final ResponseConstructor<T> constructor;
+
+        InvalidatingConstructor(ResponseConstructor<T> constructor) {
+            this.constructor = constructor;
+        }
+
+        abstract InvalidationEvent eventFor(T response);
+
+        @Override
+        public T construct(HttpResponse response) throws CreationException {
+            return published(constructor.construct(response));
+        }
+
+        @Override
+        public T construct(String messageBody, int responseCode) throws CreationException {
+            return published(constructor.construct(messageBody, responseCode));
+        }
+
+        private T published(T response) {
+            if(response != null && response.wasSuccess()) {
+                InvalidationEvent event = eventFor(response);
+                if(event != null) {
+                    invalidationBus.publish(event.forOwner(getCacheOwner()));
+                }
+            }
+            return response;
+        }
+    }
+
+    private ResponseConstructor<ObjectModificationResponse> invalidating(final Collection<? extends CMObject> written) {
+        return new InvalidatingConstructor<ObjectModificationResponse>(objectModificationResponseConstructor()) {
+            @Override
+            InvalidationEvent eventFor(ObjectModificationResponse response) {
+                return InvalidationEvent.fromResponse(getObjectLevel(), response, written);
+            }
+        };
+    }
+
+    private ResponseConstructor<ObjectModificationResponse> invalidatingAll() {
+        return new InvalidatingConstructor<ObjectModificationResponse>(objectModificationResponseConstructor()) {
+            @Override
+            InvalidationEvent eventFor(ObjectModificationResponse response) {
+                return InvalidationEvent.deletedAll(getObjectLevel());
+            }
+        };
+    }
+
+    private ResponseConstructor<FileCreationResponse> invalidatingFile() {
+        return new InvalidatingConstructor<FileCreationResponse>(fileCreationResponseConstructor()) {
+            @Override
+            InvalidationEvent eventFor(FileCreationResponse response) {
+                String fileId = response.getfileId();
+                return fileId == null ? null : InvalidationEvent.updated(getObjectLevel(), Collections.singleton(fileId));
+            }
+        };
+    }
+
     protected ResponseConstructor<CreationResponse> creationResponseConstructor() {
         return CreationResponse.CONSTRUCTOR;
     }
@@ -1611,6 +1947,13 @@ public class CMWebService {
         return CMObjectResponse.CONSTRUCTOR;
     }
 
+    protected ResponseConstructor<CMObjectResponse> cmObjectResponseConstructor(CMRequestOptions options) {
+        if(options == null) {
+            return cmObjectResponseConstructor();
+        }
+        return CMObjectResponse.constructor(options.getDecodeOptions());
+    }
+
     protected ResponseConstructor<TokenUpdateResponse> tokenUpdateConstructor() {
         return TokenUpdateResponse.CONSTRUCTOR;
     }
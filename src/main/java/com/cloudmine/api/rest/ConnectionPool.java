@@ -0,0 +1,364 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.metrics.LatencyHistogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pool of connections used by an {@link ApacheThreadedHttpClient}, and by the blocking requests of the
+ * {@link CMWebService}s that use it, which can be observed and tuned while requests are being made; get it with
+ * {@link CMWebService#getConnectionPool()}. Uses HttpClient's PoolingClientConnectionManager when it is available (4.2 and later), and its
+ * ThreadSafeClientConnManager otherwise. These are reached through reflection so the SDK still runs on the older
+ * HttpClient bundled with Android; statistics and settings the pool in use doesn't support are reported as
+ * {@link #NOT_AVAILABLE}, or throw UnsupportedOperationException when set
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ConnectionPool {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+    /** Reported for statistics the pool in use doesn't keep */
+    public static final int NOT_AVAILABLE = -1;
+    private static final Class[] NO_TYPES = new Class[0];
+
+    /**
+     * The state of a pool, or of the connections to one route, at one point in time
+     */
+    public static class Stats {
+        private final int leased;
+        private final int available;
+        private final int pending;
+        private final int max;
+
+        Stats(int leased, int available, int pending, int max) {
+            this.leased = leased;
+            this.available = available;
+            this.pending = pending;
+            this.max = max;
+        }
+
+        /**
+         * Get the number of connections being used by requests
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * Get the number of open connections waiting to be used
+         */
+        public int getAvailable() {
+            return available;
+        }
+
+        /**
+         * Get the number of requests waiting for a connection
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * Get the maximum number of connections
+         */
+        public int getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "leased: " + leased + ", available: " + available + ", pending: " + pending + ", max: " + max;
+        }
+    }
+
+    private final ClientConnectionManager connectionManager;
+    private final boolean pooling;
+    private final LatencyHistogram leaseTimes = new LatencyHistogram();
+    private volatile long keepAliveMillis = NOT_AVAILABLE;
+    private final ConnectionKeepAliveStrategy keepAliveStrategy = new DefaultConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long serverMillis = super.getKeepAliveDuration(response, context);
+            long configured = keepAliveMillis;
+            if(configured < 0) {
+                return serverMillis;
+            }
+            //the server may close the connection sooner than we'd keep it
+            return serverMillis < 0 ? configured : Math.min(serverMillis, configured);
+        }
+    };
+    private ScheduledExecutorService evictor;
+    private ScheduledFuture<?> eviction;
+    private long idleEvictionMillis;
+
+    ConnectionPool() {
+        ClientConnectionManager manager;
+        boolean isPooling;
+        try {
+            //this will work for 4.2 and later
+            Class poolingClientConnectionManagerClass = Class.forName("org.apache.http.impl.conn.PoolingClientConnectionManager");
+            manager = (ClientConnectionManager) poolingClientConnectionManagerClass.getConstructor().newInstance();
+            isPooling = true;
+        } catch (Exception e) {
+            //we are running on an older version, lets try the  backup
+            SchemeRegistry schemeRegistry = new SchemeRegistry();
+            schemeRegistry.register(
+                    new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+            schemeRegistry.register(
+                    new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+            manager = new ThreadSafeClientConnManager(new BasicHttpParams(), schemeRegistry);
+            isPooling = false;
+        }
+        this.connectionManager = manager;
+        this.pooling = isPooling;
+    }
+
+    /**
+     * Get the state of the whole pool. The pending count is only available from a PoolingClientConnectionManager;
+     * from a ThreadSafeClientConnManager every open connection is counted as leased
+     */
+    public Stats getStats() {
+        if(pooling) {
+            return poolStats(invoke("getTotalStats", NO_TYPES));
+        }
+        int open = intValue(invokeIfExists("getConnectionsInPool", NO_TYPES));
+        return new Stats(open, NOT_AVAILABLE, NOT_AVAILABLE, getMaxTotal());
+    }
+
+    /**
+     * Get the state of the connections to the given route
+     * @param route the route
+     * @throws UnsupportedOperationException if the pool in use doesn't keep statistics by route
+     */
+    public Stats getStats(HttpRoute route) throws UnsupportedOperationException {
+        if(!pooling) {
+            throw new UnsupportedOperationException("Statistics by route need HttpClient 4.2 or later");
+        }
+        return poolStats(invoke("getStats", new Class[] {HttpRoute.class}, route));
+    }
+
+    /**
+     * Get how long requests have waited to lease a connection from the pool, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot getLeaseTimes() {
+        return leaseTimes.snapshot();
+    }
+
+    /**
+     * Get the maximum number of connections across every route
+     * @return the maximum, or {@link #NOT_AVAILABLE}
+     */
+    public int getMaxTotal() {
+        return intValue(invokeIfExists("getMaxTotal", NO_TYPES));
+    }
+
+    /**
+     * Set the maximum number of connections across every route
+     * @param max the maximum; must be positive
+     * @throws UnsupportedOperationException if the pool in use can't be resized
+     */
+    public void setMaxTotal(int max) throws IllegalArgumentException, UnsupportedOperationException {
+        invoke("setMaxTotal", new Class[] {int.class}, positive(max));
+    }
+
+    /**
+     * Get the maximum number of connections to a route that hasn't been given its own maximum
+     * @return the maximum, or {@link #NOT_AVAILABLE}
+     */
+    public int getDefaultMaxPerRoute() {
+        return intValue(invokeIfExists("getDefaultMaxPerRoute", NO_TYPES));
+    }
+
+    /**
+     * Set the maximum number of connections to a route that hasn't been given its own maximum. As CloudMine requests
+     * all go to one host, this is usually what limits how many requests run at once
+     * @param max the maximum; must be positive
+     * @throws UnsupportedOperationException if the pool in use can't be resized
+     */
+    public void setDefaultMaxPerRoute(int max) throws IllegalArgumentException, UnsupportedOperationException {
+        invoke("setDefaultMaxPerRoute", new Class[] {int.class}, positive(max));
+    }
+
+    /**
+     * Set the maximum number of connections to the given route
+     * @param route the route
+     * @param max the maximum; must be positive
+     * @throws UnsupportedOperationException if the pool in use can't be resized
+     */
+    public void setMaxPerRoute(HttpRoute route, int max) throws IllegalArgumentException, UnsupportedOperationException {
+        invoke("setMaxPerRoute", new Class[] {HttpRoute.class, int.class}, route, positive(max));
+    }
+
+    /**
+     * Get how long an idle connection is kept open to be reused
+     * @return the time in milliseconds, or {@link #NOT_AVAILABLE} if connections are kept as long as the server allows
+     */
+    public long getKeepAlive() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Set how long an idle connection is kept open to be reused, if the server doesn't ask for it to be closed sooner.
+     * Applies to connections released after the change
+     * @param duration the time, or a negative time to keep connections as long as the server allows
+     * @param unit the unit of the time
+     */
+    public void setKeepAlive(long duration, TimeUnit unit) {
+        keepAliveMillis = duration < 0 ? NOT_AVAILABLE : unit.toMillis(duration);
+    }
+
+    /**
+     * Get how long a connection can be idle before it is evicted from the pool
+     * @return the time in milliseconds, or 0 if idle connections aren't evicted
+     */
+    public synchronized long getIdleEviction() {
+        return idleEvictionMillis;
+    }
+
+    /**
+     * Close connections that have been idle for longer than the given time, and any whose keep alive has expired,
+     * checking every half of that time on a background thread. Connections are otherwise only checked when they are
+     * leased, so a connection the server has dropped can fail the request that leases it
+     * @param idleTime the time, or 0 to stop evicting idle connections
+     * @param unit the unit of the time
+     */
+    public synchronized void setIdleEviction(long idleTime, TimeUnit unit) {
+        if(eviction != null) {
+            eviction.cancel(false);
+            eviction = null;
+        }
+        idleEvictionMillis = Math.max(0, unit.toMillis(idleTime));
+        if(idleEvictionMillis == 0) {
+            return;
+        }
+        if(evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CloudMine connection evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        final long idleMillis = idleEvictionMillis;
+        long period = Math.max(1, idleMillis / 2);
+        eviction = evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close connections whose keep alive has expired, and those that have been idle for longer than the given time
+     * @param idleTime the time
+     * @param unit the unit of the time
+     */
+    public void evictIdleConnections(long idleTime, TimeUnit unit) {
+        try {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTime, unit);
+        } catch(RuntimeException e) {
+            LOG.error("Failed evicting idle connections", e);
+        }
+    }
+
+    /**
+     * Stop evicting idle connections and close every connection in the pool. The pool can't be used afterwards
+     */
+    public synchronized void shutdown() {
+        if(evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+            eviction = null;
+        }
+        connectionManager.shutdown();
+    }
+
+    ClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+        return keepAliveStrategy;
+    }
+
+    LatencyHistogram getLeaseTimeHistogram() {
+        return leaseTimes;
+    }
+
+    private static int positive(int max) throws IllegalArgumentException {
+        if(max <= 0) {
+            throw new IllegalArgumentException("Maximum connections must be positive, not " + max);
+        }
+        return max;
+    }
+
+    private Stats poolStats(Object stats) {
+        return new Stats(intValue(invoke(stats, "getLeased", NO_TYPES)), intValue(invoke(stats, "getAvailable", NO_TYPES)),
+                intValue(invoke(stats, "getPending", NO_TYPES)), intValue(invoke(stats, "getMax", NO_TYPES)));
+    }
+
+    private static int intValue(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : NOT_AVAILABLE;
+    }
+
+    private Object invoke(String name, Class[] types, Object... arguments) throws UnsupportedOperationException {
+        return invoke(connectionManager, name, types, arguments);
+    }
+
+    private Object invokeIfExists(String name, Class[] types, Object... arguments) {
+        try {
+            return invoke(connectionManager, name, types, arguments);
+        } catch(UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Object target, String name, Class[] types, Object... arguments) throws UnsupportedOperationException {
+        Method method;
+        try {
+            method = target.getClass().getMethod(name, types);
+        } catch(NoSuchMethodException e) {
+            throw new UnsupportedOperationException(target.getClass().getSimpleName() + " does not support " + name);
+        }
+        try {
+            return method.invoke(target, arguments);
+        } catch(IllegalAccessException e) {
+            throw new UnsupportedOperationException(target.getClass().getSimpleName() + " does not support " + name, e);
+        } catch(InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return connectionManager.getClass().getSimpleName() + "[" + getStats() + "]";
+    }
+}
@@ -16,6 +16,12 @@ public interface HeaderFactory {
     public static final String DEVICE_HEADER_KEY = "X-CloudMine-UT";
     public static final String REQUEST_ID_KEY = "X-Request-Id";
     public static final String API_HEADER_KEY = "X-CloudMine-ApiKey";
+    /**
+     * Get the headers to send with every request. Implementations may return the same set for many requests, so it
+     * must not be modified
+     * @param apiKey the application API key
+     * @return the headers
+     */
     Set<Header> getCloudMineHeaders(String apiKey);
     Header getUserCloudMineHeader(CMSessionToken token);
     String getCloudMineAgent();
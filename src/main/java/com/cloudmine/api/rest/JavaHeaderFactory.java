@@ -6,10 +6,14 @@ import com.cloudmine.api.Strings;
 import org.apache.http.Header;
 import org.apache.http.message.BasicHeader;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
+ * Creates the headers sent with every request. Headers are immutable, so the API key, agent and device identifier
+ * headers are created once and shared between requests; only a request that carries response time information
+ * for CloudMine needs a device header of its own.
  * <br>
  * Copyright CloudMine LLC. All rights reserved<br>
  * See LICENSE file included with SDK for details.
@@ -18,14 +22,55 @@ public class JavaHeaderFactory implements HeaderFactory {
     public static final String CLOUD_MINE_AGENT = "javasdk 1.0";
     public static final String DEVICE_ID_DELIM = ";";
 
+    /**
+     * The headers for one API key, when there is no response time information to send
+     */
+    private static class CachedHeaders {
+        private final String apiKey;
+        private final Header apiKeyHeader;
+        private final Set<Header> headers;
+
+        private CachedHeaders(String apiKey, Header apiKeyHeader, Set<Header> headers) {
+            this.apiKey = apiKey;
+            this.apiKeyHeader = apiKeyHeader;
+            this.headers = headers;
+        }
+    }
+
     private final BaseDeviceIdentifier deviceIdentifier = new BaseDeviceIdentifier();
+    private volatile Header agentHeader;
+    private volatile Header deviceHeader;
+    private volatile CachedHeaders cachedHeaders;
 
+    /**
+     * Get the API key, agent and device identifier headers. The returned set may be shared between requests, so it
+     * can't be modified
+     */
     @Override
     public Set<Header> getCloudMineHeaders(String apiKey) {
+        CachedHeaders cached = cachedHeaders;
+        if(cached == null || !(apiKey == null ? cached.apiKey == null : apiKey.equals(cached.apiKey))) {
+            Header apiKeyHeader = new BasicHeader(API_HEADER_KEY, apiKey);
+            Header deviceIdentifierHeader = getDeviceIdentifierHeader();
+            Set<Header> headers = Collections.unmodifiableSet(headerSet(apiKeyHeader, getAgentHeader(), deviceIdentifierHeader));
+            if(deviceIdentifierHeader != getIdentifierHeader()) {
+                //it carries response times, or a subclass made it, so it may only be right for this request
+                return headers;
+            }
+            cachedHeaders = new CachedHeaders(apiKey, apiKeyHeader, headers);
+            return headers;
+        }
+        if(ResponseTimeDataStore.isEmpty()) {
+            return cached.headers;
+        }
+        return headerSet(cached.apiKeyHeader, getAgentHeader(), getDeviceIdentifierHeader());
+    }
+
+    private static Set<Header> headerSet(Header apiKeyHeader, Header agentHeader, Header deviceHeader) {
         Set<Header> headerSet = new HashSet<Header>();
-        headerSet.add(new BasicHeader(API_HEADER_KEY, apiKey));
-        headerSet.add(new BasicHeader(AGENT_HEADER_KEY, getCloudMineAgent()));
-        headerSet.add(getDeviceIdentifierHeader());
+        headerSet.add(apiKeyHeader);
+        headerSet.add(agentHeader);
+        headerSet.add(deviceHeader);
         return headerSet;
     }
 
@@ -33,18 +78,35 @@ public class JavaHeaderFactory implements HeaderFactory {
         return new BasicHeader(SESSION_TOKEN_HEADER_KEY, token.getSessionToken());
     }
 
+    /**
+     * Get the device identifier header, with any response time information that hasn't been sent yet. The
+     * information is removed from the {@link ResponseTimeDataStore}, so it is only sent once
+     */
     protected Header getDeviceIdentifierHeader() {
-        String id = getDeviceIdentifier();
-
         String value = ResponseTimeDataStore.getContentsAsStringAndClearMap();
-        String idHeader = Strings.isEmpty(value) ?
-                id :
-                id + DEVICE_ID_DELIM + value;
-
+        if(Strings.isEmpty(value)) {
+            return getIdentifierHeader();
+        }
+        return new BasicHeader(DEVICE_HEADER_KEY, getDeviceIdentifier() + DEVICE_ID_DELIM + value);
+    }
 
-        return new BasicHeader(DEVICE_HEADER_KEY, idHeader);
+    private Header getIdentifierHeader() {
+        Header header = deviceHeader;
+        if(header == null) {
+            header = new BasicHeader(DEVICE_HEADER_KEY, getDeviceIdentifier());
+            deviceHeader = header;
+        }
+        return header;
     }
 
+    private Header getAgentHeader() {
+        Header header = agentHeader;
+        if(header == null) {
+            header = new BasicHeader(AGENT_HEADER_KEY, getCloudMineAgent());
+            agentHeader = header;
+        }
+        return header;
+    }
 
     protected String getDeviceIdentifier() {
         return deviceIdentifier.getUniqueId();
@@ -5,11 +5,16 @@ import com.cloudmine.api.exceptions.ConversionException;
 import com.cloudmine.api.persistance.CMJacksonModule;
 import com.cloudmine.api.persistance.CMUserConstructorMixIn;
 import com.cloudmine.api.persistance.ClassNameRegistry;
+import com.cloudmine.api.rest.options.CMDecodeOptions;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.type.MapType;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -27,6 +32,7 @@ public class JsonUtilities {
 
     private static final Logger LOG = LoggerFactory.getLogger(JsonUtilities.class);
     private static final ObjectMapper jsonMapper = new ObjectMapper();
+    private static volatile StringInterner stringInterner;
 
     public static final String EMPTY_JSON = "{ }";
 
@@ -63,6 +69,44 @@ public class JsonUtilities {
 
     }
 
+    /**
+     * Set the interner used when parsing JSON. While set, every field name and every String value no longer than
+     * the interner's max value length is deduplicated, so large result sets of similar objects share a single
+     * copy of each. Null by default, which disables interning
+     * @param interner the interner to use, or null to stop interning
+     */
+    public static void setStringInterner(StringInterner interner) {
+        stringInterner = interner;
+    }
+
+    /**
+     * Get the interner used when parsing JSON
+     * @return the interner, or null if interning is disabled
+     */
+    public static StringInterner getStringInterner() {
+        return stringInterner;
+    }
+
+    /**
+     * Enable or disable Jackson's canonicalization of field names. When enabled, which is the default, every
+     * occurrence of a field name parsed with the same symbol table is the same String instance, which is
+     * additionally {@link String#intern()}ed
+     * @param canonicalize whether field names should be canonicalized
+     */
+    public static void setFieldNameCanonicalization(boolean canonicalize) {
+        JsonFactory factory = jsonMapper.getFactory();
+        factory.configure(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES, canonicalize);
+        factory.configure(JsonFactory.Feature.INTERN_FIELD_NAMES, canonicalize);
+    }
+
+    /**
+     * Check whether Jackson's field name canonicalization is enabled
+     * @return true if field names are canonicalized
+     */
+    public static boolean isFieldNameCanonicalization() {
+        return jsonMapper.getFactory().isEnabled(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+    }
+
     public static void addCMUserMixinsTo(Class klass) {
         if(JavaCMUser.class.isAssignableFrom(klass)) {
             jsonMapper.addMixInAnnotations(klass, CMUserConstructorMixIn.class);
@@ -427,6 +471,207 @@ public class JsonUtilities {
         return objectMap;
     }
 
+    /**
+     * Like {@link #jsonToClassMap(String)}, but decodes the objects as specified by the given options. The JSON is
+     * read with a single streaming pass; fields that are not part of the options' projection are skipped without
+     * being allocated.
+     * @param json a JSON collection in the form { "objectId":{values...}, "anotherObjectId":{moreValues} }
+     * @param options how to decode the objects. If null, {@link CMDecodeOptions#NONE} is used
+     * @return a Map of object ids to the decoded objects
+     * @throws ConversionException if the given json is not a valid JSON collection of objects
+     */
+    public static Map<String, CMObject> jsonToClassMap(String json, CMDecodeOptions options) throws ConversionException {
+        return jsonToClassMap(json, null, options);
+    }
+
+    /**
+     * Like {@link #jsonToClassMap(String, CMDecodeOptions)}, but the collection of objects is read from the given
+     * top level key of the json, so the collection does not need to be extracted from a response body first. Every
+     * other top level value is skipped.
+     * @param json a JSON object that contains a collection of objects
+     * @param collectionKey the top level key the collection is stored under. If null, the json is the collection
+     * @param options how to decode the objects. If null, {@link CMDecodeOptions#NONE} is used
+     * @return a Map of object ids to the decoded objects; empty if the collection does not exist
+     * @throws ConversionException if the collection is not a valid JSON collection of objects
+     */
+    public static Map<String, CMObject> jsonToClassMap(String json, String collectionKey, CMDecodeOptions options) throws ConversionException {
+        Map<String, CMObject> objectMap = new LinkedHashMap<String, CMObject>();
+        if(Strings.isEmpty(json)) {
+            return objectMap;
+        }
+        if(options == null) {
+            options = CMDecodeOptions.NONE;
+        }
+        JsonParser parser = createParser(json);
+        try {
+            if(parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ConversionException("Expected a JSON object: " + json);
+            }
+            if(collectionKey != null && !moveToField(parser, collectionKey)) {
+                return objectMap;
+            }
+            while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                String objectId = parser.getCurrentName();
+                if(parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new ConversionException("Expected an object for key: " + objectId);
+                }
+                ObjectNode objectNode = readObjectNode(parser, options);
+                CMObject cmObject = jsonNodeToClass(objectId, objectNode, options);
+                cmObject.setObjectId(objectId);
+                objectMap.put(objectId, cmObject);
+            }
+            return objectMap;
+        } catch (IOException e) {
+            LOG.error("Trouble reading json", e);
+            throw new ConversionException("JSON: " + json, e);
+        } finally {
+            closeParser(parser);
+        }
+    }
+
+    /**
+     * Create a streaming parser over the given JSON, configured the same way as every other parse done by this class
+     * @param json the JSON to parse
+     * @return a parser positioned before the first token. Callers should close it with {@link #closeParser(JsonParser)}
+     * @throws ConversionException if unable to create the parser
+     */
+    public static JsonParser createParser(String json) throws ConversionException {
+        try {
+            return jsonMapper.getFactory().createParser(json);
+        } catch (IOException e) {
+            LOG.error("Trouble creating parser", e);
+            throw new ConversionException("JSON: " + json, e);
+        }
+    }
+
+    /**
+     * Close the given parser, logging rather than throwing any exception
+     * @param parser the parser to close. May be null
+     */
+    public static void closeParser(JsonParser parser) {
+        if(parser == null) {
+            return;
+        }
+        try {
+            parser.close();
+        } catch (IOException e) {
+            LOG.error("Trouble closing parser", e);
+        }
+    }
+
+    /**
+     * Advance the parser, which must be positioned at the start of an object, to the value of the given field of that object.
+     * Every field before it is skipped
+     * @param parser the parser
+     * @param fieldName the field to move to
+     * @return true if the field exists and its value is an object, in which case the parser is positioned at the start of that value
+     * @throws IOException if the parser fails
+     */
+    public static boolean moveToField(JsonParser parser, String fieldName) throws IOException {
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if(fieldName.equals(name)) {
+                return valueToken == JsonToken.START_OBJECT;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Read the object the parser is positioned at the start of, keeping only the fields included by the options
+     */
+    private static ObjectNode readObjectNode(JsonParser parser, CMDecodeOptions options) throws IOException {
+        if(!options.isProjected()) {
+            return jsonMapper.readTree(parser);
+        }
+        ObjectNode objectNode = jsonMapper.createObjectNode();
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if(options.includesField(name)) {
+                JsonNode value = jsonMapper.readTree(parser);
+                StringInterner interner = stringInterner;
+                objectNode.put(interner == null ? name : interner.internKey(name), value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return objectNode;
+    }
+
+    private static CMObject jsonNodeToClass(String objectId, ObjectNode objectNode, CMDecodeOptions options) throws ConversionException {
+        JsonNode klassNode = objectNode.get(CLASS_KEY);
+        JsonNode typeNode = objectNode.get(TYPE_KEY);
+        String klassString = klassNode == null || klassNode.isNull() ? null : klassNode.asText();
+        CMType type = CMType.getTypeById(typeNode == null ? "" : typeNode.asText());
+
+        boolean isTyped = type != null &&
+                !CMType.NONE.equals(type) &&
+                klassString == null;
+        boolean isUnknownClass = klassString == null ||
+                ClassNameRegistry.isRegistered(klassString) == false;
+        if(!isTyped && isUnknownClass) {
+            if(options.isLazyObjects()) {
+                return new LazySimpleCMObject(objectId, objectNode);
+            }
+            //an object node is always converted to a Map
+            @SuppressWarnings("unchecked")
+            Map<String, Object> fields = (Map<String, Object>) jsonNodeToValue(objectNode);
+            return new SimpleCMObject(objectId, fields);
+        }
+        Class<?> registered = isTyped ? type.getTypeClass() : ClassNameRegistry.forName(klassString);
+        Class<? extends CMObject> klass = registered.asSubclass(CMObject.class);
+        try {
+            return jsonMapper.treeToValue(objectNode, klass);
+        } catch (IOException e) {
+            LOG.error("Trouble reading json", e);
+            throw new ConversionException("JSON: " + objectNode, e);
+        }
+    }
+
+    /**
+     * Parse the given JSON into a tree, without converting any of its values
+     * @param json valid JSON
+     * @return the root node of the parsed JSON
+     * @throws ConversionException if unable to parse the given json
+     */
+    public static JsonNode jsonToTree(String json) throws ConversionException {
+        try {
+            return jsonMapper.readTree(json);
+        } catch (IOException e) {
+            LOG.error("Trouble reading json", e);
+            throw new ConversionException("JSON: " + json, e);
+        }
+    }
+
+    /**
+     * Convert a single parsed JSON value to the same representation that would be found in the Map returned by
+     * {@link #jsonToMap(String)}; objects become Maps, with any CloudMine datetime objects converted to Dates
+     * @param node the JSON value to convert
+     * @return the converted value, or null if given null or a JSON null
+     * @throws ConversionException if unable to convert the value
+     */
+    public static Object jsonNodeToValue(JsonNode node) throws ConversionException {
+        if(node == null || node.isNull()) {
+            return null;
+        }
+        try {
+            Object value = jsonMapper.treeToValue(node, Object.class);
+            if(value instanceof Map) {
+                //JSON object keys are always Strings
+                @SuppressWarnings("unchecked")
+                Map<String, Object> map = (Map<String, Object>) value;
+                return convertDateClassesToDates(map);
+            }
+            return value;
+        } catch (IOException e) {
+            LOG.error("Trouble converting json node", e);
+            throw new ConversionException("JSON: " + node, e);
+        }
+    }
+
     public static <CMO extends CMObject> Map<String, CMO> jsonToCMObjectMap(String json, Class<CMO> klass) {
 
         Map<String, String> simpleMap = jsonMapToKeyMap(json);
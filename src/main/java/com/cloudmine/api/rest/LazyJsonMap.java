@@ -0,0 +1,122 @@
+package com.cloudmine.api.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Map that is backed by a parsed JSON object, and only decodes a value into its Java representation the first
+ * time it is requested. Values are decoded using the same rules as {@link JsonUtilities#jsonToMap(String)}, so
+ * a decoded value is identical to what would be found in an eagerly decoded Map. Putting or removing a value
+ * never requires decoding any of the other values; iterating over the entries decodes everything that is left.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class LazyJsonMap extends AbstractMap<String, Object> {
+
+    private final ObjectNode pending;
+    private final Map<String, Object> decoded = new LinkedHashMap<String, Object>();
+
+    /**
+     * Instantiate a new LazyJsonMap. The given node is owned by this map after this call, and should not be modified
+     * @param node a JSON object
+     */
+    public LazyJsonMap(ObjectNode node) {
+        this.pending = node;
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        if(decoded.containsKey(key)) {
+            return decoded.get(key);
+        }
+        if(key instanceof String) {
+            return decode((String) key);
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return decoded.containsKey(key) ||
+                (key instanceof String && pending.has((String) key));
+    }
+
+    @Override
+    public synchronized Object put(String key, Object value) {
+        JsonNode replaced = pending.remove(key);
+        Object previous = decoded.put(key, value);
+        return replaced == null ?
+                previous :
+                JsonUtilities.jsonNodeToValue(replaced);
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        Object value = get(key);
+        decoded.remove(key);
+        return value;
+    }
+
+    @Override
+    public synchronized void clear() {
+        pending.removeAll();
+        decoded.clear();
+    }
+
+    @Override
+    public synchronized int size() {
+        return decoded.size() + pending.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return decoded.isEmpty() && pending.size() == 0;
+    }
+
+    @Override
+    public synchronized Set<Entry<String, Object>> entrySet() {
+        decodeAll();
+        return decoded.entrySet();
+    }
+
+    /**
+     * Check whether every value in this map has been decoded
+     * @return true if no values are waiting to be decoded
+     */
+    public synchronized boolean isFullyDecoded() {
+        return pending.size() == 0;
+    }
+
+    private Object decode(String key) {
+        JsonNode node = pending.remove(key);
+        if(node == null) {
+            return null;
+        }
+        Object value = JsonUtilities.jsonNodeToValue(node);
+        decoded.put(key, value);
+        return value;
+    }
+
+    private void decodeAll() {
+        if(pending.size() == 0) {
+            return;
+        }
+        List<String> keys = new ArrayList<String>(pending.size());
+        Iterator<String> names = pending.fieldNames();
+        while(names.hasNext()) {
+            keys.add(names.next());
+        }
+        for(String key : keys) {
+            decode(key);
+        }
+    }
+}
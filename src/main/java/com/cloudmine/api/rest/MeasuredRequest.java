@@ -0,0 +1,243 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.metrics.CMMetrics;
+import com.cloudmine.api.metrics.MetricsRecorder;
+import com.cloudmine.api.metrics.RequestMetrics;
+import com.cloudmine.api.metrics.RequestPhase;
+import com.cloudmine.api.metrics.RequestTrace;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Takes the measurements of a request for the installed {@link MetricsRecorder}, and reports its phases to the
+ * installed {@link com.cloudmine.api.metrics.RequestTraceListener}. Measurements are only taken when a recorder is
+ * installed, and phases are only traced when a listener is, so requests made without either don't pay for them
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+class MeasuredRequest {
+    private static final Logger LOG = LoggerFactory.getLogger(MeasuredRequest.class);
+    private static final String BINARY_ENDPOINT = "binary";
+    private static final String JSON = "json";
+
+    /**
+     * Counts the bytes of a response body as it is read
+     */
+    private static class CountingEntity extends HttpEntityWrapper {
+        private long bytesRead;
+
+        private CountingEntity(HttpEntity wrapped) {
+            super(wrapped);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            InputStream content = super.getContent();
+            return content == null ? null : new FilterInputStream(content) {
+                @Override
+                public int read() throws IOException {
+                    int read = super.read();
+                    if(read >= 0) {
+                        bytesRead++;
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if(read > 0) {
+                        bytesRead += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        private long getBytes() {
+            return bytesRead > 0 ? bytesRead : getContentLength();
+        }
+    }
+
+    private final HttpUriRequest request;
+    private final long queuedAt;
+    private final boolean recording;
+    private long sentAt;
+    private long receivedAt;
+    private long parsedAt;
+    private HttpResponse response;
+    private CountingEntity countingEntity;
+    private boolean finished;
+    private final RequestTrace trace;
+    private RequestTrace previousTrace;
+    private boolean attached;
+    private boolean ended;
+
+    /**
+     * Start measuring a request
+     * @param request the request
+     * @param queuedAt the {@link System#nanoTime()} at which the request was made, before it waited to be sent
+     */
+    MeasuredRequest(HttpUriRequest request, long queuedAt) {
+        this.request = request;
+        this.queuedAt = queuedAt;
+        this.recording = CMMetrics.isRecording();
+        this.trace = CMMetrics.isTracing() ? new RequestTrace(request.getMethod(), request.getURI()) : null;
+        if(trace != null && queuedAt != 0) {
+            trace.startPhase(RequestPhase.QUEUE_WAIT);
+        }
+    }
+
+    /**
+     * Note that work on the request has started on this thread, making its trace current until {@link #ended(Throwable)}
+     */
+    void started() {
+        if(trace != null && !attached) {
+            trace.endPhase(RequestPhase.QUEUE_WAIT);
+            previousTrace = trace.attach();
+            attached = true;
+        }
+    }
+
+    /**
+     * Note that the request is being sent. Only the first attempt counts, so retries are included in the latency
+     */
+    void sending() {
+        if(recording && sentAt == 0) {
+            sentAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Note that the response was received. Counts its body as it is read and, when tracing, reads a JSON body so reading
+     * it is traced apart from parsing it. Files and other bodies that aren't JSON are left to be streamed, so tracing
+     * doesn't hold whole downloads in memory; reading them is traced as part of parsing
+     * @throws IOException if the body is traced and can't be read
+     */
+    void received(HttpResponse response) throws IOException {
+        HttpEntity entity = response == null ? null : response.getEntity();
+        if(recording) {
+            receivedAt = System.nanoTime();
+            this.response = response;
+            if(entity != null) {
+                countingEntity = new CountingEntity(entity);
+                entity = countingEntity;
+                response.setEntity(entity);
+            }
+        }
+        if(trace != null && response != null) {
+            trace.setStatusCode(response.getStatusLine().getStatusCode());
+            if(entity != null && !entity.isRepeatable() && !isStreamed(entity)) {
+                trace.startPhase(RequestPhase.BODY_READ);
+                try {
+                    response.setEntity(new BufferedHttpEntity(entity));
+                } finally {
+                    trace.endPhase(RequestPhase.BODY_READ);
+                }
+            }
+        }
+    }
+
+    private boolean isStreamed(HttpEntity entity) {
+        if(BINARY_ENDPOINT.equals(CMMetrics.endpointFamily(request.getURI()))) {
+            return true;
+        }
+        Header contentType = entity.getContentType();
+        return contentType == null || contentType.getValue() == null || !contentType.getValue().contains(JSON);
+    }
+
+    void parsing() {
+        if(trace != null) {
+            trace.startPhase(RequestPhase.PARSE);
+        }
+    }
+
+    void parsed() {
+        if(recording) {
+            parsedAt = System.nanoTime();
+        }
+        if(trace != null) {
+            trace.endPhase(RequestPhase.PARSE);
+        }
+    }
+
+    /**
+     * Note that the request's callback is about to be called
+     */
+    void callingBack() {
+        if(trace != null) {
+            trace.startPhase(RequestPhase.CALLBACK);
+        }
+    }
+
+    /**
+     * Note that the request, including its callback, has finished, ending its trace. Only the first call does anything
+     * @param failure why the request failed, or null if it didn't
+     */
+    void ended(Throwable failure) {
+        if(trace == null || ended) {
+            return;
+        }
+        ended = true;
+        trace.endPhase(RequestPhase.CALLBACK);
+        trace.end(failure);
+        if(attached) {
+            trace.detach(previousTrace);
+        }
+    }
+
+    /**
+     * Get the trace of the request
+     * @return the trace, or null if the request isn't being traced
+     */
+    RequestTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Report the measurements to the installed recorder. Only the first call reports anything
+     * @param retries the number of times the request was retried
+     */
+    void finished(int retries) {
+        if(!recording || finished) {
+            return;
+        }
+        finished = true;
+        long now = System.nanoTime();
+        long sent = sentAt == 0 ? queuedAt : sentAt;
+        long received = receivedAt == 0 ? now : receivedAt;
+        RequestMetrics metrics = new RequestMetrics(CMMetrics.endpointFamily(request.getURI()), request.getMethod(),
+                response == null ? RequestMetrics.NO_STATUS : response.getStatusLine().getStatusCode(),
+                received - sent,
+                queuedAt == 0 ? RequestMetrics.NOT_MEASURED : sent - queuedAt,
+                parsedAt == 0 ? RequestMetrics.NOT_MEASURED : parsedAt - received,
+                requestBytes(),
+                countingEntity == null ? RequestMetrics.NOT_MEASURED : countingEntity.getBytes(),
+                retries);
+        try {
+            CMMetrics.getRecorder().record(metrics);
+        } catch(RuntimeException e) {
+            LOG.error("Metrics recorder threw recording " + metrics, e);
+        }
+    }
+
+    private long requestBytes() {
+        if(request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null ? 0 : entity.getContentLength();
+        }
+        return 0;
+    }
+}
@@ -8,6 +8,16 @@ package com.cloudmine.api.rest;
  * To change this template use File | Settings | File Templates.
  */
 public abstract class MutableBaseURLBuilder<T> extends BaseURLBuilder<T> {
+    //room for the actions and queries usually added to a copy, so appending to it doesn't reallocate
+    private static final int COPY_HEADROOM = 64;
+    //builders that grew larger than this while rendering are dropped rather than kept for the thread's lifetime
+    private static final int MAXIMUM_POOLED_CAPACITY = 8192;
+    private static final ThreadLocal<StringBuilder> RENDER_BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
 
     final StringBuilder baseUrl;
     final StringBuilder actions;
@@ -23,6 +33,16 @@ public abstract class MutableBaseURLBuilder<T> extends BaseURLBuilder<T> {
         this.queryParams = new StringBuilder(queryParams);
     }
 
+    /**
+     * Copy the given builder, without rendering its parts to Strings first
+     */
+    @SuppressWarnings("deprecation") //the parts are kept here, so BaseURLBuilder's are left unset
+    protected MutableBaseURLBuilder(MutableBaseURLBuilder<?> toCopy) {
+        this.baseUrl = new StringBuilder(toCopy.baseUrl.length()).append(toCopy.baseUrl);
+        this.actions = new StringBuilder(toCopy.actions.length() + COPY_HEADROOM).append(toCopy.actions);
+        this.queryParams = new StringBuilder(toCopy.queryParams.length() + COPY_HEADROOM).append(toCopy.queryParams);
+    }
+
     protected String querySeparator() {
         return queryParams.length() == 0 ?
                 FIRST_QUERY_SEPARATOR :
@@ -34,6 +54,16 @@ public abstract class MutableBaseURLBuilder<T> extends BaseURLBuilder<T> {
         return (T)this;
     }
 
+    /**
+     * Add an action that is already formatted, starting with a / and not ending with one, such as a constant
+     * endpoint path
+     */
+    @SuppressWarnings("unchecked")
+    protected T addFormattedAction(String formattedAction) {
+        actions.append(formattedAction);
+        return (T)this;
+    }
+
     public T removeAction(String action) {
 
         int startPosition = actions.indexOf(action);
@@ -75,6 +105,13 @@ public abstract class MutableBaseURLBuilder<T> extends BaseURLBuilder<T> {
     }
 
     public String asUrlString() {
-        return baseUrl.toString() + actions.toString() + queryParams.toString();
+        StringBuilder url = RENDER_BUILDER.get();
+        url.setLength(0);
+        url.append(baseUrl).append(actions).append(queryParams);
+        String rendered = url.toString();
+        if(url.capacity() > MAXIMUM_POOLED_CAPACITY) {
+            RENDER_BUILDER.remove();
+        }
+        return rendered;
     }
 }
@@ -0,0 +1,547 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.exceptions.PersistenceException;
+import com.cloudmine.api.persistance.WriteAheadLog;
+import com.cloudmine.api.rest.callbacks.CMCallback;
+import com.cloudmine.api.rest.callbacks.Callback;
+import com.cloudmine.api.rest.options.CMWriteQueueOptions;
+import com.cloudmine.api.rest.response.ObjectModificationResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A durable queue of writes waiting to be sent to CloudMine, for saving eventually. Each save or delete is written to
+ * a {@link WriteAheadLog} and acknowledged as soon as it is on disk; the writes are then sent to CloudMine in the
+ * order they were made, on a background thread. Consecutive writes of the same kind and level are sent together in a
+ * single request. If CloudMine cannot be reached, or responds with a server error, the batch is retried with an
+ * exponential backoff; if it rejects the batch as invalid, the batch is dropped so later writes are not held up.<br>
+ * Writes that have not been sent when the process exits are sent once the queue is opened again and given to a
+ * store. Callbacks are not persisted, so they are only called for writes queued by the running process.<br>
+ * A queue is normally given to a single {@link CMStore} with {@link CMStore#setWriteQueue(OfflineWriteQueue)}, which
+ * sends the queued writes; user level writes are sent with the store's user
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class OfflineWriteQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(OfflineWriteQueue.class);
+    private static final Charset UTF_8 = Charset.forName(JsonUtilities.ENCODING);
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final byte ACKNOWLEDGE = 3;
+
+    /**
+     * Sends batches of queued writes to CloudMine
+     */
+    public interface Sender {
+        /**
+         * Insert the given objects
+         * @param level the level to insert the objects at
+         * @param objects the objects, with unique ids
+         * @param callback must be called with the response, or with the failure if CloudMine could not be reached
+         */
+        void insert(ObjectLevel level, Collection<CMObject> objects, Callback<ObjectModificationResponse> callback);
+
+        /**
+         * Delete the objects with the given ids
+         * @param level the level to delete the objects from
+         * @param objectIds the ids
+         * @param callback must be called with the response, or with the failure if CloudMine could not be reached
+         */
+        void delete(ObjectLevel level, Collection<String> objectIds, Callback<ObjectModificationResponse> callback);
+    }
+
+    private static class Operation {
+        final long sequence;
+        final byte type;
+        final ObjectLevel level;
+        final String objectId;
+        final byte[] payload;
+        final CMObject object;
+        final Callback<ObjectModificationResponse> callback;
+
+        Operation(long sequence, byte type, ObjectLevel level, String objectId, byte[] payload, CMObject object,
+                  Callback<ObjectModificationResponse> callback) {
+            this.sequence = sequence;
+            this.type = type;
+            this.level = level;
+            this.objectId = objectId;
+            this.payload = payload;
+            this.object = object;
+            this.callback = callback;
+        }
+
+        boolean isBatchableWith(Operation other) {
+            return type == other.type && level == other.level;
+        }
+    }
+
+    private final WriteAheadLog log;
+    private final CMWriteQueueOptions options;
+    private final LinkedList<Operation> pending = new LinkedList<Operation>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "CloudMine offline write queue");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private volatile Sender sender;
+    private boolean sending;
+    private boolean closed;
+    private long retryDelay;
+    private ScheduledFuture<?> scheduledRetry;
+
+    /**
+     * Open the queue stored in the given file with the default options, creating it if it does not exist
+     * @param file the file to store the queue in
+     * @throws CreationException if the file cannot be opened
+     */
+    public OfflineWriteQueue(File file) throws CreationException {
+        this(file, new CMWriteQueueOptions());
+    }
+
+    /**
+     * Open the queue stored in the given file, creating it if it does not exist. Writes left in the queue are sent
+     * once a {@link Sender} is set
+     * @param file the file to store the queue in
+     * @param options how writes are persisted and sent; if null, the defaults are used
+     * @throws CreationException if the file cannot be opened
+     */
+    public OfflineWriteQueue(File file, CMWriteQueueOptions options) throws CreationException {
+        this.options = options == null ? new CMWriteQueueOptions() : options;
+        log = new WriteAheadLog(file, this.options.getSyncInterval() == 0);
+        recover();
+        long syncInterval = this.options.getSyncInterval();
+        if(syncInterval > 0) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        log.sync();
+                    } catch(RuntimeException e) {
+                        LOG.error("Unable to sync the offline write queue", e);
+                    }
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void recover() {
+        Map<Long, Operation> operations = new LinkedHashMap<Long, Operation>();
+        for(WriteAheadLog.Record record : log.getRecoveredRecords()) {
+            try {
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(record.getPayload()));
+                byte type = input.readByte();
+                if(type == ACKNOWLEDGE) {
+                    int count = input.readInt();
+                    for(int i = 0; i < count; i++) {
+                        operations.remove(input.readLong());
+                    }
+                } else if(type == SAVE || type == DELETE) {
+                    ObjectLevel level = ObjectLevel.values()[input.readByte()];
+                    String objectId = input.readUTF();
+                    operations.put(record.getSequence(), new Operation(record.getSequence(), type, level, objectId,
+                            record.getPayload(), null, null));
+                }
+            } catch(IOException e) {
+                LOG.error("Skipping unreadable queued write " + record.getSequence(), e);
+            } catch(ArrayIndexOutOfBoundsException e) {
+                LOG.error("Skipping queued write " + record.getSequence() + " with an unknown level", e);
+            }
+        }
+        pending.addAll(operations.values());
+    }
+
+    /**
+     * Queue a save of the given object. Returns once the save is persisted; the object is inserted into CloudMine later
+     * @param object the object to save
+     * @param level the level to save the object at
+     * @param callback called with the response once the object has been sent; may be null
+     * @throws ConversionException if the object cannot be converted to JSON
+     * @throws PersistenceException if the save could not be persisted
+     */
+    public void enqueueSave(CMObject object, ObjectLevel level, Callback<ObjectModificationResponse> callback) throws ConversionException, PersistenceException {
+        byte[] json = object.transportableRepresentation().getBytes(UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length + 64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeByte(SAVE);
+            output.writeByte(level.ordinal());
+            output.writeUTF(object.getObjectId());
+            output.writeInt(json.length);
+            output.write(json);
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to encode save of " + object.getObjectId(), e);
+        }
+        enqueue(SAVE, level, object.getObjectId(), bytes.toByteArray(), object, callback);
+    }
+
+    /**
+     * Queue a delete of the object with the given id. Returns once the delete is persisted; the object is deleted
+     * from CloudMine later
+     * @param objectId the id of the object to delete
+     * @param level the level to delete the object from
+     * @param callback called with the response once the delete has been sent; may be null
+     * @throws PersistenceException if the delete could not be persisted
+     */
+    public void enqueueDelete(String objectId, ObjectLevel level, Callback<ObjectModificationResponse> callback) throws PersistenceException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeByte(DELETE);
+            output.writeByte(level.ordinal());
+            output.writeUTF(objectId);
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to encode delete of " + objectId, e);
+        }
+        enqueue(DELETE, level, objectId, bytes.toByteArray(), null, callback);
+    }
+
+    private void enqueue(byte type, ObjectLevel level, String objectId, byte[] payload, CMObject object,
+                         Callback<ObjectModificationResponse> callback) {
+        if(level == null) {
+            level = ObjectLevel.APPLICATION;
+        }
+        long sequence;
+        synchronized(this) {
+            //written and made pending together, so a compaction can't drop the record and the queue stays in log order
+            checkOpen();
+            sequence = log.write(payload);
+            pending.add(new Operation(sequence, type, level, objectId, payload, object, callback));
+        }
+        if(log.isSyncOnAppend()) {
+            //outside the lock, so concurrent writes share a single force
+            log.sync(sequence);
+        }
+        submitDrain();
+    }
+
+    /**
+     * Set what sends the queued writes to CloudMine, and start sending them
+     * @param sender the sender, or null to stop sending
+     */
+    public void setSender(Sender sender) {
+        this.sender = sender;
+        replayNow();
+    }
+
+    /**
+     * Try to send the queued writes now rather than waiting for the current retry delay to pass, for example when
+     * the network becomes available
+     */
+    public void replayNow() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            retryDelay = 0;
+            if(scheduledRetry != null) {
+                scheduledRetry.cancel(false);
+                scheduledRetry = null;
+            }
+        }
+        submitDrain();
+    }
+
+    private void submitDrain() {
+        try {
+            executor.execute(drainTask);
+        } catch(RuntimeException e) {
+            LOG.debug("Not sending queued writes, the queue is closed", e);
+        }
+    }
+
+    private void drain() {
+        Sender currentSender = sender;
+        List<Operation> batch;
+        synchronized(this) {
+            if(sending || closed || currentSender == null || pending.isEmpty() || scheduledRetry != null) {
+                return;
+            }
+            batch = nextBatch();
+            sending = true;
+        }
+        BatchCallback callback = new BatchCallback(batch);
+        Operation first = batch.get(0);
+        try {
+            if(first.type == SAVE) {
+                Map<String, CMObject> objects = new LinkedHashMap<String, CMObject>();
+                List<Operation> unconvertible = new ArrayList<Operation>();
+                for(Operation operation : batch) {
+                    CMObject object = toObject(operation);
+                    if(object == null) {
+                        unconvertible.add(operation);
+                    } else {
+                        objects.remove(operation.objectId);
+                        objects.put(operation.objectId, object);
+                    }
+                }
+                if(!unconvertible.isEmpty()) {
+                    batch.removeAll(unconvertible);
+                    dropped(unconvertible);
+                }
+                if(objects.isEmpty()) {
+                    completed(batch, null);
+                    return;
+                }
+                currentSender.insert(first.level, new ArrayList<CMObject>(objects.values()), callback);
+            } else {
+                Map<String, Boolean> objectIds = new LinkedHashMap<String, Boolean>();
+                for(Operation operation : batch) {
+                    objectIds.put(operation.objectId, Boolean.TRUE);
+                }
+                currentSender.delete(first.level, new ArrayList<String>(objectIds.keySet()), callback);
+            }
+        } catch(RuntimeException e) {
+            callback.onFailure(e, "Unable to send queued writes");
+        }
+    }
+
+    private List<Operation> nextBatch() {
+        List<Operation> batch = new ArrayList<Operation>();
+        Operation first = pending.getFirst();
+        for(Operation operation : pending) {
+            if(batch.size() >= options.getMaximumBatchSize() || !operation.isBatchableWith(first)) {
+                break;
+            }
+            batch.add(operation);
+        }
+        return batch;
+    }
+
+    private static CMObject toObject(Operation operation) {
+        if(operation.object != null) {
+            return operation.object;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(operation.payload));
+            input.readByte();
+            input.readByte();
+            input.readUTF();
+            byte[] json = new byte[input.readInt()];
+            input.readFully(json);
+            return JsonUtilities.jsonToClassMap(new String(json, UTF_8)).get(operation.objectId);
+        } catch(IOException e) {
+            LOG.error("Dropping unreadable queued save of " + operation.objectId, e);
+        } catch(ConversionException e) {
+            LOG.error("Dropping queued save of " + operation.objectId + " that could not be converted", e);
+        }
+        return null;
+    }
+
+    /**
+     * Whether CloudMine rejected the request in a way that will not change if it is sent again
+     */
+    private static boolean isPermanentFailure(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+    }
+
+    private class BatchCallback extends CMCallback<ObjectModificationResponse> {
+        private final List<Operation> batch;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        BatchCallback(List<Operation> batch) {
+            super(ObjectModificationResponse.CONSTRUCTOR);
+            this.batch = batch;
+        }
+
+        @Override
+        public void onCompletion(ObjectModificationResponse response) {
+            if(!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if(response != null && (response.wasSuccess() || isPermanentFailure(response.getStatusCode()))) {
+                if(!response.wasSuccess()) {
+                    LOG.error("CloudMine rejected " + batch.size() + " queued writes with status " + response.getStatusCode() + "; dropping them");
+                }
+                completed(batch, response);
+            } else {
+                failed();
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable error, String message) {
+            if(!finished.compareAndSet(false, true)) {
+                return;
+            }
+            LOG.info("Unable to send queued writes, will retry: " + message, error);
+            failed();
+        }
+    }
+
+    private void completed(List<Operation> batch, ObjectModificationResponse response) {
+        acknowledge(batch);
+        synchronized(this) {
+            pending.removeAll(batch);
+            sending = false;
+            retryDelay = 0;
+            compactLog();
+        }
+        if(response != null) {
+            for(Operation operation : batch) {
+                if(operation.callback != null) {
+                    try {
+                        operation.callback.onCompletion(response);
+                    } catch(RuntimeException e) {
+                        LOG.error("Exception thrown by queued write callback", e);
+                    }
+                }
+            }
+        }
+        submitDrain();
+    }
+
+    /**
+     * Drop queued saves that can never be sent, as their objects could not be read back, and fail their callbacks.
+     * The rest of the batch they were in is still sent
+     */
+    private void dropped(List<Operation> unconvertible) {
+        acknowledge(unconvertible);
+        synchronized(this) {
+            pending.removeAll(unconvertible);
+        }
+        for(Operation operation : unconvertible) {
+            if(operation.callback != null) {
+                try {
+                    operation.callback.onFailure(new CreationException("Unable to read back the queued save of " + operation.objectId),
+                            "Dropped a queued save that could not be converted");
+                } catch(RuntimeException e) {
+                    LOG.error("Exception thrown by queued write callback", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record in the log that the given writes no longer need to be sent
+     */
+    private void acknowledge(List<Operation> batch) {
+        if(batch.isEmpty()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + batch.size() * 8);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(ACKNOWLEDGE);
+            output.writeInt(batch.size());
+            for(Operation operation : batch) {
+                output.writeLong(operation.sequence);
+            }
+            //written without waiting for a force, even when the log syncs on append; if the acknowledgement is lost
+            //the writes are sent again, which is harmless
+            log.write(bytes.toByteArray());
+        } catch(IOException e) {
+            LOG.error("Unable to acknowledge sent writes", e);
+        } catch(RuntimeException e) {
+            LOG.error("Unable to acknowledge sent writes", e);
+        }
+    }
+
+    /**
+     * Drop the writes that have been sent from the log: all of them once the queue is empty, otherwise when the log
+     * has grown past its maximum size. Must hold the lock
+     */
+    private void compactLog() {
+        if(closed) {
+            return;
+        }
+        boolean empty = pending.isEmpty();
+        if(!empty && log.getSize() < options.getMaximumLogSize()) {
+            return;
+        }
+        List<WriteAheadLog.Record> records = new ArrayList<WriteAheadLog.Record>(pending.size());
+        for(Operation operation : pending) {
+            records.add(new WriteAheadLog.Record(operation.sequence, operation.payload));
+        }
+        try {
+            log.rewrite(records);
+        } catch(RuntimeException e) {
+            LOG.error("Unable to compact the offline write queue", e);
+        }
+    }
+
+    private synchronized void failed() {
+        sending = false;
+        if(closed) {
+            return;
+        }
+        retryDelay = retryDelay == 0 ? options.getInitialRetryDelay() : Math.min(retryDelay * 2, options.getMaximumRetryDelay());
+        scheduledRetry = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized(OfflineWriteQueue.this) {
+                    scheduledRetry = null;
+                }
+                drain();
+            }
+        }, retryDelay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the number of writes that have not yet been sent to CloudMine
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Force every queued write to disk. Only needed when a sync interval is set
+     */
+    public void flush() {
+        log.sync();
+    }
+
+    /**
+     * Stop sending writes, force the queue to disk and close it. Writes that have not been sent stay in the queue
+     * and are sent after it is opened again
+     */
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.shutdownNow();
+        log.close();
+    }
+
+    private void checkOpen() {
+        if(closed) {
+            throw new IllegalStateException("The offline write queue is closed");
+        }
+    }
+}
@@ -1,53 +1,167 @@
 package com.cloudmine.api.rest;
 
-import com.cloudmine.api.Strings;
 import com.cloudmine.api.rest.callbacks.Callback;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * Collects how long requests took, to be sent back to CloudMine with the device identifier header of a later
+ * request. Response times are kept in a fixed size ring buffer, so they take constant memory however many requests
+ * are made without another being sent: once the buffer is full, the oldest response time is replaced. Recording and
+ * draining are lock free, and every response time is either sent exactly once or replaced; none are lost between
+ * being read and being cleared.
  * <br>
  * Copyright CloudMine LLC. All rights reserved<br>
  * See LICENSE file included with SDK for details.
  */
 public class ResponseTimeDataStore {
     private static final Logger LOG = LoggerFactory.getLogger(ResponseTimeDataStore.class);
-    private static final Map<String, Long> responseMap = new ConcurrentHashMap<String, Long>();
     public static final String KEY_VALUE_SEPERATOR = ":";
     public static final String ENTRY_SEPARATOR = ",";
+    /** The default number of response times kept */
+    public static final int DEFAULT_CAPACITY = 64;
+    /** The default maximum length of the response times sent with one header */
+    public static final int DEFAULT_MAXIMUM_PAYLOAD_LENGTH = 2048;
+
+    private static class ResponseTime {
+        private final String requestId;
+        private final long milliseconds;
+
+        private ResponseTime(String requestId, long milliseconds) {
+            this.requestId = requestId;
+            this.milliseconds = milliseconds;
+        }
+    }
+
+    private static class RingBuffer {
+        private final AtomicReferenceArray<ResponseTime> slots;
+        private final AtomicLong nextSlot = new AtomicLong();
+        //the number of occupied slots; only a hint, as it may briefly lag the slots themselves
+        private final AtomicInteger size = new AtomicInteger();
+
+        private RingBuffer(int capacity) {
+            slots = new AtomicReferenceArray<ResponseTime>(capacity);
+        }
+
+        private void add(ResponseTime responseTime) {
+            int slot = (int) (nextSlot.getAndIncrement() % slots.length());
+            if(slots.getAndSet(slot, responseTime) == null) {
+                size.incrementAndGet();
+            }
+        }
+
+        private String drain(int maximumLength) {
+            StringBuilder responseBuilder = null;
+            int capacity = slots.length();
+            long end = nextSlot.get();
+            //oldest first, so the response times that are about to be replaced are sent before newer ones
+            for(long index = Math.max(0, end - capacity); index < end; index++) {
+                int slot = (int) (index % capacity);
+                ResponseTime responseTime = slots.get(slot);
+                if(responseTime == null) {
+                    continue;
+                }
+                int length = responseTime.requestId.length() + KEY_VALUE_SEPERATOR.length() + digits(responseTime.milliseconds);
+                if(length > maximumLength) {
+                    //it would never fit, and would keep every newer response time from being sent
+                    if(slots.compareAndSet(slot, responseTime, null)) {
+                        size.decrementAndGet();
+                        LOG.warn("Dropping the response time of request " + responseTime.requestId + ", which is longer than the maximum payload length of " + maximumLength);
+                    }
+                    continue;
+                }
+                int used = responseBuilder == null ? 0 : responseBuilder.length() + ENTRY_SEPARATOR.length();
+                if(used + length > maximumLength) {
+                    //leave the rest for the next request
+                    break;
+                }
+                //only send the response time if no other drain took it and it wasn't replaced in the meantime
+                if(slots.compareAndSet(slot, responseTime, null)) {
+                    size.decrementAndGet();
+                    if(responseBuilder == null) {
+                        responseBuilder = new StringBuilder(Math.min(maximumLength, 32 * size.get() + 64));
+                    } else {
+                        responseBuilder.append(ENTRY_SEPARATOR);
+                    }
+                    responseBuilder.append(responseTime.requestId).append(KEY_VALUE_SEPERATOR).append(responseTime.milliseconds);
+                }
+            }
+            return responseBuilder == null ? "" : responseBuilder.toString();
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = value < 0 ? 2 : 1;
+        for(long remaining = Math.abs(value / 10); remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static volatile RingBuffer responseTimes = new RingBuffer(DEFAULT_CAPACITY);
+    private static volatile int maximumPayloadLength = DEFAULT_MAXIMUM_PAYLOAD_LENGTH;
 
     public static void extractAndStoreResponseTimeInformation(Callback callback, HttpResponse response) {
         long startTime = callback.getStartTime();
         long finishTime = System.currentTimeMillis();
-        Long responseTime = Long.valueOf(finishTime - startTime);
+        long responseTime = finishTime - startTime;
         Header[] headers = response.getHeaders(HeaderFactory.REQUEST_ID_KEY);
         if(headers.length == 0) {
             LOG.error("No request id headers returned from server");
             return;
         }
+        RingBuffer buffer = responseTimes;
         for(Header header : headers) {
-            String requestId = header.getValue();
-            responseMap.put(requestId, responseTime);
+            buffer.add(new ResponseTime(header.getValue(), responseTime));
         }
     }
 
+    /**
+     * Check whether there is any response time information waiting to be sent, without building it
+     * @return true if there is nothing to send
+     */
+    public static boolean isEmpty() {
+        return responseTimes.size.get() <= 0;
+    }
+
+    /**
+     * Remove the oldest response times, up to the maximum payload length, and return them in the format sent to
+     * CloudMine: requestId:milliseconds pairs, separated by commas. A response time that is longer than the maximum
+     * payload length on its own is discarded
+     * @return the response times, or an empty String if there are none
+     */
     public static String getContentsAsStringAndClearMap() {
-        StringBuilder responseBuilder = new StringBuilder();
-        String separator = "";
-        Set<Map.Entry<String, Long>> contents = responseMap.entrySet();
-        for(Map.Entry<String, Long> entry : contents) {
-            responseBuilder.append(separator).append(entry.getKey()).append(KEY_VALUE_SEPERATOR).append(entry.getValue());
-            if(Strings.isEmpty(separator))
-                separator = ENTRY_SEPARATOR;
+        return responseTimes.drain(maximumPayloadLength);
+    }
+
+    /**
+     * Set how many response times are kept until they are sent. Any response times that haven't been sent yet are
+     * discarded
+     * @param capacity the number of response times, at least 1
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public static void setCapacity(int capacity) throws IllegalArgumentException {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, not " + capacity);
         }
-        responseMap.clear(); //we could lose a response if it is added between these two operations, however these headers are not critical so that is alright
-        return responseBuilder.toString();
+        responseTimes = new RingBuffer(capacity);
     }
 
+    /**
+     * Set the maximum length of the response times sent with a single request; the rest are sent with later requests
+     * @param maximumLength the maximum number of characters
+     * @throws IllegalArgumentException if maximumLength is negative
+     */
+    public static void setMaximumPayloadLength(int maximumLength) throws IllegalArgumentException {
+        if(maximumLength < 0) {
+            throw new IllegalArgumentException("Maximum payload length must not be negative, not " + maximumLength);
+        }
+        maximumPayloadLength = maximumLength;
+    }
 }
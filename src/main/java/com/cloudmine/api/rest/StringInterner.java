@@ -0,0 +1,148 @@
+package com.cloudmine.api.rest;
+
+/**
+ * A bounded, thread safe String interner. Unlike {@link String#intern()}, memory use is capped: Strings are kept
+ * in a fixed size table indexed by hash code, and a String whose slot is taken simply replaces the previous
+ * occupant. This means interning never blocks and never grows, at the cost of occasionally returning an equal
+ * but not identical String. That is fine for its purpose, which is letting the many copies of the same field
+ * names and short values found in a large result set share a single instance.<br>
+ * Used by the JSON parser when set through {@link JsonUtilities#setStringInterner(StringInterner)}
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class StringInterner {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 32;
+
+    private final String[] table;
+    private final int mask;
+    private final int maxValueLength;
+
+    /**
+     * Instantiate a new StringInterner with the default capacity, that interns field names and values of
+     * up to {@link #DEFAULT_MAX_VALUE_LENGTH} characters
+     */
+    public StringInterner() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Instantiate a new StringInterner
+     * @param capacity the maximum number of Strings kept. Rounded up to the next power of two
+     * @param maxValueLength values longer than this are not interned. Field names are always interned; pass 0 to only intern field names
+     * @throws IllegalArgumentException if capacity is not positive or maxValueLength is negative
+     */
+    public StringInterner(int capacity, int maxValueLength) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, was: " + capacity);
+        }
+        if(maxValueLength < 0) {
+            throw new IllegalArgumentException("Max value length cannot be negative, was: " + maxValueLength);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) {
+            size <<= 1;
+        }
+        this.table = new String[size];
+        this.mask = size - 1;
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * Intern a field name
+     * @param key the field name
+     * @return a String equal to key, or null if given null
+     */
+    public String internKey(String key) {
+        return intern(key);
+    }
+
+    /**
+     * Intern a value, if it is no longer than the maximum value length
+     * @param value the value
+     * @return a String equal to value, or null if given null
+     */
+    public String internValue(String value) {
+        if(value == null || value.length() > maxValueLength) {
+            return value;
+        }
+        return intern(value);
+    }
+
+    /**
+     * Intern a value that is stored in a character buffer, without allocating a new String if an equal String has
+     * already been interned
+     * @param buffer the buffer holding the characters
+     * @param offset the start of the value in the buffer
+     * @param length the length of the value
+     * @return a String containing the given characters
+     */
+    public String internValue(char[] buffer, int offset, int length) {
+        if(length > maxValueLength) {
+            return new String(buffer, offset, length);
+        }
+        int hash = 0;
+        for(int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int index = spread(hash) & mask;
+        String existing = table[index];
+        if(existing != null && matches(existing, buffer, offset, length)) {
+            return existing;
+        }
+        String value = new String(buffer, offset, length);
+        table[index] = value;
+        return value;
+    }
+
+    /**
+     * Intern the given String, regardless of its length
+     * @param value the String to intern
+     * @return a String equal to value, or null if given null
+     */
+    public String intern(String value) {
+        if(value == null) {
+            return null;
+        }
+        int index = spread(value.hashCode()) & mask;
+        String existing = table[index];
+        if(value.equals(existing)) {
+            return existing;
+        }
+        table[index] = value;
+        return value;
+    }
+
+    /**
+     * Get the maximum length of values that will be interned
+     * @return the maximum length of values that will be interned
+     */
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    /**
+     * Get the number of Strings that can be held by this interner
+     * @return the number of slots in this interner
+     */
+    public int getCapacity() {
+        return table.length;
+    }
+
+    private static boolean matches(String existing, char[] buffer, int offset, int length) {
+        if(existing.length() != length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(existing.charAt(i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,148 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.metrics.LatencyHistogram;
+import com.cloudmine.api.metrics.RequestPhase;
+import com.cloudmine.api.metrics.RequestTrace;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An HttpClient over a {@link ConnectionPool}, that records how long every request waits to lease a connection, and
+ * reports the connection lease, connect, send and time to first byte phases of a request to the {@link RequestTrace}
+ * that is current on the thread executing it
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+class TracingHttpClient extends DefaultHttpClient {
+
+    /**
+     * Records how long leasing a connection from the wrapped manager takes, and starts the connect phase when the
+     * leased connection still has to be opened
+     */
+    private static class TracingConnectionManager implements ClientConnectionManager {
+        private final ClientConnectionManager wrapped;
+        private final LatencyHistogram leaseTimes;
+
+        private TracingConnectionManager(ClientConnectionManager wrapped, LatencyHistogram leaseTimes) {
+            this.wrapped = wrapped;
+            this.leaseTimes = leaseTimes;
+        }
+
+        @Override
+        public SchemeRegistry getSchemeRegistry() {
+            return wrapped.getSchemeRegistry();
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ClientConnectionRequest request = wrapped.requestConnection(route, state);
+            return new ClientConnectionRequest() {
+                @Override
+                public ManagedClientConnection getConnection(long timeout, TimeUnit unit) throws InterruptedException, ConnectionPoolTimeoutException {
+                    RequestTrace trace = RequestTrace.current();
+                    if(trace != null) {
+                        trace.startPhase(RequestPhase.CONNECTION_LEASE);
+                    }
+                    long start = System.nanoTime();
+                    ManagedClientConnection connection;
+                    try {
+                        connection = request.getConnection(timeout, unit);
+                    } finally {
+                        leaseTimes.record(System.nanoTime() - start);
+                        if(trace != null) {
+                            trace.endPhase(RequestPhase.CONNECTION_LEASE);
+                        }
+                    }
+                    if(trace != null && !connection.isOpen()) {
+                        //ended when the request starts to be sent, once the connection has been opened
+                        trace.startPhase(RequestPhase.CONNECT);
+                    }
+                    return connection;
+                }
+
+                @Override
+                public void abortRequest() {
+                    request.abortRequest();
+                }
+            };
+        }
+
+        @Override
+        public void releaseConnection(ManagedClientConnection connection, long validDuration, TimeUnit timeUnit) {
+            wrapped.releaseConnection(connection, validDuration, timeUnit);
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            wrapped.closeExpiredConnections();
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit tunit) {
+            wrapped.closeIdleConnections(idletime, tunit);
+        }
+
+        @Override
+        public void shutdown() {
+            wrapped.shutdown();
+        }
+    }
+
+    /**
+     * Reports how long writing the request, and then waiting for the response headers, take
+     */
+    private static class TracingRequestExecutor extends HttpRequestExecutor {
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection connection, HttpContext context) throws IOException, HttpException {
+            RequestTrace trace = RequestTrace.current();
+            if(trace == null) {
+                return super.doSendRequest(request, connection, context);
+            }
+            trace.endPhase(RequestPhase.CONNECT);
+            trace.startPhase(RequestPhase.SEND);
+            try {
+                return super.doSendRequest(request, connection, context);
+            } finally {
+                trace.endPhase(RequestPhase.SEND);
+                trace.startPhase(RequestPhase.TIME_TO_FIRST_BYTE);
+            }
+        }
+
+        @Override
+        protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection connection, HttpContext context) throws HttpException, IOException {
+            RequestTrace trace = RequestTrace.current();
+            try {
+                return super.doReceiveResponse(request, connection, context);
+            } finally {
+                if(trace != null) {
+                    trace.endPhase(RequestPhase.TIME_TO_FIRST_BYTE);
+                }
+            }
+        }
+    }
+
+    TracingHttpClient(ConnectionPool pool) {
+        super(new TracingConnectionManager(pool.getConnectionManager(), pool.getLeaseTimeHistogram()), null);
+        setKeepAliveStrategy(pool.getKeepAliveStrategy());
+    }
+
+    @Override
+    protected HttpRequestExecutor createRequestExecutor() {
+        return new TracingRequestExecutor();
+    }
+}
@@ -5,6 +5,7 @@ import com.cloudmine.api.JavaAccessListController;
 import com.cloudmine.api.CMSessionToken;
 import com.cloudmine.api.JavaCMUser;
 import com.cloudmine.api.LibrarySpecificClassCreator;
+import com.cloudmine.api.ObjectLevel;
 import com.cloudmine.api.exceptions.InvalidRequestException;
 import com.cloudmine.api.rest.callbacks.CMCallback;
 import com.cloudmine.api.rest.callbacks.Callback;
@@ -33,6 +34,7 @@ public class UserCMWebService extends CMWebService {
 
     protected final CMSessionToken sessionToken;
     private final Header userHeader;
+    private volatile String cacheOwner;
 
     /**
      * Provides access to a specific users data.
@@ -67,6 +69,29 @@ public class UserCMWebService extends CMWebService {
     }
 
 
+    @Override
+    protected ObjectLevel getObjectLevel() {
+        return ObjectLevel.USER;
+    }
+
+    /**
+     * Set a stable identifier of the user this session belongs to, such as their email, to key cached data and
+     * invalidations with in place of the session token
+     * @param owner the identifier of the user
+     */
+    void setCacheOwner(String owner) {
+        cacheOwner = owner;
+    }
+
+    @Override
+    protected String getCacheOwner() {
+        String owner = cacheOwner;
+        if(owner != null) {
+            return owner;
+        }
+        return sessionToken == null ? null : sessionToken.getSessionToken();
+    }
+
     @Override
     protected void addCloudMineHeader(AbstractHttpMessage message) {
         super.addCloudMineHeader(message);
@@ -0,0 +1,14 @@
+package com.cloudmine.api.rest.callbacks;
+
+import com.cloudmine.api.rest.options.CMColumnOptions;
+import com.cloudmine.api.rest.response.ColumnarResponse;
+
+/**
+ * Callback for server calls that return a {@link com.cloudmine.api.rest.response.ColumnarResponse}
+ * <br>Copyright CloudMine LLC. All rights reserved<br> See LICENSE file included with SDK for details.
+ */
+public class ColumnarResponseCallback extends CMCallback<ColumnarResponse> {
+    public ColumnarResponseCallback(CMColumnOptions columns) {
+        super(ColumnarResponse.constructor(columns));
+    }
+}
@@ -0,0 +1,93 @@
+package com.cloudmine.api.rest.options;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Specifies which top level fields to read into a {@link com.cloudmine.api.rest.response.ColumnarResult}, and the
+ * primitive type of each. Like {@link CMDecodeOptions}, these are never sent to CloudMine.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMColumnOptions {
+
+    public enum ColumnType {
+        /** Numbers, stored as doubles */
+        DOUBLE,
+        /** Whole numbers, stored as longs. CloudMine dates are stored as their timestamp in seconds */
+        LONG,
+        /** Strings, stored as indexes into a dictionary of distinct values */
+        STRING
+    }
+
+    private final Map<String, ColumnType> columns = new LinkedHashMap<String, ColumnType>();
+
+    /**
+     * Read the given field into a column of doubles
+     * @param field the name of the top level field
+     * @return this
+     */
+    public CMColumnOptions addDoubleColumn(String field) {
+        return addColumn(field, ColumnType.DOUBLE);
+    }
+
+    /**
+     * Read the given field into a column of longs
+     * @param field the name of the top level field
+     * @return this
+     */
+    public CMColumnOptions addLongColumn(String field) {
+        return addColumn(field, ColumnType.LONG);
+    }
+
+    /**
+     * Read the given field into a dictionary encoded column of Strings
+     * @param field the name of the top level field
+     * @return this
+     */
+    public CMColumnOptions addStringColumn(String field) {
+        return addColumn(field, ColumnType.STRING);
+    }
+
+    /**
+     * Read the given field into a column of the given type
+     * @param field the name of the top level field
+     * @param type the type of the column
+     * @return this
+     * @throws IllegalArgumentException if field or type is null
+     */
+    public CMColumnOptions addColumn(String field, ColumnType type) {
+        if(field == null || type == null) {
+            throw new IllegalArgumentException("Columns need a field and a type");
+        }
+        columns.put(field, type);
+        return this;
+    }
+
+    /**
+     * Get the columns to read, in the order they were added
+     * @return an unmodifiable Map from field name to column type
+     */
+    public Map<String, ColumnType> getColumns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CMColumnOptions that = (CMColumnOptions) o;
+
+        if (!columns.equals(that.columns)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return columns.hashCode();
+    }
+}
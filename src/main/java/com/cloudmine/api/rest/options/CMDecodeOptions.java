@@ -0,0 +1,130 @@
+package com.cloudmine.api.rest.options;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.rest.JsonUtilities;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Client side options that control how the objects returned by a load or search request are decoded. Unlike the
+ * other options these are never sent to CloudMine; they only change how the {@link com.cloudmine.api.rest.response.CMObjectResponse}
+ * is constructed.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMDecodeOptions {
+    public static final CMDecodeOptions NONE = new CMDecodeOptions(false);
+    public static final CMDecodeOptions LAZY = new CMDecodeOptions(true);
+
+    /**
+     * These keys are needed to decode an object into the correct class, so they are always included in a projection
+     */
+    private static final Set<String> REQUIRED_FIELDS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            JsonUtilities.OBJECT_ID_KEY, JsonUtilities.CLASS_KEY, JsonUtilities.TYPE_KEY, CMObject.ACCESS_KEY)));
+
+    private final boolean lazyObjects;
+    private final Set<String> projectedFields;
+
+    /**
+     * Create a CMDecodeOptions that only decodes the given top level fields of each object
+     * @param fields the names of the fields to decode. The fields CloudMine uses to identify an object's id and class are always decoded
+     * @return a CMDecodeOptions that projects objects onto the given fields
+     */
+    public static CMDecodeOptions projection(String... fields) {
+        return new CMDecodeOptions(false, fields == null ? null : Arrays.asList(fields));
+    }
+
+    /**
+     * Instantiate a new CMDecodeOptions
+     * @param lazyObjects if true, objects without a registered class are returned as {@link com.cloudmine.api.LazySimpleCMObject}s,
+     *                    which only decode the fields that are actually accessed
+     */
+    public CMDecodeOptions(boolean lazyObjects) {
+        this(lazyObjects, null);
+    }
+
+    /**
+     * Instantiate a new CMDecodeOptions
+     * @param lazyObjects if true, objects without a registered class are returned as {@link com.cloudmine.api.LazySimpleCMObject}s,
+     *                    which only decode the fields that are actually accessed
+     * @param projectedFields if not null, only these top level fields of each object are decoded; every other field is
+     *                        skipped over by the parser without being allocated. If null, every field is decoded
+     */
+    public CMDecodeOptions(boolean lazyObjects, Collection<String> projectedFields) {
+        this.lazyObjects = lazyObjects;
+        if(projectedFields == null) {
+            this.projectedFields = null;
+        } else {
+            Set<String> fields = new HashSet<String>(projectedFields);
+            fields.addAll(REQUIRED_FIELDS);
+            this.projectedFields = Collections.unmodifiableSet(fields);
+        }
+    }
+
+    /**
+     * Whether untyped objects should be decoded lazily
+     * @return true if untyped objects should be returned as {@link com.cloudmine.api.LazySimpleCMObject}s
+     */
+    public boolean isLazyObjects() {
+        return lazyObjects;
+    }
+
+    /**
+     * Whether only some of the fields of each object should be decoded
+     * @return true if a projection was specified
+     */
+    public boolean isProjected() {
+        return projectedFields != null;
+    }
+
+    /**
+     * Get the fields that will be decoded, including the fields that are always decoded
+     * @return an unmodifiable Set of field names, or null if every field is decoded
+     */
+    public Set<String> getProjectedFields() {
+        return projectedFields;
+    }
+
+    /**
+     * Check whether the top level field with the given name should be decoded
+     * @param field the name of the field
+     * @return true if there is no projection, or the projection includes the given field
+     */
+    public boolean includesField(String field) {
+        return projectedFields == null || projectedFields.contains(field);
+    }
+
+    /**
+     * Check whether decoding with these options is identical to the default, eager decoding of every field
+     * @return true if these options do not change how objects are decoded
+     */
+    public boolean isDefault() {
+        return !lazyObjects && projectedFields == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CMDecodeOptions that = (CMDecodeOptions) o;
+
+        if (lazyObjects != that.lazyObjects) return false;
+        if (projectedFields != null ? !projectedFields.equals(that.projectedFields) : that.projectedFields != null)
+            return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (lazyObjects ? 1 : 0);
+        result = 31 * result + (projectedFields != null ? projectedFields.hashCode() : 0);
+        return result;
+    }
+}
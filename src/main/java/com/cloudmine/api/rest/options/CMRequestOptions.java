@@ -3,6 +3,8 @@ package com.cloudmine.api.rest.options;
 import com.cloudmine.api.Strings;
 import com.cloudmine.api.rest.BaseURL;
 
+import java.util.Arrays;
+
 /**
  * A container for the different options that can be passed into a request.
  * <br>Copyright CloudMine LLC. All rights reserved<br> See LICENSE file included with SDK for details.
@@ -15,6 +17,11 @@ public class CMRequestOptions implements BaseURL{
     private CMSortOptions sortOptions = CMSortOptions.NONE;
     private CMSharedDataOptions sharedDataOptions = CMSharedDataOptions.NO_OPTIONS;
     private CMSearchOptions searchOptions = CMSearchOptions.NONE;
+    private CMDecodeOptions decodeOptions = CMDecodeOptions.NONE;
+    private boolean skipCache;
+    private boolean localFirst;
+    //the rendered URL options, cleared whenever an option that is part of the URL is changed
+    private volatile String urlString;
 
 
     /**
@@ -71,6 +78,10 @@ public class CMRequestOptions implements BaseURL{
         this.searchOptions = searchOptions;
     }
 
+    public CMRequestOptions(CMDecodeOptions decodeOptions) {
+        this.decodeOptions = decodeOptions;
+    }
+
     public CMRequestOptions() {
 
     }
@@ -85,6 +96,7 @@ public class CMRequestOptions implements BaseURL{
 
     public void setPagingOptions(CMPagingOptions pagingOptions) {
         this.pagingOptions = pagingOptions;
+        this.urlString = null;
     }
 
     public CMServerFunction getServerFunction() {
@@ -93,6 +105,7 @@ public class CMRequestOptions implements BaseURL{
 
     public CMRequestOptions setServerFunction(CMServerFunction serverFunction) {
         this.serverFunction = serverFunction;
+        this.urlString = null;
         return this;
     }
 
@@ -102,6 +115,7 @@ public class CMRequestOptions implements BaseURL{
 
     public CMRequestOptions setSortOptions(CMSortOptions sortOptions) {
         this.sortOptions = sortOptions;
+        this.urlString = null;
         return this;
     }
 
@@ -111,6 +125,7 @@ public class CMRequestOptions implements BaseURL{
 
     public CMRequestOptions setSharedDataOptions(CMSharedDataOptions sharedDataOptions) {
         this.sharedDataOptions = sharedDataOptions;
+        this.urlString = null;
         return this;
     }
 
@@ -120,29 +135,107 @@ public class CMRequestOptions implements BaseURL{
 
     public CMRequestOptions setSearchOptions(CMSearchOptions searchOptions) {
         this.searchOptions = searchOptions;
+        this.urlString = null;
+        return this;
+    }
+
+    /**
+     * Get the client side decoding options. These are not included in the URL
+     * @return the decoding options to use when constructing the response
+     */
+    public CMDecodeOptions getDecodeOptions() {
+        return decodeOptions;
+    }
+
+    public CMRequestOptions setDecodeOptions(CMDecodeOptions decodeOptions) {
+        this.decodeOptions = decodeOptions;
         return this;
     }
 
+    /**
+     * Only decode the given top level fields of the objects returned by this request. Projection is applied
+     * on the client as the response is parsed; the full objects are still sent by CloudMine. Objects that are
+     * loaded this way are missing every other field, so they should not be saved back over the complete objects
+     * @param fields the fields to decode
+     * @return this
+     */
+    public CMRequestOptions setProjection(String... fields) {
+        boolean lazyObjects = decodeOptions != null && decodeOptions.isLazyObjects();
+        this.decodeOptions = new CMDecodeOptions(lazyObjects, fields == null ? null : Arrays.asList(fields));
+        return this;
+    }
+
+    /**
+     * Whether this request should skip the {@link com.cloudmine.api.cache.ResponseCache} and the
+     * {@link com.cloudmine.api.cache.NegativeCache}. This is not included in the URL
+     * @return true if the response should neither be read from nor written to the cache
+     */
+    public boolean isSkipCache() {
+        return skipCache;
+    }
+
+    /**
+     * Always make this request over the network, even if a fresh response is cached, and don't cache its response
+     * @param skipCache true to skip the cache
+     * @return this
+     */
+    public CMRequestOptions setSkipCache(boolean skipCache) {
+        this.skipCache = skipCache;
+        return this;
+    }
+
+    /**
+     * Whether a {@link com.cloudmine.api.rest.CMStore} load should be answered from the objects already in the store
+     * when it holds every object of the loaded class. This is not included in the URL
+     * @return true if the load should be answered locally when possible
+     */
+    public boolean isLocalFirst() {
+        return localFirst;
+    }
+
+    /**
+     * Answer CMStore searches and loads of a class from the objects already in the store, including any persistent
+     * cache, instead of sending them to CloudMine, once every object of the class has been loaded into the store.
+     * Only searches restricted to a single class, without paging limits, sorting, server functions or shared data,
+     * are answered locally; everything else is sent as usual. Objects written by other clients since the class was
+     * loaded are not seen
+     * @param localFirst true to answer from the store when possible
+     * @return this
+     */
+    public CMRequestOptions setLocalFirst(boolean localFirst) {
+        this.localFirst = localFirst;
+        return this;
+    }
+
+    /**
+     * The options as URL query parameters. This is rendered once and cached until an option is changed
+     * @return the query parameters, without a leading ? or &amp;
+     */
     @Override
     public String asUrlString() {
-        StringBuilder urlBuilder = new StringBuilder();
-        addIfExists(urlBuilder, searchOptions);
-        addIfExists(urlBuilder, pagingOptions);
-        addIfExists(urlBuilder, serverFunction);
-        addIfExists(urlBuilder, sortOptions);
-        addIfExists(urlBuilder, sharedDataOptions);
-        return urlBuilder.toString();
+        String rendered = urlString;
+        if(rendered == null) {
+            StringBuilder urlBuilder = new StringBuilder();
+            addIfExists(urlBuilder, searchOptions);
+            addIfExists(urlBuilder, pagingOptions);
+            addIfExists(urlBuilder, serverFunction);
+            addIfExists(urlBuilder, sortOptions);
+            addIfExists(urlBuilder, sharedDataOptions);
+            rendered = urlBuilder.toString();
+            urlString = rendered;
+        }
+        return rendered;
     }
 
     private void addIfExists(StringBuilder builder, BaseURL url) {
-        if(url == null || Strings.isEmpty(url.asUrlString())) {
+        String urlString = url == null ? null : url.asUrlString();
+        if(Strings.isEmpty(urlString)) {
             return;
         }
-        boolean isNotEmpty = !Strings.isEmpty(builder.toString());
-        if(isNotEmpty) {
+        if(builder.length() > 0) {
             builder.append("&");
         }
-        builder.append(url.asUrlString());
+        builder.append(urlString);
     }
 
     @Override
@@ -152,6 +245,8 @@ public class CMRequestOptions implements BaseURL{
 
         CMRequestOptions that = (CMRequestOptions) o;
 
+        if (skipCache != that.skipCache) return false;
+        if (localFirst != that.localFirst) return false;
         if (pagingOptions != null ? !pagingOptions.equals(that.pagingOptions) : that.pagingOptions != null)
             return false;
         if (searchOptions != null ? !searchOptions.equals(that.searchOptions) : that.searchOptions != null)
@@ -161,6 +256,8 @@ public class CMRequestOptions implements BaseURL{
         if (sharedDataOptions != null ? !sharedDataOptions.equals(that.sharedDataOptions) : that.sharedDataOptions != null)
             return false;
         if (sortOptions != null ? !sortOptions.equals(that.sortOptions) : that.sortOptions != null) return false;
+        if (decodeOptions != null ? !decodeOptions.equals(that.decodeOptions) : that.decodeOptions != null)
+            return false;
 
         return true;
     }
@@ -172,6 +269,9 @@ public class CMRequestOptions implements BaseURL{
         result = 31 * result + (sortOptions != null ? sortOptions.hashCode() : 0);
         result = 31 * result + (sharedDataOptions != null ? sharedDataOptions.hashCode() : 0);
         result = 31 * result + (searchOptions != null ? searchOptions.hashCode() : 0);
+        result = 31 * result + (decodeOptions != null ? decodeOptions.hashCode() : 0);
+        result = 31 * result + (skipCache ? 1 : 0);
+        result = 31 * result + (localFirst ? 1 : 0);
         return result;
     }
 }
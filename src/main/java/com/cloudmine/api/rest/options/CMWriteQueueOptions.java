@@ -0,0 +1,92 @@
+package com.cloudmine.api.rest.options;
+
+/**
+ * Configures an {@link com.cloudmine.api.rest.OfflineWriteQueue}: when queued writes are forced to disk, how many
+ * are sent to CloudMine in one request, and how long to wait before retrying when CloudMine cannot be reached
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMWriteQueueOptions {
+    public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 50;
+    public static final long DEFAULT_INITIAL_RETRY_DELAY = 1000;
+    public static final long DEFAULT_MAXIMUM_RETRY_DELAY = 5 * 60 * 1000;
+    public static final long DEFAULT_MAXIMUM_LOG_SIZE = 1024 * 1024;
+
+    private long syncIntervalMillis;
+    private int maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+    private long initialRetryDelay = DEFAULT_INITIAL_RETRY_DELAY;
+    private long maximumRetryDelay = DEFAULT_MAXIMUM_RETRY_DELAY;
+    private long maximumLogSize = DEFAULT_MAXIMUM_LOG_SIZE;
+
+    /**
+     * Set how often queued writes are forced to disk. By default this is 0, and a write is not acknowledged until it
+     * is on disk; writes queued at the same time share a single fsync. With an interval, writes are acknowledged as
+     * soon as they are written to the log, and any made within the last interval may be lost if the device loses power
+     * @param syncIntervalMillis the interval in milliseconds, or 0 to force every write to disk before acknowledging it
+     * @return this
+     */
+    public CMWriteQueueOptions setSyncInterval(long syncIntervalMillis) {
+        this.syncIntervalMillis = Math.max(0, syncIntervalMillis);
+        return this;
+    }
+
+    /**
+     * Set the most writes that are sent to CloudMine in a single request. Only consecutive writes of the same kind
+     * and level are combined, so writes are still applied in the order they were made. Defaults to {@link #DEFAULT_MAXIMUM_BATCH_SIZE}
+     * @param maximumBatchSize the maximum batch size, at least 1
+     * @return this
+     * @throws IllegalArgumentException if maximumBatchSize is less than 1
+     */
+    public CMWriteQueueOptions setMaximumBatchSize(int maximumBatchSize) {
+        if(maximumBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be at least 1: " + maximumBatchSize);
+        }
+        this.maximumBatchSize = maximumBatchSize;
+        return this;
+    }
+
+    /**
+     * Set how long to wait before retrying after CloudMine could not be reached. The delay doubles after each failed
+     * attempt, up to the maximum retry delay
+     * @param initialRetryDelayMillis the delay before the first retry, in milliseconds
+     * @param maximumRetryDelayMillis the longest delay between retries, in milliseconds
+     * @return this
+     */
+    public CMWriteQueueOptions setRetryDelay(long initialRetryDelayMillis, long maximumRetryDelayMillis) {
+        this.initialRetryDelay = Math.max(1, initialRetryDelayMillis);
+        this.maximumRetryDelay = Math.max(initialRetryDelay, maximumRetryDelayMillis);
+        return this;
+    }
+
+    /**
+     * Set how large the log may grow before writes that have been sent are removed from it. The log is always
+     * emptied once every queued write has been sent. Defaults to {@link #DEFAULT_MAXIMUM_LOG_SIZE}
+     * @param maximumLogSize the size in bytes
+     * @return this
+     */
+    public CMWriteQueueOptions setMaximumLogSize(long maximumLogSize) {
+        this.maximumLogSize = Math.max(0, maximumLogSize);
+        return this;
+    }
+
+    public long getSyncInterval() {
+        return syncIntervalMillis;
+    }
+
+    public int getMaximumBatchSize() {
+        return maximumBatchSize;
+    }
+
+    public long getInitialRetryDelay() {
+        return initialRetryDelay;
+    }
+
+    public long getMaximumRetryDelay() {
+        return maximumRetryDelay;
+    }
+
+    public long getMaximumLogSize() {
+        return maximumLogSize;
+    }
+}
@@ -6,6 +6,7 @@ import com.cloudmine.api.DistanceUnits;
 import com.cloudmine.api.exceptions.ConversionException;
 import com.cloudmine.api.exceptions.CreationException;
 import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.options.CMDecodeOptions;
 import com.cloudmine.api.rest.response.code.ObjectLoadCode;
 import org.apache.http.HttpResponse;
 import org.slf4j.Logger;
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,27 +40,44 @@ public class CMObjectResponse extends SuccessErrorResponse<ObjectLoadCode> {
     };
     private final Map<String, ? extends CMObject> objectMap;
 
+    /**
+     * Get a ResponseConstructor that decodes its objects according to the given options
+     * @param decodeOptions how the loaded objects should be decoded. If null, the default decoding is used
+     * @return a ResponseConstructor for CMObjectResponses
+     */
+    public static ResponseConstructor<CMObjectResponse> constructor(final CMDecodeOptions decodeOptions) {
+        if(decodeOptions == null || CMDecodeOptions.NONE.equals(decodeOptions)) {
+            return CONSTRUCTOR;
+        }
+        return new ResponseConstructor<CMObjectResponse>() {
+            @Override
+            public CMObjectResponse construct(HttpResponse response) throws CreationException {
+                return new CMObjectResponse(response, decodeOptions);
+            }
+
+            @Override
+            public CMObjectResponse construct(String messageBody, int responseCode) throws CreationException {
+                return new CMObjectResponse(messageBody, responseCode, decodeOptions);
+            }
+        };
+    }
 
     /**
      * Instantiate a new CMObjectResponse. You probably should not be calling this yourself.
      * @param response a response to an object fetch request
      */
     public CMObjectResponse(HttpResponse response) {
+        this(response, CMDecodeOptions.NONE);
+    }
+
+    /**
+     * Instantiate a new CMObjectResponse, decoding the loaded objects as specified. You probably should not be calling this yourself.
+     * @param response a response to an object fetch request
+     * @param decodeOptions how the loaded objects should be decoded
+     */
+    public CMObjectResponse(HttpResponse response, CMDecodeOptions decodeOptions) {
         super(response);
-        if(hasSuccess()) {
-            Map<String, String> messageMap = JsonUtilities.jsonMapToKeyMap(getMessageBody());
-            String success = messageMap.get(SUCCESS);
-            Map<String, ? extends CMObject> tempMap;
-            try {
-                tempMap = JsonUtilities.jsonToClassMap(success);
-            }catch(ConversionException jce) {
-                tempMap = Collections.emptyMap();
-                LOG.error("Trouble converting: " + success + ", using empty map");
-            }
-            objectMap = tempMap;
-        } else {
-            objectMap = Collections.emptyMap();
-        }
+        objectMap = decodeObjects(decodeOptions);
     }
 
     /**
@@ -67,19 +86,81 @@ public class CMObjectResponse extends SuccessErrorResponse<ObjectLoadCode> {
      * @param code
      */
     public CMObjectResponse(String response, int code) {
-        super(response, code); //TODO this is copy pasta code from above :( thats bad
-        if(hasSuccess()) {
-            String success = JsonUtilities.jsonMapToKeyMap(getMessageBody()).get(SUCCESS);
-            Map<String, ? extends CMObject> tempMap;
+        this(response, code, CMDecodeOptions.NONE);
+    }
+
+    /**
+     * Internal use only
+     * @param response
+     * @param code
+     * @param decodeOptions
+     */
+    public CMObjectResponse(String response, int code, CMDecodeOptions decodeOptions) {
+        super(response, code);
+        objectMap = decodeObjects(decodeOptions);
+    }
+
+    /**
+     * Internal use only; answers a load with objects that are already on the device
+     * @param objects the loaded objects, in the order they should be returned
+     * @throws ConversionException if the objects cannot be converted to JSON
+     */
+    public CMObjectResponse(List<? extends CMObject> objects) throws ConversionException {
+        this(objects, Collections.<String, Distance>emptyMap());
+    }
+
+    /**
+     * Internal use only; answers a geo search with objects that are already on the device
+     * @param objects the loaded objects, in the order they should be returned
+     * @param distances the distance of each object from the searched point, returned by {@link #getDistanceFor(String)}
+     * @throws ConversionException if the objects cannot be converted to JSON
+     */
+    public CMObjectResponse(List<? extends CMObject> objects, Map<String, Distance> distances) throws ConversionException {
+        super("{\"" + SUCCESS + "\":" + JsonUtilities.cmobjectsToJson(objects.toArray(new CMObject[objects.size()])) +
+                ",\"" + ERRORS + "\":{}" + distanceMeta(distances) + "}", 200);
+        Map<String, CMObject> loaded = new LinkedHashMap<String, CMObject>();
+        for(CMObject object : objects) {
+            loaded.put(object.getObjectId(), object);
+        }
+        objectMap = loaded;
+    }
+
+    private static String distanceMeta(Map<String, Distance> distances) {
+        if(distances.isEmpty()) {
+            return "";
+        }
+        StringBuilder meta = new StringBuilder(",\"meta\":{");
+        boolean first = true;
+        for(Map.Entry<String, Distance> entry : distances.entrySet()) {
+            if(!first) {
+                meta.append(",");
+            }
+            first = false;
+            meta.append(JsonUtilities.addQuotes(entry.getKey())).append(":{\"geo\":{\"distance\":")
+                    .append(Double.toString(entry.getValue().getMeasurement())).append(",\"units\":")
+                    .append(JsonUtilities.addQuotes(entry.getValue().getUnits().toString())).append("}}");
+        }
+        return meta.append("}").toString();
+    }
+
+    private Map<String, ? extends CMObject> decodeObjects(CMDecodeOptions decodeOptions) {
+        if(!hasSuccess()) {
+            return Collections.emptyMap();
+        }
+        if(decodeOptions != null && !decodeOptions.isDefault()) {
             try {
-                tempMap = JsonUtilities.jsonToClassMap(success);
+                return JsonUtilities.jsonToClassMap(getMessageBody(), SUCCESS, decodeOptions);
             }catch(ConversionException jce) {
-                tempMap = Collections.emptyMap();
-                LOG.error("Trouble converting: " + success + ", using empty map");
+                LOG.error("Trouble converting: " + getMessageBody() + ", using empty map");
+                return Collections.emptyMap();
             }
-            objectMap = tempMap;
-        } else {
-            objectMap = Collections.emptyMap();
+        }
+        String success = JsonUtilities.jsonMapToKeyMap(getMessageBody()).get(SUCCESS);
+        try {
+            return JsonUtilities.jsonToClassMap(success);
+        }catch(ConversionException jce) {
+            LOG.error("Trouble converting: " + success + ", using empty map");
+            return Collections.emptyMap();
         }
     }
 
@@ -0,0 +1,87 @@
+package com.cloudmine.api.rest.response;
+
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.exceptions.CreationException;
+import com.cloudmine.api.rest.options.CMColumnOptions;
+import com.cloudmine.api.rest.response.code.ObjectLoadCode;
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returned by object fetch requests that were made with a {@link CMColumnOptions}. Instead of {@link com.cloudmine.api.CMObject}s,
+ * the loaded objects are read directly into a {@link ColumnarResult}; the rest of the response is never parsed.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ColumnarResponse extends ResponseBase<ObjectLoadCode> {
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarResponse.class);
+
+    private final ColumnarResult result;
+
+    /**
+     * Get a ResponseConstructor that reads the given columns
+     * @param columns the columns to read
+     * @return a ResponseConstructor for ColumnarResponses
+     */
+    public static ResponseConstructor<ColumnarResponse> constructor(final CMColumnOptions columns) {
+        return new ResponseConstructor<ColumnarResponse>() {
+            @Override
+            public ColumnarResponse construct(HttpResponse response) throws CreationException {
+                return new ColumnarResponse(response, columns);
+            }
+
+            @Override
+            public ColumnarResponse construct(String messageBody, int responseCode) throws CreationException {
+                return new ColumnarResponse(messageBody, responseCode, columns);
+            }
+        };
+    }
+
+    /**
+     * Instantiate a new ColumnarResponse. You probably shouldn't be calling this yourself
+     * @param response the response to a load or search request
+     * @param columns the columns to read
+     */
+    public ColumnarResponse(HttpResponse response, CMColumnOptions columns) {
+        super(response, true, false);
+        result = readResult(columns);
+    }
+
+    /**
+     * Internal use only
+     * @param messageBody
+     * @param code
+     * @param columns
+     */
+    public ColumnarResponse(String messageBody, int code, CMColumnOptions columns) {
+        super(messageBody, code, false);
+        result = readResult(columns);
+    }
+
+    private ColumnarResult readResult(CMColumnOptions columns) {
+        if(!wasSuccess()) {
+            return new ColumnarResult(columns);
+        }
+        try {
+            return ColumnarResult.fromJson(getMessageBody(), SuccessErrorResponse.SUCCESS, columns);
+        } catch (ConversionException e) {
+            LOG.error("Trouble converting: " + getMessageBody() + ", using empty result", e);
+            return new ColumnarResult(columns);
+        }
+    }
+
+    /**
+     * Get the columns that were read from the loaded objects
+     * @return the ColumnarResult; empty if the request failed
+     */
+    public ColumnarResult getResult() {
+        return result;
+    }
+
+    @Override
+    public ObjectLoadCode getResponseCode() {
+        return ObjectLoadCode.codeForStatus(getStatusCode());
+    }
+}
@@ -0,0 +1,660 @@
+package com.cloudmine.api.rest.response;
+
+import com.cloudmine.api.Strings;
+import com.cloudmine.api.exceptions.ConversionException;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.options.CMColumnOptions;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A column oriented view of a collection of CloudMine objects, meant for reading and aggregating a few fields across
+ * many objects. Each requested field is read into a single column backed by a primitive array; Strings are
+ * dictionary encoded, and missing or mistyped values are tracked in a null bitmap. No per object Maps or boxed
+ * numbers are ever created, and every field that is not a column is skipped by the parser.<br>
+ * Rows are numbered in the order the objects appear in the response. Filters return the matching rows as a
+ * {@link BitSet}, which can be combined with {@link BitSet#and(BitSet)} and passed to the aggregate methods.
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ColumnarResult {
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarResult.class);
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+    private final List<String> objectIds = new ArrayList<String>();
+
+    /**
+     * Read a collection of objects into columns
+     * @param json JSON that contains a collection in the form { "objectId":{values...}, "anotherObjectId":{moreValues} }
+     * @param collectionKey the top level key the collection is stored under, such as {@link SuccessErrorResponse#SUCCESS}. If null, the json is the collection
+     * @param options the columns to read
+     * @return the ColumnarResult; empty if json is empty or does not contain the collection
+     * @throws ConversionException if the json is not a valid collection of objects
+     */
+    public static ColumnarResult fromJson(String json, String collectionKey, CMColumnOptions options) throws ConversionException {
+        ColumnarResult result = new ColumnarResult(options);
+        if(Strings.isEmpty(json)) {
+            return result;
+        }
+        JsonParser parser = JsonUtilities.createParser(json);
+        try {
+            if(parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ConversionException("Expected a JSON object: " + json);
+            }
+            if(collectionKey != null && !JsonUtilities.moveToField(parser, collectionKey)) {
+                return result;
+            }
+            while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                result.readRow(parser);
+            }
+            return result;
+        } catch (IOException e) {
+            LOG.error("Trouble reading json", e);
+            throw new ConversionException("JSON: " + json, e);
+        } finally {
+            JsonUtilities.closeParser(parser);
+        }
+    }
+
+    /**
+     * Create an empty ColumnarResult with the given columns
+     * @param options the columns
+     */
+    public ColumnarResult(CMColumnOptions options) {
+        for(Map.Entry<String, CMColumnOptions.ColumnType> entry : options.getColumns().entrySet()) {
+            String field = entry.getKey();
+            switch(entry.getValue()) {
+                case DOUBLE:
+                    columns.put(field, new DoubleColumn(field));
+                    break;
+                case LONG:
+                    columns.put(field, new LongColumn(field));
+                    break;
+                case STRING:
+                    columns.put(field, new StringColumn(field));
+                    break;
+            }
+        }
+    }
+
+    private void readRow(JsonParser parser) throws IOException {
+        String objectId = parser.getCurrentName();
+        if(parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new ConversionException("Expected an object for key: " + objectId);
+        }
+        int row = objectIds.size();
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            Column column = columns.get(parser.getCurrentName());
+            parser.nextToken();
+            if(column == null) {
+                parser.skipChildren();
+            } else {
+                column.read(parser, row);
+            }
+        }
+        for(Column column : columns.values()) {
+            column.endRow(row);
+        }
+        objectIds.add(objectId);
+    }
+
+    /**
+     * Get the number of objects that were read
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return objectIds.size();
+    }
+
+    /**
+     * Get the objectId of the object stored in the given row
+     * @param row the row
+     * @return the objectId
+     */
+    public String getObjectId(int row) {
+        return objectIds.get(row);
+    }
+
+    /**
+     * Get the names of the columns, in the order they were specified
+     * @return the column names
+     */
+    public Set<String> getColumnNames() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Get the column for the given field
+     * @param field the field name
+     * @return the column, or null if the field was not read
+     */
+    public Column getColumn(String field) {
+        return columns.get(field);
+    }
+
+    /**
+     * Get the double column for the given field
+     * @param field the field name
+     * @return the column, or null if the field was not read as a double column
+     */
+    public DoubleColumn getDoubleColumn(String field) {
+        Column column = columns.get(field);
+        return column instanceof DoubleColumn ? (DoubleColumn) column : null;
+    }
+
+    /**
+     * Get the long column for the given field
+     * @param field the field name
+     * @return the column, or null if the field was not read as a long column
+     */
+    public LongColumn getLongColumn(String field) {
+        Column column = columns.get(field);
+        return column instanceof LongColumn ? (LongColumn) column : null;
+    }
+
+    /**
+     * Get the String column for the given field
+     * @param field the field name
+     * @return the column, or null if the field was not read as a String column
+     */
+    public StringColumn getStringColumn(String field) {
+        Column column = columns.get(field);
+        return column instanceof StringColumn ? (StringColumn) column : null;
+    }
+
+    /**
+     * Base class for columns. A row is null if the object did not have the field, or its value could not be
+     * represented in the column's type
+     */
+    public static abstract class Column {
+        private final String name;
+        private final BitSet nulls = new BitSet();
+        private int size;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Read the value the parser is positioned at into the given row, consuming all of it
+         */
+        abstract void read(JsonParser parser, int row) throws IOException;
+
+        abstract void ensureCapacity(int capacity);
+
+        void set(int row) {
+            ensureCapacity(row + 1);
+            nulls.clear(row);
+            size = Math.max(size, row + 1);
+        }
+
+        void setNull(int row) {
+            ensureCapacity(row + 1);
+            nulls.set(row);
+            size = Math.max(size, row + 1);
+        }
+
+        void endRow(int row) {
+            if(size <= row) {
+                setNull(row);
+            }
+        }
+
+        static int grow(int length, int capacity) {
+            int newLength = Math.max(length, INITIAL_CAPACITY);
+            while(newLength < capacity) {
+                newLength <<= 1;
+            }
+            return newLength;
+        }
+
+        /**
+         * Get the name of the field this column holds
+         * @return the field name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the number of rows in this column
+         * @return the number of rows
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Check whether the given row has no value
+         * @param row the row
+         * @return true if the row has no value
+         */
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * Get the number of rows that have no value
+         * @return the number of null rows
+         */
+        public int getNullCount() {
+            return nulls.cardinality();
+        }
+
+        /**
+         * Get the rows that have a value
+         * @return a new BitSet with a bit set for each row that has a value
+         */
+        public BitSet getNonNullRows() {
+            BitSet rows = new BitSet(size);
+            rows.set(0, size);
+            rows.andNot(nulls);
+            return rows;
+        }
+    }
+
+    /**
+     * A column of doubles. Null rows hold 0
+     */
+    public static class DoubleColumn extends Column {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        DoubleColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(JsonParser parser, int row) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if(token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                set(row);
+                values[row] = parser.getDoubleValue();
+            } else {
+                parser.skipChildren();
+                setNull(row);
+                values[row] = 0;
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if(capacity > values.length) {
+                double[] newValues = new double[grow(values.length, capacity)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+
+        /**
+         * Get the value of the given row
+         * @param row the row
+         * @return the value, or 0 if the row is null
+         */
+        public double get(int row) {
+            return values[row];
+        }
+
+        /**
+         * Copy the values of this column
+         * @return a new array of length {@link #size()}
+         */
+        public double[] toArray() {
+            double[] copy = new double[size()];
+            System.arraycopy(values, 0, copy, 0, copy.length);
+            return copy;
+        }
+
+        /**
+         * Sum every row
+         * @return the sum of the non null values
+         */
+        public double sum() {
+            double sum = 0;
+            for(int i = 0; i < size(); i++) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Sum the given rows
+         * @param rows the rows to include
+         * @return the sum of the non null values of the given rows
+         */
+        public double sum(BitSet rows) {
+            double sum = 0;
+            for(int i = rows.nextSetBit(0); i >= 0 && i < size(); i = rows.nextSetBit(i + 1)) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Average every non null row
+         * @return the mean, or NaN if every row is null
+         */
+        public double mean() {
+            int count = size() - getNullCount();
+            return count == 0 ? Double.NaN : sum() / count;
+        }
+
+        /**
+         * Get the smallest value
+         * @return the smallest non null value, or NaN if every row is null
+         */
+        public double min() {
+            double min = Double.NaN;
+            for(int i = 0; i < size(); i++) {
+                if(!isNull(i) && (Double.isNaN(min) || values[i] < min)) {
+                    min = values[i];
+                }
+            }
+            return min;
+        }
+
+        /**
+         * Get the largest value
+         * @return the largest non null value, or NaN if every row is null
+         */
+        public double max() {
+            double max = Double.NaN;
+            for(int i = 0; i < size(); i++) {
+                if(!isNull(i) && (Double.isNaN(max) || values[i] > max)) {
+                    max = values[i];
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Find the rows whose value is within the given range
+         * @param min the smallest matching value, inclusive
+         * @param max the largest matching value, inclusive
+         * @return a new BitSet with a bit set for each matching row. Null rows never match
+         */
+        public BitSet rowsBetween(double min, double max) {
+            BitSet rows = new BitSet(size());
+            for(int i = 0; i < size(); i++) {
+                if(values[i] >= min && values[i] <= max && !isNull(i)) {
+                    rows.set(i);
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * A column of longs. Null rows hold 0
+     */
+    public static class LongColumn extends Column {
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        LongColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(JsonParser parser, int row) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if(token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                set(row);
+                values[row] = parser.getLongValue();
+            } else if(token == JsonToken.START_OBJECT) {
+                JsonNode node = parser.readValueAsTree();
+                JsonNode classNode = node.get(JsonUtilities.CLASS_KEY);
+                JsonNode timeNode = node.get(JsonUtilities.TIME_KEY);
+                boolean isDate = classNode != null && JsonUtilities.DATE_CLASS.equals(classNode.asText()) &&
+                        timeNode != null && timeNode.isNumber();
+                if(isDate) {
+                    set(row);
+                    values[row] = timeNode.asLong();
+                } else {
+                    setNull(row);
+                    values[row] = 0;
+                }
+            } else {
+                parser.skipChildren();
+                setNull(row);
+                values[row] = 0;
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if(capacity > values.length) {
+                long[] newValues = new long[grow(values.length, capacity)];
+                System.arraycopy(values, 0, newValues, 0, values.length);
+                values = newValues;
+            }
+        }
+
+        /**
+         * Get the value of the given row
+         * @param row the row
+         * @return the value, or 0 if the row is null
+         */
+        public long get(int row) {
+            return values[row];
+        }
+
+        /**
+         * Copy the values of this column
+         * @return a new array of length {@link #size()}
+         */
+        public long[] toArray() {
+            long[] copy = new long[size()];
+            System.arraycopy(values, 0, copy, 0, copy.length);
+            return copy;
+        }
+
+        /**
+         * Sum every row
+         * @return the sum of the non null values
+         */
+        public long sum() {
+            long sum = 0;
+            for(int i = 0; i < size(); i++) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Sum the given rows
+         * @param rows the rows to include
+         * @return the sum of the non null values of the given rows
+         */
+        public long sum(BitSet rows) {
+            long sum = 0;
+            for(int i = rows.nextSetBit(0); i >= 0 && i < size(); i = rows.nextSetBit(i + 1)) {
+                sum += values[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Get the smallest value
+         * @return the smallest non null value, or Long.MAX_VALUE if every row is null
+         */
+        public long min() {
+            long min = Long.MAX_VALUE;
+            for(int i = 0; i < size(); i++) {
+                if(values[i] < min && !isNull(i)) {
+                    min = values[i];
+                }
+            }
+            return min;
+        }
+
+        /**
+         * Get the largest value
+         * @return the largest non null value, or Long.MIN_VALUE if every row is null
+         */
+        public long max() {
+            long max = Long.MIN_VALUE;
+            for(int i = 0; i < size(); i++) {
+                if(values[i] > max && !isNull(i)) {
+                    max = values[i];
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Find the rows whose value is within the given range
+         * @param min the smallest matching value, inclusive
+         * @param max the largest matching value, inclusive
+         * @return a new BitSet with a bit set for each matching row. Null rows never match
+         */
+        public BitSet rowsBetween(long min, long max) {
+            BitSet rows = new BitSet(size());
+            for(int i = 0; i < size(); i++) {
+                if(values[i] >= min && values[i] <= max && !isNull(i)) {
+                    rows.set(i);
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * A dictionary encoded column of Strings. Each distinct value is stored once, and each row holds the index of its
+     * value in the dictionary, or -1 if it is null. Numbers and booleans are stored as their JSON text
+     */
+    public static class StringColumn extends Column {
+        public static final int NULL_CODE = -1;
+
+        private int[] codes = new int[INITIAL_CAPACITY];
+        private final List<String> dictionary = new ArrayList<String>();
+        private final Map<String, Integer> codeLookup = new HashMap<String, Integer>();
+
+        StringColumn(String name) {
+            super(name);
+        }
+
+        @Override
+        void read(JsonParser parser, int row) throws IOException {
+            JsonToken token = parser.getCurrentToken();
+            if(token != null && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                set(row);
+                codes[row] = encode(parser.getText());
+            } else {
+                parser.skipChildren();
+                setNull(row);
+                codes[row] = NULL_CODE;
+            }
+        }
+
+        @Override
+        void endRow(int row) {
+            if(size() <= row) {
+                setNull(row);
+                codes[row] = NULL_CODE;
+            }
+        }
+
+        private int encode(String value) {
+            Integer code = codeLookup.get(value);
+            if(code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codeLookup.put(value, code);
+            }
+            return code;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if(capacity > codes.length) {
+                int[] newCodes = new int[grow(codes.length, capacity)];
+                System.arraycopy(codes, 0, newCodes, 0, codes.length);
+                codes = newCodes;
+            }
+        }
+
+        /**
+         * Get the value of the given row
+         * @param row the row
+         * @return the value, or null if the row is null
+         */
+        public String get(int row) {
+            int code = codes[row];
+            return code == NULL_CODE ? null : dictionary.get(code);
+        }
+
+        /**
+         * Get the dictionary code of the given row
+         * @param row the row
+         * @return the index of the row's value in the dictionary, or {@link #NULL_CODE}
+         */
+        public int getCode(int row) {
+            return codes[row];
+        }
+
+        /**
+         * Get the code used for the given value
+         * @param value the value
+         * @return the index of the value in the dictionary, or {@link #NULL_CODE} if no row has the value
+         */
+        public int codeOf(String value) {
+            Integer code = codeLookup.get(value);
+            return code == null ? NULL_CODE : code;
+        }
+
+        /**
+         * Get the distinct values in this column, in the order they were first seen
+         * @return an unmodifiable List of values, indexed by code
+         */
+        public List<String> getDictionary() {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        /**
+         * Count the rows that have each value
+         * @return an array indexed by code, holding the number of rows with that value
+         */
+        public int[] countByCode() {
+            int[] counts = new int[dictionary.size()];
+            for(int i = 0; i < size(); i++) {
+                if(codes[i] != NULL_CODE) {
+                    counts[codes[i]]++;
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * Find the rows that have the given value
+         * @param value the value to match
+         * @return a new BitSet with a bit set for each matching row
+         */
+        public BitSet rowsEqualTo(String value) {
+            BitSet rows = new BitSet(size());
+            int code = codeOf(value);
+            if(code == NULL_CODE) {
+                return rows;
+            }
+            for(int i = 0; i < size(); i++) {
+                if(codes[i] == code) {
+                    rows.set(i);
+                }
+            }
+            return rows;
+        }
+    }
+}
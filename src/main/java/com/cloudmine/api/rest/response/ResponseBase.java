@@ -89,11 +89,25 @@ public abstract class ResponseBase<CODE> implements Transportable {
      * @param statusCode
      */
     public ResponseBase(String messageBody, int statusCode) {
+        this(messageBody, statusCode, true);
+    }
+
+    /**
+     * Internal use only
+     * @param messageBody
+     * @param statusCode
+     * @param extractResponseMap if false, the message body is not parsed and the response map is empty; the subclass is responsible for reading the body
+     */
+    protected ResponseBase(String messageBody, int statusCode, boolean extractResponseMap) {
         Map<String, Object> tempNode;
-        try {
-            tempNode = JsonUtilities.jsonToMap(messageBody);
-        } catch (ConversionException e) {
-            LOG.error("Exception parsing message body: " + messageBody, e);
+        if(extractResponseMap) {
+            try {
+                tempNode = JsonUtilities.jsonToMap(messageBody);
+            } catch (ConversionException e) {
+                LOG.error("Exception parsing message body: " + messageBody, e);
+                tempNode = new HashMap<String, Object>();
+            }
+        } else {
             tempNode = new HashMap<String, Object>();
         }
         baseMap = tempNode;
@@ -109,8 +123,22 @@ public abstract class ResponseBase<CODE> implements Transportable {
         return headers;
     }
 
+    /**
+     * Get the value of the first response header with the given name, such as ETag or Last-Modified
+     * @param name the header name, which is not case sensitive
+     * @return the header value, or null if the response had no such header
+     */
+    public String getHeader(String name) {
+        for(Header header : headers) {
+            if(header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
     private void extractHeaders(HttpResponse response) {
-        if ( response == null || response.getAllHeaders() == null )
+        if ( response != null && response.getAllHeaders() != null )
             headers.addAll(Arrays.asList(response.getAllHeaders()));
     }
 
@@ -0,0 +1,72 @@
+package com.cloudmine.api;
+
+import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.TransportableString;
+import com.cloudmine.test.TestUtilities;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class LazySimpleCMObjectTest {
+    private static final String CONTENTS = "{\"name\":\"john\",\"age\":30,\"weight\":180.5,\"paid\":true," +
+            "\"numbers\":[1,2,3],\"date\":{\"__class__\":\"datetime\",\"timestamp\":1347990557}," +
+            "\"child\":{\"friends\":[\"fred\",\"ted\"]}}";
+
+    @Test
+    public void testGettersDecodeOnAccess() {
+        LazySimpleCMObject object = new LazySimpleCMObject("lazyKey", CONTENTS);
+        assertEquals("lazyKey", object.getObjectId());
+        assertFalse(object.isFullyDecoded());
+
+        assertEquals("john", object.getString("name"));
+        assertEquals(Integer.valueOf(30), object.getInteger("age"));
+        assertEquals(Double.valueOf(180.5), object.getDouble("weight"));
+        assertEquals(Boolean.TRUE, object.getBoolean("paid"));
+        assertEquals(new Date(1347990557000L), object.getDate("date"));
+        List<Integer> numbers = object.getList("numbers");
+        assertEquals(3, numbers.size());
+        assertFalse(object.isFullyDecoded());
+        assertNull(object.getString("missing"));
+    }
+
+    @Test
+    public void testMatchesEagerObject() {
+        LazySimpleCMObject lazy = new LazySimpleCMObject("lazyKey", CONTENTS);
+        SimpleCMObject eager = new SimpleCMObject("lazyKey", JsonUtilities.jsonToMap(CONTENTS));
+
+        assertEquals(eager.getString("name"), lazy.getString("name"));
+        TestUtilities.compareJson(eager.transportableRepresentation(), lazy.transportableRepresentation());
+        assertTrue(lazy.isFullyDecoded());
+        assertEquals(eager, lazy);
+    }
+
+    @Test
+    public void testMutation() {
+        LazySimpleCMObject object = new LazySimpleCMObject("lazyKey", CONTENTS);
+        object.add("name", "fred");
+        object.remove("age");
+        assertEquals("fred", object.getString("name"));
+        assertFalse(object.hasField("age"));
+        assertTrue(object.hasField("weight"));
+        assertFalse(object.isFullyDecoded());
+
+        String json = object.transportableRepresentation();
+        SimpleCMObject reparsed = new SimpleCMObject(new TransportableString(json));
+        assertEquals("fred", reparsed.getString("name"));
+        assertNull(reparsed.getInteger("age"));
+    }
+
+    @Test
+    public void testObjectIdFromContents() {
+        LazySimpleCMObject object = new LazySimpleCMObject(null, "{\"__id__\":\"fromContents\",\"name\":\"john\"}");
+        assertEquals("fromContents", object.getObjectId());
+    }
+}
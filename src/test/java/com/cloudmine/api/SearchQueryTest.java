@@ -1,6 +1,9 @@
 package com.cloudmine.api;
 
 import com.cloudmine.api.persistance.ClassNameRegistry;
+import com.cloudmine.api.query.CompiledQuery;
+import com.cloudmine.api.query.PreparedQuery;
+import com.cloudmine.api.rest.CMURLBuilder;
 import com.cloudmine.api.rest.JsonUtilities;
 import com.cloudmine.test.ExtendedCMObject;
 import org.junit.Test;
@@ -52,6 +55,17 @@ public class SearchQueryTest {
         assertEquals("[__class__ = \"govna\", name = \"default\"]", query);
     }
 
+    @Test
+    public void testPreparedSearch() {
+        PreparedQuery prepared = SearchQuery.filter("name").equalParameter().and("number").greaterThanParameter().or().lessThanOrEqualParameter().prepare();
+        assertEquals("[name = ?, number > ? or number <= ?]", prepared.getTemplate());
+        assertEquals("[name = \"bob\", number > 5 or number <= -1.5]", prepared.bind("bob", 5, -1.5).getQuery());
+
+        CompiledQuery compiled = SearchQuery.subObject("house").filter("location").near(new CMGeoPoint(2.5, 3.1)).within(300, DistanceUnits.km).compile();
+        assertEquals("house[location near (2.5, 3.1), 300.0km]", compiled.getQuery());
+        assertEquals(new CMURLBuilder("app").search(compiled.getQuery()).asUrlString(), new CMURLBuilder("app").search(compiled).asUrlString());
+    }
+
     private String query(String name, String value) {
         return query(name, value, "=");
     }
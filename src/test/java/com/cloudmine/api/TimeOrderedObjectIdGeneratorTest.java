@@ -0,0 +1,83 @@
+package com.cloudmine.api;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class TimeOrderedObjectIdGeneratorTest {
+
+    @Test
+    public void testFormat() {
+        String id = new TimeOrderedObjectIdGenerator().generateObjectId();
+        assertEquals(36, id.length());
+        UUID uuid = UUID.fromString(id);
+        assertEquals(id, uuid.toString());
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals("00000001-0002-0003-0004-000000000005",
+                TimeOrderedObjectIdGenerator.format(0x0000000100020003L, 0x0004000000000005L));
+    }
+
+    @Test
+    public void testTimeOrdered() throws InterruptedException {
+        TimeOrderedObjectIdGenerator generator = new TimeOrderedObjectIdGenerator();
+        String first = generator.generateObjectId();
+        Thread.sleep(2);
+        String second = generator.generateObjectId();
+        assertTrue(first.compareTo(second) < 0);
+    }
+
+    @Test
+    public void testUniqueAcrossThreads() throws InterruptedException {
+        final TimeOrderedObjectIdGenerator generator = new TimeOrderedObjectIdGenerator();
+        final int perThread = 10000;
+        final Map<String, Boolean> ids = new ConcurrentHashMap<String, Boolean>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for(int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int j = 0; j < perThread; j++) {
+                        ids.put(generator.generateObjectId(), Boolean.TRUE);
+                    }
+                }
+            }));
+        }
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4 * perThread, ids.size());
+    }
+
+    @Test
+    public void testPluggable() {
+        ObjectIdGenerator original = CMObject.getObjectIdGenerator();
+        try {
+            CMObject.setObjectIdGenerator(new ObjectIdGenerator() {
+                @Override
+                public String generateObjectId() {
+                    return "fixed";
+                }
+            });
+            assertEquals("fixed", new SimpleCMObject().getObjectId());
+            CMObject.setObjectIdGenerator(new SecureRandomObjectIdGenerator());
+            assertEquals(4, UUID.fromString(new SimpleCMObject().getObjectId()).version());
+        } finally {
+            CMObject.setObjectIdGenerator(original);
+        }
+    }
+}
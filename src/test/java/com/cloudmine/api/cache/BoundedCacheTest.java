@@ -0,0 +1,245 @@
+package com.cloudmine.api.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class BoundedCacheTest {
+
+    private static class ManualClockCache<K, V> extends BoundedCache<K, V> {
+        private long now;
+
+        ManualClockCache(CMCacheOptions<K, V> options) {
+            super(options);
+        }
+
+        void advanceMillis(long millis) {
+            now += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        protected long currentTimeNanos() {
+            return now;
+        }
+    }
+
+    private static class RecordingListener implements EvictionListener<String, Integer> {
+        final List<String> keys = new ArrayList<String>();
+        final List<EvictionCause> causes = new ArrayList<EvictionCause>();
+
+        @Override
+        public void onEviction(String key, Integer value, EvictionCause cause) {
+            keys.add(key);
+            causes.add(cause);
+        }
+    }
+
+    @Test
+    public void testLruEviction() {
+        RecordingListener listener = new RecordingListener();
+        BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setMaximumSize(3)
+                .setEvictionPolicy(EvictionPolicy.LRU)
+                .setEvictionListener(listener));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(1, listener.keys.size());
+        assertEquals("b", listener.keys.get(0));
+        assertEquals(EvictionCause.SIZE, listener.causes.get(0));
+    }
+
+    @Test
+    public void testTinyLfuKeepsFrequentEntries() {
+        BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setMaximumSize(100));
+        for(int i = 0; i < 50; i++) {
+            cache.put("hot" + i, i);
+        }
+        for(int round = 0; round < 5; round++) {
+            for(int i = 0; i < 50; i++) {
+                assertNotNull(cache.get("hot" + i));
+            }
+        }
+        for(int i = 0; i < 1000; i++) {
+            cache.put("scan" + i, i);
+        }
+        assertTrue(cache.size() <= 100);
+        int hits = 0;
+        for(int i = 0; i < 50; i++) {
+            if(cache.get("hot" + i) != null) {
+                hits++;
+            }
+        }
+        assertTrue("Only " + hits + " frequently used entries survived the scan", hits >= 45);
+    }
+
+    @Test
+    public void testWeightBound() {
+        BoundedCache<String, String> cache = new BoundedCache<String, String>(new CMCacheOptions<String, String>()
+                .setMaximumWeight(10, new Weigher<String, String>() {
+                    @Override
+                    public int weigh(String key, String value) {
+                        return value.length();
+                    }
+                })
+                .setEvictionPolicy(EvictionPolicy.LRU));
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        assertEquals(8, cache.getWeightedSize());
+        cache.put("c", "1234");
+        assertTrue(cache.getWeightedSize() <= 10);
+        assertFalse(cache.containsKey("a"));
+        cache.put("b", "1");
+        assertEquals(5, cache.getWeightedSize());
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+        RecordingListener listener = new RecordingListener();
+        ManualClockCache<String, Integer> cache = new ManualClockCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setExpireAfterWrite(100)
+                .setEvictionListener(listener));
+        cache.put("a", 1);
+        cache.advanceMillis(50);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("b", 2);
+        cache.advanceMillis(60);
+        assertNull(cache.get("a"));
+        assertEquals(Integer.valueOf(2), cache.get("b"));
+        assertEquals(1, cache.entrySet().size());
+        cache.advanceMillis(50);
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(2, listener.keys.size());
+        assertEquals(EvictionCause.EXPIRED, listener.causes.get(1));
+    }
+
+    @Test
+    public void testExpireAfterAccess() {
+        ManualClockCache<String, Integer> cache = new ManualClockCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setMaximumSize(10)
+                .setExpireAfterAccess(100));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        for(int i = 0; i < 3; i++) {
+            cache.advanceMillis(60);
+            assertEquals(Integer.valueOf(1), cache.get("a"));
+        }
+        assertFalse(cache.containsKey("b"));
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiresBehindEntriesReadUnderContention() throws Exception {
+        final AtomicReference<Thread> writer = new AtomicReference<Thread>();
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch read = new CountDownLatch(1);
+        //a put reads the clock while holding the eviction lock, so the writer is paused there
+        final ManualClockCache<String, Integer> cache = new ManualClockCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setMaximumSize(10)
+                .setEvictionPolicy(EvictionPolicy.LRU)
+                .setExpireAfterAccess(100)) {
+            @Override
+            protected long currentTimeNanos() {
+                if(Thread.currentThread() == writer.get()) {
+                    locked.countDown();
+                    try {
+                        read.await();
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.currentTimeNanos();
+            }
+        };
+        cache.put("a", 1);
+        cache.put("b", 2);
+        //read "a" while the writer holds the eviction lock, so it keeps its place at the front
+        Thread thread = new Thread() {
+            public void run() {
+                cache.put("c", 3);
+            }
+        };
+        writer.set(thread);
+        thread.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        cache.advanceMillis(60);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        read.countDown();
+        thread.join();
+
+        cache.advanceMillis(60);
+        cache.cleanUp();
+        assertEquals(2, cache.size());
+        assertFalse(cache.containsKey("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+    }
+
+    @Test
+    public void testNotifiesReplacedValues() {
+        RecordingListener listener = new RecordingListener();
+        ManualClockCache<String, Integer> cache = new ManualClockCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setMaximumSize(10)
+                .setExpireAfterWrite(100)
+                .setEvictionListener(listener));
+        Integer first = new Integer(1000);
+        cache.put("a", first);
+        assertSame(first, cache.put("a", first));
+        assertTrue(listener.keys.isEmpty());
+
+        assertSame(first, cache.put("a", new Integer(1000)));
+        assertEquals(1, listener.keys.size());
+        assertEquals("a", listener.keys.get(0));
+        assertEquals(EvictionCause.REPLACED, listener.causes.get(0));
+
+        cache.advanceMillis(150);
+        assertNull(cache.put("a", 2));
+        assertEquals(2, listener.keys.size());
+        assertEquals(EvictionCause.EXPIRED, listener.causes.get(1));
+        assertEquals(Integer.valueOf(2), cache.get("a"));
+    }
+
+    @Test
+    public void testMapSemantics() {
+        BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(new CMCacheOptions<String, Integer>()
+                .setMaximumSize(10));
+        assertNull(cache.put("a", 1));
+        assertEquals(Integer.valueOf(1), cache.put("a", 2));
+        assertEquals(1, cache.size());
+        assertEquals(Integer.valueOf(2), cache.remove("a"));
+        assertNull(cache.remove("a"));
+        cache.put("b", 3);
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.getWeightedSize());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSizeAndWeight() {
+        new CMCacheOptions<String, String>().setMaximumSize(10).setMaximumWeight(10, new Weigher<String, String>() {
+            @Override
+            public int weigh(String key, String value) {
+                return 1;
+            }
+        });
+    }
+}
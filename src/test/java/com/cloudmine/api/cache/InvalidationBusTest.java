@@ -0,0 +1,77 @@
+package com.cloudmine.api.cache;
+
+import com.cloudmine.api.ObjectLevel;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class InvalidationBusTest {
+
+    private static class CountingListener implements InvalidationListener {
+        private final AtomicInteger events = new AtomicInteger();
+
+        @Override
+        public void onInvalidation(InvalidationEvent event) {
+            events.incrementAndGet();
+        }
+    }
+
+    private static InvalidationEvent event() {
+        return InvalidationEvent.updated(ObjectLevel.APPLICATION, Arrays.asList("object"));
+    }
+
+    @Test
+    public void testRegistersListenersOnce() {
+        InvalidationBus bus = new InvalidationBus();
+        CountingListener listener = new CountingListener();
+        bus.addListener(listener);
+        bus.addListener(listener);
+        bus.addWeakListener(listener);
+        assertEquals(1, bus.size());
+        bus.publish(event());
+        assertEquals(1, listener.events.get());
+
+        bus.removeListener(listener);
+        bus.publish(event());
+        assertEquals(1, listener.events.get());
+        assertEquals(0, bus.size());
+    }
+
+    @Test
+    public void testRemovesWeakListeners() {
+        InvalidationBus bus = new InvalidationBus();
+        CountingListener listener = new CountingListener();
+        bus.addWeakListener(listener);
+        bus.publish(event());
+        assertEquals(1, listener.events.get());
+
+        bus.removeListener(listener);
+        assertEquals(0, bus.size());
+    }
+
+    @Test
+    public void testDropsCollectedWeakListeners() throws Exception {
+        InvalidationBus bus = new InvalidationBus();
+        CountingListener listener = new CountingListener();
+        WeakReference<CountingListener> reference = new WeakReference<CountingListener>(listener);
+        bus.addWeakListener(listener);
+        listener = null;
+        for(int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull("The bus kept its listener reachable", reference.get());
+
+        bus.publish(event());
+        assertEquals(0, bus.size());
+    }
+}
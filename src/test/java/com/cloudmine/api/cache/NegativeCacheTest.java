@@ -0,0 +1,121 @@
+package com.cloudmine.api.cache;
+
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import com.cloudmine.api.rest.response.FileLoadResponse;
+import com.cloudmine.api.rest.response.ResponseConstructor;
+import com.cloudmine.api.rest.response.code.FileLoadCode;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class NegativeCacheTest {
+    private static final String MISSING_BODY = "{\"success\":{\"found\":{\"__id__\":\"found\"}}," +
+            "\"errors\":{\"gone\":{\"code\":404,\"errors\":[\"Not Found\"]},\"denied\":{\"code\":401}," +
+            "\"vague\":{\"errors\":[\"Unknown\"]},\"text\":\"Not Found\"}}";
+
+    private static class ManualClockNegativeCache extends NegativeCache {
+        private long now;
+
+        ManualClockNegativeCache() {
+            super(1000, 100);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static void load(NegativeCache cache, String owner, List<String> ids) throws Exception {
+        cache.recordingObjectMisses(ObjectLevel.USER, owner, ids, CMObjectResponse.CONSTRUCTOR).construct(MISSING_BODY, 200);
+    }
+
+    @Test
+    public void testObjectMisses() throws Exception {
+        NegativeCache cache = new ManualClockNegativeCache();
+        load(cache, "bob", Arrays.asList("found", "gone", "denied", "vague", "text"));
+        assertTrue(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "gone"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "found"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "denied"));
+        //only an explicit 404 is remembered
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "vague"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "text"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "alice", "gone"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.APPLICATION, null, "gone"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.FILE, ObjectLevel.USER, "bob", "gone"));
+
+        assertNull(cache.getObjectMisses(ObjectLevel.USER, "bob", Arrays.asList("gone", "found"), CMObjectResponse.CONSTRUCTOR));
+        CMObjectResponse response = cache.getObjectMisses(ObjectLevel.USER, "bob", Collections.singleton("gone"), CMObjectResponse.CONSTRUCTOR);
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getObjects().isEmpty());
+        Map<?, ?> error = (Map<?, ?>) ((Map<?, ?>) response.getObject("errors")).get("gone");
+        assertEquals(404, error.get("code"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testFileMisses() throws Exception {
+        NegativeCache cache = new ManualClockNegativeCache();
+        ResponseConstructor<FileLoadResponse> constructor = cache.recordingFileMisses(ObjectLevel.APPLICATION, null, "logo.png",
+                FileLoadResponse.constructor("logo.png"));
+        BasicHttpResponse notFound = new BasicHttpResponse(HttpVersion.HTTP_1_1, 404, "Not Found");
+        notFound.setEntity(new StringEntity("{}", "UTF-8"));
+        constructor.construct(notFound);
+
+        FileLoadResponse response = cache.getFileMiss(ObjectLevel.APPLICATION, null, "logo.png");
+        assertEquals(FileLoadCode.APPLICATION_ID_OR_FILE_NOT_FOUND, response.getResponseCode());
+        assertNull(response.getFile());
+        assertNull(cache.getFileMiss(ObjectLevel.APPLICATION, null, "other.png"));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        ManualClockNegativeCache cache = new ManualClockNegativeCache();
+        load(cache, "bob", Arrays.asList("gone"));
+        cache.now = 999;
+        assertTrue(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "gone"));
+        cache.now = 1000;
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "gone"));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        NegativeCache cache = new ManualClockNegativeCache();
+        load(cache, "bob", Arrays.asList("gone"));
+        load(cache, "alice", Arrays.asList("gone"));
+        cache.recordMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "other", null, cache.getGeneration());
+
+        cache.onInvalidation(InvalidationEvent.updated(ObjectLevel.USER, Arrays.asList("gone")));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "gone"));
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "alice", "gone"));
+        assertTrue(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "other"));
+
+        cache.onInvalidation(InvalidationEvent.deletedAll(ObjectLevel.APPLICATION));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLoadInFlightDuringWrite() throws Exception {
+        NegativeCache cache = new ManualClockNegativeCache();
+        ResponseConstructor<CMObjectResponse> constructor = cache.recordingObjectMisses(ObjectLevel.USER, "bob",
+                Arrays.asList("gone"), CMObjectResponse.CONSTRUCTOR);
+        cache.onInvalidation(InvalidationEvent.updated(ObjectLevel.USER, Arrays.asList("gone")));
+        constructor.construct(MISSING_BODY, 200);
+        assertFalse(cache.isMissing(NegativeCache.Kind.OBJECT, ObjectLevel.USER, "bob", "gone"));
+    }
+}
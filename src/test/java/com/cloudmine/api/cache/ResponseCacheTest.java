@@ -0,0 +1,269 @@
+package com.cloudmine.api.cache;
+
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.rest.HeaderFactory;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import com.cloudmine.api.rest.response.FileLoadResponse;
+import com.cloudmine.api.rest.response.ResponseConstructor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ResponseCacheTest {
+    private static final String BASE = "https://api.cloudmine.me/v1/app/abc123";
+    private static final String BODY = "{\"success\":{\"config\":{\"__id__\":\"config\",\"theme\":\"dark\"}},\"errors\":{}}";
+
+    private static class ManualClockResponseCache extends ResponseCache {
+        private long now;
+
+        ManualClockResponseCache(CMResponseCacheOptions options) {
+            super(options);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static HttpGet get(String url, String sessionToken) {
+        HttpGet get = new HttpGet(url);
+        get.addHeader(HeaderFactory.API_HEADER_KEY, "apikey");
+        get.addHeader(HeaderFactory.DEVICE_HEADER_KEY, "response-times-" + System.nanoTime());
+        if(sessionToken != null) {
+            get.addHeader(HeaderFactory.SESSION_TOKEN_HEADER_KEY, sessionToken);
+        }
+        return get;
+    }
+
+    private static HttpResponse response(int statusCode, String body) throws Exception {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "");
+        StringEntity entity = new StringEntity(body, "UTF-8");
+        entity.setContentType("application/json");
+        response.setEntity(entity);
+        response.addHeader("ETag", "\"v1\"");
+        return response;
+    }
+
+    private static <T> T load(ResponseCache cache, HttpGet request, ResponseConstructor<T> constructor, int statusCode) throws Exception {
+        return load(cache, request, constructor, statusCode, BODY);
+    }
+
+    private static <T> T load(ResponseCache cache, HttpGet request, ResponseConstructor<T> constructor, int statusCode, String body) throws Exception {
+        String key = cache.keyFor(request);
+        T cached = cache.get(key, constructor);
+        if(cached != null) {
+            return cached;
+        }
+        return cache.storing(request, key, constructor).construct(response(statusCode, body));
+    }
+
+    private static String bodyWithIds(String... ids) {
+        StringBuilder body = new StringBuilder("{\"success\":{");
+        for(int i = 0; i < ids.length; i++) {
+            body.append(i == 0 ? "" : ",").append("\"").append(ids[i]).append("\":{\"__id__\":\"").append(ids[i]).append("\"}");
+        }
+        return body.append("},\"errors\":{}}").toString();
+    }
+
+    private static boolean isCached(ResponseCache cache, String url) {
+        return cache.getEntry(cache.keyFor(get(url, null))) != null;
+    }
+
+    @Test
+    public void testHitReturnsParsedResponse() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        HttpGet request = get(BASE + "/text?keys=config", null);
+        CMObjectResponse first = load(cache, request, CMObjectResponse.CONSTRUCTOR, 200);
+        assertEquals("dark", first.getCMObject("config", SimpleCMObject.class).getString("theme"));
+        assertEquals(1, cache.getMissCount());
+
+        CMObjectResponse second = load(cache, get(BASE + "/text?keys=config", null), CMObjectResponse.CONSTRUCTOR, 200);
+        //every hit gets a response of its own, so changing one does not change the others
+        assertNotSame(first, second);
+        assertEquals("dark", second.getCMObject("config", SimpleCMObject.class).getString("theme"));
+        first.getCMObject("config", SimpleCMObject.class).add("theme", "light");
+        assertEquals("dark", cache.get(cache.keyFor(request), CMObjectResponse.CONSTRUCTOR)
+                .getCMObject("config", SimpleCMObject.class).getString("theme"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals("\"v1\"", cache.getEntry(cache.keyFor(request)).getHeader("etag"));
+
+        ResponseConstructor<CMObjectResponse> otherConstructor = new ResponseConstructor<CMObjectResponse>() {
+            @Override
+            public CMObjectResponse construct(HttpResponse response) {
+                return new CMObjectResponse(response);
+            }
+
+            @Override
+            public CMObjectResponse construct(String messageBody, int responseCode) {
+                return new CMObjectResponse(messageBody, responseCode);
+            }
+        };
+        CMObjectResponse rebuilt = cache.get(cache.keyFor(request), otherConstructor);
+        assertNotSame(first, rebuilt);
+        assertEquals("dark", rebuilt.getCMObject("config", SimpleCMObject.class).getString("theme"));
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        ManualClockResponseCache cache = new ManualClockResponseCache(new CMResponseCacheOptions().setDefaultTimeToLive(100));
+        CMObjectResponse first = load(cache, get(BASE + "/text", null), CMObjectResponse.CONSTRUCTOR, 200);
+        cache.now = 200;
+
+        HttpGet revalidate = get(BASE + "/text", null);
+        String key = cache.keyFor(revalidate);
+        assertNull(cache.get(key, CMObjectResponse.CONSTRUCTOR));
+        ResponseConstructor<CMObjectResponse> constructor = cache.storing(revalidate, key, CMObjectResponse.CONSTRUCTOR);
+        assertEquals("\"v1\"", revalidate.getFirstHeader(ResponseCache.IF_NONE_MATCH).getValue());
+        assertNull(revalidate.getFirstHeader(ResponseCache.IF_MODIFIED_SINCE));
+
+        BasicHttpResponse notModified = new BasicHttpResponse(HttpVersion.HTTP_1_1, 304, "Not Modified");
+        notModified.addHeader("ETag", "\"v1\"");
+        assertEquals(first.getMessageBody(), constructor.construct(notModified).getMessageBody());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(first.getMessageBody(), cache.get(key, CMObjectResponse.CONSTRUCTOR).getMessageBody());
+        assertEquals(BODY, cache.getEntry(key).getMessageBody());
+    }
+
+    @Test
+    public void testFiles() throws Exception {
+        ResponseCache cache = new ResponseCache(new CMResponseCacheOptions()
+                .setTimeToLive(CMResponseCacheOptions.Endpoint.FILES, 1000));
+        assertNull(new ResponseCache().keyFor(get(BASE + "/binary/picture", null)));
+
+        HttpGet request = get(BASE + "/binary/picture", null);
+        String key = cache.keyFor(request);
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "");
+        ByteArrayEntity entity = new ByteArrayEntity(new byte[]{1, 2, 3, (byte) 0xff});
+        entity.setContentType("image/png");
+        response.setEntity(entity);
+        FileLoadResponse loaded = cache.storing(request, key, FileLoadResponse.constructor("picture")).construct(response);
+        assertArrayEquals(new byte[]{1, 2, 3, (byte) 0xff}, loaded.getFile().getFileContents());
+
+        FileLoadResponse cached = cache.get(key, FileLoadResponse.constructor("picture"));
+        assertNotSame(loaded, cached);
+        assertEquals("image/png", cached.getFile().getMimeType());
+        assertArrayEquals(new byte[]{1, 2, 3, (byte) 0xff}, cached.getFile().getFileContents());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        String config = BASE + "/text?keys=config";
+        String all = BASE + "/text";
+        String widgets = BASE + "/search?q=%5B__class__%3D%22widget%22%5D";
+        String gadgets = BASE + "/search?q=%5B__class__%3D%22gadget%22%5D";
+        String named = BASE + "/search?q=%5Bname%3D%22bob%22%5D";
+        load(cache, get(config, null), CMObjectResponse.CONSTRUCTOR, 200, bodyWithIds("config"));
+        load(cache, get(all, null), CMObjectResponse.CONSTRUCTOR, 200, bodyWithIds("config", "w1", "g1"));
+        load(cache, get(widgets, null), CMObjectResponse.CONSTRUCTOR, 200, bodyWithIds("w1"));
+        load(cache, get(gadgets, null), CMObjectResponse.CONSTRUCTOR, 200, bodyWithIds("g1"));
+        load(cache, get(named, null), CMObjectResponse.CONSTRUCTOR, 200, bodyWithIds("n1"));
+        assertEquals(5, cache.size());
+
+        SimpleCMObject widget = new SimpleCMObject("w2");
+        widget.setClass("widget");
+        cache.onInvalidation(new InvalidationEvent(ObjectLevel.APPLICATION, Collections.singleton("w2"), null, null,
+                Collections.singleton(widget), false));
+        assertTrue(isCached(cache, config));
+        assertFalse(isCached(cache, all));
+        assertFalse(isCached(cache, widgets));
+        assertTrue(isCached(cache, gadgets));
+        assertFalse(isCached(cache, named));
+
+        cache.onInvalidation(new InvalidationEvent(ObjectLevel.APPLICATION, null, null, Collections.singleton("g1"), null, false));
+        assertTrue(isCached(cache, config));
+        assertFalse(isCached(cache, gadgets));
+
+        cache.onInvalidation(InvalidationEvent.updated(ObjectLevel.APPLICATION, Collections.singleton("config")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testTimeToLive() throws Exception {
+        ManualClockResponseCache cache = new ManualClockResponseCache(new CMResponseCacheOptions()
+                .setDefaultTimeToLive(1000)
+                .setTimeToLive(CMResponseCacheOptions.Endpoint.SEARCH, 100));
+        HttpGet objects = get(BASE + "/text", null);
+        HttpGet search = get(BASE + "/search?q=%5Btheme%3D%22dark%22%5D", null);
+        load(cache, objects, CMObjectResponse.CONSTRUCTOR, 200);
+        load(cache, search, CMObjectResponse.CONSTRUCTOR, 200);
+
+        cache.now = 500;
+        assertNotNull(cache.get(cache.keyFor(objects), CMObjectResponse.CONSTRUCTOR));
+        assertNull(cache.get(cache.keyFor(search), CMObjectResponse.CONSTRUCTOR));
+        assertNotNull(cache.getEntry(cache.keyFor(search)));
+        cache.now = 1000;
+        assertNull(cache.get(cache.keyFor(objects), CMObjectResponse.CONSTRUCTOR));
+    }
+
+    @Test
+    public void testKeys() {
+        ResponseCache cache = new ResponseCache();
+        String url = BASE + "/user/text?keys=config";
+        assertEquals(cache.keyFor(get(url, "token")), cache.keyFor(get(url, "token")));
+        assertFalse(cache.keyFor(get(url, "token")).equals(cache.keyFor(get(url, "otherToken"))));
+
+        HttpGet skipped = get(url, "token");
+        skipped.getParams().setBooleanParameter(ResponseCache.SKIP_CACHE_PARAMETER, true);
+        assertNull(cache.keyFor(skipped));
+        assertNull(cache.keyFor(new HttpDelete(BASE + "/data?keys=config")));
+        assertNull(cache.keyFor(get(BASE + "/binary/file", null)));
+        assertNull(cache.keyFor(get(BASE + "/account/social/login/status/challenge", null)));
+
+        ResponseCache noAccounts = new ResponseCache(new CMResponseCacheOptions().setTimeToLive(CMResponseCacheOptions.Endpoint.ACCOUNTS, 0));
+        assertNull(noAccounts.keyFor(get(BASE + "/account/search?p=%5Bname%3D%22bob%22%5D", null)));
+        assertNotNull(noAccounts.keyFor(get(BASE + "/search?q=%5Bname%3D%22bob%22%5D", null)));
+    }
+
+    @Test
+    public void testEndpoints() {
+        assertEquals(CMResponseCacheOptions.Endpoint.OBJECTS, ResponseCache.endpointOf(URI.create(BASE + "/text?keys=a")));
+        assertEquals(CMResponseCacheOptions.Endpoint.OBJECTS, ResponseCache.endpointOf(URI.create(BASE + "/user/text")));
+        assertEquals(CMResponseCacheOptions.Endpoint.SEARCH, ResponseCache.endpointOf(URI.create(BASE + "/user/search?q=x")));
+        assertEquals(CMResponseCacheOptions.Endpoint.ACCOUNTS, ResponseCache.endpointOf(URI.create(BASE + "/account")));
+        assertEquals(CMResponseCacheOptions.Endpoint.ACCOUNTS, ResponseCache.endpointOf(URI.create(BASE + "/account/search?p=x")));
+        assertNull(ResponseCache.endpointOf(URI.create(BASE + "/account/mine")));
+        assertEquals(CMResponseCacheOptions.Endpoint.FILES, ResponseCache.endpointOf(URI.create(BASE + "/user/binary/key")));
+        assertNull(ResponseCache.endpointOf(URI.create(BASE + "/binary")));
+        assertNull(ResponseCache.endpointOf(URI.create(BASE)));
+    }
+
+    @Test
+    public void testOnlySuccessIsCached() throws Exception {
+        ResponseCache cache = new ResponseCache();
+        HttpGet request = get(BASE + "/text", null);
+        load(cache, request, CMObjectResponse.CONSTRUCTOR, 404);
+        assertEquals(0, cache.size());
+        load(cache, request, CMObjectResponse.CONSTRUCTOR, 200);
+        assertEquals(1, cache.size());
+        cache.invalidate(cache.keyFor(request));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMemoryBound() throws Exception {
+        ResponseCache cache = new ResponseCache(new CMResponseCacheOptions().setMaximumBytes(1024));
+        for(int i = 0; i < 20; i++) {
+            load(cache, get(BASE + "/text?keys=config" + i, null), CMObjectResponse.CONSTRUCTOR, 200);
+        }
+        assertTrue(cache.getWeightedSize() <= 1024);
+        assertTrue(cache.size() < 20);
+    }
+}
@@ -0,0 +1,79 @@
+package com.cloudmine.api.metrics;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class InMemoryMetricsRecorderTest {
+
+    @Test
+    public void testHistogramAccuracy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+        Random random = new Random(46);
+        for(int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+            assertTrue(LatencyHistogram.highestValue(LatencyHistogram.bucket(random.nextLong() & Long.MAX_VALUE)) >= 0);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMinimum());
+        assertEquals(10000000, snapshot.getMaximum());
+        assertEquals(5000500, snapshot.getMean(), 0.001);
+        for(double percentile : new double[] {1, 50, 90, 99, 99.9}) {
+            long expected = (long) (percentile * 100) * 1000L;
+            long reported = snapshot.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + reported, reported >= expected && reported <= expected * 1.07);
+        }
+        assertEquals(10000000, snapshot.getValueAtPercentile(100));
+        for(long value : new long[] {0, 1, 31, 32, 33, 1000, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(value <= LatencyHistogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValue(bucket - 1));
+        }
+    }
+
+    @Test
+    public void testRecordBySnapshot() {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        recorder.record(new RequestMetrics("data", "GET", 200, 5000, 100, 300, 0, 1024, 0));
+        recorder.record(new RequestMetrics("data", "GET", 404, 7000, 100, 200, 0, 10, 1));
+        recorder.record(new RequestMetrics("data", "PUT", RequestMetrics.NO_STATUS, 9000, RequestMetrics.NOT_MEASURED, RequestMetrics.NOT_MEASURED, 50, RequestMetrics.NOT_MEASURED, 3));
+
+        assertEquals(2, recorder.snapshot().size());
+        EndpointMetrics get = recorder.snapshot("data", "GET");
+        assertEquals(2, get.getCount());
+        assertEquals(1, get.getFailures());
+        assertEquals(1, get.getRetries());
+        assertEquals(1034, get.getResponseBytes());
+        assertEquals(Long.valueOf(1), get.getStatusCodes().get(404));
+        assertEquals(7000, get.getLatency().getMaximum());
+        assertEquals(2, get.getParseTime().getCount());
+
+        EndpointMetrics put = recorder.snapshot("data", "PUT");
+        assertEquals(1, put.getFailures());
+        assertEquals(0, put.getPoolWait().getCount());
+        assertEquals(50, put.getRequestBytes());
+        assertNull(recorder.snapshot("search", "GET"));
+        recorder.reset();
+        assertTrue(recorder.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testEndpointFamily() {
+        assertEquals("data", CMMetrics.endpointFamily(URI.create("https://api.cloudmine.me/v1/app/abc/data?keys=a")));
+        assertEquals("search", CMMetrics.endpointFamily(URI.create("https://api.cloudmine.me/v1/app/abc/user/search?q=x")));
+        assertEquals("account", CMMetrics.endpointFamily(URI.create("https://api.cloudmine.me/v1/app/abc/account/login")));
+        assertEquals(CMMetrics.UNKNOWN_ENDPOINT, CMMetrics.endpointFamily(URI.create("https://api.cloudmine.me/v1/app/abc")));
+        assertEquals(CMMetrics.UNKNOWN_ENDPOINT, CMMetrics.endpointFamily(URI.create("https://example.com/other")));
+    }
+}
@@ -0,0 +1,182 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.CMFile;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.cache.InvalidationEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class FileDownloadCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CMFile file(String fileId, int size) {
+        byte[] contents = new byte[size];
+        for(int i = 0; i < size; i++) {
+            contents[i] = (byte) (fileId.hashCode() + i);
+        }
+        return new CMFile(contents, fileId, CMFile.IMAGE_PNG_CONTENT_TYPE);
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        File directory = folder.newFolder("files");
+        FileDownloadCache cache = new FileDownloadCache(directory);
+        CMFile avatar = file("avatar", 1000);
+        assertTrue(cache.put(ObjectLevel.USER, "bob@example.com", avatar));
+        assertNull(cache.get(ObjectLevel.USER, "alice@example.com", "avatar"));
+        assertNull(cache.get(ObjectLevel.APPLICATION, null, "avatar"));
+
+        cache = new FileDownloadCache(directory);
+        CMFile loaded = cache.get(ObjectLevel.USER, "bob@example.com", "avatar");
+        assertArrayEquals(avatar.getFileContents(), loaded.getFileContents());
+        assertEquals(CMFile.IMAGE_PNG_CONTENT_TYPE, loaded.getMimeType());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(1000, cache.transferTo(ObjectLevel.USER, "bob@example.com", "avatar", Channels.newChannel(output)));
+        assertArrayEquals(avatar.getFileContents(), output.toByteArray());
+        assertEquals(-1, cache.transferTo(ObjectLevel.APPLICATION, null, "missing", Channels.newChannel(output)));
+
+        //only a hash of the owner is stored
+        for(File stored : directory.listFiles()) {
+            assertFalse(new String(readAll(stored), "ISO-8859-1").contains("bob@example.com"));
+        }
+    }
+
+    @Test
+    public void testReplacedWhileReading() throws Exception {
+        File directory = folder.newFolder("files");
+        final FileDownloadCache cache = new FileDownloadCache(directory);
+        final CMFile original = file("logo", 1000);
+        final CMFile replacement = new CMFile(new byte[500], "logo", CMFile.IMAGE_PNG_CONTENT_TYPE);
+        cache.put(ObjectLevel.APPLICATION, null, original);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WritableByteChannel outputChannel = Channels.newChannel(output);
+        WritableByteChannel replacing = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                if(output.size() == 0) {
+                    assertTrue(cache.put(ObjectLevel.APPLICATION, null, replacement));
+                }
+                return outputChannel.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertEquals(1000, cache.transferTo(ObjectLevel.APPLICATION, null, "logo", replacing));
+        assertArrayEquals(original.getFileContents(), output.toByteArray());
+        assertArrayEquals(replacement.getFileContents(), cache.get(ObjectLevel.APPLICATION, null, "logo").getFileContents());
+        assertEquals(1, directory.listFiles().length);
+
+        cache.put(ObjectLevel.APPLICATION, null, original);
+        FileDownloadCache reopened = new FileDownloadCache(directory);
+        assertArrayEquals(original.getFileContents(), reopened.get(ObjectLevel.APPLICATION, null, "logo").getFileContents());
+        reopened.put(ObjectLevel.APPLICATION, null, replacement);
+        assertArrayEquals(replacement.getFileContents(), reopened.get(ObjectLevel.APPLICATION, null, "logo").getFileContents());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            byte[] contents = new byte[(int) input.length()];
+            input.readFully(contents);
+            return contents;
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void testUserFilesNeedAnOwner() throws Exception {
+        FileDownloadCache cache = new FileDownloadCache(folder.newFolder("files"));
+        assertFalse(cache.put(ObjectLevel.USER, null, file("avatar", 10)));
+        assertFalse(cache.put(ObjectLevel.USER, "", file("avatar", 10)));
+        assertTrue(cache.put(ObjectLevel.USER, "session", file("avatar", 10)));
+        assertNull(cache.get(ObjectLevel.USER, null, "avatar"));
+        assertFalse(cache.contains(ObjectLevel.USER, "", "avatar"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testIntegrityCheck() throws Exception {
+        File directory = folder.newFolder("files");
+        FileDownloadCache cache = new FileDownloadCache(directory);
+        cache.put(ObjectLevel.APPLICATION, null, file("logo", 100));
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        RandomAccessFile stored = new RandomAccessFile(files[0], "rw");
+        stored.seek(stored.length() - 1);
+        int last = stored.read();
+        stored.seek(stored.length() - 1);
+        stored.write(last ^ 0xFF);
+        stored.close();
+
+        cache = new FileDownloadCache(directory);
+        assertTrue(cache.contains(ObjectLevel.APPLICATION, null, "logo"));
+        assertNull(cache.get(ObjectLevel.APPLICATION, null, "logo"));
+        assertFalse(cache.contains(ObjectLevel.APPLICATION, null, "logo"));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        File directory = folder.newFolder("files");
+        FileDownloadCache cache = new FileDownloadCache(directory, 3500);
+        cache.put(ObjectLevel.APPLICATION, null, file("first", 1000));
+        cache.put(ObjectLevel.APPLICATION, null, file("second", 1000));
+        cache.put(ObjectLevel.APPLICATION, null, file("third", 1000));
+        assertNotNull(cache.get(ObjectLevel.APPLICATION, null, "first"));
+        cache.put(ObjectLevel.APPLICATION, null, file("fourth", 1000));
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.getSize() <= 3500);
+        assertFalse(cache.contains(ObjectLevel.APPLICATION, null, "second"));
+        assertTrue(cache.contains(ObjectLevel.APPLICATION, null, "first"));
+        assertEquals(3, directory.listFiles().length);
+        assertFalse(cache.put(ObjectLevel.APPLICATION, null, file("huge", 5000)));
+        assertEquals(3, directory.listFiles().length);
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        FileDownloadCache cache = new FileDownloadCache(folder.newFolder("files"));
+        cache.put(ObjectLevel.APPLICATION, null, file("shared", 10));
+        cache.put(ObjectLevel.USER, "bob", file("shared", 10));
+        cache.put(ObjectLevel.USER, "alice", file("shared", 10));
+
+        cache.onInvalidation(InvalidationEvent.updated(ObjectLevel.USER, Arrays.asList("shared")));
+        assertTrue(cache.contains(ObjectLevel.APPLICATION, null, "shared"));
+        assertFalse(cache.contains(ObjectLevel.USER, "bob", "shared"));
+        assertFalse(cache.contains(ObjectLevel.USER, "alice", "shared"));
+
+        cache.onInvalidation(InvalidationEvent.deletedAll(ObjectLevel.APPLICATION));
+        assertEquals(0, cache.size());
+    }
+}
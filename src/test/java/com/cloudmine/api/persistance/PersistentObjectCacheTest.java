@@ -0,0 +1,145 @@
+package com.cloudmine.api.persistance;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.cache.InvalidationEvent;
+import com.cloudmine.api.rest.response.ObjectModificationResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class PersistentObjectCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SimpleCMObject object(String objectId, String name) {
+        SimpleCMObject object = new SimpleCMObject(objectId);
+        object.add("name", name);
+        return object;
+    }
+
+    private static File[] segmentFiles(File directory) {
+        File[] files = directory.listFiles();
+        Arrays.sort(files);
+        return files;
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        File directory = folder.newFolder("cache");
+        PersistentObjectCache cache = new PersistentObjectCache(directory);
+        cache.put(object("first", "one"));
+        cache.put(object("second", "two"));
+        cache.put(object("first", "uno"));
+        assertTrue(cache.remove("second"));
+        assertFalse(cache.remove("second"));
+        cache.close();
+
+        cache = new PersistentObjectCache(directory);
+        assertEquals(1, cache.size());
+        assertNull(cache.get("second"));
+        SimpleCMObject first = cache.get("first", SimpleCMObject.class);
+        assertEquals("uno", first.getString("name"));
+        assertTrue(cache.getJson("first").contains("\"uno\""));
+        cache.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        File directory = folder.newFolder("cache");
+        StringBuilder padding = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            padding.append('x');
+        }
+        PersistentObjectCache cache = new PersistentObjectCache(directory, new CMPersistentCacheOptions()
+                .setSegmentSize(CMPersistentCacheOptions.MINIMUM_SEGMENT_SIZE)
+                .setCompactionThreshold(1));
+        cache.put(object("stable", "kept"));
+        for(int i = 0; i < 20; i++) {
+            cache.put(object("object" + (i % 2), padding.toString() + i));
+        }
+        assertTrue(segmentFiles(directory).length > 3);
+        cache.compact();
+        assertEquals(1, segmentFiles(directory).length);
+        assertEquals(3, cache.size());
+        cache.close();
+
+        cache = new PersistentObjectCache(directory);
+        assertEquals("kept", ((SimpleCMObject) cache.get("stable")).getString("name"));
+        assertEquals(padding.toString() + 18, ((SimpleCMObject) cache.get("object0")).getString("name"));
+        assertEquals(padding.toString() + 19, ((SimpleCMObject) cache.get("object1")).getString("name"));
+        cache.close();
+    }
+
+    @Test
+    public void testRecoversFromTornWrite() throws Exception {
+        File directory = folder.newFolder("cache");
+        PersistentObjectCache cache = new PersistentObjectCache(directory);
+        cache.put(object("kept", "safe"));
+        cache.put(object("torn", "damaged"));
+        String tornJson = cache.getJson("torn");
+        cache.close();
+
+        File segment = segmentFiles(directory)[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        byte[] contents = new byte[(int) file.length()];
+        file.readFully(contents);
+        String text = new String(contents, "ISO-8859-1");
+        int damaged = text.indexOf("damaged", text.indexOf(tornJson.substring(0, 10)));
+        file.seek(damaged);
+        file.write('D');
+        file.close();
+
+        cache = new PersistentObjectCache(directory);
+        assertEquals(1, cache.size());
+        assertEquals("safe", ((SimpleCMObject) cache.get("kept")).getString("name"));
+        assertNull(cache.get("torn"));
+        cache.put(object("after", "recovery"));
+        cache.close();
+
+        cache = new PersistentObjectCache(directory);
+        assertEquals(2, cache.size());
+        assertEquals("recovery", ((SimpleCMObject) cache.get("after")).getString("name"));
+        cache.close();
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        PersistentObjectCache cache = new PersistentObjectCache(folder.newFolder("cache"));
+        cache.put(object("updated", "old"));
+        cache.put(object("raw", "old"));
+        cache.put(object("deleted", "old"));
+
+        SimpleCMObject written = object("updated", "new");
+        ObjectModificationResponse response = new ObjectModificationResponse(
+                "{\"success\":{\"updated\":\"updated\",\"deleted\":\"deleted\"},\"errors\":{}}", 200);
+        cache.onInvalidation(InvalidationEvent.fromResponse(ObjectLevel.APPLICATION, response,
+                Collections.<CMObject>singletonList(written)));
+        cache.onInvalidation(InvalidationEvent.updated(ObjectLevel.APPLICATION, Arrays.asList("raw", "unknown")));
+
+        assertEquals("new", ((SimpleCMObject) cache.get("updated")).getString("name"));
+        assertFalse(cache.contains("raw"));
+        assertFalse(cache.contains("deleted"));
+        assertFalse(cache.contains("unknown"));
+
+        cache.onInvalidation(InvalidationEvent.deletedAll(ObjectLevel.USER));
+        assertEquals(1, cache.size());
+        cache.onInvalidation(InvalidationEvent.deletedAll(ObjectLevel.APPLICATION));
+        assertEquals(0, cache.size());
+        cache.close();
+    }
+}
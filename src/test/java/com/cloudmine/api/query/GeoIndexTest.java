@@ -0,0 +1,118 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.CMGeoPoint;
+import com.cloudmine.api.Distance;
+import com.cloudmine.api.DistanceUnits;
+import com.cloudmine.api.SimpleCMObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class GeoIndexTest {
+
+    private static SimpleCMObject venue(String id, double longitude, double latitude) {
+        SimpleCMObject venue = new SimpleCMObject(id);
+        venue.add("location", new CMGeoPoint(longitude, latitude));
+        return venue;
+    }
+
+    private static List<String> bruteForce(final CMGeoPoint point, List<SimpleCMObject> venues, double maximumKilometers) {
+        List<SimpleCMObject> sorted = new ArrayList<SimpleCMObject>();
+        for(SimpleCMObject venue : venues) {
+            if(distance(point, venue) <= maximumKilometers) {
+                sorted.add(venue);
+            }
+        }
+        Collections.sort(sorted, new Comparator<SimpleCMObject>() {
+            @Override
+            public int compare(SimpleCMObject first, SimpleCMObject second) {
+                return Double.compare(distance(point, first), distance(point, second));
+            }
+        });
+        List<String> ids = new ArrayList<String>();
+        for(SimpleCMObject venue : sorted) {
+            ids.add(venue.getObjectId());
+        }
+        return ids;
+    }
+
+    private static double distance(CMGeoPoint point, SimpleCMObject venue) {
+        double[] location = Condition.asPoint(venue.get("location"));
+        return Condition.haversine(point.getLatitude(), point.getLongitude(), location[0], location[1]);
+    }
+
+    private static List<String> ids(List<GeoIndex.Neighbor> neighbors) {
+        List<String> ids = new ArrayList<String>();
+        for(GeoIndex.Neighbor neighbor : neighbors) {
+            ids.add(neighbor.getObjectId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(41);
+        List<SimpleCMObject> venues = new ArrayList<SimpleCMObject>();
+        GeoIndex index = ObjectIndex.onLocation("location", 0.5);
+        for(int i = 0; i < 2000; i++) {
+            //clustered around a city, with some spread around the world
+            SimpleCMObject venue = i % 10 == 0 ?
+                    venue("v" + i, random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90) :
+                    venue("v" + i, -75.16 + random.nextGaussian(), 39.95 + random.nextGaussian());
+            venues.add(venue);
+            index.add(venue);
+        }
+        List<CMGeoPoint> points = new ArrayList<CMGeoPoint>();
+        points.add(new CMGeoPoint(-75.16, 39.95));
+        points.add(new CMGeoPoint(179.9, 0));
+        points.add(new CMGeoPoint(10, 89.9));
+        points.add(new CMGeoPoint(-120, -45));
+        for(CMGeoPoint point : points) {
+            for(int count : new int[] {1, 5, 50}) {
+                assertEquals(bruteForce(point, venues, Double.POSITIVE_INFINITY).subList(0, count), ids(index.getNearest(point, count, DistanceUnits.km)));
+            }
+            for(double kilometers : new double[] {1, 50, 500, 5000}) {
+                assertEquals(bruteForce(point, venues, kilometers), ids(index.getWithin(point, new Distance(kilometers, DistanceUnits.km))));
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceUnits() {
+        GeoIndex index = ObjectIndex.onLocation("location");
+        index.add(venue("a", 0, 1));
+        GeoIndex.Neighbor neighbor = index.getNearest(new CMGeoPoint(0, 0), 1, DistanceUnits.mi).get(0);
+        assertEquals(DistanceUnits.mi, neighbor.getDistance().getUnits());
+        assertEquals(69.09, neighbor.getDistance().getMeasurement(), 0.01);
+
+        List<GeoIndex.Neighbor> within = index.getWithin(new CMGeoPoint(0, 0), new Distance(112, DistanceUnits.km));
+        assertEquals(1, within.size());
+        assertEquals(DistanceUnits.km, within.get(0).getDistance().getUnits());
+        assertTrue(index.getWithin(new CMGeoPoint(0, 0), new Distance(110000, DistanceUnits.m)).isEmpty());
+    }
+
+    @Test
+    public void testUpdates() {
+        GeoIndex index = ObjectIndex.onLocation("location");
+        index.add(venue("a", 0, 0));
+        index.add(venue("b", 1, 1));
+        index.add(venue("a", 2, 2));
+        assertEquals(2, index.size());
+        assertEquals("b", index.getNearest(new CMGeoPoint(0, 0), 1, DistanceUnits.km).get(0).getObjectId());
+        index.remove("b");
+        assertEquals("a", index.getNearest(new CMGeoPoint(0, 0), 1, DistanceUnits.km).get(0).getObjectId());
+        index.add(new SimpleCMObject("no location"));
+        assertEquals(1, index.getNearest(new CMGeoPoint(0, 0), 10, DistanceUnits.km).size());
+    }
+}
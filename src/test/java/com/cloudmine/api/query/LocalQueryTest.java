@@ -0,0 +1,125 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.CMGeoPoint;
+import com.cloudmine.api.DistanceUnits;
+import com.cloudmine.api.SearchQuery;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.rest.JsonUtilities;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class LocalQueryTest {
+
+    private static SimpleCMObject venue(String id, String name, int rating, double longitude, double latitude) {
+        SimpleCMObject venue = new SimpleCMObject(id);
+        venue.setClass("Venue");
+        venue.add("name", name);
+        venue.add("rating", rating);
+        venue.add("tags", Arrays.asList("food", name.toLowerCase()));
+        venue.add("location", new CMGeoPoint(longitude, latitude));
+        return venue;
+    }
+
+    private static boolean matches(String query, SimpleCMObject object) {
+        return LocalQuery.parse(query).matches(object);
+    }
+
+    @Test
+    public void testComparisons() {
+        SimpleCMObject venue = venue("a", "Abe's", 4, 0, 0);
+        assertTrue(matches(SearchQuery.filter("name").equal("Abe's").searchQuery(), venue));
+        assertFalse(matches(SearchQuery.filter("name").notEqual("Abe's").searchQuery(), venue));
+        assertTrue(matches(SearchQuery.filter("rating").greaterThan(3).and("rating").lessThanOrEqual(4).searchQuery(), venue));
+        assertFalse(matches(SearchQuery.filter("rating").lessThan(4).searchQuery(), venue));
+        assertTrue(matches(SearchQuery.filter("rating").equal(5).or("rating").equal(4).searchQuery(), venue));
+        assertTrue(matches("[rating = 4.0, name > \"Aa\"]", venue));
+        assertTrue(matches("[missing = null, missing != \"value\"]", venue));
+        assertFalse(matches("[missing = \"value\"]", venue));
+    }
+
+    @Test
+    public void testListsAndIn() {
+        SimpleCMObject venue = venue("a", "Deli", 3, 0, 0);
+        assertTrue(matches("[tags = \"food\"]", venue));
+        assertTrue(matches("[tags = \"deli\"]", venue));
+        assertFalse(matches("[tags != \"deli\"]", venue));
+        assertTrue(matches("[name in [\"Cafe\", \"Deli\"]]", venue));
+        assertFalse(matches("[rating in [1, 2]]", venue));
+    }
+
+    @Test
+    public void testSubObjects() {
+        Map<String, Object> address = new HashMap<String, Object>();
+        address.put("city", "Philadelphia");
+        Map<String, Object> branch = new HashMap<String, Object>();
+        branch.put("address", address);
+        branch.put("open", true);
+        SimpleCMObject venue = venue("a", "Deli", 3, 0, 0);
+        venue.add("branches", Arrays.asList(branch));
+
+        assertTrue(matches("branches.address[city = \"Philadelphia\"]", venue));
+        assertTrue(matches("[__class__ = \"Venue\"].branches[open = true].address[city = \"Philadelphia\"]", venue));
+        assertTrue(matches("[branches.address.city = \"Philadelphia\"]", venue));
+        assertFalse(matches("branches[open = false]", venue));
+        assertFalse(matches("owner[name = \"Bob\"]", venue));
+    }
+
+    @Test
+    public void testNear() {
+        SimpleCMObject far = venue("far", "Far", 3, 1, 1);
+        SimpleCMObject near = venue("near", "Near", 3, 0.01, 0.01);
+        SimpleCMObject other = new SimpleCMObject("other");
+
+        String query = SearchQuery.filter("location").near(0, 0).searchQuery();
+        List<SimpleCMObject> results = LocalQuery.parse(query).filter(Arrays.asList(far, other, near));
+        assertEquals(Arrays.asList(near, far), results);
+
+        query = SearchQuery.filter("location").near(new CMGeoPoint(0, 0)).within(10, DistanceUnits.km).searchQuery();
+        results = LocalQuery.parse(query).filter(Arrays.asList(far, other, near));
+        assertEquals(Arrays.asList(near), results);
+        assertTrue(matches("[location near (0, 0), 160 mi, name = \"Far\"]", far));
+    }
+
+    @Test
+    public void testExponents() {
+        SimpleCMObject far = venue("far", "Far", 3, 1, 1);
+        SimpleCMObject near = venue("near", "Near", 3, 0.00001, 10);
+
+        //small and large doubles are appended in scientific notation
+        String query = SearchQuery.filter("location").near(0.00001, 10).within(10000000.0, DistanceUnits.km).searchQuery();
+        assertTrue(query, query.contains("1.0E-5") && query.contains("1.0E7km"));
+        assertEquals(Arrays.asList(near, far), LocalQuery.parse(query).filter(Arrays.asList(far, near)));
+        assertTrue(matches("[rating < 3.5e0, rating > 25E-1, rating = 3E+0]", far));
+        assertFalse(matches("[rating > 1.0E1]", far));
+    }
+
+    @Test
+    public void testClassName() {
+        assertEquals("Venue", LocalQuery.parse("[" + JsonUtilities.CLASS_KEY + " = \"Venue\", rating > 3]").getClassName());
+        assertNull(LocalQuery.parse("[" + JsonUtilities.CLASS_KEY + " = \"Venue\" or rating > 3]").getClassName());
+        assertNull(LocalQuery.parse("location[" + JsonUtilities.CLASS_KEY + " = \"Venue\"]").getClassName());
+    }
+
+    @Test
+    public void testInvalidQueries() {
+        for(String query : Arrays.asList(null, "", "[", "[name = ]", "[name ~ 5]", "[name = \"open", "[a = 1] extra", "[a near (1)]")) {
+            try {
+                LocalQuery.parse(query);
+                fail("Expected " + query + " to be rejected");
+            } catch(InvalidRequestException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ObjectIndexTest {
+
+    private static SimpleCMObject object(String id, String className, Object rating) {
+        SimpleCMObject object = new SimpleCMObject(id);
+        object.setClass(className);
+        object.add("rating", rating);
+        return object;
+    }
+
+    private static Set<String> ids(String... ids) {
+        return new HashSet<String>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void testValueIndex() {
+        ValueIndex byClass = ObjectIndex.onClass();
+        ValueIndex byRating = ObjectIndex.onValue("rating");
+        for(SimpleCMObject object : Arrays.asList(object("a", "Venue", 4), object("b", "Venue", 4.0), object("c", "Owner", 2))) {
+            byClass.add(object);
+            byRating.add(object);
+        }
+        assertEquals(ids("a", "b"), byClass.getIds("Venue"));
+        assertEquals(ids("a", "b"), byRating.getIds(4L));
+        assertEquals(Collections.<String>emptySet(), byRating.getIds("4"));
+
+        byClass.add(object("b", "Owner", 4));
+        assertEquals(ids("a"), byClass.getIds("Venue"));
+        assertEquals(ids("b", "c"), byClass.getIds("Owner"));
+        byClass.remove("c");
+        assertEquals(ids("b"), byClass.getIds("Owner"));
+        assertEquals(2, byClass.size());
+    }
+
+    @Test
+    public void testListsAndSubObjects() {
+        SimpleCMObject object = new SimpleCMObject("a");
+        object.add("tags", Arrays.asList("food", "drink"));
+        object.add("owner", Collections.singletonMap("name", "Bob"));
+        ValueIndex byTag = ObjectIndex.onValue("tags");
+        ValueIndex byOwner = ObjectIndex.onValue("owner.name");
+        ValueIndex byMissing = ObjectIndex.onValue("missing");
+        byTag.add(object);
+        byOwner.add(object);
+        byMissing.add(object);
+        assertEquals(ids("a"), byTag.getIds("drink"));
+        assertEquals(ids("a"), byOwner.getIds("Bob"));
+        assertEquals(Collections.<String>emptySet(), byTag.getIds(null));
+        assertEquals(ids("a"), byMissing.getIds(null));
+    }
+
+    @Test
+    public void testRangeIndex() {
+        RangeIndex index = ObjectIndex.onRange("rating");
+        index.add(object("a", "Venue", 1));
+        index.add(object("b", "Venue", 5));
+        index.add(object("c", "Venue", 3.5));
+        index.add(object("d", "Venue", "not a number"));
+
+        assertEquals(Arrays.asList("a", "c", "b"), Arrays.asList(index.getIds(null, true, null, true).toArray()));
+        assertEquals(ids("c", "b"), index.getIds(3, false, 5, true));
+        assertEquals(ids("c"), index.getIds(3, false, 5, false));
+        assertEquals(ids("a"), index.getIds(null, false, 3, true));
+        assertEquals(Collections.<String>emptySet(), index.getIds(5, true, 1, true));
+        assertEquals(4, index.size());
+
+        index.remove("c");
+        assertEquals(ids("b"), index.getIds(2, true, null, true));
+        try {
+            index.getIds("low", true, null, true);
+            fail();
+        } catch(InvalidRequestException expected) {
+        }
+    }
+
+    @Test
+    public void testDateRanges() {
+        RangeIndex index = ObjectIndex.onRange("when");
+        index.add(new SimpleCMObject("early").add("when", new Date(1000)));
+        index.add(new SimpleCMObject("late").add("when", new Date(5000)));
+        assertEquals(ids("late"), index.getIds(new Date(2000), true, new Date(6000), true));
+        assertEquals(ids("early", "late"), index.getIds(0, true, 5000, true));
+    }
+}
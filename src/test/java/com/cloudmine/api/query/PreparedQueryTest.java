@@ -0,0 +1,74 @@
+package com.cloudmine.api.query;
+
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.rest.CMURLBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class PreparedQueryTest {
+
+    @Test
+    public void testBind() {
+        PreparedQuery prepared = PreparedQuery.prepare("[__class__ = \"Venue\", name = ?, rating >= ? or tags in [?, \"a?\"]]");
+        assertEquals(3, prepared.getParameterCount());
+
+        CompiledQuery query = prepared.bind("Bob's \"Place\"", 4.5, "food");
+        assertEquals("[__class__ = \"Venue\", name = \"Bob's \\\"Place\\\"\", rating >= 4.5 or tags in [\"food\", \"a?\"]]", query.getQuery());
+        assertEquals(CMURLBuilder.encode(query.getQuery()), query.getEncodedQuery());
+        assertEquals("[__class__ = \"Venue\", rating >= 1 or tags in [\"x\", \"a?\"]]",
+                PreparedQuery.prepare("[__class__ = \"Venue\", rating >= ? or tags in [?, \"a?\"]]").bind(1, "x").getQuery());
+        assertEquals("[n = 10000000000]", PreparedQuery.prepare("[n = ?]").bind(1e10).getQuery());
+        assertEquals("[n = null]", PreparedQuery.prepare("[n = ?]").bind((Object) null).getQuery());
+
+        LocalQuery local = query.toLocalQuery();
+        assertSame(local, query.toLocalQuery());
+        SimpleCMObject venue = new SimpleCMObject("a");
+        venue.setClass("Venue");
+        venue.add("name", "Bob's \"Place\"");
+        venue.add("rating", 5);
+        assertTrue(local.matches(venue));
+        venue.add("name", "Bob's");
+        assertFalse(local.matches(venue));
+    }
+
+    @Test
+    public void testInvalid() {
+        PreparedQuery prepared = PreparedQuery.prepare("[name = ?]");
+        for(Object[] values : new Object[][] {{}, {"a", "b"}, {new Object()}, {Double.NaN}}) {
+            try {
+                prepared.bind(values);
+                fail();
+            } catch(InvalidRequestException expected) {
+            }
+        }
+        for(String template : new String[] {"[? = 5]", "[location near (?, 1)]", "[name = ?"}) {
+            try {
+                PreparedQuery.prepare(template);
+                fail(template);
+            } catch(InvalidRequestException expected) {
+            }
+        }
+        try {
+            CompiledQuery.compile("[name = ?]");
+            fail();
+        } catch(InvalidRequestException expected) {
+        }
+    }
+
+    @Test
+    public void testNormalizedEquality() {
+        CompiledQuery compiled = CompiledQuery.compile("[name = \"x\", rating > 4]");
+        assertEquals(compiled, CompiledQuery.compile("[ name=\"x\" ,rating>4 ]"));
+        assertEquals(compiled, PreparedQuery.prepare("[name=?,  rating > ?]").bind("x", 4));
+        assertEquals(compiled.hashCode(), PreparedQuery.prepare("[name=?,  rating > ?]").bind("x", 4).hashCode());
+        assertFalse(compiled.equals(CompiledQuery.compile("[name = \"x \", rating > 4]")));
+        assertFalse(compiled.equals(CompiledQuery.compile("[name = \"x\", rating > 5]")));
+    }
+}
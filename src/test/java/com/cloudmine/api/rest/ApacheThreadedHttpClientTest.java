@@ -0,0 +1,161 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.metrics.CMMetrics;
+import com.cloudmine.api.metrics.RequestPhase;
+import com.cloudmine.api.metrics.RequestTrace;
+import com.cloudmine.api.metrics.RequestTraceListener;
+import com.cloudmine.api.rest.callbacks.CMCallback;
+import com.cloudmine.api.rest.response.CMResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ApacheThreadedHttpClientTest {
+
+    private ServerSocket serverSocket;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Answers every request with the given response, then closes the connection
+     */
+    private void serve(final String response) throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        try {
+                            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                            int contentLength = 0;
+                            for(String line = reader.readLine(); line != null && line.length() > 0; line = reader.readLine()) {
+                                if(line.toLowerCase().startsWith("content-length:")) {
+                                    contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+                                }
+                            }
+                            for(int i = 0; i < contentLength; i++) {
+                                reader.read();
+                            }
+                            requests.incrementAndGet();
+                            OutputStream output = socket.getOutputStream();
+                            output.write(response.getBytes("US-ASCII"));
+                            output.flush();
+                        } finally {
+                            socket.close();
+                        }
+                    } catch(IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private HttpPost post() throws IOException {
+        HttpPost post = new HttpPost("http://localhost:" + serverSocket.getLocalPort() + "/v1/app/abc/text");
+        post.setEntity(new StringEntity("{\"a\":{}}"));
+        return post;
+    }
+
+    private static class RecordingCallback extends CMCallback<CMResponse> {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicReference<RequestTrace> failureTrace = new AtomicReference<RequestTrace>();
+
+        RecordingCallback() {
+            super(CMResponse.CONSTRUCTOR);
+        }
+
+        @Override
+        public void onFailure(Throwable error, String message) {
+            failure.set(error);
+            failureTrace.set(RequestTrace.current());
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static class EndListener implements RequestTraceListener {
+        final CountDownLatch ended = new CountDownLatch(1);
+        final AtomicReference<RequestTrace> trace = new AtomicReference<RequestTrace>();
+
+        @Override
+        public void onPhaseStart(RequestTrace trace, RequestPhase phase) {
+        }
+
+        @Override
+        public void onPhaseEnd(RequestTrace trace, RequestPhase phase, long durationNanos) {
+        }
+
+        @Override
+        public void onRequestEnd(RequestTrace trace) {
+            this.trace.set(trace);
+            ended.countDown();
+        }
+    }
+
+    @After
+    public void stop() throws IOException {
+        CMMetrics.setTraceListener(null);
+        if(serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    public void testNoRetryOnceAnswered() throws Exception {
+        CMMetrics.setTraceListener(new EndListener());
+        //the body is cut off, so reading it for the trace fails after the write was made
+        serve("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 100\r\n\r\n{\"success\":");
+        RecordingCallback callback = new RecordingCallback();
+        new ApacheThreadedHttpClient().executeCommand(post(), callback, CMResponse.CONSTRUCTOR);
+        callback.await();
+        assertNotNull(callback.failure.get());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testThrowingCallbackFailsItsTrace() throws Exception {
+        EndListener listener = new EndListener();
+        CMMetrics.setTraceListener(listener);
+        serve("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 2\r\n\r\n{}");
+        final IllegalStateException thrown = new IllegalStateException("callback failed");
+        RecordingCallback callback = new RecordingCallback() {
+            @Override
+            public void onCompletion(CMResponse response) {
+                throw thrown;
+            }
+        };
+        new ApacheThreadedHttpClient().executeCommand(post(), callback, CMResponse.CONSTRUCTOR);
+        callback.await();
+        assertSame(thrown, callback.failure.get());
+        assertNotNull("onFailure ran after the trace was detached", callback.failureTrace.get());
+        assertTrue(listener.ended.await(10, TimeUnit.SECONDS));
+        assertSame(thrown, listener.trace.get().getFailure());
+    }
+}
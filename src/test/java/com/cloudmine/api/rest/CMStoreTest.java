@@ -0,0 +1,242 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.CMFile;
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.CMSessionToken;
+import com.cloudmine.api.JavaCMUser;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.StoreIdentifier;
+import com.cloudmine.api.persistance.FileDownloadCache;
+import com.cloudmine.api.persistance.PersistentObjectCache;
+import com.cloudmine.api.rest.callbacks.CMObjectResponseCallback;
+import com.cloudmine.api.rest.callbacks.FileLoadCallback;
+import com.cloudmine.api.rest.options.CMRequestOptions;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import com.cloudmine.api.rest.response.FileLoadResponse;
+import com.cloudmine.test.FakeCloudMineServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class CMStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeCloudMineServer server;
+    private CMWebService service;
+
+    /**
+     * Collects the response given to a store callback
+     */
+    private static class ResponseLatch extends CMObjectResponseCallback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<CMObjectResponse> response = new AtomicReference<CMObjectResponse>();
+
+        @Override
+        public void onCompletion(CMObjectResponse loaded) {
+            response.set(loaded);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable error, String message) {
+            done.countDown();
+        }
+
+        CMObjectResponse await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertNotNull("Load failed", response.get());
+            return response.get();
+        }
+    }
+
+    @Before
+    public void startServer() throws Exception {
+        server = new FakeCloudMineServer().start();
+        service = CMWebService.getService(FakeCloudMineServer.APP_ID, FakeCloudMineServer.API_KEY, server.getBaseUrl());
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    private JavaCMUser loggedInUser(String email, String privateNote) {
+        JavaCMUser user = new JavaCMUser(email, "secret");
+        assertTrue(service.insert(user).wasSuccess());
+        CMSessionToken sessionToken = service.login(user).getSessionToken();
+        if(privateNote != null) {
+            service.getUserWebService(sessionToken).insert("{\"private\":{\"note\":\"" + privateNote + "\"}}");
+        }
+        JavaCMUser loggedIn = new JavaCMUser(email, "secret");
+        loggedIn.setSessionToken(service.login(loggedIn).getSessionToken());
+        return loggedIn;
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            for(int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class FileLatch extends FileLoadCallback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<CMFile> file = new AtomicReference<CMFile>();
+
+        FileLatch() {
+            super("");
+        }
+
+        @Override
+        public void onCompletion(FileLoadResponse response) {
+            file.set(response.getFile());
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable error, String message) {
+            done.countDown();
+        }
+
+        CMFile await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            return file.get();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private CMFile loadUserFile(CMStore store, String fileId) throws InterruptedException {
+        FileLatch loaded = new FileLatch();
+        store.loadUserFile(fileId, loaded);
+        return loaded.await();
+    }
+
+    @Test
+    public void testCachesUserFilesPerUser() throws Exception {
+        FileDownloadCache cache = new FileDownloadCache(folder.newFolder("files"));
+        JavaCMUser first = loggedInUser("first@example.com", null);
+        JavaCMUser second = loggedInUser("second@example.com", null);
+        service.getUserWebService(first.getSessionToken()).insert(new CMFile(new byte[] {1}, "avatar", "image/png"));
+        service.getUserWebService(second.getSessionToken()).insert(new CMFile(new byte[] {2}, "avatar", "image/png"));
+
+        @SuppressWarnings("deprecation")
+        CMStore firstStore = CMStore.CMStore(StoreIdentifier.StoreIdentifier(first));
+        firstStore.setFileCache(cache);
+        @SuppressWarnings("deprecation")
+        CMStore secondStore = CMStore.CMStore(StoreIdentifier.StoreIdentifier(second));
+        secondStore.setFileCache(cache);
+        assertArrayEquals(new byte[] {1}, loadUserFile(firstStore, "avatar").getFileContents());
+        assertArrayEquals(new byte[] {2}, loadUserFile(secondStore, "avatar").getFileContents());
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains(ObjectLevel.USER, "first@example.com", "avatar"));
+        //served from the cache
+        long requests = server.getRequestCount("binary");
+        assertArrayEquals(new byte[] {1}, loadUserFile(firstStore, "avatar").getFileContents());
+        assertEquals(requests, server.getRequestCount("binary"));
+    }
+
+    private long dataRequests() {
+        return server.getRequestCount("text") + server.getRequestCount("search");
+    }
+
+    @Test
+    public void testProjectedLoadDoesNotCompleteClass() throws Exception {
+        service.insert("{\"first\":{\"__class__\":\"venue\",\"name\":\"Cafe\",\"city\":\"Boston\"}," +
+                "\"second\":{\"__class__\":\"venue\",\"name\":\"Diner\",\"city\":\"Salem\"}}");
+        @SuppressWarnings("deprecation")
+        CMStore store = CMStore.CMStore();
+        ResponseLatch projected = new ResponseLatch();
+        store.loadApplicationObjectsOfClass("venue", projected, new CMRequestOptions().setProjection("name"));
+        assertEquals(2, projected.await().getObjects().size());
+        assertFalse(store.isClassComplete(ObjectLevel.APPLICATION, "venue"));
+
+        //the partial objects can't answer a full load, so it goes to CloudMine
+        long requests = dataRequests();
+        ResponseLatch full = new ResponseLatch();
+        store.loadApplicationObjectsOfClass("venue", full, new CMRequestOptions().setLocalFirst(true));
+        CMObjectResponse response = full.await();
+        assertEquals(requests + 1, dataRequests());
+        assertEquals(2, response.getObjects().size());
+        assertTrue(response.getObjects().get(0).transportableRepresentation().contains("city"));
+        assertTrue(store.isClassComplete(ObjectLevel.APPLICATION, "venue"));
+
+        //now every object of the class is stored as it is, so the next load is answered locally
+        ResponseLatch local = new ResponseLatch();
+        store.loadApplicationObjectsOfClass("venue", local, new CMRequestOptions().setLocalFirst(true));
+        assertEquals(2, local.await().getObjects().size());
+        assertEquals(requests + 1, dataRequests());
+    }
+
+    @Test
+    public void testPersistsUserObjectsForTheirUser() throws Exception {
+        JavaCMUser owner = loggedInUser("owner@example.com", "mine");
+        File directory = folder.newFolder("cache");
+        PersistentObjectCache cache = new PersistentObjectCache(directory);
+        @SuppressWarnings("deprecation")
+        CMStore store = CMStore.CMStore(StoreIdentifier.StoreIdentifier(owner));
+        store.setPersistentCache(cache);
+        ResponseLatch loaded = new ResponseLatch();
+        store.loadUserObjectsWithObjectIds(Arrays.asList("private"), loaded);
+        assertEquals(1, loaded.await().getObjects().size());
+        assertEquals(ObjectLevel.USER, cache.getLevel("private"));
+        assertTrue(cache.isOwnedBy("private", "owner@example.com"));
+        cache.close();
+        String token = owner.getSessionToken().getSessionToken();
+        for(File segment : directory.listFiles()) {
+            assertTrue(segment.isFile());
+            assertFalse(new String(readAll(segment), "ISO-8859-1").contains(token));
+        }
+
+        //after a restart and a new login the object is read back at the user level, and only for its user
+        JavaCMUser relogged = new JavaCMUser("owner@example.com", "secret");
+        relogged.setSessionToken(service.login(relogged).getSessionToken());
+        assertFalse(token.equals(relogged.getSessionToken().getSessionToken()));
+        cache = new PersistentObjectCache(directory);
+        @SuppressWarnings("deprecation")
+        CMStore restarted = CMStore.CMStore(StoreIdentifier.StoreIdentifier(relogged));
+        restarted.setPersistentCache(cache);
+        assertTrue(restarted.searchStoredObjects(ObjectLevel.APPLICATION, "[note = \"mine\"]").isEmpty());
+        assertEquals(1, restarted.searchStoredObjects(ObjectLevel.USER, "[note = \"mine\"]").size());
+        CMObject stored = restarted.getStoredObject("private");
+        assertNotNull(stored);
+        assertEquals(ObjectLevel.USER, cache.getLevel("private"));
+
+        @SuppressWarnings("deprecation")
+        CMStore other = CMStore.CMStore(StoreIdentifier.StoreIdentifier(loggedInUser("other@example.com", null)));
+        other.setPersistentCache(cache);
+        assertNull(other.getStoredObject("private"));
+        assertTrue(other.searchStoredObjects("[note = \"mine\"]").isEmpty());
+        @SuppressWarnings("deprecation")
+        CMStore application = CMStore.CMStore();
+        application.setPersistentCache(cache);
+        assertNull(application.getStoredObject("private"));
+        cache.close();
+    }
+}
@@ -85,6 +85,25 @@ public class CMURLBuilderTest {
         assertEquals(expectedUrl, builder.text().objectIds(Arrays.asList("one", "two", "three and four")).options(requestOptions).asUrlString());
     }
 
+    @Test
+    public void testCopy() {
+        CMURLBuilder builder = new CMURLBuilder(APP_ID).user();
+        CMURLBuilder copy = builder.copy().data().objectIds(Arrays.asList("a", "b"));
+        assertEquals(expectedBaseUrl() + "/user", builder.asUrlString());
+        assertEquals(expectedBaseUrl() + "/user/data?keys=a,b", copy.asUrlString());
+        assertEquals(expectedBaseUrl() + "/account", builder.copy().account().asUrlString());
+    }
+
+    @Test
+    public void testOptionsChanged() {
+        CMRequestOptions requestOptions = new CMRequestOptions(new CMPagingOptions(5, 0, false));
+        assertEquals("limit=5&skip=0&count=false", requestOptions.asUrlString());
+        requestOptions.setSortOptions(CMSortOptions.CMSortOptions("name", CMSortOptions.SortDirection.ASCENDING));
+        assertEquals("limit=5&skip=0&count=false&sort=name:asc", requestOptions.asUrlString());
+        requestOptions.setPagingOptions(CMPagingOptions.NONE);
+        assertEquals("sort=name:asc", requestOptions.asUrlString());
+    }
+
     @Test
     public void testExtractAppId() {
         assertEquals("/" + APP_ID, CMURLBuilder.extractAppId(expectedBaseUrl()));
@@ -1,13 +1,22 @@
 package com.cloudmine.api.rest;
 
 import com.cloudmine.api.CMApiCredentials;
+import com.cloudmine.api.CMFile;
 import com.cloudmine.api.CMSessionToken;
+import com.cloudmine.api.cache.CMResponseCacheOptions;
+import com.cloudmine.api.cache.ResponseCache;
+import com.cloudmine.api.rest.callbacks.CMObjectResponseCallback;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import com.cloudmine.test.FakeCloudMineServer;
 import org.apache.http.client.methods.HttpGet;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * <br>Copyright CloudMine LLC. All rights reserved
@@ -37,4 +46,86 @@ public class CMWebServiceTest {
         get = userCMWebService.createGet();
         assertEquals("difKey", get.getFirstHeader(HeaderFactory.API_HEADER_KEY).getValue());
     }
-}
\ No newline at end of file
+
+    private static class ThreadLatch extends CMObjectResponseCallback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+        private final AtomicReference<CMObjectResponse> response = new AtomicReference<CMObjectResponse>();
+
+        @Override
+        public void onCompletion(CMObjectResponse loaded) {
+            thread.set(Thread.currentThread());
+            response.set(loaded);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable error, String message) {
+            done.countDown();
+        }
+
+        CMObjectResponse await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertNotNull("Load failed", response.get());
+            return response.get();
+        }
+    }
+
+    @Test
+    public void testCachedResponsesAreDeliveredAsynchronously() throws Exception {
+        FakeCloudMineServer server = new FakeCloudMineServer().start();
+        try {
+            CMWebService service = CMWebService.getService(FakeCloudMineServer.APP_ID, FakeCloudMineServer.API_KEY, server.getBaseUrl());
+            service.setResponseCache(new ResponseCache());
+            assertTrue(service.insert("{\"config\":{\"theme\":\"dark\"}}").wasSuccess());
+
+            ThreadLatch loaded = new ThreadLatch();
+            service.asyncLoadObjects(loaded);
+            CMObjectResponse first = loaded.await();
+            long requests = server.getRequestCount("text");
+
+            ThreadLatch cached = new ThreadLatch();
+            service.asyncLoadObjects(cached);
+            CMObjectResponse second = cached.await();
+            assertEquals(requests, server.getRequestCount("text"));
+            assertNotSame(first, second);
+            assertNotSame(Thread.currentThread(), cached.thread.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBlockingRequestsUseTheConnectionPool() throws Exception {
+        FakeCloudMineServer server = new FakeCloudMineServer().start();
+        try {
+            CMWebService service = CMWebService.getService(FakeCloudMineServer.APP_ID, FakeCloudMineServer.API_KEY, server.getBaseUrl());
+            ConnectionPool pool = service.getConnectionPool();
+            assertNotNull(pool);
+            long leases = pool.getLeaseTimes().getCount();
+            assertTrue(service.insert("{\"config\":{\"theme\":\"dark\"}}").wasSuccess());
+            assertTrue(pool.getLeaseTimes().getCount() > leases);
+            assertSame(pool, service.getUserWebService(new CMSessionToken("token", new Date())).getConnectionPool());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testBlockingFileLoadsAreCached() throws Exception {
+        FakeCloudMineServer server = new FakeCloudMineServer().start();
+        try {
+            CMWebService service = CMWebService.getService(FakeCloudMineServer.APP_ID, FakeCloudMineServer.API_KEY, server.getBaseUrl());
+            service.setResponseCache(new ResponseCache(new CMResponseCacheOptions()
+                    .setTimeToLive(CMResponseCacheOptions.Endpoint.FILES, TimeUnit.MINUTES.toMillis(1))));
+            assertTrue(service.insert(new CMFile(new byte[] {1, 2, 3}, "logo", "image/png")).wasSuccess());
+
+            assertArrayEquals(new byte[] {1, 2, 3}, service.loadFile("logo").getFile().getFileContents());
+            long requests = server.getRequestCount("binary");
+            assertArrayEquals(new byte[] {1, 2, 3}, service.loadFile("logo").getFile().getFileContents());
+            assertEquals(requests, server.getRequestCount("binary"));
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.cloudmine.api.rest;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ConnectionPoolTest {
+    private static final HttpRoute ROUTE = new HttpRoute(new HttpHost("api.cloudmine.me", 443, "https"), null, true);
+
+    private final ConnectionPool pool = new ConnectionPool();
+
+    @After
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        pool.setMaxTotal(5);
+        pool.setDefaultMaxPerRoute(3);
+        pool.setMaxPerRoute(ROUTE, 2);
+        assertEquals(5, pool.getMaxTotal());
+        assertEquals(3, pool.getDefaultMaxPerRoute());
+
+        ClientConnectionManager manager = pool.getConnectionManager();
+        ManagedClientConnection connection = manager.requestConnection(ROUTE, null).getConnection(1, TimeUnit.SECONDS);
+        ConnectionPool.Stats total = pool.getStats();
+        assertEquals(1, total.getLeased());
+        assertEquals(0, total.getAvailable());
+        assertEquals(0, total.getPending());
+        assertEquals(5, total.getMax());
+        assertEquals(2, pool.getStats(ROUTE).getMax());
+
+        manager.releaseConnection(connection, 0, TimeUnit.MILLISECONDS);
+        assertEquals(0, pool.getStats().getLeased());
+        try {
+            pool.setMaxTotal(0);
+            fail();
+        } catch(IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testLeaseTimes() throws Exception {
+        TracingHttpClient client = new TracingHttpClient(pool);
+        ManagedClientConnection connection = client.getConnectionManager().requestConnection(ROUTE, null).getConnection(1, TimeUnit.SECONDS);
+        client.getConnectionManager().releaseConnection(connection, 0, TimeUnit.MILLISECONDS);
+        assertEquals(1, pool.getLeaseTimes().getCount());
+    }
+
+    @Test
+    public void testKeepAlive() {
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        assertEquals(ConnectionPool.NOT_AVAILABLE, pool.getKeepAlive());
+        assertEquals(-1, pool.getKeepAliveStrategy().getKeepAliveDuration(response, new BasicHttpContext()));
+
+        pool.setKeepAlive(30, TimeUnit.SECONDS);
+        assertEquals(30000, pool.getKeepAliveStrategy().getKeepAliveDuration(response, new BasicHttpContext()));
+        response.addHeader("Keep-Alive", "timeout=5");
+        assertEquals(5000, pool.getKeepAliveStrategy().getKeepAliveDuration(response, new BasicHttpContext()));
+    }
+
+    @Test
+    public void testIdleEviction() {
+        assertEquals(0, pool.getIdleEviction());
+        pool.setIdleEviction(10, TimeUnit.SECONDS);
+        assertEquals(10000, pool.getIdleEviction());
+        pool.setIdleEviction(0, TimeUnit.SECONDS);
+        assertEquals(0, pool.getIdleEviction());
+    }
+}
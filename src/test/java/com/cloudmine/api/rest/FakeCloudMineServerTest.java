@@ -0,0 +1,138 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.CMFile;
+import com.cloudmine.api.JavaCMUser;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.metrics.CMMetrics;
+import com.cloudmine.api.metrics.EndpointMetrics;
+import com.cloudmine.api.metrics.InMemoryMetricsRecorder;
+import com.cloudmine.api.rest.callbacks.CMObjectResponseCallback;
+import com.cloudmine.api.rest.response.CMObjectResponse;
+import com.cloudmine.api.rest.response.LoginResponse;
+import com.cloudmine.api.rest.response.ObjectModificationResponse;
+import com.cloudmine.api.rest.response.ResponseValue;
+import com.cloudmine.test.FakeCloudMineServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class FakeCloudMineServerTest {
+
+    private FakeCloudMineServer server;
+    private ApacheThreadedHttpClient asyncClient;
+    private CMWebService service;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new FakeCloudMineServer().start();
+        asyncClient = new ApacheThreadedHttpClient();
+        service = new CMWebService(new CMURLBuilder(server.getBaseUrl(), FakeCloudMineServer.APP_ID), FakeCloudMineServer.API_KEY, asyncClient);
+    }
+
+    @After
+    public void stopServer() {
+        CMMetrics.setRecorder(null);
+        asyncClient.getConnectionPool().shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testObjects() {
+        SimpleCMObject venue = new SimpleCMObject("venue");
+        venue.add("name", "Cafe");
+        venue.add("rating", 4);
+        ObjectModificationResponse inserted = service.insert(venue.transportableRepresentation());
+        assertEquals(ResponseValue.CREATED, inserted.getKeyResponse("venue"));
+
+        CMObjectResponse loaded = service.loadObject("venue");
+        assertEquals("Cafe", ((SimpleCMObject) loaded.getCMObject("venue")).getString("name"));
+        assertEquals(1, service.loadSearch("[rating >= 4]").getObjects().size());
+        assertTrue(service.loadSearch("[rating > 4]").getObjects().isEmpty());
+
+        assertEquals(ResponseValue.UPDATED, service.update("{\"venue\":{\"rating\":5}}").getKeyResponse("venue"));
+        SimpleCMObject updated = (SimpleCMObject) service.loadObject("venue").getCMObject("venue");
+        assertEquals("Cafe", updated.getString("name"));
+        assertEquals(Integer.valueOf(5), updated.getInteger("rating"));
+
+        assertEquals(ResponseValue.DELETED, service.delete("venue").getKeyResponse("venue"));
+        assertTrue(service.loadAllObjects().getObjects().isEmpty());
+        assertEquals(2, server.getRequestCount("search"));
+    }
+
+    @Test
+    public void testUsersAndFiles() {
+        JavaCMUser user = new JavaCMUser("local@example.com", "secret");
+        assertTrue(service.insert(user).wasSuccess());
+        assertFalse(service.login(new JavaCMUser("local@example.com", "wrong")).wasSuccess());
+        LoginResponse login = service.login(new JavaCMUser("local@example.com", "secret"));
+        assertTrue(login.wasSuccess());
+
+        UserCMWebService userService = service.getUserWebService(login.getSessionToken());
+        userService.insert("{\"private\":{\"note\":\"mine\"}}");
+        assertNotNull(userService.loadObject("private").getCMObject("private"));
+        assertNull(service.loadObject("private").getCMObject("private"));
+
+        byte[] contents = new byte[] {1, 2, 3, 4};
+        assertTrue(service.insert(new CMFile(contents, "picture", "image/png")).wasSuccess());
+        CMFile file = service.loadFile("picture").getFile();
+        assertArrayEquals(contents, file.getFileContents());
+        assertEquals("image/png", file.getMimeType());
+    }
+
+    @Test
+    public void testFaultsAndPaging() {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        CMMetrics.setRecorder(recorder);
+        server.populate(25, 1000);
+        server.failNext(1, 503);
+        assertFalse(service.loadAllObjects().wasSuccess());
+        CMObjectResponse loaded = service.loadAllObjects();
+        assertEquals(25, loaded.getObjects().size());
+        assertTrue(loaded.getObjects().get(0).transportableRepresentation().length() > 1000);
+
+        EndpointMetrics text = recorder.snapshot("text", "GET");
+        assertEquals(2, text.getCount());
+        assertEquals(1, text.getFailures());
+        assertEquals(Long.valueOf(1), text.getStatusCodes().get(503));
+    }
+
+    @Test
+    public void testAsyncWithLatency() throws Exception {
+        server.populate(10, 10);
+        server.setLatency(20, 30, TimeUnit.MILLISECONDS);
+        final CountDownLatch loaded = new CountDownLatch(3);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        for(int i = 0; i < 3; i++) {
+            service.asyncLoadObjects(Arrays.asList("object" + i), new CMObjectResponseCallback() {
+                @Override
+                public void onCompletion(CMObjectResponse response) {
+                    if(response.getObjects().size() != 1) {
+                        failure.set(response.getMessageBody());
+                    }
+                    loaded.countDown();
+                }
+
+                @Override
+                public void onFailure(Throwable error, String message) {
+                    failure.set(message);
+                    loaded.countDown();
+                }
+            });
+        }
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(3, asyncClient.getConnectionPool().getLeaseTimes().getCount());
+    }
+}
@@ -0,0 +1,73 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.rest.callbacks.CMResponseCallback;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class JavaHeaderFactoryTest {
+
+    private static String value(Set<Header> headers, String name) {
+        for(Header header : headers) {
+            if(header.getName().equals(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testCachedHeaders() {
+        JavaHeaderFactory factory = new JavaHeaderFactory() {
+            @Override
+            protected String getDeviceIdentifier() {
+                return "device";
+            }
+        };
+        ResponseTimeDataStore.getContentsAsStringAndClearMap();
+        Set<Header> headers = factory.getCloudMineHeaders("key");
+        assertSame(headers, factory.getCloudMineHeaders("key"));
+        assertEquals("key", value(headers, HeaderFactory.API_HEADER_KEY));
+        assertEquals(JavaHeaderFactory.CLOUD_MINE_AGENT, value(headers, HeaderFactory.AGENT_HEADER_KEY));
+        assertEquals("device", value(headers, HeaderFactory.DEVICE_HEADER_KEY));
+
+        Set<Header> otherKey = factory.getCloudMineHeaders("other");
+        assertEquals("other", value(otherKey, HeaderFactory.API_HEADER_KEY));
+
+        CMResponseCallback callback = new CMResponseCallback();
+        callback.setStartTime(System.currentTimeMillis());
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        response.setHeader(HeaderFactory.REQUEST_ID_KEY, "request");
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callback, response);
+        Set<Header> withTimes = factory.getCloudMineHeaders("other");
+        assertNotSame(otherKey, withTimes);
+        assertTrue(value(withTimes, HeaderFactory.DEVICE_HEADER_KEY).startsWith("device;request:"));
+        assertSame(otherKey, factory.getCloudMineHeaders("other"));
+    }
+
+    @Test
+    public void testOverriddenDeviceHeader() {
+        JavaHeaderFactory factory = new JavaHeaderFactory() {
+            @Override
+            protected Header getDeviceIdentifierHeader() {
+                return new BasicHeader(DEVICE_HEADER_KEY, "custom");
+            }
+        };
+        ResponseTimeDataStore.getContentsAsStringAndClearMap();
+        assertEquals("custom", value(factory.getCloudMineHeaders("key"), HeaderFactory.DEVICE_HEADER_KEY));
+        assertEquals("custom", value(factory.getCloudMineHeaders("key"), HeaderFactory.DEVICE_HEADER_KEY));
+    }
+}
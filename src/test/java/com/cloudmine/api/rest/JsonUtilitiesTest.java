@@ -301,4 +301,28 @@ public class JsonUtilitiesTest {
     }
 
 
+
+    @Test
+    public void testStringInterning() {
+        String json = "{\"first\":{\"status\":\"active\",\"description\":\"a long description that should not be interned\"}," +
+                "\"second\":{\"status\":\"active\",\"description\":\"a long description that should not be interned\"}}";
+        Map<String, Object> notInterned = JsonUtilities.jsonToMap(json);
+        assertNotSame(((Map) notInterned.get("first")).get("status"), ((Map) notInterned.get("second")).get("status"));
+
+        JsonUtilities.setStringInterner(new StringInterner(64, 10));
+        try {
+            Map<String, Object> interned = JsonUtilities.jsonToMap(json);
+            Map first = (Map) interned.get("first");
+            Map second = (Map) interned.get("second");
+            assertEquals("active", first.get("status"));
+            assertSame(first.get("status"), second.get("status"));
+            assertEquals(first.get("description"), second.get("description"));
+            assertNotSame(first.get("description"), second.get("description"));
+
+            SimpleCMObject object = (SimpleCMObject) JsonUtilities.jsonToClassMap(json).get("first");
+            assertSame(second.get("status"), object.getString("status"));
+        } finally {
+            JsonUtilities.setStringInterner(null);
+        }
+    }
 }
@@ -0,0 +1,204 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.metrics.CMMetrics;
+import com.cloudmine.api.metrics.EndpointMetrics;
+import com.cloudmine.api.metrics.InMemoryMetricsRecorder;
+import com.cloudmine.api.metrics.RequestMetrics;
+import com.cloudmine.api.metrics.RequestPhase;
+import com.cloudmine.api.metrics.RequestTrace;
+import com.cloudmine.api.metrics.RequestTraceListener;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class MeasuredRequestTest {
+
+    @After
+    public void stopRecording() {
+        CMMetrics.setRecorder(null);
+        CMMetrics.setTraceListener(null);
+    }
+
+    @Test
+    public void testMeasurements() throws Exception {
+        InMemoryMetricsRecorder recorder = new InMemoryMetricsRecorder();
+        CMMetrics.setRecorder(recorder);
+        HttpPut put = new HttpPut("https://api.cloudmine.me/v1/app/abc/user/text");
+        put.setEntity(new StringEntity("{\"a\":1}"));
+        MeasuredRequest measured = new MeasuredRequest(put, System.nanoTime());
+        measured.sending();
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        response.setEntity(new StringEntity("{\"success\":{}}"));
+        measured.received(response);
+        assertEquals("{\"success\":{}}", EntityUtils.toString(response.getEntity()));
+        measured.parsed();
+        measured.finished(2);
+        measured.finished(2);
+
+        EndpointMetrics text = recorder.snapshot("text", "PUT");
+        assertEquals(1, text.getCount());
+        assertEquals(2, text.getRetries());
+        assertEquals(7, text.getRequestBytes());
+        assertEquals(14, text.getResponseBytes());
+        assertEquals(Long.valueOf(1), text.getStatusCodes().get(200));
+        assertEquals(1, text.getPoolWait().getCount());
+        assertEquals(1, text.getParseTime().getCount());
+    }
+
+    @Test
+    public void testNotRecording() throws Exception {
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        StringEntity entity = new StringEntity("{}", "UTF-8");
+        response.setEntity(entity);
+        MeasuredRequest measured = new MeasuredRequest(new HttpPut("https://api.cloudmine.me/v1/app/abc/text"), System.nanoTime());
+        measured.sending();
+        measured.received(response);
+        assertSame(entity, response.getEntity());
+    }
+
+    @Test
+    public void testTracing() throws Exception {
+        final List<String> events = new ArrayList<String>();
+        final List<RequestTrace> ended = new ArrayList<RequestTrace>();
+        CMMetrics.setTraceListener(new RequestTraceListener() {
+            @Override
+            public void onPhaseStart(RequestTrace trace, RequestPhase phase) {
+                events.add("start " + phase);
+            }
+
+            @Override
+            public void onPhaseEnd(RequestTrace trace, RequestPhase phase, long durationNanos) {
+                assertTrue(durationNanos >= 0);
+                events.add("end " + phase);
+                if(phase == RequestPhase.PARSE) {
+                    throw new IllegalStateException("listeners can't break requests");
+                }
+            }
+
+            @Override
+            public void onRequestEnd(RequestTrace trace) {
+                ended.add(trace);
+            }
+        });
+        MeasuredRequest measured = new MeasuredRequest(new HttpGet("https://api.cloudmine.me/v1/app/abc/text"), System.nanoTime());
+        RequestTrace trace = measured.getTrace();
+        assertEquals("text", trace.getEndpoint());
+        assertNull(RequestTrace.current());
+
+        measured.started();
+        assertSame(trace, RequestTrace.current());
+        measured.sending();
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 404, "Not Found"));
+        byte[] body = "{\"errors\":[]}".getBytes("UTF-8");
+        InputStreamEntity entity = new InputStreamEntity(new ByteArrayInputStream(body), body.length);
+        entity.setContentType("application/json; charset=utf-8");
+        response.setEntity(entity);
+        measured.received(response);
+        assertTrue(response.getEntity().isRepeatable());
+        measured.parsing();
+        assertEquals("{\"errors\":[]}", EntityUtils.toString(response.getEntity()));
+        measured.parsed();
+        measured.callingBack();
+        assertSame(trace, RequestTrace.current());
+        measured.ended(null);
+        measured.ended(new Exception("ignored"));
+
+        assertNull(RequestTrace.current());
+        assertEquals(1, ended.size());
+        assertNull(trace.getFailure());
+        assertEquals(404, trace.getStatusCode());
+        for(RequestPhase phase : new RequestPhase[] {RequestPhase.QUEUE_WAIT, RequestPhase.BODY_READ, RequestPhase.PARSE, RequestPhase.CALLBACK}) {
+            assertTrue(trace.getPhaseNanos(phase) >= 0);
+            assertTrue(events.contains("start " + phase));
+            assertTrue(events.contains("end " + phase));
+        }
+        assertEquals(RequestMetrics.NOT_MEASURED, trace.getPhaseNanos(RequestPhase.CONNECT));
+    }
+
+    @Test
+    public void testTracingStreamsFiles() throws Exception {
+        final List<RequestPhase> started = new ArrayList<RequestPhase>();
+        CMMetrics.setTraceListener(new RequestTraceListener() {
+            @Override
+            public void onPhaseStart(RequestTrace trace, RequestPhase phase) {
+                started.add(phase);
+            }
+
+            @Override
+            public void onPhaseEnd(RequestTrace trace, RequestPhase phase, long durationNanos) {
+            }
+
+            @Override
+            public void onRequestEnd(RequestTrace trace) {
+            }
+        });
+        byte[] body = new byte[] {1, 2, 3};
+        for(String url : new String[] {"https://api.cloudmine.me/v1/app/abc/user/binary/avatar", "https://api.cloudmine.me/v1/app/abc/run/export"}) {
+            MeasuredRequest measured = new MeasuredRequest(new HttpGet(url), 0);
+            measured.started();
+            HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+            InputStreamEntity entity = new InputStreamEntity(new ByteArrayInputStream(body), body.length);
+            entity.setContentType(url.contains("binary") ? "application/json" : "application/octet-stream");
+            response.setEntity(entity);
+            measured.received(response);
+            assertSame(entity, response.getEntity());
+            measured.ended(null);
+        }
+        assertFalse(started.contains(RequestPhase.BODY_READ));
+    }
+
+    @Test
+    public void testListenersAreCalledOutsideTheTrace() throws Exception {
+        final List<String> read = new ArrayList<String>();
+        CMMetrics.setTraceListener(new RequestTraceListener() {
+            @Override
+            public void onPhaseStart(final RequestTrace trace, RequestPhase phase) {
+                //another thread reading the trace must not wait for the listener
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        trace.getPhaseNanos(RequestPhase.PARSE);
+                        read.add("read");
+                    }
+                });
+                reader.start();
+                try {
+                    reader.join(TimeUnit.SECONDS.toMillis(5));
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onPhaseEnd(RequestTrace trace, RequestPhase phase, long durationNanos) {
+            }
+
+            @Override
+            public void onRequestEnd(RequestTrace trace) {
+            }
+        });
+        MeasuredRequest measured = new MeasuredRequest(new HttpGet("https://api.cloudmine.me/v1/app/abc/text"), 0);
+        measured.parsing();
+        assertEquals(1, read.size());
+    }
+}
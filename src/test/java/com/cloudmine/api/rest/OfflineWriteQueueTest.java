@@ -0,0 +1,228 @@
+package com.cloudmine.api.rest;
+
+import com.cloudmine.api.CMObject;
+import com.cloudmine.api.ObjectLevel;
+import com.cloudmine.api.SimpleCMObject;
+import com.cloudmine.api.rest.callbacks.CMCallback;
+import com.cloudmine.api.rest.callbacks.Callback;
+import com.cloudmine.api.rest.options.CMWriteQueueOptions;
+import com.cloudmine.api.rest.response.ObjectModificationResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class OfflineWriteQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static class RecordingSender implements OfflineWriteQueue.Sender {
+        final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @Override
+        public void insert(ObjectLevel level, Collection<CMObject> objects, Callback<ObjectModificationResponse> callback) {
+            StringBuilder request = new StringBuilder("insert " + level);
+            for(CMObject object : objects) {
+                request.append(' ').append(object.getObjectId()).append('=').append(((SimpleCMObject) object).getString("name"));
+            }
+            respond(request.toString(), callback);
+        }
+
+        @Override
+        public void delete(ObjectLevel level, Collection<String> objectIds, Callback<ObjectModificationResponse> callback) {
+            StringBuilder request = new StringBuilder("delete " + level);
+            for(String objectId : objectIds) {
+                request.append(' ').append(objectId);
+            }
+            respond(request.toString(), callback);
+        }
+
+        private void respond(String request, Callback<ObjectModificationResponse> callback) {
+            if(failuresLeft.getAndDecrement() > 0) {
+                callback.onFailure(new Exception("Unreachable"), "Unreachable");
+                return;
+            }
+            requests.add(request);
+            callback.onCompletion(new ObjectModificationResponse("{\"success\":{},\"errors\":{}}", 200));
+        }
+    }
+
+    private static SimpleCMObject object(String objectId, String name) {
+        SimpleCMObject object = new SimpleCMObject(objectId);
+        object.add("name", name);
+        return object;
+    }
+
+    private static void awaitEmpty(OfflineWriteQueue queue) throws InterruptedException {
+        for(int i = 0; i < 500 && queue.getPendingCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    @Test
+    public void testOrderedBatches() throws Exception {
+        OfflineWriteQueue queue = new OfflineWriteQueue(new File(folder.getRoot(), "queue.log"));
+        final AtomicInteger completions = new AtomicInteger();
+        Callback<ObjectModificationResponse> callback = new CMCallback<ObjectModificationResponse>(ObjectModificationResponse.CONSTRUCTOR) {
+            @Override
+            public void onCompletion(ObjectModificationResponse response) {
+                completions.incrementAndGet();
+            }
+        };
+        queue.enqueueSave(object("a", "first"), ObjectLevel.APPLICATION, callback);
+        queue.enqueueSave(object("b", "second"), ObjectLevel.APPLICATION, callback);
+        queue.enqueueSave(object("a", "third"), ObjectLevel.APPLICATION, callback);
+        queue.enqueueDelete("b", ObjectLevel.APPLICATION, callback);
+        queue.enqueueSave(object("c", "fourth"), ObjectLevel.USER, null);
+        assertEquals(5, queue.getPendingCount());
+
+        RecordingSender sender = new RecordingSender();
+        queue.setSender(sender);
+        awaitEmpty(queue);
+        assertEquals(3, sender.requests.size());
+        assertEquals("insert APPLICATION b=second a=third", sender.requests.get(0));
+        assertEquals("delete APPLICATION b", sender.requests.get(1));
+        assertEquals("insert USER c=fourth", sender.requests.get(2));
+        assertEquals(4, completions.get());
+        queue.close();
+    }
+
+    @Test
+    public void testRecoversFromInterruptedRewrite() throws Exception {
+        File file = new File(folder.getRoot(), "queue.log");
+        File rewrite = new File(folder.getRoot(), "queue.log.rewrite");
+        OfflineWriteQueue queue = new OfflineWriteQueue(file);
+        queue.enqueueSave(object("a", "saved"), ObjectLevel.APPLICATION, null);
+        queue.enqueueDelete("b", ObjectLevel.USER, null);
+        queue.close();
+
+        //the log was deleted to make way for a finished rewrite that was never renamed
+        assertTrue(file.renameTo(rewrite));
+        queue = new OfflineWriteQueue(file);
+        assertEquals(2, queue.getPendingCount());
+        assertFalse(rewrite.exists());
+        queue.close();
+
+        //an unfinished rewrite next to the log is discarded
+        assertTrue(new File(folder.getRoot(), "partial").createNewFile());
+        assertTrue(new File(folder.getRoot(), "partial").renameTo(rewrite));
+        queue = new OfflineWriteQueue(file);
+        assertEquals(2, queue.getPendingCount());
+        assertFalse(rewrite.exists());
+        queue.close();
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws Exception {
+        File file = new File(folder.getRoot(), "queue.log");
+        OfflineWriteQueue queue = new OfflineWriteQueue(file);
+        queue.enqueueSave(object("a", "saved"), ObjectLevel.APPLICATION, null);
+        queue.enqueueDelete("b", ObjectLevel.USER, null);
+        queue.close();
+
+        queue = new OfflineWriteQueue(file);
+        assertEquals(2, queue.getPendingCount());
+        RecordingSender sender = new RecordingSender();
+        queue.setSender(sender);
+        awaitEmpty(queue);
+        assertEquals("insert APPLICATION a=saved", sender.requests.get(0));
+        assertEquals("delete USER b", sender.requests.get(1));
+        queue.close();
+
+        queue = new OfflineWriteQueue(file);
+        assertEquals(0, queue.getPendingCount());
+        queue.close();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        OfflineWriteQueue queue = new OfflineWriteQueue(new File(folder.getRoot(), "queue.log"),
+                new CMWriteQueueOptions().setRetryDelay(5, 20).setMaximumBatchSize(1));
+        RecordingSender sender = new RecordingSender();
+        sender.failuresLeft.set(3);
+        queue.setSender(sender);
+        queue.enqueueSave(object("a", "first"), ObjectLevel.APPLICATION, null);
+        queue.enqueueSave(object("b", "second"), ObjectLevel.APPLICATION, null);
+        awaitEmpty(queue);
+        assertEquals(2, sender.requests.size());
+        assertEquals("insert APPLICATION a=first", sender.requests.get(0));
+        assertEquals("insert APPLICATION b=second", sender.requests.get(1));
+        queue.close();
+    }
+
+    @Test
+    public void testConcurrentEnqueueAndCompaction() throws Exception {
+        File file = new File(folder.getRoot(), "queue.log");
+        //a tiny maximum size compacts the log after every sent batch, while other threads are still enqueueing
+        final OfflineWriteQueue queue = new OfflineWriteQueue(file, new CMWriteQueueOptions().setMaximumLogSize(1).setMaximumBatchSize(3));
+        RecordingSender sender = new RecordingSender();
+        queue.setSender(sender);
+        final int threads = 4;
+        final int perThread = 200;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for(int i = 0; i < perThread; i++) {
+                            String objectId = thread + "-" + i;
+                            queue.enqueueSave(object(objectId, objectId), ObjectLevel.APPLICATION, null);
+                        }
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        queue.close();
+
+        //every write was either sent or is still in the log
+        Set<String> written = new HashSet<String>();
+        synchronized(sender.requests) {
+            for(String request : sender.requests) {
+                for(String write : request.substring("insert APPLICATION ".length()).split(" ")) {
+                    written.add(write.substring(0, write.indexOf('=')));
+                }
+            }
+        }
+        OfflineWriteQueue reopened = new OfflineWriteQueue(file);
+        RecordingSender replay = new RecordingSender();
+        reopened.setSender(replay);
+        awaitEmpty(reopened);
+        for(String request : replay.requests) {
+            for(String write : request.substring("insert APPLICATION ".length()).split(" ")) {
+                written.add(write.substring(0, write.indexOf('=')));
+            }
+        }
+        reopened.close();
+        assertEquals(threads * perThread, written.size());
+    }
+}
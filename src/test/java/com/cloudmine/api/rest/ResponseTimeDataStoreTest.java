@@ -3,13 +3,24 @@ package com.cloudmine.api.rest;
 import com.cloudmine.api.rest.callbacks.CMResponseCallback;
 import com.cloudmine.api.rest.callbacks.Callback;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.After;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * <br>
@@ -26,6 +37,115 @@ public class ResponseTimeDataStoreTest {
 //this test kind of sucks but its going to be tested more in depth in an integration test
     }
 
+    @After
+    public void resetStore() {
+        ResponseTimeDataStore.setCapacity(ResponseTimeDataStore.DEFAULT_CAPACITY);
+        ResponseTimeDataStore.setMaximumPayloadLength(ResponseTimeDataStore.DEFAULT_MAXIMUM_PAYLOAD_LENGTH);
+    }
+
+    @Test
+    public void testBoundedCapacity() {
+        ResponseTimeDataStore.setCapacity(3);
+        assertTrue(ResponseTimeDataStore.isEmpty());
+        for(int i = 0; i < 5; i++) {
+            ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(0), response("r" + i));
+        }
+        assertFalse(ResponseTimeDataStore.isEmpty());
+        String content = ResponseTimeDataStore.getContentsAsStringAndClearMap();
+        assertTrue(content, content.matches("r2:\\d+,r3:\\d+,r4:\\d+"));
+        assertTrue(ResponseTimeDataStore.isEmpty());
+        assertEquals("", ResponseTimeDataStore.getContentsAsStringAndClearMap());
+    }
+
+    @Test
+    public void testMaximumPayload() {
+        ResponseTimeDataStore.setMaximumPayloadLength(10);
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(System.currentTimeMillis() - 5), response("a"));
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(System.currentTimeMillis() - 5), response("b"));
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(System.currentTimeMillis() - 5), response("c"));
+        List<String> sent = new ArrayList<String>();
+        for(int i = 0; i < 3 && !ResponseTimeDataStore.isEmpty(); i++) {
+            String content = ResponseTimeDataStore.getContentsAsStringAndClearMap();
+            assertTrue(content, content.length() <= 10);
+            sent.addAll(Arrays.asList(content.split(ResponseTimeDataStore.ENTRY_SEPARATOR)));
+        }
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(0).startsWith("a:"));
+        assertTrue(sent.get(2).startsWith("c:"));
+    }
+
+    @Test
+    public void testDropsResponseTimesThatNeverFit() {
+        ResponseTimeDataStore.setMaximumPayloadLength(10);
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(System.currentTimeMillis() - 5), response("a-much-too-long-request-id"));
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(System.currentTimeMillis() - 5), response("b"));
+        String content = ResponseTimeDataStore.getContentsAsStringAndClearMap();
+        assertTrue(content, content.startsWith("b:"));
+        assertTrue(ResponseTimeDataStore.isEmpty());
+
+        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(System.currentTimeMillis() - 5), response("another-much-too-long-id"));
+        assertEquals("", ResponseTimeDataStore.getContentsAsStringAndClearMap());
+        assertTrue(ResponseTimeDataStore.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentDrains() throws InterruptedException {
+        ResponseTimeDataStore.setCapacity(100000);
+        final Set<String> drained = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        List<Thread> threads = new ArrayList<Thread>();
+        for(int t = 0; t < 4; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 2000; i++) {
+                        ResponseTimeDataStore.extractAndStoreResponseTimeInformation(callbackStartedAt(0), response(thread + "-" + i));
+                    }
+                    done.countDown();
+                }
+            }));
+        }
+        Runnable drainer = new Runnable() {
+            @Override
+            public void run() {
+                while(done.getCount() > 0 || !ResponseTimeDataStore.isEmpty()) {
+                    String content = ResponseTimeDataStore.getContentsAsStringAndClearMap();
+                    if(content.length() > 0) {
+                        for(String entry : content.split(ResponseTimeDataStore.ENTRY_SEPARATOR)) {
+                            if(!drained.add(entry.substring(0, entry.indexOf(ResponseTimeDataStore.KEY_VALUE_SEPERATOR)))) {
+                                duplicates.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        threads.add(new Thread(drainer));
+        threads.add(new Thread(drainer));
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(8000, drained.size());
+    }
+
+    private Callback callbackStartedAt(long startTime) {
+        CMResponseCallback cmResponseCallback = new CMResponseCallback();
+        cmResponseCallback.setStartTime(startTime);
+        return cmResponseCallback;
+    }
+
+    private HttpResponse response(String requestId) {
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        response.setHeader(HeaderFactory.REQUEST_ID_KEY, requestId);
+        return response;
+    }
+
     private Callback fakeCallback() {
         CMResponseCallback cmResponseCallback = new CMResponseCallback();
         cmResponseCallback.setStartTime(System.currentTimeMillis());
@@ -0,0 +1,54 @@
+package com.cloudmine.api.rest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class StringInternerTest {
+
+    @Test
+    public void testIntern() {
+        StringInterner interner = new StringInterner(10, 5);
+        assertEquals(16, interner.getCapacity());
+        String first = new String("value");
+        String second = new String("value");
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertNull(interner.intern(null));
+    }
+
+    @Test
+    public void testInternValue() {
+        StringInterner interner = new StringInterner(16, 5);
+        String shortValue = interner.internValue(new String("short"));
+        assertSame(shortValue, interner.internValue(new String("short")));
+
+        String longValue = new String("too long");
+        assertSame(longValue, interner.internValue(longValue));
+        assertNotSame(longValue, interner.internValue(new String("too long")));
+
+        String longKey = interner.internKey(new String("too long"));
+        assertSame(longKey, interner.internKey(new String("too long")));
+    }
+
+    @Test
+    public void testInternCharacters() {
+        StringInterner interner = new StringInterner(16, 5);
+        char[] buffer = "xxshortxx".toCharArray();
+        String value = interner.internValue(buffer, 2, 5);
+        assertEquals("short", value);
+        assertSame(value, interner.internValue(buffer, 2, 5));
+        assertSame(value, interner.internValue(new String("short")));
+        assertEquals("shortx", interner.internValue(buffer, 2, 6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new StringInterner(0, 5);
+    }
+}
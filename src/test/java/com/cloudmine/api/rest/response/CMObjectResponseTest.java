@@ -1,15 +1,22 @@
 package com.cloudmine.api.rest.response;
 
 import com.cloudmine.api.CMObject;
+import com.cloudmine.api.LazySimpleCMObject;
+import com.cloudmine.api.SimpleCMObject;
 import com.cloudmine.api.persistance.ClassNameRegistry;
 import com.cloudmine.api.Distance;
 import com.cloudmine.api.DistanceUnits;
 import com.cloudmine.api.rest.JsonUtilities;
+import com.cloudmine.api.rest.options.CMDecodeOptions;
+import com.cloudmine.api.rest.options.CMRequestOptions;
 import com.cloudmine.test.ExtendedCMObject;
 import com.cloudmine.test.ExtendedCMUser;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static junit.framework.Assert.*;
 
@@ -81,4 +88,67 @@ public class CMObjectResponseTest {
         assertNotNull(user);
         assertEquals(address, user.getAddress());
     }
+
+    @Test
+    public void testLazyDecoding() {
+        String responseBody = "{\"success\":{" +
+                "\"simpleKey\":{\"name\":\"simple\",\"number\":5,\"__access__\":[]}," +
+                "\"userKey\":{\"__type__\":\"user\",\"__id__\":\"userKey\"}}, \"errors\":{}}";
+        CMObjectResponse response = new CMObjectResponse(responseBody, 200, CMDecodeOptions.LAZY);
+        assertEquals(2, response.getObjects().size());
+
+        SimpleCMObject simple = response.getCMObject("simpleKey", SimpleCMObject.class);
+        assertTrue(simple instanceof LazySimpleCMObject);
+        assertEquals("simpleKey", simple.getObjectId());
+        assertEquals("simple", simple.getString("name"));
+        assertEquals(Integer.valueOf(5), simple.getInteger("number"));
+
+        CMObject user = response.getCMObject("userKey");
+        assertNotNull(user);
+        assertFalse(user instanceof SimpleCMObject);
+        assertEquals("userKey", user.getObjectId());
+    }
+
+    @Test
+    public void testProjection() {
+        String responseBody = "{\"errors\":{\"missing\":\"not found\"}, \"success\":{" +
+                "\"first\":{\"name\":\"one\",\"big\":{\"nested\":[1,2,3]},\"number\":1}," +
+                "\"second\":{\"name\":\"two\",\"number\":2,\"list\":[{\"a\":1}]}}}";
+        CMObjectResponse response = new CMObjectResponse(responseBody, 200, CMDecodeOptions.projection("name"));
+        assertEquals(2, response.getObjects().size());
+
+        SimpleCMObject first = response.getCMObject("first", SimpleCMObject.class);
+        assertFalse(first instanceof LazySimpleCMObject);
+        assertEquals("first", first.getObjectId());
+        assertEquals("one", first.getString("name"));
+        assertFalse(first.hasField("big"));
+        assertFalse(first.hasField("number"));
+
+        CMRequestOptions options = new CMRequestOptions(CMDecodeOptions.LAZY).setProjection("number");
+        response = new CMObjectResponse(responseBody, 200, options.getDecodeOptions());
+        SimpleCMObject second = response.getCMObject("second", SimpleCMObject.class);
+        assertTrue(second instanceof LazySimpleCMObject);
+        assertEquals(Integer.valueOf(2), second.getInteger("number"));
+        assertFalse(second.hasField("name"));
+        assertFalse(second.hasField("list"));
+    }
+
+    @Test
+    public void testLocalObjectsWithDistances() {
+        SimpleCMObject far = new SimpleCMObject("far");
+        SimpleCMObject near = new SimpleCMObject("near");
+        near.add("name", "near");
+        Map<String, Distance> distances = new HashMap<String, Distance>();
+        distances.put("near", new Distance(1, DistanceUnits.mi));
+        distances.put("far", new Distance(2.5, DistanceUnits.mi));
+        CMObjectResponse response = new CMObjectResponse(Arrays.asList(near, far), distances);
+
+        assertTrue(response.wasSuccess());
+        List<CMObject> objects = response.getObjects();
+        assertEquals(2, objects.size());
+        assertSame(near, objects.get(0));
+        assertSame(far, objects.get(1));
+        assertEquals(new Distance(1, DistanceUnits.mi), response.getDistanceFor("near"));
+        assertEquals(new Distance(2.5, DistanceUnits.mi), response.getDistanceFor("far"));
+    }
 }
@@ -0,0 +1,102 @@
+package com.cloudmine.api.rest.response;
+
+import com.cloudmine.api.rest.options.CMColumnOptions;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class ColumnarResultTest {
+    private static final String RESPONSE = "{\"errors\":{}, \"success\":{" +
+            "\"a\":{\"price\":1.5,\"count\":3,\"status\":\"open\",\"ignored\":{\"deep\":[1,2]}}," +
+            "\"b\":{\"price\":2,\"count\":\"many\",\"status\":\"closed\"," +
+            "\"created\":{\"__class__\":\"datetime\",\"timestamp\":1000}}," +
+            "\"c\":{\"count\":7,\"status\":\"open\"}," +
+            "\"d\":{\"price\":null,\"status\":[\"not\",\"a\",\"string\"]}}}";
+    private static final CMColumnOptions COLUMNS = new CMColumnOptions()
+            .addDoubleColumn("price")
+            .addLongColumn("count")
+            .addLongColumn("created")
+            .addStringColumn("status");
+
+    @Test
+    public void testColumns() {
+        ColumnarResult result = ColumnarResult.fromJson(RESPONSE, SuccessErrorResponse.SUCCESS, COLUMNS);
+        assertEquals(4, result.getRowCount());
+        assertEquals("c", result.getObjectId(2));
+
+        ColumnarResult.DoubleColumn price = result.getDoubleColumn("price");
+        assertEquals(4, price.size());
+        assertEquals(2, price.getNullCount());
+        assertTrue(price.isNull(2));
+        assertTrue(price.isNull(3));
+        assertEquals(3.5, price.sum(), 0);
+        assertEquals(1.75, price.mean(), 0);
+        assertEquals(1.5, price.min(), 0);
+        assertEquals(2, price.max(), 0);
+
+        ColumnarResult.LongColumn count = result.getLongColumn("count");
+        assertTrue(count.isNull(1));
+        assertEquals(10, count.sum());
+        assertEquals(3, count.min());
+        assertArrayEquals(new long[]{3, 0, 7, 0}, count.toArray());
+
+        ColumnarResult.LongColumn created = result.getLongColumn("created");
+        assertEquals(1000, created.get(1));
+        assertEquals(3, created.getNullCount());
+
+        ColumnarResult.StringColumn status = result.getStringColumn("status");
+        assertEquals(2, status.getDictionary().size());
+        assertEquals("closed", status.get(1));
+        assertNull(status.get(3));
+        assertEquals(ColumnarResult.StringColumn.NULL_CODE, status.getCode(3));
+        assertArrayEquals(new int[]{2, 1}, status.countByCode());
+
+        assertNull(result.getDoubleColumn("status"));
+        assertNull(result.getColumn("ignored"));
+    }
+
+    @Test
+    public void testFilter() {
+        ColumnarResult result = ColumnarResult.fromJson(RESPONSE, SuccessErrorResponse.SUCCESS, COLUMNS);
+        BitSet open = result.getStringColumn("status").rowsEqualTo("open");
+        assertEquals(2, open.cardinality());
+        assertEquals(10, result.getLongColumn("count").sum(open));
+
+        BitSet cheap = result.getDoubleColumn("price").rowsBetween(0, 1.5);
+        cheap.and(open);
+        assertEquals(1, cheap.cardinality());
+        assertTrue(cheap.get(0));
+        assertTrue(result.getStringColumn("status").rowsEqualTo("missing").isEmpty());
+    }
+
+    @Test
+    public void testGrowth() {
+        StringBuilder json = new StringBuilder("{");
+        for(int i = 0; i < 100; i++) {
+            if(i > 0) json.append(",");
+            json.append("\"").append(i).append("\":{\"value\":").append(i).append("}");
+        }
+        json.append("}");
+        ColumnarResult result = ColumnarResult.fromJson(json.toString(), null,
+                new CMColumnOptions().addLongColumn("value").addStringColumn("missing"));
+        assertEquals(100, result.getRowCount());
+        assertEquals(4950, result.getLongColumn("value").sum());
+        assertEquals(100, result.getStringColumn("missing").getNullCount());
+    }
+
+    @Test
+    public void testResponse() {
+        ColumnarResponse response = new ColumnarResponse(RESPONSE, 200, COLUMNS);
+        assertEquals(4, response.getResult().getRowCount());
+
+        response = new ColumnarResponse("{\"errors\":[\"unauthorized\"]}", 401, COLUMNS);
+        assertEquals(0, response.getResult().getRowCount());
+    }
+}
@@ -0,0 +1,760 @@
+package com.cloudmine.test;
+
+import com.cloudmine.api.CMSessionToken;
+import com.cloudmine.api.JavaCMUser;
+import com.cloudmine.api.exceptions.InvalidRequestException;
+import com.cloudmine.api.query.LocalQuery;
+import com.cloudmine.api.rest.HeaderFactory;
+import com.cloudmine.api.rest.JsonUtilities;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in process stand in for the CloudMine service, so the whole SDK can be tested, benchmarked and load tested on
+ * one machine without network access or real credentials. It serves the data, search, file, account and push
+ * endpoints that {@link com.cloudmine.api.rest.CMURLBuilder} builds URLs for, from an in memory store; searches are
+ * evaluated with {@link LocalQuery}. Responses can be slowed down, failed, and padded out to realistic sizes.<br>
+ * Point the SDK at it with {@code CMWebService.getService(FakeCloudMineServer.APP_ID, FakeCloudMineServer.API_KEY,
+ * server.getBaseUrl())}. Only the parts of each endpoint the SDK uses are implemented; anything else gets a 404
+ * <br>
+ * Copyright CloudMine LLC. All rights reserved<br>
+ * See LICENSE file included with SDK for details.
+ */
+public class FakeCloudMineServer {
+    private static final Logger LOG = LoggerFactory.getLogger(FakeCloudMineServer.class);
+    public static final String APP_ID = "fa4ec10dd0e5412d9e1b2c3a4f5e6d7c";
+    public static final String API_KEY = "FAKE0API0KEY0FOR0LOCAL0TESTING00";
+    private static final String APP_LEVEL = "";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static class StoredFile {
+        private final byte[] contents;
+        private final String contentType;
+
+        private StoredFile(byte[] contents, String contentType) {
+            this.contents = contents;
+            this.contentType = contentType;
+        }
+    }
+
+    private static class Account {
+        private final String userId;
+        private volatile String email;
+        private volatile String userName;
+        private volatile String password;
+        private final Map<String, Object> profile;
+
+        private Account(String userId, String email, String userName, String password, Map<String, Object> profile) {
+            this.userId = userId;
+            this.email = email;
+            this.userName = userName;
+            this.password = password;
+            this.profile = profile;
+        }
+    }
+
+    /**
+     * The response to a request, before it is written
+     */
+    private static class Reply {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        private Reply(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        private static Reply json(int status, Object body) throws IOException {
+            return new Reply(status, JSON_TYPE, JSON.writeValueAsBytes(body));
+        }
+
+        private static Reply error(int status, String message) throws IOException {
+            return json(status, Collections.singletonMap("errors", Collections.singletonList(message)));
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    //objects and files by the user id they belong to, or APP_LEVEL
+    private final ConcurrentMap<String, Map<String, Map<String, Object>>> objects = new ConcurrentHashMap<String, Map<String, Map<String, Object>>>();
+    private final ConcurrentMap<String, Map<String, StoredFile>> files = new ConcurrentHashMap<String, Map<String, StoredFile>>();
+    private final Map<String, Account> accounts = new LinkedHashMap<String, Account>();
+    private final ConcurrentMap<String, String> userIdsBySession = new ConcurrentHashMap<String, String>();
+    private final List<Map<String, Object>> pushNotifications = Collections.synchronizedList(new ArrayList<Map<String, Object>>());
+    private final ConcurrentMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final Random random = new Random();
+    private volatile long minimumLatencyMillis;
+    private volatile long maximumLatencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile int failuresStatus = 500;
+
+    /**
+     * Create a server on a free port of the loopback interface. Call {@link #start()} before making requests
+     * @throws IOException if unable to bind a port
+     */
+    public FakeCloudMineServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Create a server on the given port of the loopback interface. Call {@link #start()} before making requests
+     * @param port the port, or 0 for any free port
+     * @throws IOException if unable to bind the port
+     */
+    public FakeCloudMineServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FakeCloudMineServer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Reply reply;
+                    try {
+                        reply = respond(exchange);
+                    } catch(Exception e) {
+                        LOG.error("Fake server failed handling " + exchange.getRequestURI(), e);
+                        reply = Reply.error(500, String.valueOf(e));
+                    }
+                    reply(exchange, reply);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public FakeCloudMineServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Get the base URL to give the SDK, such as http://127.0.0.1:54321
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Delay every response by a random time in the given range, to simulate the network and the service
+     * @param minimum the shortest delay
+     * @param maximum the longest delay
+     * @param unit the unit of the delays
+     */
+    public void setLatency(long minimum, long maximum, TimeUnit unit) {
+        if(minimum < 0 || maximum < minimum) {
+            throw new IllegalArgumentException("Latency must be a non negative range, not " + minimum + " to " + maximum);
+        }
+        minimumLatencyMillis = unit.toMillis(minimum);
+        maximumLatencyMillis = unit.toMillis(maximum);
+    }
+
+    /**
+     * Fail the given fraction of requests, at random, with the given status code
+     * @param rate the fraction of requests to fail, from 0 to 1
+     * @param status the HTTP status code to fail with
+     */
+    public void setErrorRate(double rate, int status) {
+        if(!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1, not " + rate);
+        }
+        errorRate = rate;
+        errorStatus = status;
+    }
+
+    /**
+     * Fail the next requests with the given status code, whatever the error rate
+     * @param count the number of requests to fail
+     * @param status the HTTP status code to fail with
+     */
+    public void failNext(int count, int status) {
+        failuresStatus = status;
+        failures.set(count);
+    }
+
+    /**
+     * Store application level objects to load and search, each with a payload property of the given size, so
+     * responses are as large as a real application's. Objects are named object0, object1 and so on
+     * @param count the number of objects
+     * @param payloadLength the length of each object's payload string
+     */
+    public void populate(int count, int payloadLength) {
+        char[] payload = new char[payloadLength];
+        Arrays.fill(payload, 'x');
+        String payloadString = new String(payload);
+        Map<String, Map<String, Object>> store = objectStore(APP_LEVEL);
+        synchronized(store) {
+            for(int i = 0; i < count; i++) {
+                Map<String, Object> object = new LinkedHashMap<String, Object>();
+                String objectId = "object" + i;
+                object.put(JsonUtilities.OBJECT_ID_KEY, objectId);
+                object.put("index", i);
+                object.put("group", "group" + i % 10);
+                object.put("payload", payloadString);
+                store.put(objectId, object);
+            }
+        }
+    }
+
+    /**
+     * Get the number of requests made to an endpoint since the server started
+     * @param endpoint the first part of the path after the application id, ignoring /user, such as text or search
+     */
+    public long getRequestCount(String endpoint) {
+        AtomicLong count = requestCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Get the push notifications that have been sent, as the JSON maps the SDK sent
+     */
+    public List<Map<String, Object>> getPushNotifications() {
+        synchronized(pushNotifications) {
+            return new ArrayList<Map<String, Object>>(pushNotifications);
+        }
+    }
+
+    /**
+     * Remove every object, file, account and push notification
+     */
+    public void clear() {
+        objects.clear();
+        files.clear();
+        synchronized(accounts) {
+            accounts.clear();
+        }
+        userIdsBySession.clear();
+        pushNotifications.clear();
+    }
+
+    private Reply respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        String prefix = "/v1/app/" + APP_ID;
+        if(!path.startsWith(prefix + "/")) {
+            return Reply.error(404, "Unknown application: " + path);
+        }
+        List<String> segments = new ArrayList<String>();
+        for(String segment : path.substring(prefix.length() + 1).split("/")) {
+            if(segment.length() > 0) {
+                segments.add(URLDecoder.decode(segment, "UTF-8"));
+            }
+        }
+        String owner = APP_LEVEL;
+        if(!segments.isEmpty() && "user".equals(segments.get(0))) {
+            segments.remove(0);
+            owner = userIdsBySession.get(String.valueOf(exchange.getRequestHeaders().getFirst(HeaderFactory.SESSION_TOKEN_HEADER_KEY)));
+            if(owner == null) {
+                return Reply.error(401, "Invalid session token");
+            }
+        }
+        String endpoint = segments.isEmpty() ? "" : segments.get(0);
+        count(endpoint);
+        simulateLatency();
+        Reply failure = injectedFailure();
+        if(failure != null) {
+            return failure;
+        }
+        if(!API_KEY.equals(exchange.getRequestHeaders().getFirst(HeaderFactory.API_HEADER_KEY))) {
+            return Reply.error(401, "Invalid API key");
+        }
+        String method = exchange.getRequestMethod();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        if("text".equals(endpoint) && "GET".equals(method)) {
+            return loadObjects(owner, query);
+        } else if("text".equals(endpoint) && ("PUT".equals(method) || "POST".equals(method))) {
+            return saveObjects(owner, readJson(exchange), "POST".equals(method));
+        } else if("data".equals(endpoint) && "DELETE".equals(method)) {
+            return delete(owner, query);
+        } else if("search".equals(endpoint) && "GET".equals(method)) {
+            return search(objectStore(owner), query.get("q"), query);
+        } else if("binary".equals(endpoint)) {
+            return file(exchange, owner, segments.size() > 1 ? segments.get(1) : null);
+        } else if("account".equals(endpoint)) {
+            return account(exchange, segments.subList(1, segments.size()), query);
+        } else if("push".equals(endpoint) || "device".equals(endpoint)) {
+            return push(exchange, segments);
+        }
+        return Reply.error(404, "Not implemented by the fake server: " + method + " " + path);
+    }
+
+    private void count(String endpoint) {
+        AtomicLong count = requestCounts.get(endpoint);
+        if(count == null) {
+            AtomicLong created = new AtomicLong();
+            count = requestCounts.putIfAbsent(endpoint, created);
+            if(count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private void simulateLatency() {
+        long minimum = minimumLatencyMillis;
+        long maximum = maximumLatencyMillis;
+        if(maximum <= 0) {
+            return;
+        }
+        long delay;
+        synchronized(random) {
+            delay = minimum + (long) (random.nextDouble() * (maximum - minimum));
+        }
+        try {
+            Thread.sleep(delay);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Reply injectedFailure() throws IOException {
+        int remaining;
+        while((remaining = failures.get()) > 0) {
+            if(failures.compareAndSet(remaining, remaining - 1)) {
+                return Reply.error(failuresStatus, "Injected failure");
+            }
+        }
+        double rate = errorRate;
+        boolean fail;
+        synchronized(random) {
+            fail = rate > 0 && random.nextDouble() < rate;
+        }
+        return fail ? Reply.error(errorStatus, "Injected failure") : null;
+    }
+
+    private Map<String, Map<String, Object>> objectStore(String owner) {
+        Map<String, Map<String, Object>> store = objects.get(owner);
+        if(store == null) {
+            Map<String, Map<String, Object>> created = new LinkedHashMap<String, Map<String, Object>>();
+            store = objects.putIfAbsent(owner, created);
+            if(store == null) {
+                store = created;
+            }
+        }
+        return store;
+    }
+
+    private Map<String, StoredFile> fileStore(String owner) {
+        Map<String, StoredFile> store = files.get(owner);
+        if(store == null) {
+            Map<String, StoredFile> created = new ConcurrentHashMap<String, StoredFile>();
+            store = files.putIfAbsent(owner, created);
+            if(store == null) {
+                store = created;
+            }
+        }
+        return store;
+    }
+
+    private Reply loadObjects(String owner, Map<String, String> query) throws IOException {
+        Map<String, Map<String, Object>> store = objectStore(owner);
+        Map<String, Object> success = new LinkedHashMap<String, Object>();
+        Map<String, Object> errors = new LinkedHashMap<String, Object>();
+        synchronized(store) {
+            String keys = query.get("keys");
+            if(keys == null) {
+                success.putAll(store);
+            } else {
+                for(String key : keys.split(",")) {
+                    Map<String, Object> object = store.get(key);
+                    if(object == null) {
+                        errors.put(key, notFound());
+                    } else {
+                        success.put(key, object);
+                    }
+                }
+            }
+        }
+        return Reply.json(200, page(success, errors, query));
+    }
+
+    private Reply search(Map<String, Map<String, Object>> store, String search, Map<String, String> query) throws IOException {
+        LocalQuery localQuery;
+        try {
+            localQuery = LocalQuery.parse(search == null ? "" : search);
+        } catch(InvalidRequestException e) {
+            return Reply.error(400, e.getMessage());
+        }
+        Map<String, Object> success = new LinkedHashMap<String, Object>();
+        synchronized(store) {
+            for(Map.Entry<String, Map<String, Object>> entry : store.entrySet()) {
+                if(localQuery.matches(entry.getValue())) {
+                    success.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return Reply.json(200, page(success, new HashMap<String, Object>(), query));
+    }
+
+    /**
+     * Apply the limit, skip and count paging options to a load or search
+     */
+    private static Map<String, Object> page(Map<String, Object> success, Map<String, Object> errors, Map<String, String> query) {
+        int total = success.size();
+        int skip = intParameter(query, "skip", 0);
+        int limit = intParameter(query, "limit", -1);
+        if(skip > 0 || limit >= 0) {
+            Map<String, Object> paged = new LinkedHashMap<String, Object>();
+            int index = 0;
+            for(Map.Entry<String, Object> entry : success.entrySet()) {
+                if(index++ >= skip && (limit < 0 || paged.size() < limit)) {
+                    paged.put(entry.getKey(), entry.getValue());
+                }
+            }
+            success = paged;
+        }
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("success", success);
+        body.put("errors", errors);
+        if("true".equals(query.get("count"))) {
+            body.put("count", total);
+        }
+        return body;
+    }
+
+    private static Map<String, Object> notFound() {
+        Map<String, Object> error = new LinkedHashMap<String, Object>();
+        error.put("code", 404);
+        error.put("message", "Not Found");
+        return error;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Reply saveObjects(String owner, Map<String, Object> body, boolean merge) throws IOException {
+        Map<String, Map<String, Object>> store = objectStore(owner);
+        Map<String, Object> success = new LinkedHashMap<String, Object>();
+        Map<String, Object> errors = new LinkedHashMap<String, Object>();
+        synchronized(store) {
+            for(Map.Entry<String, Object> entry : body.entrySet()) {
+                if(!(entry.getValue() instanceof Map)) {
+                    errors.put(entry.getKey(), "Objects must be JSON objects");
+                    continue;
+                }
+                Map<String, Object> object = (Map<String, Object>) entry.getValue();
+                Map<String, Object> existing = store.get(entry.getKey());
+                if(merge && existing != null) {
+                    Map<String, Object> merged = new LinkedHashMap<String, Object>(existing);
+                    merged.putAll(object);
+                    object = merged;
+                }
+                store.put(entry.getKey(), object);
+                success.put(entry.getKey(), existing == null ? "created" : "updated");
+            }
+        }
+        Map<String, Object> reply = new LinkedHashMap<String, Object>();
+        reply.put("success", success);
+        reply.put("errors", errors);
+        return Reply.json(200, reply);
+    }
+
+    private Reply delete(String owner, Map<String, String> query) throws IOException {
+        Map<String, Map<String, Object>> store = objectStore(owner);
+        Map<String, StoredFile> fileStore = fileStore(owner);
+        Map<String, Object> success = new LinkedHashMap<String, Object>();
+        Map<String, Object> errors = new LinkedHashMap<String, Object>();
+        synchronized(store) {
+            List<String> keys = "true".equals(query.get("all")) ?
+                    new ArrayList<String>(store.keySet()) :
+                    Arrays.asList(String.valueOf(query.get("keys")).split(","));
+            if("true".equals(query.get("all"))) {
+                keys.addAll(fileStore.keySet());
+            }
+            for(String key : keys) {
+                boolean deleted = store.remove(key) != null;
+                deleted |= fileStore.remove(key) != null;
+                if(deleted) {
+                    success.put(key, "deleted");
+                } else {
+                    errors.put(key, notFound());
+                }
+            }
+        }
+        Map<String, Object> reply = new LinkedHashMap<String, Object>();
+        reply.put("success", success);
+        reply.put("errors", errors);
+        return Reply.json(200, reply);
+    }
+
+    private Reply file(HttpExchange exchange, String owner, String fileId) throws IOException {
+        String method = exchange.getRequestMethod();
+        Map<String, StoredFile> store = fileStore(owner);
+        if("GET".equals(method) && fileId != null) {
+            StoredFile file = store.get(fileId);
+            return file == null ? Reply.error(404, "File not found: " + fileId) : new Reply(200, file.contentType, file.contents);
+        }
+        if("PUT".equals(method) || "POST".equals(method)) {
+            String id = fileId == null ? UUID.randomUUID().toString() : fileId;
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            store.put(id, new StoredFile(readBody(exchange), contentType == null ? "application/octet-stream" : contentType));
+            return Reply.json(201, Collections.singletonMap("key", id));
+        }
+        return Reply.error(405, method + " is not supported for files");
+    }
+
+    private Reply account(HttpExchange exchange, List<String> path, Map<String, String> query) throws IOException {
+        String method = exchange.getRequestMethod();
+        String action = path.isEmpty() ? "" : path.get(0);
+        if(path.isEmpty() && "GET".equals(method)) {
+            return Reply.json(200, page(profiles(), new HashMap<String, Object>(), query));
+        } else if("search".equals(action) && "GET".equals(method)) {
+            Map<String, Map<String, Object>> profiles = new LinkedHashMap<String, Map<String, Object>>();
+            for(Map.Entry<String, Object> profile : profiles().entrySet()) {
+                profiles.put(profile.getKey(), asMap(profile.getValue()));
+            }
+            return search(profiles, query.get("p"), query);
+        } else if("create".equals(action) && "PUT".equals(method)) {
+            return createAccount(readJson(exchange));
+        } else if("login".equals(action) && "POST".equals(method)) {
+            Account account = authenticate(exchange);
+            if(account == null) {
+                return Reply.error(401, "Invalid credentials");
+            }
+            String session = UUID.randomUUID().toString().replace("-", "");
+            userIdsBySession.put(session, account.userId);
+            DateFormat expires = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.ENGLISH);
+            expires.setTimeZone(TimeZone.getTimeZone("GMT"));
+            Map<String, Object> reply = new LinkedHashMap<String, Object>();
+            reply.put(CMSessionToken.SESSION_KEY, session);
+            reply.put(CMSessionToken.EXPIRES_KEY, expires.format(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(14))));
+            reply.put(JavaCMUser.PROFILE_KEY, account.profile);
+            return Reply.json(200, reply);
+        } else if("logout".equals(action) && "POST".equals(method)) {
+            String session = exchange.getRequestHeaders().getFirst(HeaderFactory.SESSION_TOKEN_HEADER_KEY);
+            return session != null && userIdsBySession.remove(session) != null ?
+                    Reply.json(200, Collections.emptyMap()) : Reply.error(401, "Invalid session token");
+        } else if("password".equals(action) && path.size() > 1 && "change".equals(path.get(1)) && "POST".equals(method)) {
+            Account account = authenticate(exchange);
+            if(account == null) {
+                return Reply.error(401, "Invalid credentials");
+            }
+            account.password = String.valueOf(readJson(exchange).get(JavaCMUser.PASSWORD_KEY));
+            return Reply.json(200, Collections.emptyMap());
+        } else if("password".equals(action) && "POST".equals(method)) {
+            //reset requests and confirmations; no email is sent
+            return Reply.json(200, Collections.emptyMap());
+        } else if("credentials".equals(action) && "POST".equals(method)) {
+            Account account = authenticate(exchange);
+            if(account == null) {
+                return Reply.error(401, "Invalid credentials");
+            }
+            Map<String, Object> changes = readJson(exchange);
+            synchronized(accounts) {
+                if(changes.containsKey(JavaCMUser.EMAIL_KEY)) {
+                    account.email = String.valueOf(changes.get(JavaCMUser.EMAIL_KEY));
+                }
+                if(changes.containsKey(JavaCMUser.USERNAME_KEY)) {
+                    account.userName = String.valueOf(changes.get(JavaCMUser.USERNAME_KEY));
+                }
+            }
+            return Reply.json(200, Collections.emptyMap());
+        } else if("channels".equals(action) && "GET".equals(method)) {
+            return Reply.json(200, Collections.emptyList());
+        } else if(path.size() == 1 && "DELETE".equals(method)) {
+            synchronized(accounts) {
+                for(Iterator<Account> iterator = accounts.values().iterator(); iterator.hasNext(); ) {
+                    if(iterator.next().userId.equals(action)) {
+                        iterator.remove();
+                        return Reply.json(200, Collections.emptyMap());
+                    }
+                }
+            }
+            return Reply.error(404, "User not found: " + action);
+        }
+        return Reply.error(404, "Not implemented by the fake server: " + method + " account/" + path);
+    }
+
+    private Reply createAccount(Map<String, Object> body) throws IOException {
+        Map<String, Object> credentials = asMap(body.get(JavaCMUser.CREDENTIALS_KEY));
+        Map<String, Object> profile = asMap(body.get(JavaCMUser.PROFILE_KEY));
+        if(credentials == null || credentials.get(JavaCMUser.PASSWORD_KEY) == null) {
+            return Reply.error(400, "A password is required");
+        }
+        String email = (String) credentials.get(JavaCMUser.EMAIL_KEY);
+        String userName = (String) credentials.get(JavaCMUser.USERNAME_KEY);
+        Map<String, Object> storedProfile = profile == null ? new LinkedHashMap<String, Object>() : new LinkedHashMap<String, Object>(profile);
+        Object userId = storedProfile.get(JsonUtilities.OBJECT_ID_KEY);
+        if(userId == null) {
+            userId = UUID.randomUUID().toString().replace("-", "");
+            storedProfile.put(JsonUtilities.OBJECT_ID_KEY, userId);
+        }
+        synchronized(accounts) {
+            if(findAccount(email, userName) != null) {
+                return Reply.error(409, "The user already exists");
+            }
+            accounts.put(userId.toString(), new Account(userId.toString(), email, userName,
+                    String.valueOf(credentials.get(JavaCMUser.PASSWORD_KEY)), storedProfile));
+        }
+        return Reply.json(201, storedProfile);
+    }
+
+    private Map<String, Object> profiles() {
+        Map<String, Object> profiles = new LinkedHashMap<String, Object>();
+        synchronized(accounts) {
+            for(Account account : accounts.values()) {
+                profiles.put(account.userId, account.profile);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Find the account named by the request's Basic authorization header, if the password matches
+     */
+    private Account authenticate(HttpExchange exchange) throws UnsupportedEncodingException {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if(authorization == null || !authorization.startsWith("Basic ")) {
+            return null;
+        }
+        String decoded = new String(Base64.decodeBase64(authorization.substring("Basic ".length()).trim().getBytes("UTF-8")), "UTF-8");
+        int separator = decoded.indexOf(':');
+        if(separator < 0) {
+            return null;
+        }
+        String name = decoded.substring(0, separator);
+        synchronized(accounts) {
+            Account account = findAccount(name, name);
+            return account != null && account.password.equals(decoded.substring(separator + 1)) ? account : null;
+        }
+    }
+
+    private Account findAccount(String email, String userName) {
+        for(Account account : accounts.values()) {
+            if((email != null && email.equalsIgnoreCase(account.email)) || (userName != null && userName.equals(account.userName))) {
+                return account;
+            }
+        }
+        return null;
+    }
+
+    private Reply push(HttpExchange exchange, List<String> path) throws IOException {
+        String method = exchange.getRequestMethod();
+        if(path.size() == 1 && "push".equals(path.get(0)) && "POST".equals(method)) {
+            pushNotifications.add(readJson(exchange));
+            return Reply.json(200, Collections.emptyMap());
+        }
+        //device registration, channels and subscriptions are accepted without being stored
+        byte[] body = readBody(exchange);
+        return new Reply(200, JSON_TYPE, body.length == 0 ? "{}".getBytes("UTF-8") : body);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readJson(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange);
+        if(body.length == 0) {
+            return new LinkedHashMap<String, Object>();
+        }
+        return JSON.readValue(body, LinkedHashMap.class);
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        try {
+            return IOUtils.toByteArray(body);
+        } finally {
+            body.close();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<String, String>();
+        if(rawQuery == null) {
+            return query;
+        }
+        for(String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if(equals > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"), URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+            } else if(parameter.length() > 0) {
+                query.put(URLDecoder.decode(parameter, "UTF-8"), "");
+            }
+        }
+        return query;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if(value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch(NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static void reply(HttpExchange exchange, Reply reply) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", reply.contentType);
+        exchange.sendResponseHeaders(reply.status, reply.body.length == 0 ? -1 : reply.body.length);
+        if(reply.body.length > 0) {
+            OutputStream response = exchange.getResponseBody();
+            try {
+                response.write(reply.body);
+            } finally {
+                response.close();
+            }
+        }
+    }
+}